@@ -20,13 +20,16 @@ package org.jax.bham;
 import java.awt.event.ActionEvent;
 
 import javax.swing.AbstractAction;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JSeparator;
 
+import org.jax.bham.infer.HaplotypeBlockParameterSweepAction;
 import org.jax.bham.infer.InferHaplotypeBlocksAction;
 import org.jax.bham.infer.InferPhylogenyAction;
 import org.jax.bham.infer.SlidingWindowHaplotypeInferenceAction;
+import org.jax.bham.io.ConvertBinaryTestResultsToFlatFileAction;
 import org.jax.bham.io.ConvertCsvGenotypeDataToBinaryAction;
 import org.jax.bham.io.ExportHaplotypeAssociationTestResultsAction;
 import org.jax.bham.io.ExportHaplotypeBlocksToFlatFileAction;
@@ -36,13 +39,17 @@ import org.jax.bham.io.ExportPhylogenyToNewickAction;
 import org.jax.bham.io.LoadBinaryGenotypeDataSourceAction;
 import org.jax.bham.io.LoadCsvHMMStatesAction;
 import org.jax.bham.io.LoadMPDIndividualPhenotypeDataSourceAction;
+import org.jax.bham.io.LoadPhenotypeMatrixAction;
+import org.jax.bham.project.AutosaveBhamProjectAction;
 import org.jax.bham.project.LoadBhamProjectAction;
 import org.jax.bham.project.SaveBhamProjectAction;
 import org.jax.bham.project.SaveBhamProjectAsAction;
 import org.jax.bham.test.EMMATestAction;
 import org.jax.bham.test.HaplotypeAssociationTestAction;
 import org.jax.bham.test.MultiGroupHaplotypeAssociationTestAction;
+import org.jax.bham.test.MultiPhenotypeHaplotypeAssociationTestAction;
 import org.jax.bham.test.PhylogenyAssociationTestAction;
+import org.jax.bham.test.SlidingWindowStrainMeanScanAction;
 import org.jax.util.gui.desktoporganization.Desktop;
 
 /**
@@ -73,6 +80,7 @@ public class BhamMainMenuManager
         
         fileMenu.add(new SaveBhamProjectAction());
         fileMenu.add(new SaveBhamProjectAsAction());
+        fileMenu.add(new JCheckBoxMenuItem(new AutosaveBhamProjectAction()));
         
         fileMenu.add(new JSeparator());
         fileMenu.add(new LoadBhamProjectAction());
@@ -84,6 +92,7 @@ public class BhamMainMenuManager
         fileMenu.add(new LoadBinaryGenotypeDataSourceAction());
         fileMenu.add(new LoadCsvHMMStatesAction());
         fileMenu.add(new LoadMPDIndividualPhenotypeDataSourceAction());
+        fileMenu.add(new LoadPhenotypeMatrixAction());
         
         fileMenu.add(new JSeparator());
         fileMenu.add(new ExportHaplotypeBlocksToFlatFileAction());
@@ -91,6 +100,7 @@ public class BhamMainMenuManager
         fileMenu.add(new ExportHaplotypeAssociationTestResultsAction());
         fileMenu.add(new ExportPhylogenyAssociationTestResultsAction());
         fileMenu.add(new ExportMultiGroupHaplotypeAssociationTestResultsAction());
+        fileMenu.add(new ConvertBinaryTestResultsToFlatFileAction());
         
         fileMenu.add(new JSeparator());
         fileMenu.add(new AbstractAction("Quit")
@@ -113,6 +123,7 @@ public class BhamMainMenuManager
         
         final JMenu inferenceMenu = new JMenu("Inference");
         inferenceMenu.add(new InferHaplotypeBlocksAction());
+        inferenceMenu.add(new HaplotypeBlockParameterSweepAction());
         inferenceMenu.add(new SlidingWindowHaplotypeInferenceAction());
         inferenceMenu.add(new InferPhylogenyAction());
         this.menuBar.add(inferenceMenu);
@@ -121,7 +132,9 @@ public class BhamMainMenuManager
         testMenu.add(new EMMATestAction());
         testMenu.add(new HaplotypeAssociationTestAction());
         testMenu.add(new MultiGroupHaplotypeAssociationTestAction());
+        testMenu.add(new MultiPhenotypeHaplotypeAssociationTestAction());
         testMenu.add(new PhylogenyAssociationTestAction());
+        testMenu.add(new SlidingWindowStrainMeanScanAction());
         this.menuBar.add(testMenu);
         
         this.menuBar.add(desktop.getWindowMenu());
@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.infer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+
+import org.jax.haplotype.data.ChromosomeDataSource;
+import org.jax.haplotype.io.SdpInputStream;
+
+/**
+ * Haplotype block inference on SNP calls packed into <code>long</code>
+ * words. A block is a maximal run of SNPs that are all pairwise compatible
+ * under the four gamete test, and the strains of a block are grouped by
+ * their calls across it. Each SNP's strain split is held as a packed bit
+ * vector so that testing two SNPs for compatibility is a handful of word
+ * operations per 64 strains, and a run is extended one SNP at a time by
+ * testing the new SNP against the run from the back. Instances hold no
+ * per chromosome state so one inference can be shared by threads working
+ * on different chromosomes.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class HaplotypeBlockInference
+{
+    private final String[] sortedStrains;
+    
+    private final int wordsPerSnp;
+    
+    /**
+     * the bits of the last word that hold strains
+     */
+    private final long lastWordMask;
+    
+    /**
+     * Constructor
+     * @param sortedStrains
+     *          the strains to infer blocks for in sorted order
+     */
+    public HaplotypeBlockInference(String[] sortedStrains)
+    {
+        this.sortedStrains = sortedStrains;
+        this.wordsPerSnp = Math.max(1, (sortedStrains.length + Long.SIZE - 1) / Long.SIZE);
+        int lastWordStrainCount = sortedStrains.length - (this.wordsPerSnp - 1) * Long.SIZE;
+        this.lastWordMask = lastWordStrainCount == Long.SIZE ?
+                            -1L :
+                            (1L << lastWordStrainCount) - 1L;
+    }
+    
+    /**
+     * Getter for the strains that blocks are inferred for
+     * @return
+     *          the strains in sorted order
+     */
+    public String[] getSortedStrains()
+    {
+        return this.sortedStrains;
+    }
+    
+    /**
+     * Read a chromosome's SNPs and pack them
+     * @param chromosomeDataSource
+     *          the chromosome
+     * @return
+     *          the packed SNPs
+     * @throws IOException
+     *          if reading the genotypes fails
+     */
+    public PackedSnps readChromosome(ChromosomeDataSource chromosomeDataSource)
+    throws IOException
+    {
+        SdpInputStream sdpStream = chromosomeDataSource.getSdpInputStream(
+                new HashSet<String>(Arrays.asList(this.sortedStrains)));
+        
+        // map the stream's strain order onto ours
+        String[] sdpStrainNames = sdpStream.getSdpStrainNames();
+        int[] strainIndices = new int[sdpStrainNames.length];
+        for(int i = 0; i < sdpStrainNames.length; i++)
+        {
+            strainIndices[i] = Arrays.binarySearch(
+                    this.sortedStrains,
+                    sdpStrainNames[i]);
+        }
+        
+        int wordsPerSnp = this.wordsPerSnp;
+        long[] packedCalls = new long[1024 * wordsPerSnp];
+        int snpCount = 0;
+        while(sdpStream.hasNextSdp())
+        {
+            if((snpCount + 1) * wordsPerSnp > packedCalls.length)
+            {
+                long[] grownCalls = new long[packedCalls.length * 2];
+                System.arraycopy(packedCalls, 0, grownCalls, 0, packedCalls.length);
+                packedCalls = grownCalls;
+            }
+            
+            BitSet sdp = sdpStream.getNextSdp();
+            int snpOffset = snpCount * wordsPerSnp;
+            for(int bit = sdp.nextSetBit(0);
+                bit >= 0 && bit < strainIndices.length;
+                bit = sdp.nextSetBit(bit + 1))
+            {
+                int strainIndex = strainIndices[bit];
+                if(strainIndex >= 0)
+                {
+                    packedCalls[snpOffset + (strainIndex >>> 6)] |= 1L << (strainIndex & 63);
+                }
+            }
+            snpCount++;
+        }
+        
+        return new PackedSnps(packedCalls, snpCount);
+    }
+    
+    /**
+     * Find the maximal runs of pairwise compatible SNPs
+     * @param snps
+     *          the packed SNPs
+     * @return
+     *          the runs in order. Runs can overlap but no run is inside
+     *          another one
+     */
+    public List<int[]> findCompatibleIntervals(PackedSnps snps)
+    {
+        List<int[]> intervals = new ArrayList<int[]>();
+        int snpCount = snps.getSnpCount();
+        int runStart = 0;
+        for(int snp = 1; snp < snpCount; snp++)
+        {
+            // the run can't start before the last SNP that the new SNP
+            // conflicts with. anything before the run's start was already
+            // ruled out by an earlier SNP
+            int newRunStart = runStart;
+            for(int earlierSnp = snp - 1; earlierSnp >= runStart; earlierSnp--)
+            {
+                if(!this.areCompatible(snps, earlierSnp, snp))
+                {
+                    newRunStart = earlierSnp + 1;
+                    break;
+                }
+            }
+            
+            if(newRunStart > runStart)
+            {
+                // the old run can't grow any more
+                intervals.add(new int[] {runStart, snp});
+                runStart = newRunStart;
+            }
+        }
+        
+        if(snpCount > 0)
+        {
+            intervals.add(new int[] {runStart, snpCount});
+        }
+        
+        return intervals;
+    }
+    
+    /**
+     * Apply the four gamete test to a pair of SNPs. They're compatible
+     * unless all four combinations of calls show up in some strain
+     * @param snps
+     *          the packed SNPs
+     * @param snp1
+     *          the index of the first SNP
+     * @param snp2
+     *          the index of the second SNP
+     * @return
+     *          true if the SNPs are compatible
+     */
+    boolean areCompatible(PackedSnps snps, int snp1, int snp2)
+    {
+        long[] packedCalls = snps.packedCalls;
+        int wordsPerSnp = this.wordsPerSnp;
+        int offset1 = snp1 * wordsPerSnp;
+        int offset2 = snp2 * wordsPerSnp;
+        long bothSet = 0L;
+        long firstOnly = 0L;
+        long secondOnly = 0L;
+        long neitherSet = 0L;
+        for(int word = 0; word < wordsPerSnp; word++)
+        {
+            long calls1 = packedCalls[offset1 + word];
+            long calls2 = packedCalls[offset2 + word];
+            long strainMask = word == wordsPerSnp - 1 ? this.lastWordMask : -1L;
+            bothSet |= calls1 & calls2;
+            firstOnly |= calls1 & ~calls2;
+            secondOnly |= ~calls1 & calls2;
+            neitherSet |= ~(calls1 | calls2) & strainMask;
+        }
+        
+        return bothSet == 0L || firstOnly == 0L || secondOnly == 0L || neitherSet == 0L;
+    }
+    
+    /**
+     * Group the strains by their calls over an interval by splitting the
+     * groups on one SNP at a time
+     * @param snps
+     *          the packed SNPs
+     * @param startSnp
+     *          the first SNP of the interval
+     * @param endSnp
+     *          one past the last SNP of the interval
+     * @return
+     *          the group of each strain. Groups are numbered in the order
+     *          that their first strain appears
+     */
+    public short[] groupStrains(PackedSnps snps, int startSnp, int endSnp)
+    {
+        int strainCount = this.sortedStrains.length;
+        short[] strainGroups = new short[strainCount];
+        int groupCount = strainCount == 0 ? 0 : 1;
+        
+        // the group numbers after a split: two slots for each old group
+        int[] splitGroups = new int[2 * Math.max(1, strainCount)];
+        long[] packedCalls = snps.packedCalls;
+        for(int snp = startSnp; snp < endSnp && groupCount < strainCount; snp++)
+        {
+            Arrays.fill(splitGroups, 0, 2 * groupCount, -1);
+            int snpOffset = snp * this.wordsPerSnp;
+            int newGroupCount = 0;
+            for(int strain = 0; strain < strainCount; strain++)
+            {
+                long call = (packedCalls[snpOffset + (strain >>> 6)] >>> (strain & 63)) & 1L;
+                int slot = 2 * strainGroups[strain] + (int)call;
+                if(splitGroups[slot] < 0)
+                {
+                    splitGroups[slot] = newGroupCount;
+                    newGroupCount++;
+                }
+                strainGroups[strain] = (short)splitGroups[slot];
+            }
+            groupCount = newGroupCount;
+        }
+        
+        return strainGroups;
+    }
+    
+    /**
+     * Infer the blocks of a chromosome
+     * @param snps
+     *          the chromosome's packed SNPs
+     * @param minimumSnpCount
+     *          blocks with fewer SNPs than this are dropped
+     * @param minimumStrainCount
+     *          strain groups with fewer strains than this aren't counted
+     *          as haplotypes
+     * @return
+     *          the blocks in order along the chromosome
+     */
+    public List<HaplotypeBlock> inferBlocks(
+            PackedSnps snps,
+            int minimumSnpCount,
+            int minimumStrainCount)
+    {
+        return this.inferBlocks(
+                snps,
+                this.findCompatibleIntervals(snps),
+                minimumSnpCount,
+                minimumStrainCount);
+    }
+    
+    /**
+     * Infer the blocks of a chromosome from compatible intervals that have
+     * already been found
+     * @param snps
+     *          the chromosome's packed SNPs
+     * @param compatibleIntervals
+     *          the chromosome's compatible intervals
+     *          (see {@link #findCompatibleIntervals(PackedSnps)})
+     * @param minimumSnpCount
+     *          blocks with fewer SNPs than this are dropped
+     * @param minimumStrainCount
+     *          strain groups with fewer strains than this aren't counted
+     *          as haplotypes
+     * @return
+     *          the blocks in order along the chromosome
+     */
+    public List<HaplotypeBlock> inferBlocks(
+            PackedSnps snps,
+            List<int[]> compatibleIntervals,
+            int minimumSnpCount,
+            int minimumStrainCount)
+    {
+        List<HaplotypeBlock> blocks = new ArrayList<HaplotypeBlock>();
+        for(int[] interval: compatibleIntervals)
+        {
+            if(interval[1] - interval[0] >= minimumSnpCount)
+            {
+                short[] strainGroups = this.groupStrains(
+                        snps,
+                        interval[0],
+                        interval[1]);
+                blocks.add(new HaplotypeBlock(
+                        interval[0],
+                        interval[1],
+                        strainGroups,
+                        minimumStrainCount));
+            }
+        }
+        
+        return blocks;
+    }
+    
+    /**
+     * The SNP calls of a chromosome packed into words with the strains of
+     * each SNP in consecutive words
+     */
+    public static class PackedSnps
+    {
+        private final long[] packedCalls;
+        
+        private final int snpCount;
+        
+        private PackedSnps(long[] packedCalls, int snpCount)
+        {
+            this.packedCalls = packedCalls;
+            this.snpCount = snpCount;
+        }
+        
+        /**
+         * Getter for the number of SNPs
+         * @return
+         *          the SNP count
+         */
+        public int getSnpCount()
+        {
+            return this.snpCount;
+        }
+    }
+    
+    /**
+     * An inferred haplotype block
+     */
+    public static class HaplotypeBlock
+    {
+        private final int startSnp;
+        
+        private final int endSnp;
+        
+        private final short[] strainGroups;
+        
+        private final int haplotypeCount;
+        
+        /**
+         * Constructor
+         * @param startSnp
+         *          the index of the block's first SNP
+         * @param endSnp
+         *          one past the index of the block's last SNP
+         * @param strainGroups
+         *          the group of each strain
+         * @param minimumStrainCount
+         *          the number of strains a group needs to count as a
+         *          haplotype
+         */
+        public HaplotypeBlock(
+                int startSnp,
+                int endSnp,
+                short[] strainGroups,
+                int minimumStrainCount)
+        {
+            this.startSnp = startSnp;
+            this.endSnp = endSnp;
+            this.strainGroups = strainGroups;
+            
+            int[] groupSizes = new int[strainGroups.length];
+            for(short group: strainGroups)
+            {
+                groupSizes[group]++;
+            }
+            int haplotypeCount = 0;
+            for(int groupSize: groupSizes)
+            {
+                if(groupSize > 0 && groupSize >= minimumStrainCount)
+                {
+                    haplotypeCount++;
+                }
+            }
+            this.haplotypeCount = haplotypeCount;
+        }
+        
+        /**
+         * Getter for the index of the block's first SNP
+         * @return
+         *          the start index
+         */
+        public int getStartSnp()
+        {
+            return this.startSnp;
+        }
+        
+        /**
+         * Getter for the index one past the block's last SNP
+         * @return
+         *          the end index
+         */
+        public int getEndSnp()
+        {
+            return this.endSnp;
+        }
+        
+        /**
+         * Getter for the number of SNPs in the block
+         * @return
+         *          the SNP count
+         */
+        public int getSnpCount()
+        {
+            return this.endSnp - this.startSnp;
+        }
+        
+        /**
+         * Getter for the group of each strain
+         * @return
+         *          the strain groups
+         */
+        public short[] getStrainGroups()
+        {
+            return this.strainGroups;
+        }
+        
+        /**
+         * Getter for the number of strain groups that are big enough to
+         * count as haplotypes
+         * @return
+         *          the haplotype count
+         */
+        public int getHaplotypeCount()
+        {
+            return this.haplotypeCount;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.infer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.jax.haplotype.data.ChromosomeDataSource;
+import org.jax.haplotype.data.GenomeDataSource;
+
+/**
+ * Summarizes the haplotype blocks that every combination of minimum SNP
+ * and minimum strain counts gives for a genome. Each chromosome is read
+ * once and its compatible intervals are found once. The strains of an
+ * interval are grouped once no matter how many parameter combinations
+ * keep it, so a combination only costs a pass over the intervals. A block
+ * is counted for a combination if it has at least the minimum number of
+ * SNPs and at least two haplotypes with the minimum number of strains
+ * (anything less can't split the strains for a test). Chromosomes can be
+ * swept from many threads at once
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class HaplotypeBlockParameterSweep
+{
+    private final GenomeDataSource genomeDataSource;
+    
+    private final HaplotypeBlockInference inference;
+    
+    private final int[] minimumSnpCounts;
+    
+    private final int[] minimumStrainCounts;
+    
+    private long snpCount = 0L;
+    
+    private final long[][] blockCounts;
+    
+    private final long[][] haplotypeCounts;
+    
+    private final long[][] coveredSnpCounts;
+    
+    /**
+     * Constructor
+     * @param genomeDataSource
+     *          the genome to infer blocks for
+     * @param minimumSnpCounts
+     *          the minimum SNP counts to try
+     * @param minimumStrainCounts
+     *          the minimum strain counts to try
+     */
+    public HaplotypeBlockParameterSweep(
+            GenomeDataSource genomeDataSource,
+            int[] minimumSnpCounts,
+            int[] minimumStrainCounts)
+    {
+        this.genomeDataSource = genomeDataSource;
+        this.minimumSnpCounts = minimumSnpCounts.clone();
+        this.minimumStrainCounts = minimumStrainCounts.clone();
+        
+        int snpCountCount = minimumSnpCounts.length;
+        int strainCountCount = minimumStrainCounts.length;
+        this.blockCounts = new long[snpCountCount][strainCountCount];
+        this.haplotypeCounts = new long[snpCountCount][strainCountCount];
+        this.coveredSnpCounts = new long[snpCountCount][strainCountCount];
+        
+        Set<String> strains;
+        if(genomeDataSource.getChromosomeDataSources().isEmpty())
+        {
+            strains = Collections.emptySet();
+        }
+        else
+        {
+            strains = genomeDataSource.getChromosomeDataSources().values().iterator().next().getAvailableStrains();
+        }
+        String[] sortedStrains = strains.toArray(new String[strains.size()]);
+        Arrays.sort(sortedStrains);
+        this.inference = new HaplotypeBlockInference(sortedStrains);
+    }
+    
+    /**
+     * Getter for the genome that we're inferring blocks for
+     * @return
+     *          the genome
+     */
+    public GenomeDataSource getGenomeDataSource()
+    {
+        return this.genomeDataSource;
+    }
+    
+    /**
+     * Getter for the minimum SNP counts that we're trying
+     * @return
+     *          the minimum SNP counts
+     */
+    public int[] getMinimumSnpCounts()
+    {
+        return this.minimumSnpCounts.clone();
+    }
+    
+    /**
+     * Getter for the minimum strain counts that we're trying
+     * @return
+     *          the minimum strain counts
+     */
+    public int[] getMinimumStrainCounts()
+    {
+        return this.minimumStrainCounts.clone();
+    }
+    
+    /**
+     * Infer the blocks of a chromosome for every parameter combination
+     * and add them to the summary
+     * @param chromosome
+     *          the chromosome number
+     * @throws IOException
+     *          if reading the genotypes fails
+     */
+    public void sweepChromosome(int chromosome) throws IOException
+    {
+        ChromosomeDataSource chromosomeDataSource =
+            this.genomeDataSource.getChromosomeDataSources().get(chromosome);
+        HaplotypeBlockInference.PackedSnps snps =
+            this.inference.readChromosome(chromosomeDataSource);
+        List<int[]> intervals = this.inference.findCompatibleIntervals(snps);
+        
+        int snpCountCount = this.minimumSnpCounts.length;
+        int strainCountCount = this.minimumStrainCounts.length;
+        int smallestMinimumSnpCount = Integer.MAX_VALUE;
+        for(int minimumSnpCount: this.minimumSnpCounts)
+        {
+            smallestMinimumSnpCount = Math.min(smallestMinimumSnpCount, minimumSnpCount);
+        }
+        
+        long[][] blockCounts = new long[snpCountCount][strainCountCount];
+        long[][] haplotypeCounts = new long[snpCountCount][strainCountCount];
+        long[][] coveredSnpCounts = new long[snpCountCount][strainCountCount];
+        
+        // intervals are in order of both start and end so the union of the
+        // kept blocks only needs the end of the last kept block
+        int[][] coveredEnds = new int[snpCountCount][strainCountCount];
+        
+        int strainCount = this.inference.getSortedStrains().length;
+        int[] groupSizes = new int[strainCount];
+        int[] intervalHaplotypeCounts = new int[strainCountCount];
+        for(int[] interval: intervals)
+        {
+            int intervalSnpCount = interval[1] - interval[0];
+            if(intervalSnpCount >= smallestMinimumSnpCount)
+            {
+                short[] strainGroups = this.inference.groupStrains(
+                        snps,
+                        interval[0],
+                        interval[1]);
+                Arrays.fill(groupSizes, 0);
+                for(short group: strainGroups)
+                {
+                    groupSizes[group]++;
+                }
+                
+                Arrays.fill(intervalHaplotypeCounts, 0);
+                for(int groupSize: groupSizes)
+                {
+                    for(int j = 0; j < strainCountCount; j++)
+                    {
+                        if(groupSize > 0 && groupSize >= this.minimumStrainCounts[j])
+                        {
+                            intervalHaplotypeCounts[j]++;
+                        }
+                    }
+                }
+                
+                for(int i = 0; i < snpCountCount; i++)
+                {
+                    if(intervalSnpCount >= this.minimumSnpCounts[i])
+                    {
+                        for(int j = 0; j < strainCountCount; j++)
+                        {
+                            if(intervalHaplotypeCounts[j] >= 2)
+                            {
+                                blockCounts[i][j]++;
+                                haplotypeCounts[i][j] += intervalHaplotypeCounts[j];
+                                coveredSnpCounts[i][j] +=
+                                    interval[1] - Math.max(interval[0], coveredEnds[i][j]);
+                                coveredEnds[i][j] = interval[1];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        
+        this.addChromosomeSummary(
+                snps.getSnpCount(),
+                blockCounts,
+                haplotypeCounts,
+                coveredSnpCounts);
+    }
+    
+    private synchronized void addChromosomeSummary(
+            int snpCount,
+            long[][] blockCounts,
+            long[][] haplotypeCounts,
+            long[][] coveredSnpCounts)
+    {
+        this.snpCount += snpCount;
+        for(int i = 0; i < this.minimumSnpCounts.length; i++)
+        {
+            for(int j = 0; j < this.minimumStrainCounts.length; j++)
+            {
+                this.blockCounts[i][j] += blockCounts[i][j];
+                this.haplotypeCounts[i][j] += haplotypeCounts[i][j];
+                this.coveredSnpCounts[i][j] += coveredSnpCounts[i][j];
+            }
+        }
+    }
+    
+    /**
+     * Getter for the number of SNPs in the chromosomes swept so far
+     * @return
+     *          the SNP count
+     */
+    public synchronized long getSnpCount()
+    {
+        return this.snpCount;
+    }
+    
+    /**
+     * Getter for the number of blocks that a parameter combination gives
+     * @param snpCountIndex
+     *          the index of the minimum SNP count
+     * @param strainCountIndex
+     *          the index of the minimum strain count
+     * @return
+     *          the block count
+     */
+    public synchronized long getBlockCount(int snpCountIndex, int strainCountIndex)
+    {
+        return this.blockCounts[snpCountIndex][strainCountIndex];
+    }
+    
+    /**
+     * Getter for the mean number of haplotypes in the blocks that a
+     * parameter combination gives
+     * @param snpCountIndex
+     *          the index of the minimum SNP count
+     * @param strainCountIndex
+     *          the index of the minimum strain count
+     * @return
+     *          the mean haplotype count or 0 if there are no blocks
+     */
+    public synchronized double getMeanHaplotypeCount(int snpCountIndex, int strainCountIndex)
+    {
+        long blockCount = this.blockCounts[snpCountIndex][strainCountIndex];
+        if(blockCount == 0L)
+        {
+            return 0.0;
+        }
+        else
+        {
+            return this.haplotypeCounts[snpCountIndex][strainCountIndex] /
+                   (double)blockCount;
+        }
+    }
+    
+    /**
+     * Getter for the fraction of the SNPs that fall in a block for a
+     * parameter combination
+     * @param snpCountIndex
+     *          the index of the minimum SNP count
+     * @param strainCountIndex
+     *          the index of the minimum strain count
+     * @return
+     *          the coverage from 0 to 1
+     */
+    public synchronized double getSnpCoverage(int snpCountIndex, int strainCountIndex)
+    {
+        if(this.snpCount == 0L)
+        {
+            return 0.0;
+        }
+        else
+        {
+            return this.coveredSnpCounts[snpCountIndex][strainCountIndex] /
+                   (double)this.snpCount;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.infer;
+
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.swing.JDialog;
+import javax.swing.SwingUtilities;
+
+import org.jax.bham.BhamApplication;
+import org.jax.bham.project.BhamProject;
+import org.jax.haplotype.data.GenomeDataSource;
+import org.jax.util.gui.MessageDialogUtilities;
+import org.jax.util.gui.desktoporganization.Desktop;
+
+/**
+ * This dialog allows the user to try many haplotype block inference
+ * parameters at once. Every combination of the minimum SNP and strain
+ * counts is summarized from one pass over the genotypes
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class HaplotypeBlockParameterSweepDialog extends JDialog
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = -1846203387916264405L;
+    
+    /**
+     * the most distinct counts that a list can hold. Every minimum SNP
+     * count is tried with every minimum strain count so this keeps a typo
+     * like "2-2147483647" from trying to build billions of combinations
+     */
+    private static final int MAXIMUM_COUNT_COUNT = 1000;
+    
+    private final BhamProject project;
+    
+    /**
+     * Constructor
+     * @param parent
+     *          the parent to use for this dialog
+     * @param project
+     *          the project
+     */
+    public HaplotypeBlockParameterSweepDialog(
+            Frame parent,
+            BhamProject project)
+    {
+        super(parent, "Sweep Haplotype Block Parameters", false);
+        
+        this.project = project;
+        
+        this.initComponents();
+        this.postGuiInit();
+    }
+    
+    /**
+     * handle the initialization not done by the GUI builder
+     */
+    private void postGuiInit()
+    {
+        for(GenomeDataSource genoDataSrc: this.project.getGenomeDataSources())
+        {
+            this.genotypeDataSourceComboBox.addItem(genoDataSrc);
+        }
+        
+        this.minSnpCountsTextField.setText("1-5, 10, 20");
+        this.minStrainCountsTextField.setText("2-4");
+        
+        this.okButton.addActionListener(new ActionListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                HaplotypeBlockParameterSweepDialog.this.ok();
+            }
+        });
+        
+        this.cancelButton.addActionListener(new ActionListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                HaplotypeBlockParameterSweepDialog.this.cancel();
+            }
+        });
+        
+        this.helpButton.addActionListener(new ActionListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                HaplotypeBlockParameterSweepDialog.this.showHelp();
+            }
+        });
+    }
+    
+    private void showHelp()
+    {
+        MessageDialogUtilities.inform(
+                this,
+                "Sorry, no help yet..",
+                "Help Not Implemented");
+    }
+    
+    private void cancel()
+    {
+        this.dispose();
+    }
+    
+    /**
+     * Getter for the selected genome data source
+     * @return
+     *          the selected genome data source
+     */
+    private GenomeDataSource getSelectedGenomeDataSource()
+    {
+        return (GenomeDataSource)this.genotypeDataSourceComboBox.getSelectedItem();
+    }
+    
+    /**
+     * Parse a list of counts like "1-5, 10, 20" where a dash gives an
+     * inclusive range
+     * @param countsText
+     *          the text to parse
+     * @param minimumCount
+     *          the smallest count that is allowed
+     * @return
+     *          the distinct counts in increasing order or null if they
+     *          can't be parsed or there are more than
+     *          {@link #MAXIMUM_COUNT_COUNT} of them
+     */
+    private static int[] parseCounts(String countsText, int minimumCount)
+    {
+        SortedSet<Integer> counts = new TreeSet<Integer>();
+        for(String countString: countsText.trim().split("\\s*,\\s*|\\s+"))
+        {
+            if(countString.length() > 0)
+            {
+                try
+                {
+                    int dashIndex = countString.indexOf('-', 1);
+                    int rangeStart;
+                    int rangeEnd;
+                    if(dashIndex == -1)
+                    {
+                        rangeStart = Integer.parseInt(countString);
+                        rangeEnd = rangeStart;
+                    }
+                    else
+                    {
+                        rangeStart = Integer.parseInt(
+                                countString.substring(0, dashIndex).trim());
+                        rangeEnd = Integer.parseInt(
+                                countString.substring(dashIndex + 1).trim());
+                    }
+                    
+                    // the range size is checked as a long so that it can't
+                    // overflow and the loop stops before it can wrap around
+                    if(rangeStart < minimumCount ||
+                       rangeEnd < rangeStart ||
+                       (long)rangeEnd - rangeStart >= MAXIMUM_COUNT_COUNT)
+                    {
+                        return null;
+                    }
+                    for(int count = rangeStart; ; count++)
+                    {
+                        counts.add(count);
+                        if(count == rangeEnd)
+                        {
+                            break;
+                        }
+                    }
+                    if(counts.size() > MAXIMUM_COUNT_COUNT)
+                    {
+                        return null;
+                    }
+                }
+                catch(NumberFormatException ex)
+                {
+                    return null;
+                }
+            }
+        }
+        
+        int[] countArray = new int[counts.size()];
+        int i = 0;
+        for(Integer count: counts)
+        {
+            countArray[i] = count;
+            i++;
+        }
+        return countArray;
+    }
+    
+    private int[] getMinimumSnpCounts()
+    {
+        return parseCounts(this.minSnpCountsTextField.getText(), 1);
+    }
+    
+    private int[] getMinimumStrainCounts()
+    {
+        return parseCounts(this.minStrainCountsTextField.getText(), 2);
+    }
+    
+    private void ok()
+    {
+        if(this.validateData())
+        {
+            HaplotypeBlockParameterSweep sweep = new HaplotypeBlockParameterSweep(
+                    this.getSelectedGenomeDataSource(),
+                    this.getMinimumSnpCounts(),
+                    this.getMinimumStrainCounts());
+            final PerformHaplotypeBlockParameterSweepTask sweepTask =
+                new PerformHaplotypeBlockParameterSweepTask(sweep);
+            BhamApplication.getInstance().getBhamFrame().getMultiTaskProgress().addTaskToTrack(
+                    sweepTask,
+                    true);
+            new Thread(new Runnable()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                public void run()
+                {
+                    sweepTask.run();
+                    if(sweepTask.getSucceeded())
+                    {
+                        SwingUtilities.invokeLater(new Runnable()
+                        {
+                            /**
+                             * {@inheritDoc}
+                             */
+                            public void run()
+                            {
+                                showSweepResults(sweepTask.getSweep());
+                            }
+                        });
+                    }
+                }
+            }).start();
+            
+            this.dispose();
+        }
+    }
+    
+    private static void showSweepResults(HaplotypeBlockParameterSweep sweep)
+    {
+        HaplotypeBlockParameterSweepPanel sweepPanel =
+            new HaplotypeBlockParameterSweepPanel(sweep);
+        Desktop desktop =
+            BhamApplication.getInstance().getBhamFrame().getDesktop();
+        desktop.createInternalFrame(
+                sweepPanel,
+                "Haplotype Block Parameter Sweep: " +
+                sweep.getGenomeDataSource().getName(),
+                null,
+                "haplotype block parameter sweep: " +
+                sweep.getGenomeDataSource().getName());
+    }
+    
+    private boolean validateData()
+    {
+        String errorMessage = null;
+        int[] minimumSnpCounts = this.getMinimumSnpCounts();
+        int[] minimumStrainCounts = this.getMinimumStrainCounts();
+        if(this.getSelectedGenomeDataSource() == null)
+        {
+            errorMessage =
+                "You cannot sweep haplotype block parameters without " +
+                "any genome data sources.";
+        }
+        else if(minimumSnpCounts == null || minimumSnpCounts.length == 0)
+        {
+            errorMessage =
+                "Please enter one or more minimum SNP counts of at least 1 " +
+                "separated by commas, using a dash for a range (eg: 1-5, 10, 20). " +
+                "No more than " + MAXIMUM_COUNT_COUNT + " counts can be swept.";
+        }
+        else if(minimumStrainCounts == null || minimumStrainCounts.length == 0)
+        {
+            errorMessage =
+                "Please enter one or more minimum strain counts of at least 2 " +
+                "separated by commas, using a dash for a range (eg: 2-4). " +
+                "No more than " + MAXIMUM_COUNT_COUNT + " counts can be swept.";
+        }
+        
+        if(errorMessage != null)
+        {
+            MessageDialogUtilities.warn(
+                    this,
+                    errorMessage,
+                    "Validation Failed");
+            return false;
+        }
+        else
+        {
+            return true;
+        }
+    }
+    
+    /**
+     * This method is called from within the constructor to
+     * initialize the form.
+     * WARNING: Do NOT modify this code. The content of this method is
+     * always regenerated by the Form Editor.
+     */
+    @SuppressWarnings("all")
+    // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
+    private void initComponents() {
+
+        javax.swing.JLabel genotypeDataSourceLabel = new javax.swing.JLabel();
+        genotypeDataSourceComboBox = new javax.swing.JComboBox();
+        javax.swing.JLabel minSnpCountsLabel = new javax.swing.JLabel();
+        minSnpCountsTextField = new javax.swing.JTextField();
+        javax.swing.JLabel minStrainCountsLabel = new javax.swing.JLabel();
+        minStrainCountsTextField = new javax.swing.JTextField();
+        javax.swing.JPanel actionPanel = new javax.swing.JPanel();
+        okButton = new javax.swing.JButton();
+        cancelButton = new javax.swing.JButton();
+        helpButton = new javax.swing.JButton();
+
+        setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
+
+        genotypeDataSourceLabel.setText("Genotype Data:");
+
+        minSnpCountsLabel.setText("Min SNP Counts in Block:");
+
+        minStrainCountsLabel.setText("Min Strain Counts in Block:");
+
+        okButton.setText("OK");
+        actionPanel.add(okButton);
+
+        cancelButton.setText("Cancel");
+        actionPanel.add(cancelButton);
+
+        helpButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/images/help-16x16.png"))); // NOI18N
+        helpButton.setText("Help...");
+        actionPanel.add(helpButton);
+
+        org.jdesktop.layout.GroupLayout layout = new org.jdesktop.layout.GroupLayout(getContentPane());
+        getContentPane().setLayout(layout);
+        layout.setHorizontalGroup(
+            layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+            .add(org.jdesktop.layout.GroupLayout.TRAILING, actionPanel, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 420, Short.MAX_VALUE)
+            .add(layout.createSequentialGroup()
+                .addContainerGap()
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+                    .add(genotypeDataSourceLabel)
+                    .add(minSnpCountsLabel)
+                    .add(minStrainCountsLabel))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+                    .add(genotypeDataSourceComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
+                    .add(minSnpCountsTextField, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 230, Short.MAX_VALUE)
+                    .add(minStrainCountsTextField, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 230, Short.MAX_VALUE))
+                .addContainerGap())
+        );
+        layout.setVerticalGroup(
+            layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+            .add(layout.createSequentialGroup()
+                .addContainerGap()
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(genotypeDataSourceLabel)
+                    .add(genotypeDataSourceComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(minSnpCountsLabel)
+                    .add(minSnpCountsTextField, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(minStrainCountsLabel)
+                    .add(minStrainCountsTextField, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED, 8, Short.MAX_VALUE)
+                .add(actionPanel, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+        );
+
+        pack();
+    }// </editor-fold>//GEN-END:initComponents
+
+    // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton cancelButton;
+    private javax.swing.JComboBox genotypeDataSourceComboBox;
+    private javax.swing.JButton helpButton;
+    private javax.swing.JTextField minSnpCountsTextField;
+    private javax.swing.JTextField minStrainCountsTextField;
+    private javax.swing.JButton okButton;
+    // End of variables declaration//GEN-END:variables
+
+}
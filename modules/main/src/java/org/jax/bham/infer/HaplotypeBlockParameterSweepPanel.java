@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.infer;
+
+import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+
+import javax.swing.AbstractAction;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JToolBar;
+import javax.swing.ListSelectionModel;
+import javax.swing.table.DefaultTableModel;
+
+import org.jax.bham.BhamApplication;
+import org.jax.bham.project.BhamProjectManager;
+import org.jax.util.gui.MessageDialogUtilities;
+
+/**
+ * A panel that shows the results of a {@link HaplotypeBlockParameterSweep}
+ * as a table with one row per parameter combination. A row can be used
+ * to fill in the haplotype block inference dialog. The sweep's counts come
+ * from {@link HaplotypeBlockInference} while the dialog infers its blocks
+ * with the genotype library, and nothing checks that the two draw blocks
+ * the same way, so the panel says that the table is only a guide
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class HaplotypeBlockParameterSweepPanel extends JPanel
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = 3517962406815237950L;
+    
+    private static final String[] COLUMN_NAMES = new String[] {
+        "Min SNP Count",
+        "Min Strain Count",
+        "Block Count",
+        "Mean Haplotypes per Block",
+        "SNP Coverage (%)"};
+    
+    private static final String INFERENCE_NOTE =
+        "<html>These counts come from BHAM's own block inference: maximal " +
+        "runs of compatible SNPs (runs can overlap), where a block needs at " +
+        "least two haplotypes with the minimum strain count. Inferring " +
+        "blocks with the selected parameters uses the genotype library's " +
+        "inference, which may draw blocks differently, so treat the table " +
+        "as a guide rather than an exact preview.</html>";
+    
+    private final HaplotypeBlockParameterSweep sweep;
+    
+    private final JTable sweepTable = new JTable();
+    
+    /**
+     * Constructor
+     * @param sweep
+     *          the sweep that was run
+     */
+    public HaplotypeBlockParameterSweepPanel(HaplotypeBlockParameterSweep sweep)
+    {
+        super(new BorderLayout());
+        
+        this.sweep = sweep;
+        
+        this.initialize();
+    }
+    
+    /**
+     * a function to initialize the components for this panel
+     */
+    private void initialize()
+    {
+        int[] minimumSnpCounts = this.sweep.getMinimumSnpCounts();
+        int[] minimumStrainCounts = this.sweep.getMinimumStrainCounts();
+        Object[][] rows =
+            new Object[minimumSnpCounts.length * minimumStrainCounts.length][];
+        int rowIndex = 0;
+        for(int i = 0; i < minimumSnpCounts.length; i++)
+        {
+            for(int j = 0; j < minimumStrainCounts.length; j++)
+            {
+                rows[rowIndex] = new Object[] {
+                        minimumSnpCounts[i],
+                        minimumStrainCounts[j],
+                        this.sweep.getBlockCount(i, j),
+                        String.format("%.2f", this.sweep.getMeanHaplotypeCount(i, j)),
+                        String.format("%.1f", 100.0 * this.sweep.getSnpCoverage(i, j))};
+                rowIndex++;
+            }
+        }
+        
+        this.sweepTable.setModel(new DefaultTableModel(rows, COLUMN_NAMES)
+        {
+            /**
+             * every {@link java.io.Serializable} is supposed to have one of these
+             */
+            private static final long serialVersionUID = -4460184226839519386L;
+            
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean isCellEditable(int row, int column)
+            {
+                return false;
+            }
+        });
+        this.sweepTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        
+        JToolBar toolBar = new JToolBar();
+        toolBar.add(new AbstractAction("Infer Blocks With Selected Parameters...")
+        {
+            /**
+             * every {@link java.io.Serializable} is supposed to have one of these
+             */
+            private static final long serialVersionUID = 7268019358447105632L;
+            
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                HaplotypeBlockParameterSweepPanel.this.inferSelectedParameters();
+            }
+        });
+        
+        this.add(toolBar, BorderLayout.PAGE_START);
+        this.add(new JScrollPane(this.sweepTable), BorderLayout.CENTER);
+        this.add(new JLabel(INFERENCE_NOTE), BorderLayout.PAGE_END);
+    }
+    
+    private void inferSelectedParameters()
+    {
+        int selectedRow = this.sweepTable.getSelectedRow();
+        if(selectedRow < 0)
+        {
+            MessageDialogUtilities.warn(
+                    this,
+                    "Please select a row of parameters in the table first",
+                    "No Parameters Selected");
+        }
+        else
+        {
+            InferHaplotypeBlocksDialog inferenceDialog =
+                new InferHaplotypeBlocksDialog(
+                        BhamApplication.getInstance().getBhamFrame(),
+                        BhamProjectManager.getInstance().getActiveProject());
+            inferenceDialog.setInferenceParameters(
+                    this.sweep.getGenomeDataSource(),
+                    ((Integer)this.sweepTable.getValueAt(selectedRow, 0)).intValue(),
+                    ((Integer)this.sweepTable.getValueAt(selectedRow, 1)).intValue());
+            inferenceDialog.setVisible(true);
+        }
+    }
+}
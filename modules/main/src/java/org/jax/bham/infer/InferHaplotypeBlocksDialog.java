@@ -27,7 +27,6 @@ import javax.swing.JDialog;
 import javax.swing.SpinnerNumberModel;
 
 import org.jax.bham.project.BhamProject;
-import org.jax.haplotype.analysis.GenotypeInferenceHaplotypeDataSource;
 import org.jax.haplotype.data.GenomeDataSource;
 import org.jax.util.gui.MessageDialogUtilities;
 
@@ -119,11 +118,10 @@ public class InferHaplotypeBlocksDialog extends JDialog
         {
             if(this.validateData())
             {
-                GenotypeInferenceHaplotypeDataSource haploDataSource =
-                    new GenotypeInferenceHaplotypeDataSource(
+                ParameterizedGenotypeInferenceHaplotypeDataSource haploDataSource =
+                    new ParameterizedGenotypeInferenceHaplotypeDataSource(
                             this.nameTextField.getText().trim(),
                             this.getSelectedGenomeDataSource(),
-                            null,
                             this.minSNPCountSpinnerModel.getNumber().intValue(),
                             this.minStrainCountSpinnerModel.getNumber().intValue());
                 this.project.addHaplotypeDataSource(haploDataSource);
@@ -184,6 +182,25 @@ public class InferHaplotypeBlocksDialog extends JDialog
                 "Help Not Implemented");
     }
     
+    /**
+     * Fill in the inference parameters, eg from a parameter sweep
+     * @param genomeDataSource
+     *          the genome to infer blocks for
+     * @param minimumSnpCount
+     *          the minimum SNP count in a block
+     * @param minimumStrainCount
+     *          the minimum strain count in a block
+     */
+    public void setInferenceParameters(
+            GenomeDataSource genomeDataSource,
+            int minimumSnpCount,
+            int minimumStrainCount)
+    {
+        this.genoDataSourceComboBox.setSelectedItem(genomeDataSource);
+        this.minSNPCountSpinnerModel.setValue(minimumSnpCount);
+        this.minStrainCountSpinnerModel.setValue(minimumStrainCount);
+    }
+    
     private GenomeDataSource getSelectedGenomeDataSource()
     {
         return (GenomeDataSource)this.genoDataSourceComboBox.getSelectedItem();
@@ -26,7 +26,6 @@ import java.util.logging.Logger;
 import javax.swing.JDialog;
 
 import org.jax.bham.project.BhamProject;
-import org.jax.haplotype.analysis.GenotypeInferencePhylogenyDataSource;
 import org.jax.haplotype.data.GenomeDataSource;
 import org.jax.util.gui.MessageDialogUtilities;
 
@@ -93,8 +92,8 @@ public class InferPhylogenyDialog extends JDialog
         {
             if(this.validateData())
             {
-                GenotypeInferencePhylogenyDataSource phylogenyDataSource =
-                    new GenotypeInferencePhylogenyDataSource(
+                ParameterizedGenotypeInferencePhylogenyDataSource phylogenyDataSource =
+                    new ParameterizedGenotypeInferencePhylogenyDataSource(
                             this.nameTextField.getText().trim(),
                             this.getSelectedGenomeDataSource());
                 this.project.addPhylogenyDataSource(phylogenyDataSource);
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.infer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jax.bham.project.TestResultParameters;
+import org.jax.haplotype.analysis.GenotypeInferenceHaplotypeDataSource;
+import org.jax.haplotype.data.ChromosomeDataSource;
+import org.jax.haplotype.data.GenomeDataSource;
+
+/**
+ * A {@link GenotypeInferenceHaplotypeDataSource} that remembers the
+ * parameters that it was inferred with so that they can go into the keys
+ * of the {@link org.jax.bham.test.TestResultsCache} shared by every
+ * project. Tests over data sources that don't list their parameters like
+ * this never use the shared cache
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ParameterizedGenotypeInferenceHaplotypeDataSource
+extends GenotypeInferenceHaplotypeDataSource
+implements TestResultParameters
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = -3385719802417256521L;
+    
+    private final String[] inferenceParameters;
+    
+    /**
+     * Constructor
+     * @param name
+     *          the name of the data source
+     * @param genomeDataSource
+     *          the genotypes to infer blocks from
+     * @param minimumSnpCount
+     *          the minimum number of SNPs in a block
+     * @param minimumStrainCount
+     *          the minimum number of strains in a haplotype
+     */
+    public ParameterizedGenotypeInferenceHaplotypeDataSource(
+            String name,
+            GenomeDataSource genomeDataSource,
+            int minimumSnpCount,
+            int minimumStrainCount)
+    {
+        super(name,
+              genomeDataSource,
+              null,
+              minimumSnpCount,
+              minimumStrainCount);
+        this.inferenceParameters = new String[] {
+                "inference=genotypeHaplotypeBlocks",
+                "genome=" + genomeDataSource.getName(),
+                "genomeStrains=" + getSortedGenomeStrains(genomeDataSource),
+                "minimumSnpCount=" + minimumSnpCount,
+                "minimumStrainCount=" + minimumStrainCount};
+    }
+    
+    /**
+     * Get the strains of a genome in sorted order
+     * @param genomeDataSource
+     *          the genome
+     * @return
+     *          the strains as a string
+     */
+    static String getSortedGenomeStrains(GenomeDataSource genomeDataSource)
+    {
+        Map<Integer, ChromosomeDataSource> chromosomeDataSources =
+            genomeDataSource.getChromosomeDataSources();
+        Set<String> sortedStrains = new TreeSet<String>();
+        if(!chromosomeDataSources.isEmpty())
+        {
+            sortedStrains.addAll(
+                    chromosomeDataSources.values().iterator().next().getAvailableStrains());
+        }
+        
+        return Arrays.toString(sortedStrains.toArray());
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String[] getResultParameters()
+    {
+        return this.inferenceParameters.clone();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.infer;
+
+import org.jax.bham.project.TestResultParameters;
+import org.jax.haplotype.analysis.GenotypeInferencePhylogenyDataSource;
+import org.jax.haplotype.data.GenomeDataSource;
+
+/**
+ * A {@link GenotypeInferencePhylogenyDataSource} that remembers the
+ * genome that it was inferred from so that it can go into the keys of the
+ * {@link org.jax.bham.test.TestResultsCache} shared by every project
+ * @see ParameterizedGenotypeInferenceHaplotypeDataSource
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ParameterizedGenotypeInferencePhylogenyDataSource
+extends GenotypeInferencePhylogenyDataSource
+implements TestResultParameters
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = 6012930573518845237L;
+    
+    private final String[] inferenceParameters;
+    
+    /**
+     * Constructor
+     * @param name
+     *          the name of the data source
+     * @param genomeDataSource
+     *          the genotypes to infer phylogenies from
+     */
+    public ParameterizedGenotypeInferencePhylogenyDataSource(
+            String name,
+            GenomeDataSource genomeDataSource)
+    {
+        super(name, genomeDataSource);
+        this.inferenceParameters = new String[] {
+                "inference=genotypePhylogenies",
+                "genome=" + genomeDataSource.getName(),
+                "genomeStrains=" +
+                ParameterizedGenotypeInferenceHaplotypeDataSource.getSortedGenomeStrains(
+                        genomeDataSource)};
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String[] getResultParameters()
+    {
+        return this.inferenceParameters.clone();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.infer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jax.bham.BhamApplication;
+import org.jax.util.concurrent.AbstractLongRunningTask;
+import org.jax.util.gui.MessageDialogUtilities;
+
+/**
+ * A long running task that runs a {@link HaplotypeBlockParameterSweep}
+ * over every chromosome of its genome. Chromosomes are swept in parallel
+ * on all of the available processors
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class PerformHaplotypeBlockParameterSweepTask
+extends AbstractLongRunningTask
+implements Runnable
+{
+    private static final Logger LOG = Logger.getLogger(
+            PerformHaplotypeBlockParameterSweepTask.class.getName());
+    
+    private final HaplotypeBlockParameterSweep sweep;
+    
+    private final List<Integer> chromosomeNumbers;
+    
+    private volatile int workUnitsCompleted = 0;
+    
+    private volatile boolean succeeded = false;
+    
+    /**
+     * Constructor
+     * @param sweep
+     *          the sweep to run
+     */
+    public PerformHaplotypeBlockParameterSweepTask(
+            HaplotypeBlockParameterSweep sweep)
+    {
+        this.sweep = sweep;
+        this.chromosomeNumbers = new ArrayList<Integer>(
+                sweep.getGenomeDataSource().getChromosomeDataSources().keySet());
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void run()
+    {
+        ExecutorService executor = null;
+        try
+        {
+            executor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactory()
+                    {
+                        /**
+                         * {@inheritDoc}
+                         */
+                        public Thread newThread(Runnable r)
+                        {
+                            Thread thread = new Thread(r, "haplotype-block-parameter-sweep");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            
+            List<Future<?>> chromosomeFutures = new ArrayList<Future<?>>();
+            for(final int chromosome: this.chromosomeNumbers)
+            {
+                chromosomeFutures.add(executor.submit(new Callable<Object>()
+                {
+                    /**
+                     * {@inheritDoc}
+                     */
+                    public Object call() throws Exception
+                    {
+                        PerformHaplotypeBlockParameterSweepTask.this.sweep.sweepChromosome(
+                                chromosome);
+                        PerformHaplotypeBlockParameterSweepTask.this.chromosomeCompleted();
+                        return null;
+                    }
+                }));
+            }
+            
+            // get() rethrows anything that went wrong in a worker
+            for(Future<?> chromosomeFuture: chromosomeFutures)
+            {
+                chromosomeFuture.get();
+            }
+            this.succeeded = true;
+        }
+        catch(Exception ex)
+        {
+            String title = "Error Sweeping Haplotype Block Parameters";
+            LOG.log(Level.SEVERE,
+                    title,
+                    ex);
+            MessageDialogUtilities.errorLater(
+                    BhamApplication.getInstance().getBhamFrame(),
+                    ex.getMessage(),
+                    title);
+        }
+        finally
+        {
+            if(executor != null)
+            {
+                executor.shutdownNow();
+            }
+            
+            this.workUnitsCompleted = this.getTotalWorkUnits();
+            this.fireChangeEvent();
+        }
+    }
+    
+    private synchronized void chromosomeCompleted()
+    {
+        this.workUnitsCompleted++;
+        this.fireChangeEvent();
+    }
+    
+    /**
+     * Getter for the sweep
+     * @return
+     *          the sweep
+     */
+    public HaplotypeBlockParameterSweep getSweep()
+    {
+        return this.sweep;
+    }
+    
+    /**
+     * Determine if every chromosome was swept
+     * @return
+     *          true if the sweep finished without any errors
+     */
+    public boolean getSucceeded()
+    {
+        return this.succeeded;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String getTaskName()
+    {
+        return "Sweeping Haplotype Block Parameters for " +
+               this.sweep.getGenomeDataSource().getName();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getTotalWorkUnits()
+    {
+        return this.chromosomeNumbers.size();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getWorkUnitsCompleted()
+    {
+        return this.workUnitsCompleted;
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.infer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Groups strains by their calls over windows of SNPs that slide along a
+ * chromosome one SNP at a time. Rather than comparing every strain over
+ * the whole window at every step we keep per strain structures that are
+ * updated in constant time as each SNP is added, so a step costs
+ * O(strains) no matter how wide the windows are. Strains that share a
+ * window key share a haplotype. Any number of window sizes can be grouped
+ * from the same pass since they are all derived from the same per strain
+ * state: windows of up to 64 SNPs are keyed on a mask of the strain's
+ * last 64 packed calls, which is exact, and wider windows are keyed on
+ * the difference of two prefix hashes modulo the Mersenne prime
+ * 2^61 - 1, where two different haplotypes collide with probability
+ * around windowSize / 2^61.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class SlidingWindowStrainGrouper
+{
+    private static final long MERSENNE_PRIME = (1L << 61) - 1L;
+    
+    private static final long HASH_BASE = 0x1D872B41A53C9E6L % MERSENNE_PRIME;
+    
+    private final int strainCount;
+    
+    private final int[] windowSizes;
+    
+    /**
+     * HASH_BASE^windowSize for each window size that is keyed on
+     * prefix hashes, for taking the prefix before the window back out
+     */
+    private final long[] windowHashFactors;
+    
+    /**
+     * the last 64 calls of each strain with the newest in the low bit
+     */
+    private final long[] packedCalls;
+    
+    /**
+     * a ring of the prefix hash of every strain after each of the last
+     * few SNPs, indexed by SNP count. This is null if no window is wide
+     * enough to need it
+     */
+    private final long[][] prefixHashes;
+    
+    private final long[] windowKeys;
+    
+    private long snpCount = 0L;
+    
+    private final long[] groupTableKeys;
+    
+    private final short[] groupTableGroups;
+    
+    private final int[] groupTableStamps;
+    
+    private int groupTableStamp = 0;
+    
+    /**
+     * Constructor
+     * @param strainCount
+     *          the number of strains
+     * @param windowSize
+     *          the number of SNPs in a window
+     */
+    public SlidingWindowStrainGrouper(int strainCount, int windowSize)
+    {
+        this(strainCount, new int[] {windowSize});
+    }
+    
+    /**
+     * Constructor
+     * @param strainCount
+     *          the number of strains
+     * @param windowSizes
+     *          the number of SNPs in the window at each scale
+     */
+    public SlidingWindowStrainGrouper(int strainCount, int[] windowSizes)
+    {
+        if(windowSizes.length == 0)
+        {
+            throw new IllegalArgumentException(
+                    "at least one window size is needed");
+        }
+        
+        int maximumWindowSize = 0;
+        for(int windowSize: windowSizes)
+        {
+            if(windowSize < 1)
+            {
+                throw new IllegalArgumentException(
+                        "the window size must be at least one SNP: " +
+                        windowSize);
+            }
+            maximumWindowSize = Math.max(maximumWindowSize, windowSize);
+        }
+        
+        this.strainCount = strainCount;
+        this.windowSizes = windowSizes.clone();
+        this.windowHashFactors = new long[windowSizes.length];
+        for(int scale = 0; scale < windowSizes.length; scale++)
+        {
+            if(windowSizes[scale] > Long.SIZE)
+            {
+                this.windowHashFactors[scale] = powMod(HASH_BASE, windowSizes[scale]);
+            }
+        }
+        this.packedCalls = new long[strainCount];
+        if(maximumWindowSize > Long.SIZE)
+        {
+            this.prefixHashes = new long[maximumWindowSize + 1][strainCount];
+        }
+        else
+        {
+            this.prefixHashes = null;
+        }
+        this.windowKeys = new long[strainCount];
+        
+        // an open addressing table at most half full
+        int tableSize = Integer.highestOneBit(Math.max(1, strainCount)) << 2;
+        this.groupTableKeys = new long[tableSize];
+        this.groupTableGroups = new short[tableSize];
+        this.groupTableStamps = new int[tableSize];
+    }
+    
+    /**
+     * Getter for the number of window sizes that we group on
+     * @return
+     *          the number of scales
+     */
+    public int getScaleCount()
+    {
+        return this.windowSizes.length;
+    }
+    
+    /**
+     * Getter for the number of SNPs in the window at the given scale
+     * @param scale
+     *          the index of the scale
+     * @return
+     *          the window size
+     */
+    public int getWindowSize(int scale)
+    {
+        return this.windowSizes[scale];
+    }
+    
+    /**
+     * Getter for the number of SNPs that have been added so far
+     * @return
+     *          the SNP count
+     */
+    public long getSnpCount()
+    {
+        return this.snpCount;
+    }
+    
+    /**
+     * Determine if a whole window of SNPs has been added at the given
+     * scale
+     * @param scale
+     *          the index of the scale
+     * @return
+     *          true if {@link #getStrainGroups(int)} is ready
+     */
+    public boolean isWindowFull(int scale)
+    {
+        return this.snpCount >= this.windowSizes[scale];
+    }
+    
+    /**
+     * Slide the windows forward by one SNP
+     * @param sdp
+     *          the strain distribution pattern of the SNP. Bit i is the
+     *          call of strain i
+     */
+    public void addSnp(BitSet sdp)
+    {
+        long[] packedCalls = this.packedCalls;
+        for(int i = 0; i < this.strainCount; i++)
+        {
+            packedCalls[i] <<= 1;
+        }
+        for(int i = sdp.nextSetBit(0);
+            i >= 0 && i < this.strainCount;
+            i = sdp.nextSetBit(i + 1))
+        {
+            packedCalls[i] |= 1L;
+        }
+        
+        if(this.prefixHashes != null)
+        {
+            int ringSize = this.prefixHashes.length;
+            long[] previousHashes = this.prefixHashes[(int)(this.snpCount % ringSize)];
+            long[] nextHashes = this.prefixHashes[(int)((this.snpCount + 1L) % ringSize)];
+            for(int i = 0; i < this.strainCount; i++)
+            {
+                // calls are hashed as 1 and 2 so that leading zeros count
+                long call = 1L + (packedCalls[i] & 1L);
+                long hash = mulMod(previousHashes[i], HASH_BASE) + call;
+                nextHashes[i] = hash >= MERSENNE_PRIME ? hash - MERSENNE_PRIME : hash;
+            }
+        }
+        
+        this.snpCount++;
+    }
+    
+    /**
+     * Group the strains on the current window at the given scale. Groups
+     * are numbered in the order that their first strain appears
+     * @param scale
+     *          the index of the scale
+     * @return
+     *          the group of each strain
+     */
+    public short[] getStrainGroups(int scale)
+    {
+        int windowSize = this.windowSizes[scale];
+        if(this.snpCount < windowSize)
+        {
+            throw new IllegalStateException(
+                    "only " + this.snpCount + " of the window's " +
+                    windowSize + " SNPs have been added");
+        }
+        
+        long[] windowKeys = this.windowKeys;
+        if(windowSize <= Long.SIZE)
+        {
+            long mask = windowSize == Long.SIZE ? -1L : (1L << windowSize) - 1L;
+            for(int i = 0; i < this.strainCount; i++)
+            {
+                windowKeys[i] = this.packedCalls[i] & mask;
+            }
+        }
+        else
+        {
+            // the window's hash is the prefix through the window less the
+            // prefix before the window shifted up by the window size
+            int ringSize = this.prefixHashes.length;
+            long[] endHashes = this.prefixHashes[(int)(this.snpCount % ringSize)];
+            long[] startHashes =
+                this.prefixHashes[(int)((this.snpCount - windowSize) % ringSize)];
+            long factor = this.windowHashFactors[scale];
+            for(int i = 0; i < this.strainCount; i++)
+            {
+                long key = endHashes[i] - mulMod(startHashes[i], factor);
+                windowKeys[i] = key < 0L ? key + MERSENNE_PRIME : key;
+            }
+        }
+        
+        return this.groupKeys(windowKeys);
+    }
+    
+    /**
+     * Number the distinct keys in order of appearance
+     * @param keys
+     *          the key of each strain
+     * @return
+     *          the group of each strain
+     */
+    private short[] groupKeys(long[] keys)
+    {
+        // a new stamp empties the table without touching it
+        this.groupTableStamp++;
+        if(this.groupTableStamp == 0)
+        {
+            Arrays.fill(this.groupTableStamps, 0);
+            this.groupTableStamp = 1;
+        }
+        
+        int stamp = this.groupTableStamp;
+        int tableMask = this.groupTableKeys.length - 1;
+        short[] strainGroups = new short[keys.length];
+        short groupCount = 0;
+        for(int i = 0; i < keys.length; i++)
+        {
+            long key = keys[i];
+            int slot = mix(key) & tableMask;
+            while(this.groupTableStamps[slot] == stamp &&
+                  this.groupTableKeys[slot] != key)
+            {
+                slot = (slot + 1) & tableMask;
+            }
+            
+            if(this.groupTableStamps[slot] != stamp)
+            {
+                this.groupTableStamps[slot] = stamp;
+                this.groupTableKeys[slot] = key;
+                this.groupTableGroups[slot] = groupCount;
+                groupCount++;
+            }
+            strainGroups[i] = this.groupTableGroups[slot];
+        }
+        
+        return strainGroups;
+    }
+    
+    private static int mix(long key)
+    {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int)(key ^ (key >>> 32));
+    }
+    
+    /**
+     * Multiply modulo 2^61 - 1 without overflowing. The high and low
+     * halves are multiplied separately and folded back together using
+     * 2^61 = 1
+     * @param a
+     *          a value less than 2^61 - 1
+     * @param b
+     *          a value less than 2^61 - 1
+     * @return
+     *          a * b mod 2^61 - 1
+     */
+    static long mulMod(long a, long b)
+    {
+        long aHigh = a >>> 31;
+        long aLow = a & 0x7FFFFFFFL;
+        long bHigh = b >>> 31;
+        long bLow = b & 0x7FFFFFFFL;
+        long middle = aLow * bHigh + aHigh * bLow;
+        
+        // this can pass 2^63 so it's treated as unsigned from here on
+        long product =
+            ((aHigh * bHigh) << 1) +
+            (middle >>> 30) +
+            ((middle & 0x3FFFFFFFL) << 31) +
+            aLow * bLow;
+        long reduced = (product & MERSENNE_PRIME) + (product >>> 61);
+        return reduced >= MERSENNE_PRIME ? reduced - MERSENNE_PRIME : reduced;
+    }
+    
+    /**
+     * Raise to a power modulo 2^61 - 1
+     * @param base
+     *          the base
+     * @param exponent
+     *          the exponent
+     * @return
+     *          base^exponent mod 2^61 - 1
+     */
+    static long powMod(long base, long exponent)
+    {
+        long result = 1L;
+        while(exponent > 0L)
+        {
+            if((exponent & 1L) != 0L)
+            {
+                result = mulMod(result, base);
+            }
+            base = mulMod(base, base);
+            exponent >>>= 1;
+        }
+        
+        return result;
+    }
+}
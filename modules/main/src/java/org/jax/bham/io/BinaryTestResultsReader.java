@@ -0,0 +1,543 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jax.bham.io.BinaryTestResultsWriter.ResultType;
+import org.jax.util.datastructure.SequenceUtilities;
+import org.jax.util.io.FlatFileWriter;
+
+/**
+ * Reads files written by {@link BinaryTestResultsWriter}. Only the table of
+ * contents and the strain dictionary are read up front. Region queries use
+ * a binary search over the position sorted columns and p-value queries use
+ * a binary search over the p-value index so neither has to scan the file.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class BinaryTestResultsReader
+{
+    private final RandomAccessFile file;
+    
+    private final ResultType resultType;
+    
+    private final String[] haplotypeStrains;
+    
+    private final String[] phenotypeStrains;
+    
+    private final String[] commonStrains;
+    
+    private final long labelsOffset;
+    
+    private final int[] chromosomes;
+    
+    private final Map<Integer, Integer> chromosomeSlots =
+        new HashMap<Integer, Integer>();
+    
+    private final int[] rowCounts;
+    
+    private final long[] maximumIntervalLengths;
+    
+    private final long[][] columnOffsets;
+    
+    private final int totalRowCount;
+    
+    private final long[] pValueIndexOffsets;
+    
+    /**
+     * the offsets of the result order index or null for version 1 files
+     * which don't have one
+     */
+    private final long[] resultOrderOffsets;
+    
+    /**
+     * Constructor
+     * @param binaryResultsFile
+     *          the file to read
+     * @throws IOException
+     *          if the file can't be read or isn't a binary results file
+     */
+    public BinaryTestResultsReader(File binaryResultsFile) throws IOException
+    {
+        this.file = new RandomAccessFile(binaryResultsFile, "r");
+        
+        if(this.file.readInt() != BinaryTestResultsWriter.MAGIC_NUMBER)
+        {
+            this.file.close();
+            throw new IOException(
+                    binaryResultsFile.getAbsolutePath() +
+                    " is not a BHAM binary results file");
+        }
+        
+        int version = this.file.readInt();
+        if(version > BinaryTestResultsWriter.FORMAT_VERSION)
+        {
+            this.file.close();
+            throw new IOException(
+                    "Unsupported binary results format version: " + version);
+        }
+        
+        // the table of contents offset is in the last 8 bytes
+        this.file.seek(this.file.length() - 8);
+        this.file.seek(this.file.readLong());
+        
+        this.resultType = ResultType.values()[this.file.readInt()];
+        long strainsOffset = this.file.readLong();
+        this.labelsOffset = this.file.readLong();
+        
+        int chromosomeCount = this.file.readInt();
+        this.chromosomes = new int[chromosomeCount];
+        this.rowCounts = new int[chromosomeCount];
+        this.maximumIntervalLengths = new long[chromosomeCount];
+        this.columnOffsets = new long[chromosomeCount][4];
+        for(int i = 0; i < chromosomeCount; i++)
+        {
+            this.chromosomes[i] = this.file.readInt();
+            this.chromosomeSlots.put(this.chromosomes[i], i);
+            this.rowCounts[i] = this.file.readInt();
+            this.maximumIntervalLengths[i] = this.file.readLong();
+            for(int j = 0; j < 4; j++)
+            {
+                this.columnOffsets[i][j] = this.file.readLong();
+            }
+        }
+        
+        this.totalRowCount = this.file.readInt();
+        this.pValueIndexOffsets = new long[3];
+        for(int i = 0; i < 3; i++)
+        {
+            this.pValueIndexOffsets[i] = this.file.readLong();
+        }
+        
+        if(version >= 2)
+        {
+            this.resultOrderOffsets = new long[2];
+            for(int i = 0; i < 2; i++)
+            {
+                this.resultOrderOffsets[i] = this.file.readLong();
+            }
+        }
+        else
+        {
+            this.resultOrderOffsets = null;
+        }
+        
+        this.file.seek(strainsOffset);
+        this.haplotypeStrains = this.readStrings();
+        this.phenotypeStrains = this.readStrings();
+        this.commonStrains = this.readStrings();
+    }
+    
+    private String[] readStrings() throws IOException
+    {
+        String[] strings = new String[this.file.readInt()];
+        for(int i = 0; i < strings.length; i++)
+        {
+            strings[i] = DataInputStream.readUTF(this.file);
+        }
+        
+        return strings;
+    }
+    
+    /**
+     * Getter for the type of results in this file
+     * @return the result type
+     */
+    public ResultType getResultType()
+    {
+        return this.resultType;
+    }
+    
+    /**
+     * Getter for the haplotype strains (in bit set order)
+     * @return the haplotype strains
+     */
+    public String[] getHaplotypeStrains()
+    {
+        return this.haplotypeStrains;
+    }
+    
+    /**
+     * Getter for the phenotype strains
+     * @return the phenotype strains
+     */
+    public String[] getPhenotypeStrains()
+    {
+        return this.phenotypeStrains;
+    }
+    
+    /**
+     * Getter for the common strains
+     * @return the common strains
+     */
+    public String[] getCommonStrains()
+    {
+        return this.commonStrains;
+    }
+    
+    /**
+     * Getter for the chromosomes in this file in increasing order
+     * @return the chromosomes
+     */
+    public int[] getAvailableChromosomes()
+    {
+        return this.chromosomes.clone();
+    }
+    
+    /**
+     * Getter for the total number of result rows in the file
+     * @return the row count
+     */
+    public int getTotalRowCount()
+    {
+        return this.totalRowCount;
+    }
+    
+    /**
+     * Get all of the results that overlap the given region
+     * @param chromosome
+     *          the chromosome
+     * @param regionStartInBasePairs
+     *          the start of the region
+     * @param regionEndInBasePairs
+     *          the end of the region
+     * @return
+     *          the overlapping results ordered by start position
+     * @throws IOException
+     *          if reading fails
+     */
+    public synchronized List<IndexedTestResult> getResultsInRegion(
+            int chromosome,
+            long regionStartInBasePairs,
+            long regionEndInBasePairs)
+    throws IOException
+    {
+        List<IndexedTestResult> results = new ArrayList<IndexedTestResult>();
+        Integer slot = this.chromosomeSlots.get(chromosome);
+        if(slot != null)
+        {
+            long startsOffset = this.columnOffsets[slot][0];
+            int rowCount = this.rowCounts[slot];
+            
+            // no interval starting before this can reach the region
+            int fromRow = this.searchLongColumn(
+                    startsOffset,
+                    rowCount,
+                    regionStartInBasePairs - this.maximumIntervalLengths[slot]);
+            int toRow = this.searchLongColumn(
+                    startsOffset,
+                    rowCount,
+                    regionEndInBasePairs + 1);
+            
+            int count = toRow - fromRow;
+            long[] starts = this.readLongs(startsOffset, fromRow, count);
+            long[] ends = this.readLongs(this.columnOffsets[slot][1], fromRow, count);
+            int[] labelIndices = this.readInts(this.columnOffsets[slot][2], fromRow, count);
+            double[] pValues = this.readDoubles(this.columnOffsets[slot][3], fromRow, count);
+            for(int i = 0; i < count; i++)
+            {
+                if(ends[i] >= regionStartInBasePairs)
+                {
+                    results.add(new IndexedTestResult(
+                            chromosome,
+                            starts[i],
+                            ends[i],
+                            this.readLabel(labelIndices[i]),
+                            pValues[i]));
+                }
+            }
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Get every result with a p-value at or below the given threshold
+     * @param pValueThreshold
+     *          the threshold
+     * @return
+     *          the results in increasing p-value order
+     * @throws IOException
+     *          if reading fails
+     */
+    public synchronized List<IndexedTestResult> getResultsWithPValueAtOrBelow(
+            double pValueThreshold)
+    throws IOException
+    {
+        // binary search for the first p-value past the threshold
+        int low = 0;
+        int high = this.totalRowCount;
+        while(low < high)
+        {
+            int mid = (low + high) >>> 1;
+            this.file.seek(this.pValueIndexOffsets[0] + 8L * mid);
+            if(this.file.readDouble() <= pValueThreshold)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        
+        return this.readPValueIndexRows(0, low);
+    }
+    
+    /**
+     * Get the results with the smallest p-values
+     * @param resultCount
+     *          the maximum number of results to return
+     * @return
+     *          the results in increasing p-value order
+     * @throws IOException
+     *          if reading fails
+     */
+    public synchronized List<IndexedTestResult> getTopResults(int resultCount)
+    throws IOException
+    {
+        return this.readPValueIndexRows(
+                0,
+                Math.min(resultCount, this.totalRowCount));
+    }
+    
+    private List<IndexedTestResult> readPValueIndexRows(int fromIndex, int count)
+    throws IOException
+    {
+        double[] pValues = this.readDoubles(this.pValueIndexOffsets[0], fromIndex, count);
+        int[] slots = this.readInts(this.pValueIndexOffsets[1], fromIndex, count);
+        int[] rows = this.readInts(this.pValueIndexOffsets[2], fromIndex, count);
+        
+        List<IndexedTestResult> results = new ArrayList<IndexedTestResult>(count);
+        for(int i = 0; i < count; i++)
+        {
+            long[] columnOffsets = this.columnOffsets[slots[i]];
+            this.file.seek(columnOffsets[0] + 8L * rows[i]);
+            long start = this.file.readLong();
+            this.file.seek(columnOffsets[1] + 8L * rows[i]);
+            long end = this.file.readLong();
+            this.file.seek(columnOffsets[2] + 4L * rows[i]);
+            int labelIndex = this.file.readInt();
+            
+            results.add(new IndexedTestResult(
+                    this.chromosomes[slots[i]],
+                    start,
+                    end,
+                    this.readLabel(labelIndex),
+                    pValues[i]));
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Convert this binary file into the same flat file format that the
+     * text exports use. Rows are written in the order that they were
+     * exported in, which is the same order that the text export uses.
+     * Files written before the result order index was added are written
+     * in chromosome and position order.
+     * @param flatFileWriter
+     *          the writer to write to
+     * @throws IOException
+     *          if reading or writing fails
+     */
+    public synchronized void writeFlatFile(FlatFileWriter flatFileWriter)
+    throws IOException
+    {
+        if(this.resultType == ResultType.HAPLOTYPE_ASSOCIATION)
+        {
+            Writer plainWriter = flatFileWriter.getWriter();
+            plainWriter.write("# Haplotype strains (same ordering as bit set):\n");
+            plainWriter.write("# " + SequenceUtilities.toString(
+                    Arrays.asList(this.haplotypeStrains), ", ") + "\n");
+            plainWriter.write("# Phenotype strains:\n");
+            plainWriter.write("# " + SequenceUtilities.toString(
+                    Arrays.asList(this.phenotypeStrains), ", ") + "\n");
+            plainWriter.write("# Common strains (only common strains can be tested):\n");
+            plainWriter.write("# " + SequenceUtilities.toString(
+                    Arrays.asList(this.commonStrains), ", ") + "\n");
+            
+            flatFileWriter.writeRow(new String[] {
+                    "chromosomeNumber",
+                    "haplotypeBlockStartPositionInBasePairs",
+                    "haplotypeBlockEndPositionInBasePairs",
+                    "strainsInHaplotypeBlockBitSet",
+                    "pValue"});
+        }
+        else
+        {
+            flatFileWriter.writeRow(new String[] {
+                    "chromosomeNumber",
+                    "phylogenyIntervalStartPositionInBasePairs",
+                    "phylogenyIntervalEndPositionInBasePairs",
+                    "newickFormattedPhylogenyTree",
+                    "pValue"});
+        }
+        
+        int chromosomeCount = this.chromosomes.length;
+        long[][] starts = new long[chromosomeCount][];
+        long[][] ends = new long[chromosomeCount][];
+        int[][] labelIndices = new int[chromosomeCount][];
+        double[][] pValues = new double[chromosomeCount][];
+        for(int slot = 0; slot < chromosomeCount; slot++)
+        {
+            int rowCount = this.rowCounts[slot];
+            starts[slot] = this.readLongs(this.columnOffsets[slot][0], 0, rowCount);
+            ends[slot] = this.readLongs(this.columnOffsets[slot][1], 0, rowCount);
+            labelIndices[slot] = this.readInts(this.columnOffsets[slot][2], 0, rowCount);
+            pValues[slot] = this.readDoubles(this.columnOffsets[slot][3], 0, rowCount);
+        }
+        
+        int[] slots;
+        int[] rows;
+        if(this.resultOrderOffsets != null)
+        {
+            slots = this.readInts(this.resultOrderOffsets[0], 0, this.totalRowCount);
+            rows = this.readInts(this.resultOrderOffsets[1], 0, this.totalRowCount);
+        }
+        else
+        {
+            slots = new int[this.totalRowCount];
+            rows = new int[this.totalRowCount];
+            int resultIndex = 0;
+            for(int slot = 0; slot < chromosomeCount; slot++)
+            {
+                for(int row = 0; row < this.rowCounts[slot]; row++)
+                {
+                    slots[resultIndex] = slot;
+                    rows[resultIndex] = row;
+                    resultIndex++;
+                }
+            }
+        }
+        
+        // a label is usually shared by many rows so we only read it once
+        Map<Integer, String> labels = new HashMap<Integer, String>();
+        for(int i = 0; i < this.totalRowCount; i++)
+        {
+            int slot = slots[i];
+            int row = rows[i];
+            Integer labelIndex = labelIndices[slot][row];
+            String label = labels.get(labelIndex);
+            if(label == null)
+            {
+                label = this.readLabel(labelIndex);
+                labels.put(labelIndex, label);
+            }
+            
+            flatFileWriter.writeRow(new String[] {
+                    Integer.toString(this.chromosomes[slot]),
+                    Long.toString(starts[slot][row]),
+                    Long.toString(ends[slot][row]),
+                    label,
+                    Double.toString(pValues[slot][row])});
+        }
+        
+        flatFileWriter.flush();
+    }
+    
+    /**
+     * Close the underlying file
+     * @throws IOException
+     *          if the close fails
+     */
+    public synchronized void close() throws IOException
+    {
+        this.file.close();
+    }
+    
+    /**
+     * Find the index of the first value in a sorted long column that is
+     * greater than or equal to the given key
+     */
+    private int searchLongColumn(long columnOffset, int rowCount, long key)
+    throws IOException
+    {
+        int low = 0;
+        int high = rowCount;
+        while(low < high)
+        {
+            int mid = (low + high) >>> 1;
+            this.file.seek(columnOffset + 8L * mid);
+            if(this.file.readLong() < key)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        
+        return low;
+    }
+    
+    private String readLabel(int labelIndex) throws IOException
+    {
+        this.file.seek(this.labelsOffset + 4 + 8L * labelIndex);
+        this.file.seek(this.file.readLong());
+        byte[] labelBytes = new byte[this.file.readInt()];
+        this.file.readFully(labelBytes);
+        
+        return new String(labelBytes, "UTF-8");
+    }
+    
+    private ByteBuffer readBytes(long columnOffset, long byteOffset, int byteCount)
+    throws IOException
+    {
+        byte[] bytes = new byte[byteCount];
+        this.file.seek(columnOffset + byteOffset);
+        this.file.readFully(bytes);
+        
+        return ByteBuffer.wrap(bytes);
+    }
+    
+    private long[] readLongs(long columnOffset, int fromRow, int count)
+    throws IOException
+    {
+        long[] values = new long[count];
+        this.readBytes(columnOffset, 8L * fromRow, 8 * count).asLongBuffer().get(values);
+        return values;
+    }
+    
+    private int[] readInts(long columnOffset, int fromRow, int count)
+    throws IOException
+    {
+        int[] values = new int[count];
+        this.readBytes(columnOffset, 4L * fromRow, 4 * count).asIntBuffer().get(values);
+        return values;
+    }
+    
+    private double[] readDoubles(long columnOffset, int fromRow, int count)
+    throws IOException
+    {
+        double[] values = new double[count];
+        this.readBytes(columnOffset, 8L * fromRow, 8 * count).asDoubleBuffer().get(values);
+        return values;
+    }
+}
@@ -0,0 +1,613 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Builds up association test results in memory and writes them out in the
+ * columnar binary results format read by {@link BinaryTestResultsReader}.
+ * <p>
+ * The file starts with a small header and is followed by these sections:
+ * <ol>
+ * <li>the strain dictionary (haplotype, phenotype and common strains)</li>
+ * <li>the label dictionary. Each distinct strain bit set (or newick tree)
+ *     is stored once together with an offset table so that labels can be
+ *     read individually</li>
+ * <li>for every chromosome the start, end, label index and p-value
+ *     columns with rows sorted by start position</li>
+ * <li>the p-value index: every row's p-value, chromosome slot and row
+ *     index sorted by increasing p-value</li>
+ * <li>the result order index: every row's chromosome slot and row index
+ *     in the order that the results were added, so that a conversion back
+ *     to a flat file can reproduce the text export's row order</li>
+ * <li>the table of contents holding the offsets of all of the above</li>
+ * </ol>
+ * The last eight bytes of the file hold the table of contents offset.
+ * </p>
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class BinaryTestResultsWriter
+{
+    /**
+     * the magic number at the start of every binary results file ("BHMR")
+     */
+    public static final int MAGIC_NUMBER = 0x42484D52;
+    
+    /**
+     * the current file format version
+     */
+    public static final int FORMAT_VERSION = 2;
+    
+    /**
+     * the recommended file extension
+     */
+    public static final String BINARY_RESULTS_EXTENSION = "bhamres";
+    
+    /**
+     * The kinds of results that we can store
+     */
+    public static enum ResultType
+    {
+        /**
+         * haplotype association results. labels are strain bit sets
+         */
+        HAPLOTYPE_ASSOCIATION,
+        
+        /**
+         * phylogeny association results. labels are newick trees
+         */
+        PHYLOGENY_ASSOCIATION
+    }
+    
+    private final ResultType resultType;
+    
+    private String[] haplotypeStrains = new String[0];
+    
+    private String[] phenotypeStrains = new String[0];
+    
+    private String[] commonStrains = new String[0];
+    
+    private final List<String> labels = new ArrayList<String>();
+    
+    private final Map<String, Integer> labelIndices =
+        new HashMap<String, Integer>();
+    
+    private final SortedMap<Integer, ChromosomeColumns> chromosomeColumns =
+        new TreeMap<Integer, ChromosomeColumns>();
+    
+    private int resultCount = 0;
+    
+    /**
+     * Constructor
+     * @param resultType
+     *          the type of results that we're writing
+     */
+    public BinaryTestResultsWriter(ResultType resultType)
+    {
+        this.resultType = resultType;
+    }
+    
+    /**
+     * Set the strain dictionary
+     * @param haplotypeStrains
+     *          the haplotype strains (in bit set order)
+     * @param phenotypeStrains
+     *          the phenotype strains
+     * @param commonStrains
+     *          the strains common to both
+     */
+    public void setStrains(
+            String[] haplotypeStrains,
+            String[] phenotypeStrains,
+            String[] commonStrains)
+    {
+        this.haplotypeStrains = haplotypeStrains;
+        this.phenotypeStrains = phenotypeStrains;
+        this.commonStrains = commonStrains;
+    }
+    
+    /**
+     * Get the dictionary index for the given label, adding it to the
+     * dictionary if needed
+     * @param label
+     *          the label
+     * @return
+     *          the index
+     */
+    public int getLabelIndex(String label)
+    {
+        Integer index = this.labelIndices.get(label);
+        if(index == null)
+        {
+            index = this.labels.size();
+            this.labels.add(label);
+            this.labelIndices.put(label, index);
+        }
+        
+        return index;
+    }
+    
+    /**
+     * Add a single result row. Rows are converted back to flat files in
+     * the order that they're added
+     * @param chromosome
+     *          the chromosome number
+     * @param startInBasePairs
+     *          the interval start
+     * @param endInBasePairs
+     *          the interval end
+     * @param labelIndex
+     *          the label index from {@link #getLabelIndex(String)}
+     * @param pValue
+     *          the p-value
+     */
+    public void addResult(
+            int chromosome,
+            long startInBasePairs,
+            long endInBasePairs,
+            int labelIndex,
+            double pValue)
+    {
+        ChromosomeColumns columns = this.chromosomeColumns.get(chromosome);
+        if(columns == null)
+        {
+            columns = new ChromosomeColumns();
+            this.chromosomeColumns.put(chromosome, columns);
+        }
+        
+        columns.add(
+                startInBasePairs,
+                endInBasePairs,
+                labelIndex,
+                pValue,
+                this.resultCount);
+        this.resultCount++;
+    }
+    
+    /**
+     * Write everything that we've accumulated to the given file
+     * @param file
+     *          the file to write to
+     * @throws IOException
+     *          if writing fails
+     */
+    public void write(File file) throws IOException
+    {
+        CountingDataOutputStream out = new CountingDataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try
+        {
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(this.resultType.ordinal());
+            
+            // strain dictionary
+            long strainsOffset = out.getCount();
+            writeStrings(out, this.haplotypeStrains);
+            writeStrings(out, this.phenotypeStrains);
+            writeStrings(out, this.commonStrains);
+            
+            // label dictionary: an offset table followed by the labels
+            long labelsOffset = out.getCount();
+            int labelCount = this.labels.size();
+            byte[][] encodedLabels = new byte[labelCount][];
+            out.writeInt(labelCount);
+            long currLabelOffset =
+                labelsOffset + 4 + (8L * labelCount);
+            for(int i = 0; i < labelCount; i++)
+            {
+                encodedLabels[i] = this.labels.get(i).getBytes("UTF-8");
+                out.writeLong(currLabelOffset);
+                currLabelOffset += 4 + encodedLabels[i].length;
+            }
+            for(byte[] encodedLabel: encodedLabels)
+            {
+                out.writeInt(encodedLabel.length);
+                out.write(encodedLabel);
+            }
+            
+            // per-chromosome position sorted columns
+            int chromosomeCount = this.chromosomeColumns.size();
+            int[] chromosomes = new int[chromosomeCount];
+            ChromosomeColumns[] sortedColumns = new ChromosomeColumns[chromosomeCount];
+            long[][] columnOffsets = new long[chromosomeCount][];
+            int totalRowCount = 0;
+            int chromosomeSlot = 0;
+            for(Map.Entry<Integer, ChromosomeColumns> entry:
+                this.chromosomeColumns.entrySet())
+            {
+                chromosomes[chromosomeSlot] = entry.getKey();
+                sortedColumns[chromosomeSlot] = entry.getValue().sortByPosition();
+                columnOffsets[chromosomeSlot] =
+                    sortedColumns[chromosomeSlot].write(out);
+                totalRowCount += sortedColumns[chromosomeSlot].size;
+                chromosomeSlot++;
+            }
+            
+            // the p-value index
+            long[] pValueIndexOffsets = writePValueIndex(
+                    out,
+                    sortedColumns,
+                    totalRowCount);
+            
+            // the result order index
+            long[] resultOrderOffsets = writeResultOrderIndex(
+                    out,
+                    sortedColumns,
+                    totalRowCount);
+            
+            // table of contents
+            long tocOffset = out.getCount();
+            out.writeInt(this.resultType.ordinal());
+            out.writeLong(strainsOffset);
+            out.writeLong(labelsOffset);
+            out.writeInt(chromosomeCount);
+            for(int i = 0; i < chromosomeCount; i++)
+            {
+                out.writeInt(chromosomes[i]);
+                out.writeInt(sortedColumns[i].size);
+                out.writeLong(sortedColumns[i].getMaximumIntervalLength());
+                for(long columnOffset: columnOffsets[i])
+                {
+                    out.writeLong(columnOffset);
+                }
+            }
+            out.writeInt(totalRowCount);
+            for(long indexOffset: pValueIndexOffsets)
+            {
+                out.writeLong(indexOffset);
+            }
+            for(long indexOffset: resultOrderOffsets)
+            {
+                out.writeLong(indexOffset);
+            }
+            
+            out.writeLong(tocOffset);
+            out.flush();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+    
+    private static long[] writePValueIndex(
+            CountingDataOutputStream out,
+            final ChromosomeColumns[] sortedColumns,
+            int totalRowCount)
+    throws IOException
+    {
+        final int[] slots = new int[totalRowCount];
+        final int[] rows = new int[totalRowCount];
+        Integer[] order = new Integer[totalRowCount];
+        int globalRow = 0;
+        for(int slot = 0; slot < sortedColumns.length; slot++)
+        {
+            for(int row = 0; row < sortedColumns[slot].size; row++)
+            {
+                slots[globalRow] = slot;
+                rows[globalRow] = row;
+                order[globalRow] = globalRow;
+                globalRow++;
+            }
+        }
+        
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public int compare(Integer index1, Integer index2)
+            {
+                return Double.compare(
+                        sortedColumns[slots[index1]].pValues[rows[index1]],
+                        sortedColumns[slots[index2]].pValues[rows[index2]]);
+            }
+        });
+        
+        long pValuesOffset = out.getCount();
+        for(Integer index: order)
+        {
+            out.writeDouble(sortedColumns[slots[index]].pValues[rows[index]]);
+        }
+        
+        long slotsOffset = out.getCount();
+        for(Integer index: order)
+        {
+            out.writeInt(slots[index]);
+        }
+        
+        long rowsOffset = out.getCount();
+        for(Integer index: order)
+        {
+            out.writeInt(rows[index]);
+        }
+        
+        return new long[] {pValuesOffset, slotsOffset, rowsOffset};
+    }
+    
+    private static long[] writeResultOrderIndex(
+            CountingDataOutputStream out,
+            ChromosomeColumns[] sortedColumns,
+            int totalRowCount)
+    throws IOException
+    {
+        // every result's sequence number is unique and less than the
+        // total so we can place the rows directly
+        int[] slots = new int[totalRowCount];
+        int[] rows = new int[totalRowCount];
+        for(int slot = 0; slot < sortedColumns.length; slot++)
+        {
+            for(int row = 0; row < sortedColumns[slot].size; row++)
+            {
+                int sequenceNumber = sortedColumns[slot].sequenceNumbers[row];
+                slots[sequenceNumber] = slot;
+                rows[sequenceNumber] = row;
+            }
+        }
+        
+        long slotsOffset = out.getCount();
+        for(int slot: slots)
+        {
+            out.writeInt(slot);
+        }
+        
+        long rowsOffset = out.getCount();
+        for(int row: rows)
+        {
+            out.writeInt(row);
+        }
+        
+        return new long[] {slotsOffset, rowsOffset};
+    }
+    
+    private static void writeStrings(DataOutputStream out, String[] strings)
+    throws IOException
+    {
+        out.writeInt(strings.length);
+        for(String string: strings)
+        {
+            out.writeUTF(string);
+        }
+    }
+    
+    /**
+     * The growable columns for a single chromosome
+     */
+    private static final class ChromosomeColumns
+    {
+        private long[] starts = new long[256];
+        
+        private long[] ends = new long[256];
+        
+        private int[] labelIndices = new int[256];
+        
+        private double[] pValues = new double[256];
+        
+        private int[] sequenceNumbers = new int[256];
+        
+        private int size = 0;
+        
+        public void add(
+                long start,
+                long end,
+                int labelIndex,
+                double pValue,
+                int sequenceNumber)
+        {
+            if(this.size == this.starts.length)
+            {
+                int newCapacity = this.size * 2;
+                
+                long[] newStarts = new long[newCapacity];
+                System.arraycopy(this.starts, 0, newStarts, 0, this.size);
+                this.starts = newStarts;
+                
+                long[] newEnds = new long[newCapacity];
+                System.arraycopy(this.ends, 0, newEnds, 0, this.size);
+                this.ends = newEnds;
+                
+                int[] newLabelIndices = new int[newCapacity];
+                System.arraycopy(this.labelIndices, 0, newLabelIndices, 0, this.size);
+                this.labelIndices = newLabelIndices;
+                
+                double[] newPValues = new double[newCapacity];
+                System.arraycopy(this.pValues, 0, newPValues, 0, this.size);
+                this.pValues = newPValues;
+                
+                int[] newSequenceNumbers = new int[newCapacity];
+                System.arraycopy(this.sequenceNumbers, 0, newSequenceNumbers, 0, this.size);
+                this.sequenceNumbers = newSequenceNumbers;
+            }
+            
+            this.starts[this.size] = start;
+            this.ends[this.size] = end;
+            this.labelIndices[this.size] = labelIndex;
+            this.pValues[this.size] = pValue;
+            this.sequenceNumbers[this.size] = sequenceNumber;
+            this.size++;
+        }
+        
+        /**
+         * Create a copy of these columns sorted by start then end position
+         * @return the sorted copy
+         */
+        public ChromosomeColumns sortByPosition()
+        {
+            Integer[] order = new Integer[this.size];
+            for(int i = 0; i < order.length; i++)
+            {
+                order[i] = i;
+            }
+            
+            Arrays.sort(order, new Comparator<Integer>()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                public int compare(Integer index1, Integer index2)
+                {
+                    ChromosomeColumns columns = ChromosomeColumns.this;
+                    if(columns.starts[index1] != columns.starts[index2])
+                    {
+                        return columns.starts[index1] < columns.starts[index2] ? -1 : 1;
+                    }
+                    else if(columns.ends[index1] != columns.ends[index2])
+                    {
+                        return columns.ends[index1] < columns.ends[index2] ? -1 : 1;
+                    }
+                    else
+                    {
+                        return 0;
+                    }
+                }
+            });
+            
+            ChromosomeColumns sorted = new ChromosomeColumns();
+            for(Integer index: order)
+            {
+                sorted.add(
+                        this.starts[index],
+                        this.ends[index],
+                        this.labelIndices[index],
+                        this.pValues[index],
+                        this.sequenceNumbers[index]);
+            }
+            
+            return sorted;
+        }
+        
+        public long getMaximumIntervalLength()
+        {
+            long maxLength = 0L;
+            for(int i = 0; i < this.size; i++)
+            {
+                maxLength = Math.max(maxLength, this.ends[i] - this.starts[i]);
+            }
+            
+            return maxLength;
+        }
+        
+        /**
+         * Write out the columns
+         * @param out
+         *          the stream to write to
+         * @return
+         *          the start, end, label and p-value column offsets
+         * @throws IOException
+         *          if the write fails
+         */
+        public long[] write(CountingDataOutputStream out) throws IOException
+        {
+            long startsOffset = out.getCount();
+            for(int i = 0; i < this.size; i++)
+            {
+                out.writeLong(this.starts[i]);
+            }
+            
+            long endsOffset = out.getCount();
+            for(int i = 0; i < this.size; i++)
+            {
+                out.writeLong(this.ends[i]);
+            }
+            
+            long labelsOffset = out.getCount();
+            for(int i = 0; i < this.size; i++)
+            {
+                out.writeInt(this.labelIndices[i]);
+            }
+            
+            long pValuesOffset = out.getCount();
+            for(int i = 0; i < this.size; i++)
+            {
+                out.writeDouble(this.pValues[i]);
+            }
+            
+            return new long[] {startsOffset, endsOffset, labelsOffset, pValuesOffset};
+        }
+    }
+    
+    /**
+     * Keeps a running count of the bytes written so that we can record
+     * section offsets as we go
+     */
+    private static final class CountingOutputStream extends FilterOutputStream
+    {
+        private long count = 0L;
+        
+        public CountingOutputStream(OutputStream out)
+        {
+            super(out);
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(int b) throws IOException
+        {
+            this.out.write(b);
+            this.count++;
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+    }
+    
+    /**
+     * A data output stream that knows its absolute position in the file
+     */
+    private static final class CountingDataOutputStream extends DataOutputStream
+    {
+        public CountingDataOutputStream(OutputStream out)
+        {
+            super(new CountingOutputStream(out));
+        }
+        
+        /**
+         * Getter for the number of bytes written so far
+         * @return the byte count
+         */
+        public long getCount()
+        {
+            return ((CountingOutputStream)this.out).count;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.awt.event.ActionEvent;
+import java.io.File;
+
+import javax.swing.AbstractAction;
+import javax.swing.JFileChooser;
+
+import org.jax.bham.BhamApplication;
+import org.jax.bham.BhamFrame;
+import org.jax.util.gui.MessageDialogUtilities;
+
+/**
+ * An action that prompts the user for a binary results file and converts
+ * it to a CSV file in the same format as the text exports
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ConvertBinaryTestResultsToFlatFileAction extends AbstractAction
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = -7730145560196823385L;
+    
+    /**
+     * Constructor
+     */
+    public ConvertBinaryTestResultsToFlatFileAction()
+    {
+        super("Convert Binary Test Results to CSV...");
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void actionPerformed(ActionEvent e)
+    {
+        BhamFrame bhamFrame = BhamApplication.getInstance().getBhamFrame();
+        
+        JFileChooser inputFileChooser = new JFileChooser();
+        inputFileChooser.setDialogTitle("Binary Test Results File");
+        inputFileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        inputFileChooser.setMultiSelectionEnabled(false);
+        if(inputFileChooser.showOpenDialog(bhamFrame) != JFileChooser.APPROVE_OPTION)
+        {
+            return;
+        }
+        File binaryResultsFile = inputFileChooser.getSelectedFile();
+        
+        JFileChooser outputFileChooser = new JFileChooser(
+                binaryResultsFile.getParentFile());
+        outputFileChooser.setDialogTitle("Output CSV File");
+        outputFileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        outputFileChooser.setMultiSelectionEnabled(false);
+        if(outputFileChooser.showSaveDialog(bhamFrame) != JFileChooser.APPROVE_OPTION)
+        {
+            return;
+        }
+        File flatFile = outputFileChooser.getSelectedFile();
+        
+        if(flatFile.isFile())
+        {
+            boolean overwrite = MessageDialogUtilities.ask(
+                    bhamFrame,
+                    "\"" + flatFile.getAbsolutePath() + "\" already exists. " +
+                    "Would you like to overwrite this file?",
+                    "Confim File Overwrite");
+            if(!overwrite)
+            {
+                return;
+            }
+        }
+        
+        ConvertBinaryTestResultsToFlatFileTask convertTask =
+            new ConvertBinaryTestResultsToFlatFileTask(
+                    binaryResultsFile,
+                    flatFile);
+        bhamFrame.getMultiTaskProgress().addTaskToTrack(convertTask, true);
+        new Thread(convertTask).start();
+    }
+}
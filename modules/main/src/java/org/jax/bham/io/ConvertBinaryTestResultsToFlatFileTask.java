@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.io.File;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jax.bham.BhamApplication;
+import org.jax.util.concurrent.AbstractLongRunningTask;
+import org.jax.util.gui.MessageDialogUtilities;
+import org.jax.util.io.CommonFlatFileFormat;
+import org.jax.util.io.FlatFileWriter;
+
+/**
+ * A long running task for converting a binary results file back into the
+ * flat file format of the text exports
+ * @see BinaryTestResultsReader#writeFlatFile(FlatFileWriter)
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ConvertBinaryTestResultsToFlatFileTask
+extends AbstractLongRunningTask
+implements Runnable
+{
+    private static final Logger LOG = Logger.getLogger(
+            ConvertBinaryTestResultsToFlatFileTask.class.getName());
+    
+    private final File binaryResultsFile;
+    
+    private final File flatFile;
+    
+    private volatile int workUnitsCompleted = 0;
+    
+    /**
+     * Constructor
+     * @param binaryResultsFile
+     *          the binary results file to read
+     * @param flatFile
+     *          the CSV file to write. It is gzip compressed if the name
+     *          ends with {@link ExportFileUtil#GZIP_EXTENSION}
+     */
+    public ConvertBinaryTestResultsToFlatFileTask(
+            File binaryResultsFile,
+            File flatFile)
+    {
+        this.binaryResultsFile = binaryResultsFile;
+        this.flatFile = flatFile;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void run()
+    {
+        try
+        {
+            BinaryTestResultsReader reader = new BinaryTestResultsReader(
+                    this.binaryResultsFile);
+            try
+            {
+                FlatFileWriter flatFileWriter = new FlatFileWriter(
+                        ExportFileUtil.createExportWriter(this.flatFile),
+                        CommonFlatFileFormat.CSV_UNIX);
+                reader.writeFlatFile(flatFileWriter);
+                flatFileWriter.close();
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch(Exception ex)
+        {
+            String title = "Failed to Convert Binary Test Results";
+            LOG.log(Level.SEVERE,
+                    title,
+                    ex);
+            MessageDialogUtilities.errorLater(
+                    BhamApplication.getInstance().getBhamFrame(),
+                    ex.getMessage(),
+                    title);
+        }
+        finally
+        {
+            // no matter what we need to finish up
+            this.workUnitsCompleted = 1;
+            this.fireChangeEvent();
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String getTaskName()
+    {
+        return "Converting " + this.binaryResultsFile.getName();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getTotalWorkUnits()
+    {
+        return 1;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getWorkUnitsCompleted()
+    {
+        return this.workUnitsCompleted;
+    }
+}
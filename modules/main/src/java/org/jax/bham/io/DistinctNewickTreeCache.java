@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jax.haplotype.phylogeny.data.PhylogenyTreeEdge;
+import org.jax.haplotype.phylogeny.data.PhylogenyTreeNode;
+import org.jax.util.io.FlatFileWriter;
+
+/**
+ * Maps phylogeny trees to newick strings so that each distinct tree
+ * topology is only resolved and formatted once no matter how many
+ * intervals share it. Trees are matched structurally (strains, branch
+ * lengths and child order) so that two trees which would give the same
+ * newick string share a single cached string. Newick lookups are
+ * safe to do from several threads at once, but tree IDs are handed out by
+ * {@link #getTreeId(String)} which should only be called from the thread
+ * writing the file so that the IDs follow file order.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class DistinctNewickTreeCache
+{
+    private final boolean fullyResolveTrees;
+    
+    private final ConcurrentHashMap<TreeTopologyKey, String> newickTrees =
+        new ConcurrentHashMap<TreeTopologyKey, String>();
+    
+    private final Map<String, Integer> treeIds =
+        new HashMap<String, Integer>();
+    
+    private final List<String> distinctTrees = new ArrayList<String>();
+    
+    /**
+     * Constructor
+     * @param fullyResolveTrees
+     *          if true than strains on the same node will be given a
+     *          pseudo branch with length 0, otherwise they will just be
+     *          separated with a '|'
+     */
+    public DistinctNewickTreeCache(boolean fullyResolveTrees)
+    {
+        this.fullyResolveTrees = fullyResolveTrees;
+    }
+    
+    /**
+     * Get the canonical newick string for the given tree, formatting it
+     * only if we haven't seen this topology before
+     * @param phylogenyTree
+     *          the tree
+     * @return
+     *          the newick string. Trees with the same topology always get
+     *          back the same string instance
+     */
+    public String getNewickTree(PhylogenyTreeNode phylogenyTree)
+    {
+        TreeTopologyKey key = new TreeTopologyKey(phylogenyTree);
+        String newickTree = this.newickTrees.get(key);
+        if(newickTree == null)
+        {
+            PhylogenyTreeNode treeToFormat = phylogenyTree;
+            if(this.fullyResolveTrees)
+            {
+                treeToFormat = phylogenyTree.resolveToSingleStrainLeafNodes(0.0);
+            }
+            
+            // if another thread beat us to it use their string so that
+            // there is only ever one instance per topology
+            newickTree = treeToFormat.toNewickFormat();
+            String existingTree = this.newickTrees.putIfAbsent(key, newickTree);
+            if(existingTree != null)
+            {
+                newickTree = existingTree;
+            }
+        }
+        
+        return newickTree;
+    }
+    
+    /**
+     * Get the ID for a newick string. IDs are assigned in the order that
+     * the trees are first seen starting from zero and equal strings always
+     * share an ID.
+     * @param newickTree
+     *          the newick string
+     * @return
+     *          the tree's ID
+     */
+    public int getTreeId(String newickTree)
+    {
+        Integer treeId = this.treeIds.get(newickTree);
+        if(treeId == null)
+        {
+            treeId = this.distinctTrees.size();
+            this.treeIds.put(newickTree, treeId);
+            this.distinctTrees.add(newickTree);
+        }
+        
+        return treeId;
+    }
+    
+    /**
+     * Getter for the number of trees that have been given an ID
+     * @return
+     *          the distinct tree count
+     */
+    public int getDistinctTreeCount()
+    {
+        return this.distinctTrees.size();
+    }
+    
+    /**
+     * Write the tree dictionary section (every tree that has been given an
+     * ID, in ID order) to the given writer
+     * @param flatFileWriter
+     *          the writer
+     * @throws IOException
+     *          if the write fails
+     */
+    public void writeTreeDictionary(FlatFileWriter flatFileWriter)
+    throws IOException
+    {
+        flatFileWriter.flush();
+        Writer plainWriter = flatFileWriter.getWriter();
+        plainWriter.write("# Distinct phylogeny trees:\n");
+        flatFileWriter.writeRow(new String[] {
+                "phylogenyTreeId",
+                "newickFormattedPhylogenyTree"});
+        for(int treeId = 0; treeId < this.distinctTrees.size(); treeId++)
+        {
+            flatFileWriter.writeRow(new String[] {
+                    Integer.toString(treeId),
+                    this.distinctTrees.get(treeId)});
+        }
+    }
+    
+    /**
+     * A structural hash key for a phylogeny tree
+     */
+    private static final class TreeTopologyKey
+    {
+        private final PhylogenyTreeNode tree;
+        
+        private final int hashCode;
+        
+        public TreeTopologyKey(PhylogenyTreeNode tree)
+        {
+            this.tree = tree;
+            this.hashCode = hashTree(tree);
+        }
+        
+        private static int hashTree(PhylogenyTreeNode node)
+        {
+            int hash = node.getStrains().hashCode();
+            for(PhylogenyTreeEdge childEdge: node.getChildEdges())
+            {
+                long lengthBits = Double.doubleToLongBits(
+                        childEdge.getEdgeLength());
+                hash = 31 * hash + (int)(lengthBits ^ (lengthBits >>> 32));
+                hash = 31 * hash + hashTree(childEdge.getNode());
+            }
+            
+            return hash;
+        }
+        
+        private static boolean treesEqual(
+                PhylogenyTreeNode node1,
+                PhylogenyTreeNode node2)
+        {
+            if(node1 == node2)
+            {
+                return true;
+            }
+            else if(!node1.getStrains().equals(node2.getStrains()))
+            {
+                return false;
+            }
+            
+            List<PhylogenyTreeEdge> children1 = node1.getChildEdges();
+            List<PhylogenyTreeEdge> children2 = node2.getChildEdges();
+            if(children1.size() != children2.size())
+            {
+                return false;
+            }
+            
+            for(int i = 0; i < children1.size(); i++)
+            {
+                PhylogenyTreeEdge edge1 = children1.get(i);
+                PhylogenyTreeEdge edge2 = children2.get(i);
+                if(Double.doubleToLongBits(edge1.getEdgeLength()) !=
+                   Double.doubleToLongBits(edge2.getEdgeLength()) ||
+                   !treesEqual(edge1.getNode(), edge2.getNode()))
+                {
+                    return false;
+                }
+            }
+            
+            return true;
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object obj)
+        {
+            if(obj instanceof TreeTopologyKey)
+            {
+                TreeTopologyKey otherKey = (TreeTopologyKey)obj;
+                return this.hashCode == otherKey.hashCode &&
+                       treesEqual(this.tree, otherKey.tree);
+            }
+            else
+            {
+                return false;
+            }
+        }
+    }
+}
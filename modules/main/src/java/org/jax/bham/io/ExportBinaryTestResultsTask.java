@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jax.bham.BhamApplication;
+import org.jax.bham.io.BinaryTestResultsWriter.ResultType;
+import org.jax.bham.test.StoredTestResultsUtil;
+import org.jax.geneticutil.data.BasePairInterval;
+import org.jax.geneticutil.data.PartitionedIntervalSet;
+import org.jax.haplotype.analysis.HaplotypeAssociationTest;
+import org.jax.haplotype.analysis.HaplotypeEquivalenceClassTestResult;
+import org.jax.haplotype.analysis.PhylogenyAssociationTest;
+import org.jax.haplotype.phylogeny.data.PhylogenyInterval;
+import org.jax.haplotype.phylogeny.data.PhylogenyTestResult;
+import org.jax.haplotype.phylogeny.data.PhylogenyTreeNode;
+import org.jax.util.concurrent.AbstractLongRunningTask;
+import org.jax.util.datastructure.SetUtilities;
+import org.jax.util.gui.MessageDialogUtilities;
+
+/**
+ * A long running task for exporting haplotype or phylogeny association
+ * test results to the indexed binary results format
+ * @see BinaryTestResultsWriter
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ExportBinaryTestResultsTask
+extends AbstractLongRunningTask
+implements Runnable
+{
+    private static final Logger LOG = Logger.getLogger(
+            ExportBinaryTestResultsTask.class.getName());
+    
+    private final HaplotypeAssociationTest haplotypeTest;
+    
+    private final PhylogenyAssociationTest phylogenyTest;
+    
+    private final boolean fullyResolveTrees;
+    
+    private final double pValueThreshold;
+    
+    private final int maximumResultCount;
+    
+    private final File binaryResultsFile;
+    
+    private volatile int workUnitsCompleted = 0;
+    
+    private volatile int totalWorkUnits = 1;
+    
+    /**
+     * Constructor for exporting haplotype association results. The
+     * threshold and top result count work just like they do for
+     * {@link ExportHaplotypeAssociationTestResultsTask}
+     * @param haplotypeTest
+     *          the haplotype association test to export
+     * @param pValueThreshold
+     *          only intervals with a p-value at or below this threshold
+     *          are exported. A threshold of 1 exports everything
+     * @param maximumResultCount
+     *          if positive only this many intervals with the smallest
+     *          p-values are exported. Zero means export every interval
+     *          that passes the threshold
+     * @param binaryResultsFile
+     *          the file to write
+     */
+    public ExportBinaryTestResultsTask(
+            HaplotypeAssociationTest haplotypeTest,
+            double pValueThreshold,
+            int maximumResultCount,
+            File binaryResultsFile)
+    {
+        this.haplotypeTest = haplotypeTest;
+        this.phylogenyTest = null;
+        this.fullyResolveTrees = false;
+        this.pValueThreshold = pValueThreshold;
+        this.maximumResultCount = maximumResultCount;
+        this.binaryResultsFile = binaryResultsFile;
+    }
+    
+    /**
+     * Constructor for exporting phylogeny association results
+     * @param phylogenyTest
+     *          the phylogeny association test to export
+     * @param fullyResolveTrees
+     *          if true than strains on the same node will be given a
+     *          pseudo branch with length 0, otherwise they will just be
+     *          separated with a '|'
+     * @param binaryResultsFile
+     *          the file to write
+     */
+    public ExportBinaryTestResultsTask(
+            PhylogenyAssociationTest phylogenyTest,
+            boolean fullyResolveTrees,
+            File binaryResultsFile)
+    {
+        this.haplotypeTest = null;
+        this.phylogenyTest = phylogenyTest;
+        this.fullyResolveTrees = fullyResolveTrees;
+        this.pValueThreshold = 1.0;
+        this.maximumResultCount = 0;
+        this.binaryResultsFile = binaryResultsFile;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void run()
+    {
+        try
+        {
+            BinaryTestResultsWriter resultsWriter;
+            if(this.haplotypeTest != null)
+            {
+                resultsWriter = this.createHaplotypeResultsWriter();
+            }
+            else
+            {
+                resultsWriter = this.createPhylogenyResultsWriter();
+            }
+            
+            resultsWriter.write(this.binaryResultsFile);
+        }
+        catch(Exception ex)
+        {
+            String title = "Failed to Export Binary Test Results";
+            LOG.log(Level.SEVERE,
+                    title,
+                    ex);
+            MessageDialogUtilities.errorLater(
+                    BhamApplication.getInstance().getBhamFrame(),
+                    ex.getMessage(),
+                    title);
+        }
+        finally
+        {
+            // no matter what we need to finish up
+            this.workUnitsCompleted = this.totalWorkUnits;
+            this.fireChangeEvent();
+        }
+    }
+    
+    private BinaryTestResultsWriter createHaplotypeResultsWriter()
+    {
+        BinaryTestResultsWriter resultsWriter = new BinaryTestResultsWriter(
+                ResultType.HAPLOTYPE_ASSOCIATION);
+        resultsWriter.setStrains(
+                toSortedArray(this.haplotypeTest.getHaplotypeDataSource().getAvailableStrains()),
+                toSortedArray(this.haplotypeTest.getPhenotypeDataSource().getPhenotypeData().keySet()),
+                toSortedArray(this.haplotypeTest.getCommonStrains()));
+        
+        HaplotypeEquivalenceClassTestResult[] resultsArray =
+            StoredTestResultsUtil.getEquivalenceClassTestResults(
+                    this.haplotypeTest);
+        if(this.maximumResultCount > 0)
+        {
+            // added in p-value order which is the order that a text
+            // export of the top results is written in
+            ExportHaplotypeAssociationTestResultsTask.RankedInterval[] topIntervals =
+                ExportHaplotypeAssociationTestResultsTask.findTopIntervals(
+                        resultsArray,
+                        this.pValueThreshold,
+                        this.maximumResultCount);
+            for(ExportHaplotypeAssociationTestResultsTask.RankedInterval rankedInterval:
+                topIntervals)
+            {
+                BasePairInterval interval = rankedInterval.getInterval();
+                resultsWriter.addResult(
+                        interval.getChromosomeNumber(),
+                        interval.getStartInBasePairs(),
+                        interval.getEndInBasePairs(),
+                        resultsWriter.getLabelIndex(SetUtilities.bitSetToBinaryString(
+                                rankedInterval.getTestResult().getHaplotypeEquivalenceClass().getStrainBitSet())),
+                        rankedInterval.getPValue());
+            }
+        }
+        else
+        {
+            for(HaplotypeEquivalenceClassTestResult testResult: resultsArray)
+            {
+                double pValue = testResult.getPValue();
+                if(ExportHaplotypeAssociationTestResultsTask.passesThreshold(
+                        pValue,
+                        this.pValueThreshold))
+                {
+                    // the bit set label is shared by every interval in the
+                    // class so it only goes into the label dictionary once
+                    PartitionedIntervalSet currEquivClass =
+                        testResult.getHaplotypeEquivalenceClass();
+                    int labelIndex = resultsWriter.getLabelIndex(
+                            SetUtilities.bitSetToBinaryString(
+                                    currEquivClass.getStrainBitSet()));
+                    for(BasePairInterval interval: currEquivClass.getSnpIntervals())
+                    {
+                        resultsWriter.addResult(
+                                interval.getChromosomeNumber(),
+                                interval.getStartInBasePairs(),
+                                interval.getEndInBasePairs(),
+                                labelIndex,
+                                pValue);
+                    }
+                }
+            }
+        }
+        
+        return resultsWriter;
+    }
+    
+    private BinaryTestResultsWriter createPhylogenyResultsWriter()
+    {
+        BinaryTestResultsWriter resultsWriter = new BinaryTestResultsWriter(
+                ResultType.PHYLOGENY_ASSOCIATION);
+        String[] noStrains = new String[0];
+        resultsWriter.setStrains(noStrains, noStrains, noStrains);
+        
+        int[] chromosomes =
+            this.phylogenyTest.getPhylogenyDataSource().getAvailableChromosomes();
+        this.totalWorkUnits = chromosomes.length;
+        this.fireChangeEvent();
+        for(int chromosome: chromosomes)
+        {
+            List<PhylogenyTestResult> currTestResults =
+                StoredTestResultsUtil.getPhylogenyTestResults(
+                        this.phylogenyTest,
+                        chromosome);
+            for(PhylogenyTestResult currResult: currTestResults)
+            {
+                PhylogenyInterval currPhyloInterval =
+                    currResult.getPhylogenyInterval();
+                BasePairInterval interval = currPhyloInterval.getInterval();
+                PhylogenyTreeNode phyloTree = currPhyloInterval.getPhylogeny();
+                if(this.fullyResolveTrees)
+                {
+                    phyloTree = phyloTree.resolveToSingleStrainLeafNodes(0.0);
+                }
+                
+                resultsWriter.addResult(
+                        interval.getChromosomeNumber(),
+                        interval.getStartInBasePairs(),
+                        interval.getEndInBasePairs(),
+                        resultsWriter.getLabelIndex(phyloTree.toNewickFormat()),
+                        currResult.getPValue());
+            }
+            
+            this.workUnitsCompleted++;
+            this.fireChangeEvent();
+        }
+        
+        return resultsWriter;
+    }
+    
+    private static String[] toSortedArray(Set<String> strings)
+    {
+        String[] sortedStrings = strings.toArray(new String[strings.size()]);
+        Arrays.sort(sortedStrings);
+        return sortedStrings;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String getTaskName()
+    {
+        if(this.haplotypeTest != null)
+        {
+            return "Exporting " + this.haplotypeTest.getName();
+        }
+        else
+        {
+            return "Exporting " + this.phylogenyTest.getName();
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getTotalWorkUnits()
+    {
+        return this.totalWorkUnits;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getWorkUnitsCompleted()
+    {
+        return this.workUnitsCompleted;
+    }
+}
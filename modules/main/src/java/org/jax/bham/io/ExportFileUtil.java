@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Some utility functions for creating export files
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ExportFileUtil
+{
+    /**
+     * the file extension that turns on gzip compression
+     */
+    public static final String GZIP_EXTENSION = ".gz";
+    
+    /**
+     * Create a buffered writer for the given export file. If the file name
+     * ends with {@link #GZIP_EXTENSION} the output is gzip compressed on
+     * all available processors using a {@link ParallelGzipOutputStream}
+     * @param outputFile
+     *          the file to write to
+     * @return
+     *          the writer
+     * @throws IOException
+     *          if the file can't be opened
+     */
+    public static Writer createExportWriter(File outputFile) throws IOException
+    {
+        if(isGzipFile(outputFile))
+        {
+            return new BufferedWriter(new OutputStreamWriter(
+                    new ParallelGzipOutputStream(new BufferedOutputStream(
+                            new FileOutputStream(outputFile)))));
+        }
+        else
+        {
+            return new BufferedWriter(new FileWriter(outputFile));
+        }
+    }
+    
+    /**
+     * Determine if the given file should be gzip compressed
+     * @param file
+     *          the file
+     * @return
+     *          true if the name ends with {@link #GZIP_EXTENSION}
+     */
+    public static boolean isGzipFile(File file)
+    {
+        return file.getName().toLowerCase().endsWith(GZIP_EXTENSION);
+    }
+}
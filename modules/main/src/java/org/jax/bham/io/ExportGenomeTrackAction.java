@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.awt.event.ActionEvent;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.swing.AbstractAction;
+import javax.swing.JFileChooser;
+
+import org.jax.bham.BhamApplication;
+import org.jax.bham.BhamFrame;
+import org.jax.geneticutil.data.RealValuedBasePairInterval;
+import org.jax.util.concurrent.MultiTaskProgressPanel;
+
+/**
+ * Action for exporting the values that a graph panel is plotting as a
+ * bedGraph track with a zoom summary file
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ExportGenomeTrackAction extends AbstractAction
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = -2290813627489617385L;
+    
+    private static final Logger LOG = Logger.getLogger(
+            ExportGenomeTrackAction.class.getName());
+    
+    private final String trackName;
+    
+    private final Map<Integer, RealValuedBasePairInterval[]> chromosomeValues;
+    
+    /**
+     * Constructor
+     * @param trackName
+     *          the name of the track (usually the test name)
+     * @param chromosomeValues
+     *          the values to export keyed on chromosome. A copy is taken
+     *          so the caller is free to keep modifying its map
+     */
+    public ExportGenomeTrackAction(
+            String trackName,
+            Map<Integer, RealValuedBasePairInterval[]> chromosomeValues)
+    {
+        super("Export Plotted Chromosomes as bedGraph Track...");
+        this.trackName = trackName;
+        synchronized(chromosomeValues)
+        {
+            this.chromosomeValues =
+                new HashMap<Integer, RealValuedBasePairInterval[]>(
+                        chromosomeValues);
+        }
+        this.setEnabled(!this.chromosomeValues.isEmpty());
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void actionPerformed(ActionEvent e)
+    {
+        BhamFrame bhamFrame = BhamApplication.getInstance().getBhamFrame();
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Export bedGraph Track");
+        fileChooser.setMultiSelectionEnabled(false);
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        int userSelection = fileChooser.showSaveDialog(bhamFrame);
+        
+        if(userSelection == JFileChooser.APPROVE_OPTION)
+        {
+            File bedGraphFile = fileChooser.getSelectedFile();
+            if(!bedGraphFile.getName().contains("."))
+            {
+                bedGraphFile = new File(
+                        bedGraphFile.getParentFile(),
+                        bedGraphFile.getName() + "." +
+                        GenomeTrackWriter.BED_GRAPH_EXTENSION);
+            }
+            
+            ExportGenomeTrackTask exportTask = new ExportGenomeTrackTask(
+                    this.trackName,
+                    this.chromosomeValues,
+                    bedGraphFile);
+            MultiTaskProgressPanel progressTracker =
+                bhamFrame.getMultiTaskProgress();
+            progressTracker.addTaskToTrack(exportTask, true);
+            new Thread(exportTask).start();
+        }
+        else
+        {
+            LOG.fine("user canceled track export");
+        }
+    }
+}
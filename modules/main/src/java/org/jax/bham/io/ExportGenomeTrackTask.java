@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.io.File;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jax.bham.BhamApplication;
+import org.jax.bham.io.GenomeTrackWriter.ChromosomeZoomLevels;
+import org.jax.geneticutil.data.RealValuedBasePairInterval;
+import org.jax.util.concurrent.AbstractLongRunningTask;
+import org.jax.util.gui.MessageDialogUtilities;
+
+/**
+ * A long running task for exporting plotted values as a bedGraph track
+ * plus its zoom summary file
+ * @see GenomeTrackWriter
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ExportGenomeTrackTask
+extends AbstractLongRunningTask
+implements Runnable
+{
+    private static final Logger LOG = Logger.getLogger(
+            ExportGenomeTrackTask.class.getName());
+    
+    private final String trackName;
+    
+    private final Map<Integer, RealValuedBasePairInterval[]> chromosomeValues;
+    
+    private final File bedGraphFile;
+    
+    private volatile int workUnitsCompleted = 0;
+    
+    private volatile int totalWorkUnits = 1;
+    
+    /**
+     * Constructor
+     * @param trackName
+     *          the track name
+     * @param chromosomeValues
+     *          the values to export keyed on chromosome number
+     * @param bedGraphFile
+     *          the bedGraph file to write. The zoom file is written
+     *          alongside it (see {@link GenomeTrackWriter#getZoomFile(File)})
+     */
+    public ExportGenomeTrackTask(
+            String trackName,
+            Map<Integer, RealValuedBasePairInterval[]> chromosomeValues,
+            File bedGraphFile)
+    {
+        this.trackName = trackName;
+        this.chromosomeValues = chromosomeValues;
+        this.bedGraphFile = bedGraphFile;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void run()
+    {
+        try
+        {
+            int[] chromosomes = new int[this.chromosomeValues.size()];
+            int chromosomeIndex = 0;
+            for(Integer chromosome: this.chromosomeValues.keySet())
+            {
+                chromosomes[chromosomeIndex] = chromosome;
+                chromosomeIndex++;
+            }
+            Arrays.sort(chromosomes);
+            this.totalWorkUnits = chromosomes.length;
+            this.fireChangeEvent();
+            
+            GenomeTrackWriter trackWriter = new GenomeTrackWriter(this.trackName);
+            ChromosomeZoomLevels[] zoomLevels =
+                new ChromosomeZoomLevels[chromosomes.length];
+            Writer bedGraphWriter = ExportFileUtil.createExportWriter(
+                    this.bedGraphFile);
+            try
+            {
+                trackWriter.writeBedGraphHeader(bedGraphWriter);
+                for(int i = 0; i < chromosomes.length; i++)
+                {
+                    // copy since the writer sorts the values in place
+                    RealValuedBasePairInterval[] values =
+                        this.chromosomeValues.get(chromosomes[i]).clone();
+                    trackWriter.writeBedGraphChromosome(
+                            chromosomes[i],
+                            values,
+                            bedGraphWriter);
+                    zoomLevels[i] = trackWriter.summarizeChromosome(values);
+                    
+                    this.workUnitsCompleted++;
+                    this.fireChangeEvent();
+                }
+            }
+            finally
+            {
+                bedGraphWriter.close();
+            }
+            
+            trackWriter.writeZoomFile(
+                    chromosomes,
+                    zoomLevels,
+                    GenomeTrackWriter.getZoomFile(this.bedGraphFile));
+        }
+        catch(Exception ex)
+        {
+            String title = "Failed to Export Genome Track";
+            LOG.log(Level.SEVERE,
+                    title,
+                    ex);
+            MessageDialogUtilities.errorLater(
+                    BhamApplication.getInstance().getBhamFrame(),
+                    ex.getMessage(),
+                    title);
+        }
+        finally
+        {
+            // no matter what we need to finish up
+            this.workUnitsCompleted = this.totalWorkUnits;
+            this.fireChangeEvent();
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String getTaskName()
+    {
+        return "Exporting Track " + this.trackName;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getTotalWorkUnits()
+    {
+        return this.totalWorkUnits;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getWorkUnitsCompleted()
+    {
+        return this.workUnitsCompleted;
+    }
+}
@@ -20,15 +20,14 @@ package org.jax.bham.io;
 import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.Writer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.swing.JDialog;
 import javax.swing.JFileChooser;
+import javax.swing.SpinnerNumberModel;
 
 import org.jax.bham.BhamApplication;
 import org.jax.bham.project.BhamProject;
@@ -56,8 +55,17 @@ public class ExportHaplotypeAssociationTestResultsDialog extends JDialog
      */
     private static final long serialVersionUID = -3526675352249957927L;
     
+    private static final String BINARY_RESULTS_FORMAT =
+        "BHAM Binary Results (Indexed)";
+    
     private final BhamProject project;
     
+    private final SpinnerNumberModel maximumResultCountSpinnerModel = new SpinnerNumberModel(
+            0,
+            0,
+            Integer.MAX_VALUE,
+            100);
+    
     /**
      * Constructor
      * @param parent
@@ -82,6 +90,9 @@ public class ExportHaplotypeAssociationTestResultsDialog extends JDialog
      */
     private void postGuiInit()
     {
+        this.maximumResultCountSpinner.setModel(
+                this.maximumResultCountSpinnerModel);
+        
         this.outputFileButton.addActionListener(new ActionListener()
         {
             /**
@@ -133,6 +144,7 @@ public class ExportHaplotypeAssociationTestResultsDialog extends JDialog
         
         this.fileFormatComboBox.addItem(CommonFlatFileFormat.CSV_UNIX);
         this.fileFormatComboBox.addItem(CommonFlatFileFormat.TAB_DELIMITED_UNIX);
+        this.fileFormatComboBox.addItem(BINARY_RESULTS_FORMAT);
     }
 
     private FlatFileFormat getFileFormat()
@@ -140,28 +152,50 @@ public class ExportHaplotypeAssociationTestResultsDialog extends JDialog
         return (FlatFileFormat)this.fileFormatComboBox.getSelectedItem();
     }
     
+    private boolean isBinaryFormatSelected()
+    {
+        return BINARY_RESULTS_FORMAT.equals(
+                this.fileFormatComboBox.getSelectedItem());
+    }
+    
     private void ok()
     {
         try
         {
             if(this.validateData())
             {
-                Writer writer = new BufferedWriter(
-                        new FileWriter(this.getOutputFile()));
-                FlatFileFormat format = this.getFileFormat();
-                FlatFileWriter flatFileWriter = new FlatFileWriter(
-                        writer,
-                        format);
                 HaplotypeAssociationTest test = this.getSelectedTest();
-                ExportHaplotypeAssociationTestResultsTask exportTask =
-                    new ExportHaplotypeAssociationTestResultsTask(
-                            test,
-                            flatFileWriter,
-                            true);
                 MultiTaskProgressPanel progressTracker =
                     BhamApplication.getInstance().getBhamFrame().getMultiTaskProgress();
-                progressTracker.addTaskToTrack(exportTask, true);
-                new Thread(exportTask).start();
+                if(this.isBinaryFormatSelected())
+                {
+                    ExportBinaryTestResultsTask exportTask =
+                        new ExportBinaryTestResultsTask(
+                                test,
+                                this.getPValueThreshold(),
+                                this.maximumResultCountSpinnerModel.getNumber().intValue(),
+                                this.getOutputFile());
+                    progressTracker.addTaskToTrack(exportTask, true);
+                    new Thread(exportTask).start();
+                }
+                else
+                {
+                    Writer writer = ExportFileUtil.createExportWriter(
+                            this.getOutputFile());
+                    FlatFileFormat format = this.getFileFormat();
+                    FlatFileWriter flatFileWriter = new FlatFileWriter(
+                            writer,
+                            format);
+                    ExportHaplotypeAssociationTestResultsTask exportTask =
+                        new ExportHaplotypeAssociationTestResultsTask(
+                                test,
+                                this.getPValueThreshold(),
+                                this.maximumResultCountSpinnerModel.getNumber().intValue(),
+                                flatFileWriter,
+                                true);
+                    progressTracker.addTaskToTrack(exportTask, true);
+                    new Thread(exportTask).start();
+                }
                 
                 this.dispose();
             }
@@ -189,6 +223,25 @@ public class ExportHaplotypeAssociationTestResultsDialog extends JDialog
         return (HaplotypeAssociationTest)this.testDataComboBox.getSelectedItem();
     }
 
+    /**
+     * Getter for the p-value threshold that the user entered
+     * @return
+     *          the threshold or {@link Double#NaN} if the user's input
+     *          can't be parsed
+     */
+    private double getPValueThreshold()
+    {
+        try
+        {
+            return Double.parseDouble(
+                    this.pValueThresholdTextField.getText().trim());
+        }
+        catch(NumberFormatException ex)
+        {
+            return Double.NaN;
+        }
+    }
+
     private void cancel()
     {
         this.dispose();
@@ -236,6 +289,12 @@ public class ExportHaplotypeAssociationTestResultsDialog extends JDialog
                 "Cannot write output to \"" + outputFile.getAbsolutePath() +
                 "\" because it is a directory";
         }
+        else if(!(this.getPValueThreshold() > 0.0 && this.getPValueThreshold() <= 1.0))
+        {
+            errorMessage =
+                "The p-value threshold must be a number greater than 0 " +
+                "and no greater than 1";
+        }
         else if(outputFile.isFile())
         {
             boolean overwrite = MessageDialogUtilities.ask(
@@ -286,6 +345,10 @@ public class ExportHaplotypeAssociationTestResultsDialog extends JDialog
         fileFormatComboBox = new javax.swing.JComboBox();
         javax.swing.JLabel testDataLabel = new javax.swing.JLabel();
         testDataComboBox = new javax.swing.JComboBox();
+        javax.swing.JLabel pValueThresholdLabel = new javax.swing.JLabel();
+        pValueThresholdTextField = new javax.swing.JTextField();
+        javax.swing.JLabel maximumResultCountLabel = new javax.swing.JLabel();
+        maximumResultCountSpinner = new javax.swing.JSpinner();
         actionPanel = new javax.swing.JPanel();
         okButton = new javax.swing.JButton();
         cancelButton = new javax.swing.JButton();
@@ -302,6 +365,12 @@ public class ExportHaplotypeAssociationTestResultsDialog extends JDialog
 
         testDataLabel.setText("Test Results:");
 
+        pValueThresholdLabel.setText("P-Value Threshold:");
+
+        pValueThresholdTextField.setText("1.0");
+
+        maximumResultCountLabel.setText("Top Results (0 for All):");
+
         okButton.setText("OK");
         actionPanel.add(okButton);
 
@@ -323,11 +392,15 @@ public class ExportHaplotypeAssociationTestResultsDialog extends JDialog
                 .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
                     .add(fileFormatLabel)
                     .add(outputFileLabel)
-                    .add(testDataLabel))
+                    .add(testDataLabel)
+                    .add(pValueThresholdLabel)
+                    .add(maximumResultCountLabel))
                 .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
                 .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
                     .add(fileFormatComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
                     .add(testDataComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
+                    .add(pValueThresholdTextField, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, 90, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
+                    .add(maximumResultCountSpinner, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, 90, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
                     .add(outputFileTextField, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 190, Short.MAX_VALUE))
                 .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
                 .add(outputFileButton)
@@ -335,8 +408,8 @@ public class ExportHaplotypeAssociationTestResultsDialog extends JDialog
         );
         layout.setVerticalGroup(
             layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
-            .add(0, 161, Short.MAX_VALUE)
-            .add(0, 161, Short.MAX_VALUE)
+            .add(0, 221, Short.MAX_VALUE)
+            .add(0, 221, Short.MAX_VALUE)
             .add(layout.createSequentialGroup()
                 .addContainerGap()
                 .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
@@ -351,6 +424,14 @@ public class ExportHaplotypeAssociationTestResultsDialog extends JDialog
                 .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
                     .add(testDataLabel)
                     .add(testDataComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(pValueThresholdLabel)
+                    .add(pValueThresholdTextField, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(maximumResultCountLabel)
+                    .add(maximumResultCountSpinner, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
                 .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED, 8, Short.MAX_VALUE)
                 .add(actionPanel, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
         );
@@ -363,9 +444,11 @@ public class ExportHaplotypeAssociationTestResultsDialog extends JDialog
     private javax.swing.JButton cancelButton;
     private javax.swing.JComboBox fileFormatComboBox;
     private javax.swing.JButton helpButton;
+    private javax.swing.JSpinner maximumResultCountSpinner;
     private javax.swing.JButton okButton;
     private javax.swing.JButton outputFileButton;
     private javax.swing.JTextField outputFileTextField;
+    private javax.swing.JTextField pValueThresholdTextField;
     private javax.swing.JComboBox testDataComboBox;
     // End of variables declaration//GEN-END:variables
 
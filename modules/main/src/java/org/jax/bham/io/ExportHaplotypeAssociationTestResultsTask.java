@@ -17,13 +17,17 @@
 
 package org.jax.bham.io;
 
+import java.io.IOException;
 import java.io.Writer;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.jax.bham.BhamApplication;
+import org.jax.bham.test.StoredTestResultsUtil;
 import org.jax.geneticutil.data.BasePairInterval;
 import org.jax.geneticutil.data.PartitionedIntervalSet;
 import org.jax.haplotype.analysis.HaplotypeAssociationTest;
@@ -51,12 +55,42 @@ implements Runnable
     
     private final boolean closeWriterWhenFinished;
     
+    private final double pValueThreshold;
+    
+    private final int maximumResultCount;
+    
     private volatile int workUnitsCompleted = 0;
 
+    /**
+     * Constructor for exporting every result
+     * @param haplotypeTest
+     *          the haplotype association test data to export
+     * @param flatFileWriter
+     *          the flat file that we're writing to
+     * @param closeWriterWhenFinished
+     *          should the given writer be closed when this task is done
+     *          writing to it?
+     */
+    public ExportHaplotypeAssociationTestResultsTask(
+            HaplotypeAssociationTest haplotypeTest,
+            FlatFileWriter flatFileWriter,
+            boolean closeWriterWhenFinished)
+    {
+        this(haplotypeTest, 1.0, 0, flatFileWriter, closeWriterWhenFinished);
+    }
+    
     /**
      * Constructor
      * @param haplotypeTest
      *          the haplotype association test data to export
+     * @param pValueThreshold
+     *          only intervals with a p-value at or below this threshold
+     *          are exported. A threshold of 1 exports everything
+     *          including NaN p-values
+     * @param maximumResultCount
+     *          if positive only this many intervals with the smallest
+     *          p-values are exported (ordered by p-value). Zero means
+     *          export every interval that passes the threshold
      * @param flatFileWriter
      *          the flat file that we're writing to
      * @param closeWriterWhenFinished
@@ -65,10 +99,14 @@ implements Runnable
      */
     public ExportHaplotypeAssociationTestResultsTask(
             HaplotypeAssociationTest haplotypeTest,
+            double pValueThreshold,
+            int maximumResultCount,
             FlatFileWriter flatFileWriter,
             boolean closeWriterWhenFinished)
     {
         this.haplotypeTest = haplotypeTest;
+        this.pValueThreshold = pValueThreshold;
+        this.maximumResultCount = maximumResultCount;
         this.flatFileWriter = flatFileWriter;
         this.closeWriterWhenFinished = closeWriterWhenFinished;
     }
@@ -135,20 +173,35 @@ implements Runnable
                     "haplotypeBlockEndPositionInBasePairs",
                     "strainsInHaplotypeBlockBitSet",
                     "pValue"});
-            HaplotypeEquivalenceClassTestResult[] resultsArray = this.haplotypeTest.getEquivalenceClassTestResults();
-            for(HaplotypeEquivalenceClassTestResult testResult: resultsArray)
+            HaplotypeEquivalenceClassTestResult[] resultsArray =
+                StoredTestResultsUtil.getEquivalenceClassTestResults(
+                        this.haplotypeTest);
+            if(this.maximumResultCount > 0)
+            {
+                this.writeTopResults(resultsArray);
+            }
+            else
             {
-                PartitionedIntervalSet currEquivClass =
-                    testResult.getHaplotypeEquivalenceClass();
-                double currPValue = testResult.getPValue();
-                for(BasePairInterval interval: currEquivClass.getSnpIntervals())
+                for(HaplotypeEquivalenceClassTestResult testResult: resultsArray)
                 {
-                    this.flatFileWriter.writeRow(new String[] {
-                            Integer.toString(interval.getChromosomeNumber()),
-                            Long.toString(interval.getStartInBasePairs()),
-                            Long.toString(interval.getEndInBasePairs()),
-                            SetUtilities.bitSetToBinaryString(currEquivClass.getStrainBitSet()),
-                            Double.toString(currPValue)});
+                    // every interval in an equivalence class shares the
+                    // class's p-value so we can skip the whole class
+                    // before formatting any of its rows
+                    double currPValue = testResult.getPValue();
+                    if(passesThreshold(currPValue, this.pValueThreshold))
+                    {
+                        PartitionedIntervalSet currEquivClass =
+                            testResult.getHaplotypeEquivalenceClass();
+                        String strainBitString = SetUtilities.bitSetToBinaryString(
+                                currEquivClass.getStrainBitSet());
+                        for(BasePairInterval interval: currEquivClass.getSnpIntervals())
+                        {
+                            this.writeResultRow(
+                                    interval,
+                                    strainBitString,
+                                    currPValue);
+                        }
+                    }
                 }
             }
             this.flatFileWriter.flush();
@@ -177,6 +230,225 @@ implements Runnable
         }
     }
 
+    /**
+     * Write the {@link #maximumResultCount} intervals with the smallest
+     * p-values in increasing p-value order
+     * @param resultsArray
+     *          the equivalence class results
+     * @throws IOException
+     *          if writing fails
+     */
+    private void writeTopResults(
+            HaplotypeEquivalenceClassTestResult[] resultsArray)
+    throws IOException
+    {
+        RankedInterval[] topIntervals = findTopIntervals(
+                resultsArray,
+                this.pValueThreshold,
+                this.maximumResultCount);
+        for(RankedInterval rankedInterval: topIntervals)
+        {
+            this.writeResultRow(
+                    rankedInterval.getInterval(),
+                    SetUtilities.bitSetToBinaryString(
+                            rankedInterval.getTestResult().getHaplotypeEquivalenceClass().getStrainBitSet()),
+                    rankedInterval.getPValue());
+        }
+    }
+    
+    /**
+     * Find the intervals with the smallest p-values. We hold the best
+     * intervals seen so far in a bounded max-heap so that we never sort
+     * more than the maximum result count. The binary export uses this too
+     * so that both formats pick the same intervals
+     * @param resultsArray
+     *          the equivalence class results
+     * @param pValueThreshold
+     *          the p-value threshold
+     *          (see {@link #passesThreshold(double, double)})
+     * @param maximumResultCount
+     *          the maximum number of intervals to return
+     * @return
+     *          the intervals in increasing p-value order
+     */
+    static RankedInterval[] findTopIntervals(
+            HaplotypeEquivalenceClassTestResult[] resultsArray,
+            double pValueThreshold,
+            int maximumResultCount)
+    {
+        PriorityQueue<RankedInterval> topIntervals =
+            new PriorityQueue<RankedInterval>(
+                    Math.min(maximumResultCount, 1024),
+                    Collections.reverseOrder());
+        long rankIndex = 0;
+        for(HaplotypeEquivalenceClassTestResult testResult: resultsArray)
+        {
+            double currPValue = testResult.getPValue();
+            if(!passesThreshold(currPValue, pValueThreshold))
+            {
+                continue;
+            }
+            else if(topIntervals.size() >= maximumResultCount &&
+                    currPValue >= topIntervals.peek().pValue)
+            {
+                // none of this class's intervals can displace what we have
+                continue;
+            }
+            
+            for(BasePairInterval interval:
+                testResult.getHaplotypeEquivalenceClass().getSnpIntervals())
+            {
+                RankedInterval rankedInterval = new RankedInterval(
+                        testResult,
+                        interval,
+                        rankIndex);
+                rankIndex++;
+                
+                if(topIntervals.size() < maximumResultCount)
+                {
+                    topIntervals.add(rankedInterval);
+                }
+                else if(rankedInterval.compareTo(topIntervals.peek()) < 0)
+                {
+                    topIntervals.poll();
+                    topIntervals.add(rankedInterval);
+                }
+                else
+                {
+                    // intervals in a class share a p-value so the rest of
+                    // them won't make it either
+                    break;
+                }
+            }
+        }
+        
+        RankedInterval[] sortedIntervals =
+            topIntervals.toArray(new RankedInterval[topIntervals.size()]);
+        Arrays.sort(sortedIntervals);
+        return sortedIntervals;
+    }
+    
+    /**
+     * Determine if a p-value passes an export threshold. A threshold of
+     * 1 or more means that there's no filter at all, so p-values that
+     * couldn't be calculated (NaN) are still exported
+     * @param pValue
+     *          the p-value
+     * @param pValueThreshold
+     *          the threshold
+     * @return
+     *          true if results with the p-value should be exported
+     */
+    static boolean passesThreshold(double pValue, double pValueThreshold)
+    {
+        return pValueThreshold >= 1.0 || pValue <= pValueThreshold;
+    }
+    
+    private void writeResultRow(
+            BasePairInterval interval,
+            String strainBitString,
+            double pValue)
+    throws IOException
+    {
+        this.flatFileWriter.writeRow(new String[] {
+                Integer.toString(interval.getChromosomeNumber()),
+                Long.toString(interval.getStartInBasePairs()),
+                Long.toString(interval.getEndInBasePairs()),
+                strainBitString,
+                Double.toString(pValue)});
+    }
+    
+    /**
+     * An interval ranked by its p-value. Ties are broken using the order
+     * that the intervals were seen in so that exports are repeatable.
+     */
+    static final class RankedInterval implements Comparable<RankedInterval>
+    {
+        private final HaplotypeEquivalenceClassTestResult testResult;
+        
+        private final BasePairInterval interval;
+        
+        private final double pValue;
+        
+        private final long rankIndex;
+        
+        /**
+         * Constructor
+         * @param testResult
+         *          the equivalence class result that the interval is in
+         * @param interval
+         *          the interval
+         * @param rankIndex
+         *          the order that this interval was encountered in
+         */
+        public RankedInterval(
+                HaplotypeEquivalenceClassTestResult testResult,
+                BasePairInterval interval,
+                long rankIndex)
+        {
+            this.testResult = testResult;
+            this.interval = interval;
+            this.pValue = testResult.getPValue();
+            this.rankIndex = rankIndex;
+        }
+        
+        /**
+         * Getter for the equivalence class result that the interval is in
+         * @return
+         *          the test result
+         */
+        public HaplotypeEquivalenceClassTestResult getTestResult()
+        {
+            return this.testResult;
+        }
+        
+        /**
+         * Getter for the interval
+         * @return
+         *          the interval
+         */
+        public BasePairInterval getInterval()
+        {
+            return this.interval;
+        }
+        
+        /**
+         * Getter for the interval's p-value
+         * @return
+         *          the p-value
+         */
+        public double getPValue()
+        {
+            return this.pValue;
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        public int compareTo(RankedInterval otherInterval)
+        {
+            int pValueComparison = Double.compare(
+                    this.pValue,
+                    otherInterval.pValue);
+            if(pValueComparison != 0)
+            {
+                return pValueComparison;
+            }
+            else if(this.rankIndex < otherInterval.rankIndex)
+            {
+                return -1;
+            }
+            else if(this.rankIndex > otherInterval.rankIndex)
+            {
+                return 1;
+            }
+            else
+            {
+                return 0;
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
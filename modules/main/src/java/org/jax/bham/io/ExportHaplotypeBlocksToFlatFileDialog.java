@@ -20,9 +20,7 @@ package org.jax.bham.io;
 import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.Writer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -147,8 +145,8 @@ public class ExportHaplotypeBlocksToFlatFileDialog extends JDialog
         {
             if(this.validateData())
             {
-                Writer writer = new BufferedWriter(
-                        new FileWriter(this.getOutputFile()));
+                Writer writer = ExportFileUtil.createExportWriter(
+                        this.getOutputFile());
                 FlatFileFormat format = this.getFileFormat();
                 FlatFileWriter flatFileWriter = new FlatFileWriter(
                         writer,
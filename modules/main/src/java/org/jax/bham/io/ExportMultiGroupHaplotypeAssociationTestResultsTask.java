@@ -18,6 +18,7 @@
 package org.jax.bham.io;
 
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
@@ -25,6 +26,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.jax.bham.BhamApplication;
+import org.jax.bham.test.StoredTestResultsUtil;
 import org.jax.haplotype.analysis.MultiGroupHaplotypeAssociationTest;
 import org.jax.haplotype.analysis.MultiHaplotypeBlockTestResult;
 import org.jax.util.concurrent.AbstractLongRunningTask;
@@ -50,6 +52,8 @@ implements Runnable
     private final boolean closeWriterWhenFinished;
     
     private volatile int workUnitsCompleted = 0;
+    
+    private volatile int totalWorkUnits = 1;
 
     /**
      * Constructor
@@ -134,22 +138,56 @@ implements Runnable
                     "strainGroupingsInHaplotypeBlock",
                     "pValue"});
             int[] chromosomes = this.haplotypeTest.getAvailableChromosomes();
-            for(int chromosome: chromosomes)
+            this.totalWorkUnits = chromosomes.length;
+            this.fireChangeEvent();
+            
+            // chromosomes are tested one at a time but formatted in parallel
+            // and written in order so that the file is identical to a
+            // serial export
+            ParallelChromosomeRowFormatter<MultiHaplotypeBlockTestResult[]> rowFormatter =
+                new ParallelChromosomeRowFormatter<MultiHaplotypeBlockTestResult[]>(
+                        chromosomes,
+                        new ParallelChromosomeRowFormatter.ChromosomeRowFormatter<MultiHaplotypeBlockTestResult[]>()
+                        {
+                            /**
+                             * {@inheritDoc}
+                             */
+                            public MultiHaplotypeBlockTestResult[] getChromosomeResults(
+                                    int chromosome)
+                            {
+                                return StoredTestResultsUtil.getMultiHaplotypeBlockTestResults(
+                                        ExportMultiGroupHaplotypeAssociationTestResultsTask.this.haplotypeTest,
+                                        chromosome);
+                            }
+                            
+                            /**
+                             * {@inheritDoc}
+                             */
+                            public List<String[]> formatChromosomeRows(
+                                    MultiHaplotypeBlockTestResult[] testResults)
+                            {
+                                return ExportMultiGroupHaplotypeAssociationTestResultsTask.formatChromosomeRows(
+                                        testResults);
+                            }
+                        });
+            try
             {
-                MultiHaplotypeBlockTestResult[] testResults =
-                    this.haplotypeTest.getTestResults(chromosome);
-                for(MultiHaplotypeBlockTestResult currResult: testResults)
+                while(rowFormatter.hasMoreChromosomes())
                 {
-                    List<Short> currGroups = SequenceUtilities.toShortList(
-                            currResult.getStrainGroups());
-                    this.flatFileWriter.writeRow(new String[] {
-                            Integer.toString(currResult.getChromosomeNumber()),
-                            Long.toString(currResult.getStartInBasePairs()),
-                            Long.toString(currResult.getEndInBasePairs()),
-                            SequenceUtilities.toString(currGroups, ","),
-                            Double.toString(currResult.getPValue())});
+                    for(String[] row: rowFormatter.takeNextChromosomeRows())
+                    {
+                        this.flatFileWriter.writeRow(row);
+                    }
+                    
+                    this.workUnitsCompleted++;
+                    this.fireChangeEvent();
                 }
             }
+            finally
+            {
+                // stops any formatting that is still running if writing failed
+                rowFormatter.cancel();
+            }
             this.flatFileWriter.flush();
             
             if(this.closeWriterWhenFinished)
@@ -171,10 +209,36 @@ implements Runnable
         finally
         {
             // no matter what we need to finish up
-            this.workUnitsCompleted = 1;
+            this.workUnitsCompleted = this.totalWorkUnits;
             this.fireChangeEvent();
         }
     }
+    
+    /**
+     * Format a chromosome's test results as rows
+     * @param testResults
+     *          the results for a single chromosome
+     * @return
+     *          the formatted rows
+     */
+    private static List<String[]> formatChromosomeRows(
+            MultiHaplotypeBlockTestResult[] testResults)
+    {
+        List<String[]> rows = new ArrayList<String[]>(testResults.length);
+        for(MultiHaplotypeBlockTestResult currResult: testResults)
+        {
+            List<Short> currGroups = SequenceUtilities.toShortList(
+                    currResult.getStrainGroups());
+            rows.add(new String[] {
+                    Integer.toString(currResult.getChromosomeNumber()),
+                    Long.toString(currResult.getStartInBasePairs()),
+                    Long.toString(currResult.getEndInBasePairs()),
+                    SequenceUtilities.toString(currGroups, ","),
+                    Double.toString(currResult.getPValue())});
+        }
+        
+        return rows;
+    }
 
     /**
      * {@inheritDoc}
@@ -189,7 +253,7 @@ implements Runnable
      */
     public int getTotalWorkUnits()
     {
-        return 1;
+        return this.totalWorkUnits;
     }
 
     /**
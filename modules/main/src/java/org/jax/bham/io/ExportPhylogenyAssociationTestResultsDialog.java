@@ -20,9 +20,7 @@ package org.jax.bham.io;
 import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.Writer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -55,6 +53,9 @@ public class ExportPhylogenyAssociationTestResultsDialog extends javax.swing.JDi
     private static final String MULTI_STRAIN_RESOLVE =
         "Resolve Strains With 0-Length Branches";
     
+    private static final String BINARY_RESULTS_FORMAT =
+        "BHAM Binary Results (Indexed)";
+    
     private static final Logger LOG = Logger.getLogger(
             ExportPhylogenyAssociationTestResultsDialog.class.getName());
     
@@ -133,6 +134,7 @@ public class ExportPhylogenyAssociationTestResultsDialog extends javax.swing.JDi
         
         this.fileFormatComboBox.addItem(CommonFlatFileFormat.CSV_UNIX);
         this.fileFormatComboBox.addItem(CommonFlatFileFormat.TAB_DELIMITED_UNIX);
+        this.fileFormatComboBox.addItem(BINARY_RESULTS_FORMAT);
         
         this.forMultiStrainNodesComboBox.addItem(MULTI_STRAIN_SEPARATE);
         this.forMultiStrainNodesComboBox.addItem(MULTI_STRAIN_RESOLVE);
@@ -149,29 +151,49 @@ public class ExportPhylogenyAssociationTestResultsDialog extends javax.swing.JDi
         return (FlatFileFormat)this.fileFormatComboBox.getSelectedItem();
     }
     
+    private boolean isBinaryFormatSelected()
+    {
+        return BINARY_RESULTS_FORMAT.equals(
+                this.fileFormatComboBox.getSelectedItem());
+    }
+    
     private void ok()
     {
         try
         {
             if(this.validateData())
             {
-                Writer writer = new BufferedWriter(
-                        new FileWriter(this.getOutputFile()));
-                FlatFileFormat format = this.getFileFormat();
-                FlatFileWriter flatFileWriter = new FlatFileWriter(
-                        writer,
-                        format);
                 PhylogenyAssociationTest test = this.getSelectedTest();
-                ExportPhylogenyAssociationTestTask exportTask =
-                    new ExportPhylogenyAssociationTestTask(
-                            test,
-                            this.getFullyResolveStrains(),
-                            flatFileWriter,
-                            true);
                 MultiTaskProgressPanel progressTracker =
                     BhamApplication.getInstance().getBhamFrame().getMultiTaskProgress();
-                progressTracker.addTaskToTrack(exportTask, true);
-                new Thread(exportTask).start();
+                if(this.isBinaryFormatSelected())
+                {
+                    ExportBinaryTestResultsTask exportTask =
+                        new ExportBinaryTestResultsTask(
+                                test,
+                                this.getFullyResolveStrains(),
+                                this.getOutputFile());
+                    progressTracker.addTaskToTrack(exportTask, true);
+                    new Thread(exportTask).start();
+                }
+                else
+                {
+                    Writer writer = ExportFileUtil.createExportWriter(
+                            this.getOutputFile());
+                    FlatFileFormat format = this.getFileFormat();
+                    FlatFileWriter flatFileWriter = new FlatFileWriter(
+                            writer,
+                            format);
+                    ExportPhylogenyAssociationTestTask exportTask =
+                        new ExportPhylogenyAssociationTestTask(
+                                test,
+                                this.getFullyResolveStrains(),
+                                this.distinctTreesCheckBox.isSelected(),
+                                flatFileWriter,
+                                true);
+                    progressTracker.addTaskToTrack(exportTask, true);
+                    new Thread(exportTask).start();
+                }
                 
                 this.dispose();
             }
@@ -303,6 +325,7 @@ public class ExportPhylogenyAssociationTestResultsDialog extends javax.swing.JDi
         helpButton = new javax.swing.JButton();
         forMultiStrainNodesLabel = new javax.swing.JLabel();
         forMultiStrainNodesComboBox = new javax.swing.JComboBox();
+        distinctTreesCheckBox = new javax.swing.JCheckBox();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
 
@@ -327,6 +350,8 @@ public class ExportPhylogenyAssociationTestResultsDialog extends javax.swing.JDi
 
         forMultiStrainNodesLabel.setText("For Multi-Strain Nodes:");
 
+        distinctTreesCheckBox.setText("Write Each Distinct Tree Once (Tree ID Dictionary)");
+
         org.jdesktop.layout.GroupLayout layout = new org.jdesktop.layout.GroupLayout(getContentPane());
         getContentPane().setLayout(layout);
         layout.setHorizontalGroup(
@@ -346,7 +371,8 @@ public class ExportPhylogenyAssociationTestResultsDialog extends javax.swing.JDi
                         .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
                         .add(outputFileButton))
                     .add(testDataComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
-                    .add(forMultiStrainNodesComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                    .add(forMultiStrainNodesComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
+                    .add(distinctTreesCheckBox))
                 .add(17, 17, 17))
             .add(actionPanel, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 445, Short.MAX_VALUE)
         );
@@ -370,6 +396,8 @@ public class ExportPhylogenyAssociationTestResultsDialog extends javax.swing.JDi
                 .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
                     .add(forMultiStrainNodesLabel)
                     .add(forMultiStrainNodesComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(distinctTreesCheckBox)
                 .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED, 8, Short.MAX_VALUE)
                 .add(actionPanel, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
         );
@@ -380,6 +408,7 @@ public class ExportPhylogenyAssociationTestResultsDialog extends javax.swing.JDi
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JPanel actionPanel;
     private javax.swing.JButton cancelButton;
+    private javax.swing.JCheckBox distinctTreesCheckBox;
     private javax.swing.JComboBox fileFormatComboBox;
     private javax.swing.JComboBox forMultiStrainNodesComboBox;
     private javax.swing.JLabel forMultiStrainNodesLabel;
@@ -17,11 +17,13 @@
 
 package org.jax.bham.io;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.jax.bham.BhamApplication;
+import org.jax.bham.test.StoredTestResultsUtil;
 import org.jax.geneticutil.data.BasePairInterval;
 import org.jax.haplotype.analysis.PhylogenyAssociationTest;
 import org.jax.haplotype.phylogeny.data.PhylogenyInterval;
@@ -47,11 +49,42 @@ implements Runnable
     private final FlatFileWriter flatFileWriter;
     
     private volatile int workUnitsCompleted = 0;
+    
+    private volatile int totalWorkUnits = 1;
 
     private final boolean fullyResolveTrees;
     
     private final boolean closeWriterWhenFinished;
+    
+    private final DistinctNewickTreeCache treeCache;
 
+    /**
+     * Constructor which writes the newick tree on every row
+     * @param phylogenyTest
+     *          the phylogeny data to export
+     * @param fullyResolveTrees
+     *          if true than strains on the same node will be given a
+     *          pseudo branch with length 0, otherwise they will just be
+     *          separated with a '|'
+     * @param flatFileWriter
+     *          the flat file that we're writing to
+     * @param closeWriterWhenFinished
+     *          should the given writer be closed when this task is done
+     *          writing to it?
+     */
+    public ExportPhylogenyAssociationTestTask(
+            PhylogenyAssociationTest phylogenyTest,
+            boolean fullyResolveTrees,
+            FlatFileWriter flatFileWriter,
+            boolean closeWriterWhenFinished)
+    {
+        this(phylogenyTest,
+             fullyResolveTrees,
+             false,
+             flatFileWriter,
+             closeWriterWhenFinished);
+    }
+    
     /**
      * Constructor
      * @param phylogenyTest
@@ -60,6 +93,10 @@ implements Runnable
      *          if true than strains on the same node will be given a
      *          pseudo branch with length 0, otherwise they will just be
      *          separated with a '|'
+     * @param writeDistinctTreesOnce
+     *          if true each distinct tree is written once to a dictionary
+     *          section at the end of the file and the interval rows refer
+     *          to trees by ID
      * @param flatFileWriter
      *          the flat file that we're writing to
      * @param closeWriterWhenFinished
@@ -69,11 +106,15 @@ implements Runnable
     public ExportPhylogenyAssociationTestTask(
             PhylogenyAssociationTest phylogenyTest,
             boolean fullyResolveTrees,
+            boolean writeDistinctTreesOnce,
             FlatFileWriter flatFileWriter,
             boolean closeWriterWhenFinished)
     {
         this.phylogenyTest = phylogenyTest;
         this.fullyResolveTrees = fullyResolveTrees;
+        this.treeCache = writeDistinctTreesOnce ?
+                new DistinctNewickTreeCache(fullyResolveTrees) :
+                null;
         this.flatFileWriter = flatFileWriter;
         this.closeWriterWhenFinished = closeWriterWhenFinished;
     }
@@ -89,33 +130,73 @@ implements Runnable
                     "chromosomeNumber",
                     "phylogenyIntervalStartPositionInBasePairs",
                     "phylogenyIntervalEndPositionInBasePairs",
-                    "newickFormattedPhylogenyTree",
+                    this.treeCache == null ?
+                            "newickFormattedPhylogenyTree" :
+                            "phylogenyTreeId",
                     "pValue"});
             int[] chromosomes =
                 this.phylogenyTest.getPhylogenyDataSource().getAvailableChromosomes();
-            for(int chromosome: chromosomes)
+            this.totalWorkUnits = chromosomes.length;
+            this.fireChangeEvent();
+            
+            // chromosomes are tested one at a time but formatted in parallel
+            // and written in order so that the file is identical to a
+            // serial export
+            ParallelChromosomeRowFormatter<List<PhylogenyTestResult>> rowFormatter =
+                new ParallelChromosomeRowFormatter<List<PhylogenyTestResult>>(
+                        chromosomes,
+                        new ParallelChromosomeRowFormatter.ChromosomeRowFormatter<List<PhylogenyTestResult>>()
+                        {
+                            /**
+                             * {@inheritDoc}
+                             */
+                            public List<PhylogenyTestResult> getChromosomeResults(
+                                    int chromosome)
+                            {
+                                return StoredTestResultsUtil.getPhylogenyTestResults(
+                                        ExportPhylogenyAssociationTestTask.this.phylogenyTest,
+                                        chromosome);
+                            }
+                            
+                            /**
+                             * {@inheritDoc}
+                             */
+                            public List<String[]> formatChromosomeRows(
+                                    List<PhylogenyTestResult> testResults)
+                            {
+                                return ExportPhylogenyAssociationTestTask.this.formatChromosomeRows(
+                                        testResults);
+                            }
+                        });
+            try
             {
-                List<PhylogenyTestResult> currTestResults =
-                    this.phylogenyTest.getTestResults(chromosome);
-                for(PhylogenyTestResult currResult: currTestResults)
+                while(rowFormatter.hasMoreChromosomes())
                 {
-                    PhylogenyInterval currPhyloInterval =
-                        currResult.getPhylogenyInterval();
-                    BasePairInterval interval = currPhyloInterval.getInterval();
-                    PhylogenyTreeNode phyloTree = currPhyloInterval.getPhylogeny();
-                    if(this.fullyResolveTrees)
+                    for(String[] row: rowFormatter.takeNextChromosomeRows())
                     {
-                        phyloTree = phyloTree.resolveToSingleStrainLeafNodes(0.0);
+                        if(this.treeCache != null)
+                        {
+                            // IDs are handed out here rather than in the
+                            // formatting threads so they follow file order
+                            row[3] = Integer.toString(
+                                    this.treeCache.getTreeId(row[3]));
+                        }
+                        this.flatFileWriter.writeRow(row);
                     }
                     
-                    this.flatFileWriter.writeRow(new String[] {
-                            Integer.toString(interval.getChromosomeNumber()),
-                            Long.toString(interval.getStartInBasePairs()),
-                            Long.toString(interval.getEndInBasePairs()),
-                            phyloTree.toNewickFormat(),
-                            Double.toString(currResult.getPValue())});
+                    this.workUnitsCompleted++;
+                    this.fireChangeEvent();
                 }
             }
+            finally
+            {
+                // stops any formatting that is still running if writing failed
+                rowFormatter.cancel();
+            }
+            if(this.treeCache != null)
+            {
+                this.treeCache.writeTreeDictionary(this.flatFileWriter);
+            }
             this.flatFileWriter.flush();
             
             if(this.closeWriterWhenFinished)
@@ -137,10 +218,54 @@ implements Runnable
         finally
         {
             // no matter what we need to finish up
-            this.workUnitsCompleted = 1;
+            this.workUnitsCompleted = this.totalWorkUnits;
             this.fireChangeEvent();
         }
     }
+    
+    /**
+     * Format a chromosome's test results as rows
+     * @param currTestResults
+     *          the results for a single chromosome
+     * @return
+     *          the formatted rows
+     */
+    private List<String[]> formatChromosomeRows(
+            List<PhylogenyTestResult> currTestResults)
+    {
+        List<String[]> rows = new ArrayList<String[]>(currTestResults.size());
+        for(PhylogenyTestResult currResult: currTestResults)
+        {
+            PhylogenyInterval currPhyloInterval =
+                currResult.getPhylogenyInterval();
+            BasePairInterval interval = currPhyloInterval.getInterval();
+            PhylogenyTreeNode phyloTree = currPhyloInterval.getPhylogeny();
+            String newickTree;
+            if(this.treeCache != null)
+            {
+                // only the first interval with this topology pays for
+                // resolving and formatting the tree
+                newickTree = this.treeCache.getNewickTree(phyloTree);
+            }
+            else
+            {
+                if(this.fullyResolveTrees)
+                {
+                    phyloTree = phyloTree.resolveToSingleStrainLeafNodes(0.0);
+                }
+                newickTree = phyloTree.toNewickFormat();
+            }
+            
+            rows.add(new String[] {
+                    Integer.toString(interval.getChromosomeNumber()),
+                    Long.toString(interval.getStartInBasePairs()),
+                    Long.toString(interval.getEndInBasePairs()),
+                    newickTree,
+                    Double.toString(currResult.getPValue())});
+        }
+        
+        return rows;
+    }
 
     /**
      * {@inheritDoc}
@@ -155,7 +280,7 @@ implements Runnable
      */
     public int getTotalWorkUnits()
     {
-        return 1;
+        return this.totalWorkUnits;
     }
 
     /**
@@ -20,9 +20,7 @@ package org.jax.bham.io;
 import java.awt.Frame;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.Writer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -160,8 +158,8 @@ public class ExportPhylogenyToNewickDialog extends JDialog
         {
             if(this.validateData())
             {
-                Writer writer = new BufferedWriter(
-                        new FileWriter(this.getOutputFile()));
+                Writer writer = ExportFileUtil.createExportWriter(
+                        this.getOutputFile());
                 FlatFileFormat format = this.getFileFormat();
                 FlatFileWriter flatFileWriter = new FlatFileWriter(
                         writer,
@@ -171,6 +169,7 @@ public class ExportPhylogenyToNewickDialog extends JDialog
                     new ExportPhylogenyToNewickTask(
                             phyloData,
                             this.getFullyResolveStrains(),
+                            this.distinctTreesCheckBox.isSelected(),
                             flatFileWriter,
                             true);
                 MultiTaskProgressPanel progressTracker =
@@ -297,6 +296,7 @@ public class ExportPhylogenyToNewickDialog extends JDialog
         fileFormatComboBox = new javax.swing.JComboBox();
         forMultiStrainNodesLabel = new javax.swing.JLabel();
         forMultiStrainNodesComboBox = new javax.swing.JComboBox();
+        distinctTreesCheckBox = new javax.swing.JCheckBox();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
 
@@ -321,6 +321,8 @@ public class ExportPhylogenyToNewickDialog extends JDialog
 
         forMultiStrainNodesLabel.setText("For Multi-Strain Nodes:");
 
+        distinctTreesCheckBox.setText("Write Each Distinct Tree Once (Tree ID Dictionary)");
+
         org.jdesktop.layout.GroupLayout layout = new org.jdesktop.layout.GroupLayout(getContentPane());
         getContentPane().setLayout(layout);
         layout.setHorizontalGroup(
@@ -337,6 +339,7 @@ public class ExportPhylogenyToNewickDialog extends JDialog
                     .add(layout.createSequentialGroup()
                         .add(forMultiStrainNodesComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
                         .addContainerGap())
+                    .add(distinctTreesCheckBox)
                     .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
                         .add(layout.createSequentialGroup()
                             .add(fileFormatComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
@@ -371,6 +374,8 @@ public class ExportPhylogenyToNewickDialog extends JDialog
                 .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
                     .add(forMultiStrainNodesLabel)
                     .add(forMultiStrainNodesComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(distinctTreesCheckBox)
                 .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED, 8, Short.MAX_VALUE)
                 .add(actionPanel, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
         );
@@ -381,6 +386,7 @@ public class ExportPhylogenyToNewickDialog extends JDialog
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JPanel actionPanel;
     private javax.swing.JButton cancelButton;
+    private javax.swing.JCheckBox distinctTreesCheckBox;
     private javax.swing.JComboBox fileFormatComboBox;
     private javax.swing.JComboBox forMultiStrainNodesComboBox;
     private javax.swing.JLabel forMultiStrainNodesLabel;
@@ -17,6 +17,7 @@
 
 package org.jax.bham.io;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -47,11 +48,42 @@ implements Runnable
     private final FlatFileWriter flatFileWriter;
     
     private volatile int workUnitsCompleted = 0;
+    
+    private volatile int totalWorkUnits = 1;
 
     private final boolean fullyResolveTrees;
 
     private final boolean closeWriterWhenFinished;
     
+    private final DistinctNewickTreeCache treeCache;
+    
+    /**
+     * Constructor which writes the newick tree on every row
+     * @param phylogenyData
+     *          the phylogeny data to export
+     * @param fullyResolveTrees
+     *          if true than strains on the same node will be given a
+     *          pseudo branch with length 0, otherwise they will just be
+     *          separated with a '|'
+     * @param flatFileWriter
+     *          the flat file that we're writing to
+     * @param closeWriterWhenFinished
+     *          should the given writer be closed when this task is done
+     *          writing to it?
+     */
+    public ExportPhylogenyToNewickTask(
+            PhylogenyDataSource phylogenyData,
+            boolean fullyResolveTrees,
+            FlatFileWriter flatFileWriter,
+            boolean closeWriterWhenFinished)
+    {
+        this(phylogenyData,
+             fullyResolveTrees,
+             false,
+             flatFileWriter,
+             closeWriterWhenFinished);
+    }
+    
     /**
      * Constructor
      * @param phylogenyData
@@ -60,6 +92,10 @@ implements Runnable
      *          if true than strains on the same node will be given a
      *          pseudo branch with length 0, otherwise they will just be
      *          separated with a '|'
+     * @param writeDistinctTreesOnce
+     *          if true each distinct tree is written once to a dictionary
+     *          section at the end of the file and the interval rows refer
+     *          to trees by ID
      * @param flatFileWriter
      *          the flat file that we're writing to
      * @param closeWriterWhenFinished
@@ -69,11 +105,15 @@ implements Runnable
     public ExportPhylogenyToNewickTask(
             PhylogenyDataSource phylogenyData,
             boolean fullyResolveTrees,
+            boolean writeDistinctTreesOnce,
             FlatFileWriter flatFileWriter,
             boolean closeWriterWhenFinished)
     {
         this.phylogenyData = phylogenyData;
         this.fullyResolveTrees = fullyResolveTrees;
+        this.treeCache = writeDistinctTreesOnce ?
+                new DistinctNewickTreeCache(fullyResolveTrees) :
+                null;
         this.flatFileWriter = flatFileWriter;
         this.closeWriterWhenFinished = closeWriterWhenFinished;
     }
@@ -85,32 +125,82 @@ implements Runnable
     {
         try
         {
-            Map<Integer, List<PhylogenyInterval>> phylogenyIntervals =
+            final Map<Integer, List<PhylogenyInterval>> phylogenyIntervals =
                 this.phylogenyData.getPhylogenyData(null);
             
             this.flatFileWriter.writeRow(new String[] {
                     "chromosomeNumber",
                     "phylogenyIntervalStartPositionInBasePairs",
                     "phylogenyIntervalEndPositionInBasePairs",
-                    "newickFormattedPhylogenyTree"});
-            for(List<PhylogenyInterval> currPhyloIntervals: phylogenyIntervals.values())
+                    this.treeCache == null ?
+                            "newickFormattedPhylogenyTree" :
+                            "phylogenyTreeId"});
+            
+            // keep the map's iteration order so that the file is identical
+            // to a serial export
+            int[] chromosomes = new int[phylogenyIntervals.size()];
+            int chromosomeIndex = 0;
+            for(Integer chromosome: phylogenyIntervals.keySet())
+            {
+                chromosomes[chromosomeIndex] = chromosome;
+                chromosomeIndex++;
+            }
+            this.totalWorkUnits = chromosomes.length;
+            this.fireChangeEvent();
+            
+            ParallelChromosomeRowFormatter<List<PhylogenyInterval>> rowFormatter =
+                new ParallelChromosomeRowFormatter<List<PhylogenyInterval>>(
+                        chromosomes,
+                        new ParallelChromosomeRowFormatter.ChromosomeRowFormatter<List<PhylogenyInterval>>()
+                        {
+                            /**
+                             * {@inheritDoc}
+                             */
+                            public List<PhylogenyInterval> getChromosomeResults(
+                                    int chromosome)
+                            {
+                                return phylogenyIntervals.get(chromosome);
+                            }
+                            
+                            /**
+                             * {@inheritDoc}
+                             */
+                            public List<String[]> formatChromosomeRows(
+                                    List<PhylogenyInterval> currPhyloIntervals)
+                            {
+                                return ExportPhylogenyToNewickTask.this.formatChromosomeRows(
+                                        currPhyloIntervals);
+                            }
+                        });
+            try
             {
-                for(PhylogenyInterval currPhyloInterval: currPhyloIntervals)
+                while(rowFormatter.hasMoreChromosomes())
                 {
-                    BasePairInterval interval = currPhyloInterval.getInterval();
-                    PhylogenyTreeNode phyloTree = currPhyloInterval.getPhylogeny();
-                    if(this.fullyResolveTrees)
+                    for(String[] row: rowFormatter.takeNextChromosomeRows())
                     {
-                        phyloTree = phyloTree.resolveToSingleStrainLeafNodes(0.0);
+                        if(this.treeCache != null)
+                        {
+                            // IDs are handed out here rather than in the
+                            // formatting threads so they follow file order
+                            row[3] = Integer.toString(
+                                    this.treeCache.getTreeId(row[3]));
+                        }
+                        this.flatFileWriter.writeRow(row);
                     }
                     
-                    this.flatFileWriter.writeRow(new String[] {
-                            Integer.toString(interval.getChromosomeNumber()),
-                            Long.toString(interval.getStartInBasePairs()),
-                            Long.toString(interval.getEndInBasePairs()),
-                            phyloTree.toNewickFormat()});
+                    this.workUnitsCompleted++;
+                    this.fireChangeEvent();
                 }
             }
+            finally
+            {
+                // stops any formatting that is still running if writing failed
+                rowFormatter.cancel();
+            }
+            if(this.treeCache != null)
+            {
+                this.treeCache.writeTreeDictionary(this.flatFileWriter);
+            }
             this.flatFileWriter.flush();
             
             if(this.closeWriterWhenFinished)
@@ -132,10 +222,51 @@ implements Runnable
         finally
         {
             // no matter what we need to finish up
-            this.workUnitsCompleted = 1;
+            this.workUnitsCompleted = this.totalWorkUnits;
             this.fireChangeEvent();
         }
     }
+    
+    /**
+     * Format the given chromosome's phylogeny intervals as rows
+     * @param currPhyloIntervals
+     *          the intervals for a single chromosome
+     * @return
+     *          the formatted rows
+     */
+    private List<String[]> formatChromosomeRows(
+            List<PhylogenyInterval> currPhyloIntervals)
+    {
+        List<String[]> rows = new ArrayList<String[]>(currPhyloIntervals.size());
+        for(PhylogenyInterval currPhyloInterval: currPhyloIntervals)
+        {
+            BasePairInterval interval = currPhyloInterval.getInterval();
+            PhylogenyTreeNode phyloTree = currPhyloInterval.getPhylogeny();
+            String newickTree;
+            if(this.treeCache != null)
+            {
+                // only the first interval with this topology pays for
+                // resolving and formatting the tree
+                newickTree = this.treeCache.getNewickTree(phyloTree);
+            }
+            else
+            {
+                if(this.fullyResolveTrees)
+                {
+                    phyloTree = phyloTree.resolveToSingleStrainLeafNodes(0.0);
+                }
+                newickTree = phyloTree.toNewickFormat();
+            }
+            
+            rows.add(new String[] {
+                    Integer.toString(interval.getChromosomeNumber()),
+                    Long.toString(interval.getStartInBasePairs()),
+                    Long.toString(interval.getEndInBasePairs()),
+                    newickTree});
+        }
+        
+        return rows;
+    }
 
     /**
      * {@inheritDoc}
@@ -150,7 +281,7 @@ implements Runnable
      */
     public int getTotalWorkUnits()
     {
-        return 1;
+        return this.totalWorkUnits;
     }
 
     /**
@@ -0,0 +1,473 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.jax.geneticutil.data.RealValuedBasePairInterval;
+
+/**
+ * Writes real valued intervals (typically the -log10(p-value) values that
+ * the graph panels plot) as a bedGraph track along with a companion zoom
+ * file. The zoom file holds precomputed max and mean summaries at a series
+ * of bin sizes (each level 4x coarser than the last, in the spirit of
+ * bigWig zoom levels) so that a viewer can fetch any region at screen
+ * resolution by reading a fixed number of bins. See
+ * {@link GenomeTrackZoomReader} for reading the zoom file.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class GenomeTrackWriter
+{
+    /**
+     * the extension used for bedGraph files
+     */
+    public static final String BED_GRAPH_EXTENSION = "bedGraph";
+    
+    /**
+     * the extension that is appended to the bedGraph file name for the
+     * zoom summary file
+     */
+    public static final String ZOOM_EXTENSION = "bhamzoom";
+    
+    /**
+     * magic number at the start of every zoom file ("BHMZ")
+     */
+    public static final int ZOOM_MAGIC_NUMBER = 0x42484D5A;
+    
+    /**
+     * the current zoom file format version
+     */
+    public static final int ZOOM_FORMAT_VERSION = 1;
+    
+    /**
+     * the bin size used by the finest zoom level
+     */
+    public static final int BASE_BIN_SIZE_IN_BASE_PAIRS = 1000;
+    
+    /**
+     * how much coarser each zoom level is than the one before
+     */
+    public static final int ZOOM_FACTOR = 4;
+    
+    private static final Comparator<RealValuedBasePairInterval> START_COMPARATOR =
+        new Comparator<RealValuedBasePairInterval>()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public int compare(
+                    RealValuedBasePairInterval interval1,
+                    RealValuedBasePairInterval interval2)
+            {
+                long start1 = interval1.getStartInBasePairs();
+                long start2 = interval2.getStartInBasePairs();
+                return start1 < start2 ? -1 : (start1 == start2 ? 0 : 1);
+            }
+        };
+    
+    private final String trackName;
+    
+    /**
+     * Constructor
+     * @param trackName
+     *          the name to use in the bedGraph track line
+     */
+    public GenomeTrackWriter(String trackName)
+    {
+        this.trackName = trackName;
+    }
+    
+    /**
+     * Get the zoom file that goes with the given bedGraph file
+     * @param bedGraphFile
+     *          the bedGraph file
+     * @return
+     *          the zoom file
+     */
+    public static File getZoomFile(File bedGraphFile)
+    {
+        return new File(
+                bedGraphFile.getParentFile(),
+                bedGraphFile.getName() + "." + ZOOM_EXTENSION);
+    }
+    
+    /**
+     * Get the UCSC style chromosome name for a chromosome number. Mouse
+     * numbering is assumed, so 20 and 21 are X and Y
+     * @param chromosome
+     *          the chromosome number
+     * @return
+     *          the name
+     */
+    public static String toChromosomeName(int chromosome)
+    {
+        switch(chromosome)
+        {
+            case 20: return "chrX";
+            case 21: return "chrY";
+            default: return "chr" + chromosome;
+        }
+    }
+    
+    /**
+     * Write the bedGraph lines for a single chromosome. bedGraph uses zero
+     * based half open coordinates so the start is shifted down by one.
+     * Values that are NaN or infinite are left out.
+     * @param chromosome
+     *          the chromosome number
+     * @param values
+     *          the values for the chromosome which will be sorted by start
+     *          position
+     * @param bedGraphWriter
+     *          the writer for the bedGraph file
+     * @throws IOException
+     *          if the write fails
+     */
+    public void writeBedGraphChromosome(
+            int chromosome,
+            RealValuedBasePairInterval[] values,
+            Writer bedGraphWriter)
+    throws IOException
+    {
+        Arrays.sort(values, START_COMPARATOR);
+        String chromosomeName = toChromosomeName(chromosome);
+        StringBuilder line = new StringBuilder();
+        for(RealValuedBasePairInterval value: values)
+        {
+            if(!isFinite(value.getRealValue()))
+            {
+                // bedGraph readers can't parse NaN or Infinity
+                continue;
+            }
+            
+            line.setLength(0);
+            line.append(chromosomeName);
+            line.append('\t');
+            line.append(value.getStartInBasePairs() - 1);
+            line.append('\t');
+            line.append(value.getEndInBasePairs());
+            line.append('\t');
+            line.append((float)value.getRealValue());
+            line.append('\n');
+            bedGraphWriter.write(line.toString());
+        }
+    }
+    
+    /**
+     * Write the bedGraph track line. This should be the first thing in
+     * the bedGraph file.
+     * @param bedGraphWriter
+     *          the writer for the bedGraph file
+     * @throws IOException
+     *          if the write fails
+     */
+    public void writeBedGraphHeader(Writer bedGraphWriter) throws IOException
+    {
+        bedGraphWriter.write(
+                "track type=bedGraph name=\"" +
+                this.trackName.replace('"', '\'') +
+                "\" description=\"-log10(p-value)\"\n");
+    }
+    
+    /**
+     * Summarize the given chromosome values into zoom levels. Values that
+     * are NaN or infinite are left out
+     * @param values
+     *          the values
+     * @return
+     *          the summaries
+     */
+    public ChromosomeZoomLevels summarizeChromosome(
+            RealValuedBasePairInterval[] values)
+    {
+        long chromosomeEnd = 0L;
+        for(RealValuedBasePairInterval value: values)
+        {
+            chromosomeEnd = Math.max(chromosomeEnd, value.getEndInBasePairs());
+        }
+        
+        int baseBinCount = (int)(chromosomeEnd / BASE_BIN_SIZE_IN_BASE_PAIRS) + 1;
+        double[] maxima = new double[baseBinCount];
+        double[] sums = new double[baseBinCount];
+        long[] coverages = new long[baseBinCount];
+        Arrays.fill(maxima, Double.NaN);
+        
+        // the finest level is built directly from the intervals. the
+        // mean is weighted by how many bases of the bin each interval
+        // covers. Values that aren't finite are skipped since one of them
+        // would poison the sum of every bin that it touches
+        for(RealValuedBasePairInterval value: values)
+        {
+            double realValue = value.getRealValue();
+            if(!isFinite(realValue))
+            {
+                continue;
+            }
+            
+            long start = value.getStartInBasePairs();
+            long end = value.getEndInBasePairs();
+            int firstBin = (int)(start / BASE_BIN_SIZE_IN_BASE_PAIRS);
+            int lastBin = (int)(end / BASE_BIN_SIZE_IN_BASE_PAIRS);
+            for(int bin = firstBin; bin <= lastBin; bin++)
+            {
+                long binStart = (long)bin * BASE_BIN_SIZE_IN_BASE_PAIRS;
+                long binEnd = binStart + BASE_BIN_SIZE_IN_BASE_PAIRS - 1;
+                long coveredBases =
+                    1 + Math.min(end, binEnd) - Math.max(start, binStart);
+                
+                if(!(maxima[bin] >= realValue))
+                {
+                    maxima[bin] = realValue;
+                }
+                sums[bin] += realValue * coveredBases;
+                coverages[bin] += coveredBases;
+            }
+        }
+        
+        ChromosomeZoomLevels zoomLevels = new ChromosomeZoomLevels();
+        int binSize = BASE_BIN_SIZE_IN_BASE_PAIRS;
+        while(true)
+        {
+            zoomLevels.addLevel(binSize, maxima, sums, coverages);
+            if(maxima.length <= 1)
+            {
+                break;
+            }
+            
+            // every coarser level is built from the level before it
+            int coarseBinCount = (maxima.length + ZOOM_FACTOR - 1) / ZOOM_FACTOR;
+            double[] coarseMaxima = new double[coarseBinCount];
+            double[] coarseSums = new double[coarseBinCount];
+            long[] coarseCoverages = new long[coarseBinCount];
+            Arrays.fill(coarseMaxima, Double.NaN);
+            for(int bin = 0; bin < maxima.length; bin++)
+            {
+                int coarseBin = bin / ZOOM_FACTOR;
+                if(!(coarseMaxima[coarseBin] >= maxima[bin]) && !Double.isNaN(maxima[bin]))
+                {
+                    coarseMaxima[coarseBin] = maxima[bin];
+                }
+                coarseSums[coarseBin] += sums[bin];
+                coarseCoverages[coarseBin] += coverages[bin];
+            }
+            
+            maxima = coarseMaxima;
+            sums = coarseSums;
+            coverages = coarseCoverages;
+            binSize *= ZOOM_FACTOR;
+        }
+        
+        return zoomLevels;
+    }
+    
+    /**
+     * Determine if a value is neither NaN nor infinite
+     * @param value
+     *          the value
+     * @return
+     *          true if the value is finite
+     */
+    private static boolean isFinite(double value)
+    {
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+    
+    /**
+     * Write the zoom file for the given chromosome summaries.
+     * <p>
+     * Layout: int magic, int version, int chromosome count, then for each
+     * chromosome an int chromosome number and a long offset to its level
+     * table. A level table is an int level count followed by, for each
+     * level, an int bin size, an int bin count and a long offset to the
+     * bin data. Bin data is the float maxima followed by the float means
+     * with NaN marking bins that have no values.
+     * </p>
+     * @param chromosomes
+     *          the chromosome numbers
+     * @param zoomLevels
+     *          the summaries for each chromosome in the same order
+     * @param zoomFile
+     *          the file to write
+     * @throws IOException
+     *          if the write fails
+     */
+    public void writeZoomFile(
+            int[] chromosomes,
+            ChromosomeZoomLevels[] zoomLevels,
+            File zoomFile)
+    throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(zoomFile)));
+        try
+        {
+            out.writeInt(ZOOM_MAGIC_NUMBER);
+            out.writeInt(ZOOM_FORMAT_VERSION);
+            out.writeInt(chromosomes.length);
+            
+            // the offsets are fixed up once we know where everything landed
+            long offset = 12L + 12L * chromosomes.length;
+            long[] levelTableOffsets = new long[chromosomes.length];
+            for(int i = 0; i < chromosomes.length; i++)
+            {
+                levelTableOffsets[i] = offset;
+                int levelCount = zoomLevels[i].getLevelCount();
+                offset += 4L + 16L * levelCount;
+                for(int level = 0; level < levelCount; level++)
+                {
+                    offset += 8L * zoomLevels[i].getBinCount(level);
+                }
+            }
+            
+            for(int i = 0; i < chromosomes.length; i++)
+            {
+                out.writeInt(chromosomes[i]);
+                out.writeLong(levelTableOffsets[i]);
+            }
+            
+            for(int i = 0; i < chromosomes.length; i++)
+            {
+                ChromosomeZoomLevels currLevels = zoomLevels[i];
+                int levelCount = currLevels.getLevelCount();
+                out.writeInt(levelCount);
+                long binOffset = levelTableOffsets[i] + 4L + 16L * levelCount;
+                for(int level = 0; level < levelCount; level++)
+                {
+                    out.writeInt(currLevels.getBinSize(level));
+                    out.writeInt(currLevels.getBinCount(level));
+                    out.writeLong(binOffset);
+                    binOffset += 8L * currLevels.getBinCount(level);
+                }
+                
+                for(int level = 0; level < levelCount; level++)
+                {
+                    for(float max: currLevels.getMaxima(level))
+                    {
+                        out.writeFloat(max);
+                    }
+                    for(float mean: currLevels.getMeans(level))
+                    {
+                        out.writeFloat(mean);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+    
+    /**
+     * The zoom summaries for a single chromosome, finest level first
+     */
+    public static class ChromosomeZoomLevels
+    {
+        private final List<Integer> binSizes =
+            new ArrayList<Integer>();
+        
+        private final List<float[]> maxima =
+            new ArrayList<float[]>();
+        
+        private final List<float[]> means =
+            new ArrayList<float[]>();
+        
+        private void addLevel(
+                int binSize,
+                double[] levelMaxima,
+                double[] levelSums,
+                long[] levelCoverages)
+        {
+            float[] floatMaxima = new float[levelMaxima.length];
+            float[] floatMeans = new float[levelMaxima.length];
+            for(int bin = 0; bin < levelMaxima.length; bin++)
+            {
+                floatMaxima[bin] = (float)levelMaxima[bin];
+                floatMeans[bin] = levelCoverages[bin] == 0L ?
+                        Float.NaN :
+                        (float)(levelSums[bin] / levelCoverages[bin]);
+            }
+            
+            this.binSizes.add(binSize);
+            this.maxima.add(floatMaxima);
+            this.means.add(floatMeans);
+        }
+        
+        /**
+         * Getter for the number of zoom levels
+         * @return the level count
+         */
+        public int getLevelCount()
+        {
+            return this.binSizes.size();
+        }
+        
+        /**
+         * Getter for the bin size of a level
+         * @param level
+         *          the level
+         * @return the bin size in base pairs
+         */
+        public int getBinSize(int level)
+        {
+            return this.binSizes.get(level);
+        }
+        
+        /**
+         * Getter for the bin count of a level
+         * @param level
+         *          the level
+         * @return the bin count
+         */
+        public int getBinCount(int level)
+        {
+            return this.maxima.get(level).length;
+        }
+        
+        /**
+         * Getter for the per bin maxima of a level
+         * @param level
+         *          the level
+         * @return the maxima (NaN for empty bins)
+         */
+        public float[] getMaxima(int level)
+        {
+            return this.maxima.get(level);
+        }
+        
+        /**
+         * Getter for the per bin means of a level
+         * @param level
+         *          the level
+         * @return the means (NaN for empty bins)
+         */
+        public float[] getMeans(int level)
+        {
+            return this.means.get(level);
+        }
+    }
+}
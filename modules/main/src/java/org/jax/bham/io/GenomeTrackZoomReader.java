@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the zoom summary files written by {@link GenomeTrackWriter}. Only
+ * the level tables are read up front. A region query picks the finest
+ * level that needs no more than the requested number of bins and reads
+ * just those bins, so the work per view doesn't depend on how much data
+ * the track holds.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class GenomeTrackZoomReader
+{
+    private final RandomAccessFile file;
+    
+    private final Map<Integer, ZoomLevel[]> chromosomeLevels =
+        new HashMap<Integer, ZoomLevel[]>();
+    
+    /**
+     * Constructor
+     * @param zoomFile
+     *          the zoom file to read
+     * @throws IOException
+     *          if the file can't be read or isn't a zoom file
+     */
+    public GenomeTrackZoomReader(File zoomFile) throws IOException
+    {
+        this.file = new RandomAccessFile(zoomFile, "r");
+        if(this.file.readInt() != GenomeTrackWriter.ZOOM_MAGIC_NUMBER)
+        {
+            this.file.close();
+            throw new IOException(
+                    zoomFile.getAbsolutePath() + " is not a BHAM zoom file");
+        }
+        
+        int version = this.file.readInt();
+        if(version > GenomeTrackWriter.ZOOM_FORMAT_VERSION)
+        {
+            this.file.close();
+            throw new IOException(
+                    "Unsupported zoom file format version: " + version);
+        }
+        
+        int chromosomeCount = this.file.readInt();
+        int[] chromosomes = new int[chromosomeCount];
+        long[] levelTableOffsets = new long[chromosomeCount];
+        for(int i = 0; i < chromosomeCount; i++)
+        {
+            chromosomes[i] = this.file.readInt();
+            levelTableOffsets[i] = this.file.readLong();
+        }
+        
+        for(int i = 0; i < chromosomeCount; i++)
+        {
+            this.file.seek(levelTableOffsets[i]);
+            ZoomLevel[] levels = new ZoomLevel[this.file.readInt()];
+            for(int level = 0; level < levels.length; level++)
+            {
+                levels[level] = new ZoomLevel(
+                        this.file.readInt(),
+                        this.file.readInt(),
+                        this.file.readLong());
+            }
+            this.chromosomeLevels.put(chromosomes[i], levels);
+        }
+    }
+    
+    /**
+     * Get the summaries for the given region using the finest zoom level
+     * that covers the region in no more than the given number of bins
+     * @param chromosome
+     *          the chromosome
+     * @param startInBasePairs
+     *          the start of the region
+     * @param endInBasePairs
+     *          the end of the region
+     * @param maximumBinCount
+     *          the most bins that the caller wants back (typically the
+     *          width of the view in pixels)
+     * @return
+     *          the summaries or an empty array if the chromosome isn't in
+     *          the file
+     * @throws IOException
+     *          if the read fails
+     */
+    public synchronized ZoomSummary[] getZoomSummaries(
+            int chromosome,
+            long startInBasePairs,
+            long endInBasePairs,
+            int maximumBinCount)
+    throws IOException
+    {
+        ZoomLevel[] levels = this.chromosomeLevels.get(chromosome);
+        if(levels == null || endInBasePairs < startInBasePairs)
+        {
+            return new ZoomSummary[0];
+        }
+        
+        // the coarsest level always fits so fall back on it
+        ZoomLevel chosenLevel = levels[levels.length - 1];
+        long regionLength = 1 + endInBasePairs - startInBasePairs;
+        for(ZoomLevel level: levels)
+        {
+            if(regionLength / level.binSize + 1 <= maximumBinCount)
+            {
+                chosenLevel = level;
+                break;
+            }
+        }
+        
+        int firstBin = (int)Math.max(0L, startInBasePairs / chosenLevel.binSize);
+        int lastBin = (int)Math.min(
+                chosenLevel.binCount - 1,
+                endInBasePairs / chosenLevel.binSize);
+        int binCount = Math.max(0, 1 + lastBin - firstBin);
+        
+        float[] maxima = this.readFloats(
+                chosenLevel.binDataOffset + 4L * firstBin,
+                binCount);
+        float[] means = this.readFloats(
+                chosenLevel.binDataOffset + 4L * (chosenLevel.binCount + firstBin),
+                binCount);
+        
+        ZoomSummary[] summaries = new ZoomSummary[binCount];
+        for(int i = 0; i < binCount; i++)
+        {
+            long binStart = (long)(firstBin + i) * chosenLevel.binSize;
+            summaries[i] = new ZoomSummary(
+                    binStart,
+                    binStart + chosenLevel.binSize - 1,
+                    maxima[i],
+                    means[i]);
+        }
+        
+        return summaries;
+    }
+    
+    private float[] readFloats(long offset, int count) throws IOException
+    {
+        byte[] bytes = new byte[4 * count];
+        this.file.seek(offset);
+        this.file.readFully(bytes);
+        
+        float[] values = new float[count];
+        ByteBuffer.wrap(bytes).asFloatBuffer().get(values);
+        return values;
+    }
+    
+    /**
+     * Close the underlying file
+     * @throws IOException
+     *          if the close fails
+     */
+    public synchronized void close() throws IOException
+    {
+        this.file.close();
+    }
+    
+    private static final class ZoomLevel
+    {
+        private final int binSize;
+        
+        private final int binCount;
+        
+        private final long binDataOffset;
+        
+        public ZoomLevel(int binSize, int binCount, long binDataOffset)
+        {
+            this.binSize = binSize;
+            this.binCount = binCount;
+            this.binDataOffset = binDataOffset;
+        }
+    }
+    
+    /**
+     * The summary of a single zoom bin
+     */
+    public static class ZoomSummary
+    {
+        private final long startInBasePairs;
+        
+        private final long endInBasePairs;
+        
+        private final float maximumValue;
+        
+        private final float meanValue;
+        
+        /**
+         * Constructor
+         * @param startInBasePairs
+         *          the bin start
+         * @param endInBasePairs
+         *          the bin end
+         * @param maximumValue
+         *          the largest value in the bin (NaN if the bin is empty)
+         * @param meanValue
+         *          the coverage weighted mean value in the bin (NaN if the
+         *          bin is empty)
+         */
+        public ZoomSummary(
+                long startInBasePairs,
+                long endInBasePairs,
+                float maximumValue,
+                float meanValue)
+        {
+            this.startInBasePairs = startInBasePairs;
+            this.endInBasePairs = endInBasePairs;
+            this.maximumValue = maximumValue;
+            this.meanValue = meanValue;
+        }
+        
+        /**
+         * Getter for the bin start
+         * @return the start in base pairs
+         */
+        public long getStartInBasePairs()
+        {
+            return this.startInBasePairs;
+        }
+        
+        /**
+         * Getter for the bin end
+         * @return the end in base pairs
+         */
+        public long getEndInBasePairs()
+        {
+            return this.endInBasePairs;
+        }
+        
+        /**
+         * Getter for the largest value in the bin
+         * @return the max (NaN if the bin is empty)
+         */
+        public float getMaximumValue()
+        {
+            return this.maximumValue;
+        }
+        
+        /**
+         * Getter for the coverage weighted mean of the bin
+         * @return the mean (NaN if the bin is empty)
+         */
+        public float getMeanValue()
+        {
+            return this.meanValue;
+        }
+        
+        /**
+         * Determine if any values fall in this bin
+         * @return true if the bin is empty
+         */
+        public boolean isEmpty()
+        {
+            return Float.isNaN(this.meanValue);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+/**
+ * A single interval's test result as read back from a binary results file
+ * @see BinaryTestResultsReader
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class IndexedTestResult
+{
+    private final int chromosomeNumber;
+    
+    private final long startInBasePairs;
+    
+    private final long endInBasePairs;
+    
+    private final String label;
+    
+    private final double pValue;
+    
+    /**
+     * Constructor
+     * @param chromosomeNumber
+     *          the chromosome number
+     * @param startInBasePairs
+     *          the interval start
+     * @param endInBasePairs
+     *          the interval end
+     * @param label
+     *          the label for the interval. For haplotype tests this is the
+     *          strain bit set and for phylogeny tests it is the newick tree
+     * @param pValue
+     *          the p-value
+     */
+    public IndexedTestResult(
+            int chromosomeNumber,
+            long startInBasePairs,
+            long endInBasePairs,
+            String label,
+            double pValue)
+    {
+        this.chromosomeNumber = chromosomeNumber;
+        this.startInBasePairs = startInBasePairs;
+        this.endInBasePairs = endInBasePairs;
+        this.label = label;
+        this.pValue = pValue;
+    }
+    
+    /**
+     * Getter for the chromosome number
+     * @return the chromosome number
+     */
+    public int getChromosomeNumber()
+    {
+        return this.chromosomeNumber;
+    }
+    
+    /**
+     * Getter for the start position
+     * @return the start in base pairs
+     */
+    public long getStartInBasePairs()
+    {
+        return this.startInBasePairs;
+    }
+    
+    /**
+     * Getter for the end position
+     * @return the end in base pairs
+     */
+    public long getEndInBasePairs()
+    {
+        return this.endInBasePairs;
+    }
+    
+    /**
+     * Getter for the label (the strain bit set or the newick tree)
+     * @return the label
+     */
+    public String getLabel()
+    {
+        return this.label;
+    }
+    
+    /**
+     * Getter for the p-value
+     * @return the p-value
+     */
+    public double getPValue()
+    {
+        return this.pValue;
+    }
+}
@@ -0,0 +1,458 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+import java.io.File;
+import java.util.logging.Logger;
+
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
+
+import org.jax.bham.BhamApplication;
+import org.jax.bham.io.LoadPhenotypeMatrixTask.FileFormat;
+import org.jax.bham.project.BhamProject;
+import org.jax.haplotype.analysis.SexFilter;
+import org.jax.util.gui.MessageDialogUtilities;
+
+/**
+ * A dialog for loading a phenotype file with many traits into a
+ * {@link PhenotypeMatrix}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class LoadPhenotypeMatrixDialog extends JDialog
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = 2617059484123180574L;
+    
+    /**
+     * our logger
+     */
+    private static final Logger LOG = Logger.getLogger(
+            LoadPhenotypeMatrixDialog.class.getName());
+    
+    /**
+     * the extension that we suggest for matrix files
+     */
+    public static final String PHENOTYPE_MATRIX_EXTENSION = "phenomatrix";
+    
+    private final BhamProject project;
+    
+    /**
+     * Constructor
+     * @param parent
+     *          the parent frame for this dialog
+     * @param project
+     *          the project that this dialog should add the matrix to
+     */
+    public LoadPhenotypeMatrixDialog(Frame parent, BhamProject project)
+    {
+        super(parent, "Load Phenotype Matrix", false);
+        
+        this.project = project;
+        
+        this.initComponents();
+        this.postGuiInit();
+    }
+    
+    /**
+     * Take care of the initialization that the GUI builder doesn't handle
+     */
+    private void postGuiInit()
+    {
+        for(FileFormat fileFormat: FileFormat.values())
+        {
+            this.fileFormatComboBox.addItem(fileFormat);
+        }
+        
+        this.sexFilterComboBox.addItem(SexFilter.AGNOSTIC);
+        this.sexFilterComboBox.addItem(SexFilter.ALLOW_FEMALE);
+        this.sexFilterComboBox.addItem(SexFilter.ALLOW_MALE);
+        this.sexFilterComboBox.setEnabled(false);
+        
+        this.fileFormatComboBox.addItemListener(new ItemListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void itemStateChanged(ItemEvent e)
+            {
+                LoadPhenotypeMatrixDialog.this.sexFilterComboBox.setEnabled(
+                        LoadPhenotypeMatrixDialog.this.getSelectedFileFormat() ==
+                        FileFormat.MPD_INDIVIDUAL);
+            }
+        });
+        
+        this.browsePhenotypeFileButton.addActionListener(new ActionListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                LoadPhenotypeMatrixDialog.this.browsePhenotypeFiles();
+            }
+        });
+        
+        this.browseMatrixFileButton.addActionListener(new ActionListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                LoadPhenotypeMatrixDialog.this.browseMatrixFiles();
+            }
+        });
+        
+        this.okButton.addActionListener(new ActionListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                LoadPhenotypeMatrixDialog.this.ok();
+            }
+        });
+        
+        this.cancelButton.addActionListener(new ActionListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                LoadPhenotypeMatrixDialog.this.cancel();
+            }
+        });
+        
+        this.helpButton.addActionListener(new ActionListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                LoadPhenotypeMatrixDialog.this.showHelp();
+            }
+        });
+    }
+    
+    private FileFormat getSelectedFileFormat()
+    {
+        return (FileFormat)this.fileFormatComboBox.getSelectedItem();
+    }
+    
+    private SexFilter getSelectedSexFilter()
+    {
+        return (SexFilter)this.sexFilterComboBox.getSelectedItem();
+    }
+    
+    private File getPhenotypeFile()
+    {
+        return new File(this.phenotypeFileTextField.getText().trim());
+    }
+    
+    private File getMatrixFile()
+    {
+        return new File(this.matrixFileTextField.getText().trim());
+    }
+    
+    private void ok()
+    {
+        if(this.validateData())
+        {
+            LoadPhenotypeMatrixTask loadTask = new LoadPhenotypeMatrixTask(
+                    this.project,
+                    this.nameTextField.getText().trim(),
+                    this.getSelectedFileFormat(),
+                    this.getPhenotypeFile(),
+                    this.getSelectedSexFilter(),
+                    this.getMatrixFile());
+            BhamApplication.getInstance().getBhamFrame().getMultiTaskProgress().addTaskToTrack(
+                    loadTask,
+                    true);
+            new Thread(loadTask).start();
+            
+            this.dispose();
+        }
+    }
+    
+    private boolean validateData()
+    {
+        String errorMessage = null;
+        File phenotypeFile = this.getPhenotypeFile();
+        File matrixFile = this.getMatrixFile();
+        if(this.nameTextField.getText().trim().length() == 0)
+        {
+            errorMessage =
+                "Please enter a name for the phenotype matrix before continuing";
+        }
+        else if(!phenotypeFile.isFile())
+        {
+            errorMessage =
+                "The given file \"" + phenotypeFile.getAbsolutePath() +
+                "\" does not appear to be a valid file.";
+        }
+        else if(this.matrixFileTextField.getText().trim().length() == 0)
+        {
+            errorMessage =
+                "Please enter a file to store the phenotype matrix in " +
+                "before continuing";
+        }
+        else if(matrixFile.getAbsoluteFile().equals(phenotypeFile.getAbsoluteFile()))
+        {
+            errorMessage =
+                "The phenotype matrix can't be stored in the file that " +
+                "it's loaded from";
+        }
+        
+        if(errorMessage == null)
+        {
+            if(matrixFile.exists())
+            {
+                return MessageDialogUtilities.ask(
+                        this,
+                        "The file \"" + matrixFile.getAbsolutePath() +
+                        "\" already exists. Would you like to overwrite it?",
+                        "Overwrite File");
+            }
+            else
+            {
+                return true;
+            }
+        }
+        else
+        {
+            MessageDialogUtilities.warn(
+                    this,
+                    errorMessage,
+                    "Invalid User Input");
+            return false;
+        }
+    }
+    
+    private void cancel()
+    {
+        this.dispose();
+    }
+    
+    private void showHelp()
+    {
+        MessageDialogUtilities.inform(
+                this,
+                "Sorry, no help yet..",
+                "Help Not Implemented");
+    }
+    
+    private void browsePhenotypeFiles()
+    {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Select a Phenotype File");
+        fileChooser.setMultiSelectionEnabled(false);
+        fileChooser.setFileSelectionMode(
+                JFileChooser.FILES_ONLY);
+        int userSelection =
+            fileChooser.showOpenDialog(this);
+        
+        if(userSelection == JFileChooser.APPROVE_OPTION)
+        {
+            File selectedFile =
+                fileChooser.getSelectedFile();
+            this.phenotypeFileTextField.setText(
+                    selectedFile.getAbsolutePath());
+            
+            if(selectedFile.getName().toLowerCase().endsWith(".csv"))
+            {
+                this.fileFormatComboBox.setSelectedItem(
+                        FileFormat.COMMA_SEPARATED);
+            }
+            
+            // suggest a matrix file next to the phenotype file
+            if(this.matrixFileTextField.getText().trim().length() == 0)
+            {
+                this.matrixFileTextField.setText(
+                        selectedFile.getAbsolutePath() + "." +
+                        PHENOTYPE_MATRIX_EXTENSION);
+            }
+        }
+        else
+        {
+            LOG.fine("user canceled phenotype file selection");
+        }
+    }
+    
+    private void browseMatrixFiles()
+    {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Select a File to Store the Matrix In");
+        fileChooser.setMultiSelectionEnabled(false);
+        fileChooser.setFileSelectionMode(
+                JFileChooser.FILES_ONLY);
+        int userSelection =
+            fileChooser.showSaveDialog(this);
+        
+        if(userSelection == JFileChooser.APPROVE_OPTION)
+        {
+            File selectedFile =
+                fileChooser.getSelectedFile();
+            this.matrixFileTextField.setText(
+                    selectedFile.getAbsolutePath());
+        }
+        else
+        {
+            LOG.fine("user canceled matrix file selection");
+        }
+    }
+    
+    /**
+     * This method is called from within the constructor to
+     * initialize the form.
+     * WARNING: Do NOT modify this code. The content of this method is
+     * always regenerated by the Form Editor.
+     */
+    @SuppressWarnings("all")
+    // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
+    private void initComponents() {
+
+        javax.swing.JLabel nameLabel = new javax.swing.JLabel();
+        nameTextField = new javax.swing.JTextField();
+        javax.swing.JLabel phenotypeFileLabel = new javax.swing.JLabel();
+        phenotypeFileTextField = new javax.swing.JTextField();
+        browsePhenotypeFileButton = new javax.swing.JButton();
+        javax.swing.JLabel fileFormatLabel = new javax.swing.JLabel();
+        fileFormatComboBox = new javax.swing.JComboBox();
+        javax.swing.JLabel sexFilterLabel = new javax.swing.JLabel();
+        sexFilterComboBox = new javax.swing.JComboBox();
+        javax.swing.JLabel matrixFileLabel = new javax.swing.JLabel();
+        matrixFileTextField = new javax.swing.JTextField();
+        browseMatrixFileButton = new javax.swing.JButton();
+        javax.swing.JPanel actionPanel = new javax.swing.JPanel();
+        okButton = new javax.swing.JButton();
+        cancelButton = new javax.swing.JButton();
+        helpButton = new javax.swing.JButton();
+
+        setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
+
+        nameLabel.setText("Matrix Name:");
+
+        phenotypeFileLabel.setText("Phenotype File:");
+
+        browsePhenotypeFileButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/images/browse-16x16.png"))); // NOI18N
+        browsePhenotypeFileButton.setText("Browse...");
+
+        fileFormatLabel.setText("File Format:");
+
+        sexFilterLabel.setText("Sex Filter:");
+
+        matrixFileLabel.setText("Matrix File:");
+
+        browseMatrixFileButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/images/browse-16x16.png"))); // NOI18N
+        browseMatrixFileButton.setText("Browse...");
+
+        okButton.setText("OK");
+        actionPanel.add(okButton);
+
+        cancelButton.setText("Cancel");
+        actionPanel.add(cancelButton);
+
+        helpButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/images/help-16x16.png"))); // NOI18N
+        helpButton.setText("Help...");
+        actionPanel.add(helpButton);
+
+        org.jdesktop.layout.GroupLayout layout = new org.jdesktop.layout.GroupLayout(getContentPane());
+        getContentPane().setLayout(layout);
+        layout.setHorizontalGroup(
+            layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+            .add(org.jdesktop.layout.GroupLayout.TRAILING, actionPanel, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 460, Short.MAX_VALUE)
+            .add(layout.createSequentialGroup()
+                .addContainerGap()
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+                    .add(nameLabel)
+                    .add(phenotypeFileLabel)
+                    .add(fileFormatLabel)
+                    .add(sexFilterLabel)
+                    .add(matrixFileLabel))
+                .add(11, 11, 11)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+                    .add(nameTextField, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 330, Short.MAX_VALUE)
+                    .add(layout.createSequentialGroup()
+                        .add(phenotypeFileTextField, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 220, Short.MAX_VALUE)
+                        .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                        .add(browsePhenotypeFileButton))
+                    .add(fileFormatComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
+                    .add(sexFilterComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
+                    .add(layout.createSequentialGroup()
+                        .add(matrixFileTextField, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 220, Short.MAX_VALUE)
+                        .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                        .add(browseMatrixFileButton)))
+                .addContainerGap())
+        );
+        layout.setVerticalGroup(
+            layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+            .add(layout.createSequentialGroup()
+                .addContainerGap()
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(nameLabel)
+                    .add(nameTextField, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(phenotypeFileLabel)
+                    .add(browsePhenotypeFileButton)
+                    .add(phenotypeFileTextField, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(fileFormatLabel)
+                    .add(fileFormatComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(sexFilterLabel)
+                    .add(sexFilterComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(matrixFileLabel)
+                    .add(browseMatrixFileButton)
+                    .add(matrixFileTextField, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                .add(actionPanel, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+        );
+
+        pack();
+    }// </editor-fold>//GEN-END:initComponents
+
+    // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton browseMatrixFileButton;
+    private javax.swing.JButton browsePhenotypeFileButton;
+    private javax.swing.JButton cancelButton;
+    private javax.swing.JComboBox fileFormatComboBox;
+    private javax.swing.JButton helpButton;
+    private javax.swing.JTextField matrixFileTextField;
+    private javax.swing.JTextField nameTextField;
+    private javax.swing.JButton okButton;
+    private javax.swing.JTextField phenotypeFileTextField;
+    private javax.swing.JComboBox sexFilterComboBox;
+    // End of variables declaration//GEN-END:variables
+
+}
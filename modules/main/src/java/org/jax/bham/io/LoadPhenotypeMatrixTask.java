@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.io.File;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jax.bham.BhamApplication;
+import org.jax.bham.project.BhamProject;
+import org.jax.haplotype.analysis.SexFilter;
+import org.jax.util.concurrent.AbstractLongRunningTask;
+import org.jax.util.gui.MessageDialogUtilities;
+
+/**
+ * Long running task that reads a phenotype file into a
+ * {@link PhenotypeMatrix} and adds the matrix to a project
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class LoadPhenotypeMatrixTask
+extends AbstractLongRunningTask
+implements Runnable
+{
+    private static final Logger LOG = Logger.getLogger(
+            LoadPhenotypeMatrixTask.class.getName());
+    
+    /**
+     * The formats that a phenotype matrix can be loaded from
+     */
+    public static enum FileFormat
+    {
+        /**
+         * a header row of trait names then a row of values per strain or
+         * animal with tabs between the fields
+         */
+        TAB_DELIMITED("Tab-Delimited Strain by Trait Table"),
+        
+        /**
+         * same as {@link #TAB_DELIMITED} but with commas between the
+         * fields
+         */
+        COMMA_SEPARATED("Comma-Separated Strain by Trait Table"),
+        
+        /**
+         * an MPD individual animal file
+         */
+        MPD_INDIVIDUAL("MPD Individual Animal Data");
+        
+        private final String description;
+        
+        private FileFormat(String description)
+        {
+            this.description = description;
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString()
+        {
+            return this.description;
+        }
+    }
+    
+    private final BhamProject project;
+    
+    private final String name;
+    
+    private final FileFormat fileFormat;
+    
+    private final File phenotypeFile;
+    
+    private final SexFilter sexFilter;
+    
+    private final File matrixFile;
+    
+    private volatile int workUnitsCompleted = 0;
+    
+    /**
+     * Constructor
+     * @param project
+     *          the project to add the matrix to
+     * @param name
+     *          the name of the matrix
+     * @param fileFormat
+     *          the format of the phenotype file
+     * @param phenotypeFile
+     *          the phenotype file
+     * @param sexFilter
+     *          the sex filter (only used for MPD files)
+     * @param matrixFile
+     *          the matrix file to write
+     */
+    public LoadPhenotypeMatrixTask(
+            BhamProject project,
+            String name,
+            FileFormat fileFormat,
+            File phenotypeFile,
+            SexFilter sexFilter,
+            File matrixFile)
+    {
+        this.project = project;
+        this.name = name;
+        this.fileFormat = fileFormat;
+        this.phenotypeFile = phenotypeFile;
+        this.sexFilter = sexFilter;
+        this.matrixFile = matrixFile;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void run()
+    {
+        try
+        {
+            PhenotypeMatrixParser parser = new PhenotypeMatrixParser();
+            PhenotypeMatrix matrix;
+            switch(this.fileFormat)
+            {
+                case TAB_DELIMITED:
+                    matrix = parser.parseDelimitedPhenotypeMatrix(
+                            this.name,
+                            this.phenotypeFile,
+                            '\t',
+                            this.matrixFile);
+                    break;
+                
+                case COMMA_SEPARATED:
+                    matrix = parser.parseDelimitedPhenotypeMatrix(
+                            this.name,
+                            this.phenotypeFile,
+                            ',',
+                            this.matrixFile);
+                    break;
+                
+                default:
+                    matrix = parser.parseMPDPhenotypeMatrix(
+                            this.name,
+                            this.phenotypeFile,
+                            null,
+                            this.sexFilter,
+                            this.matrixFile);
+                    break;
+            }
+            
+            // reopen it read-only now that all of the values are written
+            this.project.addPhenotypeMatrix(new PhenotypeMatrix(
+                    matrix.getName(),
+                    matrix.getFile()));
+        }
+        catch(Exception ex)
+        {
+            String title = "Failed to Load Phenotype Matrix";
+            LOG.log(Level.SEVERE,
+                    title,
+                    ex);
+            MessageDialogUtilities.errorLater(
+                    BhamApplication.getInstance().getBhamFrame(),
+                    ex.getMessage(),
+                    title);
+        }
+        finally
+        {
+            this.workUnitsCompleted = 1;
+            this.fireChangeEvent();
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String getTaskName()
+    {
+        return "Loading Phenotype Matrix " + this.name;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getTotalWorkUnits()
+    {
+        return 1;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getWorkUnitsCompleted()
+    {
+        return this.workUnitsCompleted;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Formats the export rows for a list of chromosomes in parallel. Each
+ * chromosome's results are fetched one chromosome at a time on a single
+ * thread, since test results come from library data sources that nothing
+ * says are safe to use from several threads at once, and only the
+ * formatting of the fetched results is spread over a thread per
+ * processor. Each chromosome is formatted into its own row buffer and the
+ * buffers are handed back in the original chromosome order so that the
+ * caller can write them out exactly as a serial export would have.
+ * Callers should {@link #cancel()} in a finally block so that a failed
+ * write doesn't leave the remaining chromosomes formatting in the
+ * background.
+ * @param <T>
+ *          the type of a chromosome's results
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ParallelChromosomeRowFormatter<T>
+{
+    /**
+     * Fetches and formats all of the rows for a single chromosome
+     * @param <T>
+     *          the type of a chromosome's results
+     */
+    public static interface ChromosomeRowFormatter<T>
+    {
+        /**
+         * Get the results for the given chromosome. This is only ever
+         * called from one thread at a time, in chromosome order
+         * @param chromosome
+         *          the chromosome number
+         * @return
+         *          the chromosome's results
+         * @throws Exception
+         *          if getting the results fails
+         */
+        public T getChromosomeResults(int chromosome) throws Exception;
+        
+        /**
+         * Format a chromosome's results. Implementations must be safe to
+         * call from several threads at once
+         * @param chromosomeResults
+         *          the results from {@link #getChromosomeResults(int)}
+         * @return
+         *          the formatted rows in the order they should be written
+         * @throws Exception
+         *          if formatting the rows fails
+         */
+        public List<String[]> formatChromosomeRows(T chromosomeResults)
+        throws Exception;
+    }
+    
+    private final int[] chromosomes;
+    
+    private final ExecutorService fetchExecutor;
+    
+    private final ExecutorService formatExecutor;
+    
+    private final List<Future<Future<List<String[]>>>> chromosomeRowFutures;
+    
+    private int chromosomeIndex = 0;
+    
+    /**
+     * Constructor. Fetching and formatting start immediately.
+     * @param chromosomes
+     *          the chromosomes to format in the order that they should be
+     *          returned
+     * @param rowFormatter
+     *          the formatter used for each chromosome
+     */
+    public ParallelChromosomeRowFormatter(
+            int[] chromosomes,
+            final ChromosomeRowFormatter<T> rowFormatter)
+    {
+        this.chromosomes = chromosomes;
+        
+        int threadCount = Math.max(1, Math.min(
+                chromosomes.length,
+                Runtime.getRuntime().availableProcessors()));
+        this.fetchExecutor = Executors.newSingleThreadExecutor();
+        this.formatExecutor = Executors.newFixedThreadPool(threadCount);
+        
+        this.chromosomeRowFutures =
+            new ArrayList<Future<Future<List<String[]>>>>(chromosomes.length);
+        for(final int chromosome: chromosomes)
+        {
+            this.chromosomeRowFutures.add(this.fetchExecutor.submit(
+                    new Callable<Future<List<String[]>>>()
+                    {
+                        /**
+                         * {@inheritDoc}
+                         */
+                        public Future<List<String[]>> call() throws Exception
+                        {
+                            final T chromosomeResults =
+                                rowFormatter.getChromosomeResults(chromosome);
+                            return ParallelChromosomeRowFormatter.this.formatExecutor.submit(
+                                    new Callable<List<String[]>>()
+                                    {
+                                        /**
+                                         * {@inheritDoc}
+                                         */
+                                        public List<String[]> call() throws Exception
+                                        {
+                                            return rowFormatter.formatChromosomeRows(
+                                                    chromosomeResults);
+                                        }
+                                    });
+                        }
+                    }));
+        }
+        
+        // no more work will be submitted so we can let the threads die
+        // as soon as the queued chromosomes are done. The format executor
+        // is shut down from the fetch thread once the last chromosome has
+        // been handed to it
+        this.fetchExecutor.submit(new Runnable()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void run()
+            {
+                ParallelChromosomeRowFormatter.this.formatExecutor.shutdown();
+            }
+        });
+        this.fetchExecutor.shutdown();
+    }
+    
+    /**
+     * Determine if there are any chromosomes left to take
+     * @return
+     *          true if {@link #takeNextChromosomeRows()} has more rows
+     */
+    public boolean hasMoreChromosomes()
+    {
+        return this.chromosomeIndex < this.chromosomes.length;
+    }
+    
+    /**
+     * Getter for the chromosome that will be returned by the next call to
+     * {@link #takeNextChromosomeRows()}
+     * @return
+     *          the chromosome number
+     */
+    public int getNextChromosome()
+    {
+        return this.chromosomes[this.chromosomeIndex];
+    }
+    
+    /**
+     * Block until the rows for the next chromosome (in the original
+     * chromosome order) are ready and return them. The buffer is released
+     * as soon as it is handed back.
+     * @return
+     *          the rows for the next chromosome
+     * @throws InterruptedException
+     *          if we're interrupted while waiting
+     * @throws ExecutionException
+     *          if fetching or formatting the chromosome failed
+     */
+    public List<String[]> takeNextChromosomeRows()
+    throws InterruptedException, ExecutionException
+    {
+        Future<Future<List<String[]>>> nextFuture =
+            this.chromosomeRowFutures.set(this.chromosomeIndex, null);
+        this.chromosomeIndex++;
+        
+        try
+        {
+            return nextFuture.get().get();
+        }
+        catch(InterruptedException ex)
+        {
+            this.cancel();
+            throw ex;
+        }
+        catch(ExecutionException ex)
+        {
+            this.cancel();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Cancel any chromosomes that have not been fetched or formatted yet.
+     * This does nothing once every chromosome has been taken
+     */
+    public void cancel()
+    {
+        for(Future<Future<List<String[]>>> future: this.chromosomeRowFutures)
+        {
+            if(future != null)
+            {
+                future.cancel(true);
+            }
+        }
+        this.fetchExecutor.shutdownNow();
+        
+        // anything that was already handed off is dropped with the queue
+        // or interrupted if it's running
+        this.formatExecutor.shutdownNow();
+    }
+}
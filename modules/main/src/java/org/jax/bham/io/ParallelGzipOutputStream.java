@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A gzip output stream that compresses on several threads at once. The
+ * data is cut into fixed size blocks and every block is compressed as an
+ * independent gzip member. The members are written out in order, and
+ * since concatenated gzip members are themselves a valid gzip file the
+ * result can be read by gunzip or {@link java.util.zip.GZIPInputStream}
+ * (this is the same approach that pigz uses).
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ParallelGzipOutputStream extends OutputStream
+{
+    /**
+     * the default number of uncompressed bytes in each gzip member
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+    
+    private final OutputStream out;
+    
+    private final int blockSize;
+    
+    private final ExecutorService executor;
+    
+    private final int maximumPendingBlocks;
+    
+    private final LinkedList<Future<byte[]>> pendingMembers =
+        new LinkedList<Future<byte[]>>();
+    
+    private byte[] block;
+    
+    private int blockLength = 0;
+    
+    private boolean anyMembersWritten = false;
+    
+    private boolean closed = false;
+    
+    /**
+     * Constructor which uses the default block size and one compression
+     * thread per available processor
+     * @param out
+     *          the stream that the compressed data is written to
+     */
+    public ParallelGzipOutputStream(OutputStream out)
+    {
+        this(out,
+             DEFAULT_BLOCK_SIZE,
+             Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Constructor
+     * @param out
+     *          the stream that the compressed data is written to
+     * @param blockSize
+     *          the number of uncompressed bytes in each gzip member
+     * @param threadCount
+     *          the number of compression threads
+     */
+    public ParallelGzipOutputStream(
+            OutputStream out,
+            int blockSize,
+            int threadCount)
+    {
+        if(blockSize <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "block size must be positive: " + blockSize);
+        }
+        threadCount = Math.max(1, threadCount);
+        
+        this.out = out;
+        this.blockSize = blockSize;
+        this.block = new byte[blockSize];
+        
+        // limiting the blocks in flight keeps memory bounded when the
+        // exporter produces rows faster than we can compress them
+        this.maximumPendingBlocks = 2 * threadCount;
+        this.executor = Executors.newFixedThreadPool(
+                threadCount,
+                new ThreadFactory()
+                {
+                    /**
+                     * {@inheritDoc}
+                     */
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread thread = new Thread(r, "gzip-compressor");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int b) throws IOException
+    {
+        this.ensureOpen();
+        this.block[this.blockLength++] = (byte)b;
+        if(this.blockLength == this.blockSize)
+        {
+            this.submitBlock();
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        this.ensureOpen();
+        while(len > 0)
+        {
+            int copyLength = Math.min(len, this.blockSize - this.blockLength);
+            System.arraycopy(b, off, this.block, this.blockLength, copyLength);
+            this.blockLength += copyLength;
+            off += copyLength;
+            len -= copyLength;
+            
+            if(this.blockLength == this.blockSize)
+            {
+                this.submitBlock();
+            }
+        }
+    }
+    
+    /**
+     * Compress any partial block and write out all of the pending members.
+     * Note that every flush with buffered data ends a gzip member, so
+     * flushing often will hurt the compression ratio.
+     * @throws IOException
+     *          if compressing or writing fails
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        this.ensureOpen();
+        if(this.blockLength > 0)
+        {
+            this.submitBlock();
+        }
+        
+        while(!this.pendingMembers.isEmpty())
+        {
+            this.writeNextMember();
+        }
+        this.out.flush();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if(!this.closed)
+        {
+            try
+            {
+                this.flush();
+                
+                // an empty gzip file still needs a single empty member
+                if(!this.anyMembersWritten)
+                {
+                    this.out.write(compressBlock(new byte[0], 0));
+                }
+            }
+            finally
+            {
+                this.closed = true;
+                this.executor.shutdownNow();
+                this.out.close();
+            }
+        }
+    }
+    
+    private void ensureOpen() throws IOException
+    {
+        if(this.closed)
+        {
+            throw new IOException("stream is closed");
+        }
+    }
+    
+    private void submitBlock() throws IOException
+    {
+        final byte[] fullBlock = this.block;
+        final int fullBlockLength = this.blockLength;
+        this.block = new byte[this.blockSize];
+        this.blockLength = 0;
+        
+        this.pendingMembers.add(this.executor.submit(new Callable<byte[]>()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public byte[] call() throws IOException
+            {
+                return compressBlock(fullBlock, fullBlockLength);
+            }
+        }));
+        
+        while(this.pendingMembers.size() > this.maximumPendingBlocks)
+        {
+            this.writeNextMember();
+        }
+    }
+    
+    private void writeNextMember() throws IOException
+    {
+        Future<byte[]> nextMember = this.pendingMembers.removeFirst();
+        try
+        {
+            this.out.write(nextMember.get());
+            this.anyMembersWritten = true;
+        }
+        catch(InterruptedException ex)
+        {
+            throw new InterruptedIOException(
+                    "interrupted while waiting for gzip compression");
+        }
+        catch(ExecutionException ex)
+        {
+            IOException ioEx = new IOException(
+                    "failed to gzip compress output block");
+            ioEx.initCause(ex.getCause());
+            throw ioEx;
+        }
+    }
+    
+    /**
+     * Compress the given bytes as a complete stand-alone gzip member
+     * @param data
+     *          the data buffer
+     * @param length
+     *          the number of bytes to use from the data buffer
+     * @return
+     *          the gzip member
+     * @throws IOException
+     *          if compression fails
+     */
+    private static byte[] compressBlock(byte[] data, int length)
+    throws IOException
+    {
+        ByteArrayOutputStream member = new ByteArrayOutputStream(
+                (length / 2) + 64);
+        GZIPOutputStream gzipOut = new GZIPOutputStream(member);
+        gzipOut.write(data, 0, length);
+        gzipOut.close();
+        
+        return member.toByteArray();
+    }
+}
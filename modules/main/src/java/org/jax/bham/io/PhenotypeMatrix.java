@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A strain by trait matrix of phenotype values (normally strain means)
+ * that lives in a memory mapped file rather than on the heap. Each
+ * strain's row of trait values is contiguous so a scan can pull every
+ * trait for a strain with one bulk read. Missing values are NaN. Only
+ * the strain and trait names are held in memory, and only the file is
+ * serialized, so a matrix with many thousands of traits costs next to
+ * nothing in the heap or in a saved project.
+ * <p>
+ * File layout: the magic number, a format version, the strain and trait
+ * counts, the strain names and the trait names (as modified UTF-8)
+ * followed by the values as big-endian doubles in strain major order
+ * </p>
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class PhenotypeMatrix implements Serializable
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = 1698423364287593718L;
+    
+    private static final int MAGIC_NUMBER = 0x50484d58;
+    
+    private static final int FORMAT_VERSION = 1;
+    
+    private static final int BYTES_PER_VALUE = 8;
+    
+    /**
+     * the most bytes that a single mapping can hold
+     */
+    private static final long MAXIMUM_SEGMENT_BYTES = Integer.MAX_VALUE;
+    
+    private final String name;
+    
+    private final File file;
+    
+    private transient String[] strains;
+    
+    private transient Map<String, Integer> strainIndices;
+    
+    private transient String[] traitNames;
+    
+    private transient int strainsPerSegment;
+    
+    private transient DoubleBuffer[] segments;
+    
+    /**
+     * Constructor for opening an existing matrix file read-only
+     * @param name
+     *          the name of the matrix
+     * @param file
+     *          the matrix file
+     * @throws IOException
+     *          if the file can't be read or isn't a phenotype matrix
+     */
+    public PhenotypeMatrix(String name, File file) throws IOException
+    {
+        this(name, file, false);
+    }
+    
+    /**
+     * Create a new matrix file with every value missing. The returned
+     * matrix is writable
+     * @see #setValue(int, int, double)
+     * @param name
+     *          the name of the matrix
+     * @param file
+     *          the file to create (it is overwritten if it exists)
+     * @param strains
+     *          the strain names
+     * @param traitNames
+     *          the trait names
+     * @return
+     *          the matrix
+     * @throws IOException
+     *          if the file can't be written
+     */
+    public static PhenotypeMatrix createPhenotypeMatrix(
+            String name,
+            File file,
+            String[] strains,
+            String[] traitNames)
+    throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file)));
+        try
+        {
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(strains.length);
+            out.writeInt(traitNames.length);
+            for(String strain: strains)
+            {
+                out.writeUTF(strain);
+            }
+            for(String traitName: traitNames)
+            {
+                out.writeUTF(traitName);
+            }
+            
+            long valueCount = (long)strains.length * traitNames.length;
+            for(long i = 0; i < valueCount; i++)
+            {
+                out.writeDouble(Double.NaN);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        
+        return new PhenotypeMatrix(name, file, true);
+    }
+    
+    private PhenotypeMatrix(String name, File file, boolean writable)
+    throws IOException
+    {
+        this.name = name;
+        this.file = file;
+        this.open(writable);
+    }
+    
+    /**
+     * Read the header and map the values
+     * @param writable
+     *          if true the values are mapped read-write
+     * @throws IOException
+     *          if the file can't be read or isn't a phenotype matrix
+     */
+    private void open(boolean writable) throws IOException
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(
+                this.file,
+                writable ? "rw" : "r");
+        try
+        {
+            if(randomAccessFile.readInt() != MAGIC_NUMBER)
+            {
+                throw new IOException(
+                        this.file.getAbsolutePath() +
+                        " is not a phenotype matrix file");
+            }
+            int version = randomAccessFile.readInt();
+            if(version != FORMAT_VERSION)
+            {
+                throw new IOException(
+                        "unsupported phenotype matrix format version: " +
+                        version);
+            }
+            
+            int strainCount = randomAccessFile.readInt();
+            int traitCount = randomAccessFile.readInt();
+            String[] strains = new String[strainCount];
+            Map<String, Integer> strainIndices =
+                new HashMap<String, Integer>(strainCount * 2);
+            for(int i = 0; i < strainCount; i++)
+            {
+                strains[i] = randomAccessFile.readUTF();
+                strainIndices.put(strains[i], i);
+            }
+            String[] traitNames = new String[traitCount];
+            for(int i = 0; i < traitCount; i++)
+            {
+                traitNames[i] = randomAccessFile.readUTF();
+            }
+            
+            // rows never straddle two mappings
+            long rowBytes = Math.max(1L, (long)traitCount * BYTES_PER_VALUE);
+            int strainsPerSegment = (int)Math.max(
+                    1L,
+                    Math.min(strainCount, MAXIMUM_SEGMENT_BYTES / rowBytes));
+            int segmentCount = Math.max(
+                    1,
+                    (strainCount + strainsPerSegment - 1) / strainsPerSegment);
+            DoubleBuffer[] segments = new DoubleBuffer[segmentCount];
+            FileChannel channel = randomAccessFile.getChannel();
+            long segmentStart = randomAccessFile.getFilePointer();
+            for(int segment = 0; segment < segmentCount; segment++)
+            {
+                int segmentStrains = Math.min(
+                        strainsPerSegment,
+                        strainCount - segment * strainsPerSegment);
+                long segmentBytes =
+                    (long)segmentStrains * traitCount * BYTES_PER_VALUE;
+                segments[segment] = channel.map(
+                        writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                        segmentStart,
+                        segmentBytes).asDoubleBuffer();
+                segmentStart += segmentBytes;
+            }
+            
+            this.strains = strains;
+            this.strainIndices = strainIndices;
+            this.traitNames = traitNames;
+            this.strainsPerSegment = strainsPerSegment;
+            this.segments = segments;
+        }
+        finally
+        {
+            // the mappings stay valid after the file is closed
+            randomAccessFile.close();
+        }
+    }
+    
+    /**
+     * Getter for the name of the matrix
+     * @return
+     *          the name
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+    
+    /**
+     * Getter for the matrix file
+     * @return
+     *          the file
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+    
+    /**
+     * Getter for the strain names in row order
+     * @return
+     *          the strains
+     */
+    public String[] getStrains()
+    {
+        return this.strains.clone();
+    }
+    
+    /**
+     * Get the row index of a strain
+     * @param strain
+     *          the strain name
+     * @return
+     *          the index or -1 if the strain isn't in the matrix
+     */
+    public int getStrainIndex(String strain)
+    {
+        Integer strainIndex = this.strainIndices.get(strain);
+        return strainIndex == null ? -1 : strainIndex.intValue();
+    }
+    
+    /**
+     * Getter for the number of strains
+     * @return
+     *          the strain count
+     */
+    public int getStrainCount()
+    {
+        return this.strains.length;
+    }
+    
+    /**
+     * Getter for the trait names in column order
+     * @return
+     *          the trait names
+     */
+    public String[] getTraitNames()
+    {
+        return this.traitNames.clone();
+    }
+    
+    /**
+     * Get the name of a trait
+     * @param traitIndex
+     *          the trait's column
+     * @return
+     *          the name
+     */
+    public String getTraitName(int traitIndex)
+    {
+        return this.traitNames[traitIndex];
+    }
+    
+    /**
+     * Getter for the number of traits
+     * @return
+     *          the trait count
+     */
+    public int getTraitCount()
+    {
+        return this.traitNames.length;
+    }
+    
+    /**
+     * Get a single value
+     * @param strainIndex
+     *          the strain row
+     * @param traitIndex
+     *          the trait column
+     * @return
+     *          the value or NaN if it's missing
+     */
+    public double getValue(int strainIndex, int traitIndex)
+    {
+        return this.getSegment(strainIndex).get(
+                this.getOffset(strainIndex) + traitIndex);
+    }
+    
+    /**
+     * Set a single value. This only works on a matrix that was just
+     * created
+     * @see #createPhenotypeMatrix(String, File, String[], String[])
+     * @param strainIndex
+     *          the strain row
+     * @param traitIndex
+     *          the trait column
+     * @param value
+     *          the value
+     */
+    public void setValue(int strainIndex, int traitIndex, double value)
+    {
+        this.getSegment(strainIndex).put(
+                this.getOffset(strainIndex) + traitIndex,
+                value);
+    }
+    
+    /**
+     * Copy a strain's values for every trait into the given array
+     * @param strainIndex
+     *          the strain row
+     * @param traitValues
+     *          the array to fill. It must be at least as long as the
+     *          trait count
+     * @return
+     *          the array
+     */
+    public double[] getStrainValues(int strainIndex, double[] traitValues)
+    {
+        // duplicate so that concurrent readers don't share a position
+        DoubleBuffer row = this.getSegment(strainIndex).duplicate();
+        row.position(this.getOffset(strainIndex));
+        row.get(traitValues, 0, this.traitNames.length);
+        return traitValues;
+    }
+    
+    /**
+     * Copy a trait's values for every strain into a new array
+     * @param traitIndex
+     *          the trait column
+     * @return
+     *          the values in strain order
+     */
+    public double[] getTraitValues(int traitIndex)
+    {
+        double[] strainValues = new double[this.strains.length];
+        for(int i = 0; i < strainValues.length; i++)
+        {
+            strainValues[i] = this.getValue(i, traitIndex);
+        }
+        
+        return strainValues;
+    }
+    
+    /**
+     * Let go of the mapped values. The matrix can't be used after this.
+     * Java has no way to unmap a file directly, the mapping goes away when
+     * its buffers are garbage collected, so until then some platforms
+     * (Windows) won't let the file be deleted
+     */
+    public void close()
+    {
+        this.segments = null;
+    }
+    
+    private DoubleBuffer getSegment(int strainIndex)
+    {
+        if(this.segments == null)
+        {
+            throw new IllegalStateException(
+                    "the phenotype matrix " + this.name + " is closed");
+        }
+        
+        return this.segments[strainIndex / this.strainsPerSegment];
+    }
+    
+    private int getOffset(int strainIndex)
+    {
+        return (strainIndex % this.strainsPerSegment) * this.traitNames.length;
+    }
+    
+    private void readObject(ObjectInputStream in)
+    throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        this.open(false);
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return this.name;
+    }
+}
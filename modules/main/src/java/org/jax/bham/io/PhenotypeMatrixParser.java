@@ -0,0 +1,465 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.jax.haplotype.analysis.MPDIndividualStrainPhenotypeParser;
+import org.jax.haplotype.analysis.SexFilter;
+import org.jax.util.io.CommonFlatFileFormat;
+import org.jax.util.io.FlatFileReader;
+
+/**
+ * Reads phenotype files into a {@link PhenotypeMatrix} of strain means.
+ * Values are accumulated straight into the mapped matrix so the heap use
+ * doesn't grow with the number of traits
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class PhenotypeMatrixParser
+{
+    private static final Logger LOG = Logger.getLogger(
+            PhenotypeMatrixParser.class.getName());
+    
+    private static final String MPD_STRAIN_COLUMN = "strain";
+    
+    private static final String MPD_SEX_COLUMN = "sex";
+    
+    private static final String MPD_PHENOTYPE_COLUMN = "varname";
+    
+    /**
+     * older MPD files only name phenotypes by their measurement number
+     */
+    private static final String MPD_MEASUREMENT_COLUMN = "measnum";
+    
+    private static final String MPD_VALUE_COLUMN = "value";
+    
+    /**
+     * values that are read as missing in delimited and MPD files
+     */
+    private static final Set<String> MISSING_VALUES = new TreeSet<String>(
+            String.CASE_INSENSITIVE_ORDER);
+    static
+    {
+        MISSING_VALUES.addAll(Arrays.asList("", "NA", "NaN", "."));
+    }
+    
+    /**
+     * Parse a delimited file where the header row holds a strain column
+     * followed by the trait names and every other row holds a strain name
+     * followed by its trait values. A strain can have any number of rows
+     * (eg one per animal) and its values are averaged
+     * @param name
+     *          the name to give the matrix
+     * @param delimitedFile
+     *          the file to read
+     * @param delimiter
+     *          the field delimiter (eg ',' or '\t')
+     * @param matrixFile
+     *          the matrix file to write
+     * @return
+     *          the matrix
+     * @throws IOException
+     *          if the file can't be read or it's badly formatted
+     */
+    public PhenotypeMatrix parseDelimitedPhenotypeMatrix(
+            String name,
+            File delimitedFile,
+            char delimiter,
+            File matrixFile)
+    throws IOException
+    {
+        Pattern delimiterPattern = Pattern.compile(
+                Pattern.quote(Character.toString(delimiter)));
+        
+        // the first pass just finds the traits and strains
+        String[] traitNames;
+        Set<String> strainSet = new TreeSet<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(delimitedFile));
+        try
+        {
+            String headerLine = reader.readLine();
+            if(headerLine == null)
+            {
+                throw new IOException(
+                        delimitedFile.getAbsolutePath() + " is empty");
+            }
+            String[] header = delimiterPattern.split(headerLine, -1);
+            traitNames = new String[header.length - 1];
+            for(int i = 0; i < traitNames.length; i++)
+            {
+                traitNames[i] = header[i + 1].trim();
+            }
+            
+            for(String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                if(line.trim().length() > 0)
+                {
+                    String strain = line.substring(
+                            0,
+                            indexOfOrLength(line, delimiter)).trim();
+                    strainSet.add(strain);
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        
+        String[] strains = strainSet.toArray(new String[strainSet.size()]);
+        PhenotypeMatrix matrix = PhenotypeMatrix.createPhenotypeMatrix(
+                name,
+                matrixFile,
+                strains,
+                traitNames);
+        
+        // the second pass sums each strain's values into the matrix while
+        // the value counts go in a scratch matrix of the same shape
+        File countFile = File.createTempFile("phenotype-counts", ".matrix");
+        countFile.deleteOnExit();
+        PhenotypeMatrix counts = null;
+        try
+        {
+            counts = PhenotypeMatrix.createPhenotypeMatrix(
+                    "counts",
+                    countFile,
+                    strains,
+                    traitNames);
+            reader = new BufferedReader(new FileReader(delimitedFile));
+            try
+            {
+                reader.readLine();
+                int lineNumber = 1;
+                for(String line = reader.readLine(); line != null; line = reader.readLine())
+                {
+                    lineNumber++;
+                    if(line.trim().length() > 0)
+                    {
+                        String[] fields = delimiterPattern.split(line, -1);
+                        if(fields.length > traitNames.length + 1)
+                        {
+                            throw new IOException(
+                                    "line " + lineNumber + " of " +
+                                    delimitedFile.getAbsolutePath() +
+                                    " has more fields than the header");
+                        }
+                        
+                        int strainIndex = matrix.getStrainIndex(fields[0].trim());
+                        for(int field = 1; field < fields.length; field++)
+                        {
+                            String valueString = fields[field].trim();
+                            if(!MISSING_VALUES.contains(valueString))
+                            {
+                                double value;
+                                try
+                                {
+                                    value = Double.parseDouble(valueString);
+                                }
+                                catch(NumberFormatException ex)
+                                {
+                                    throw new IOException(
+                                            "bad value \"" + valueString +
+                                            "\" on line " + lineNumber + " of " +
+                                            delimitedFile.getAbsolutePath());
+                                }
+                                
+                                int traitIndex = field - 1;
+                                addValue(matrix, counts, strainIndex, traitIndex, value);
+                            }
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+            
+            divideByCounts(matrix, counts);
+        }
+        finally
+        {
+            deleteCounts(counts, countFile);
+        }
+        
+        return matrix;
+    }
+    
+    /**
+     * Parse phenotypes from an MPD individual animal file. The phenotype
+     * and strain names come from {@link MPDIndividualStrainPhenotypeParser}
+     * and then the animals are read in a single pass, summing each value
+     * into the matrix the same way that
+     * {@link #parseDelimitedPhenotypeMatrix(String, File, char, File)} does
+     * @param name
+     *          the name to give the matrix
+     * @param mpdFile
+     *          the MPD file
+     * @param phenotypes
+     *          the phenotypes to read or null to read all of them
+     * @param sexFilter
+     *          the sex filter
+     * @param matrixFile
+     *          the matrix file to write
+     * @return
+     *          the matrix
+     * @throws IOException
+     *          if the file can't be read or it's badly formatted
+     */
+    public PhenotypeMatrix parseMPDPhenotypeMatrix(
+            String name,
+            File mpdFile,
+            Set<String> phenotypes,
+            SexFilter sexFilter,
+            File matrixFile)
+    throws IOException
+    {
+        MPDIndividualStrainPhenotypeParser mpdParser =
+            new MPDIndividualStrainPhenotypeParser();
+        Set<String> traitSet;
+        Set<String> strainSet;
+        InputStream mpdStream = new FileInputStream(mpdFile);
+        try
+        {
+            traitSet = new TreeSet<String>(
+                    mpdParser.parseAvailablePhenotypes(mpdStream));
+        }
+        finally
+        {
+            mpdStream.close();
+        }
+        mpdStream = new FileInputStream(mpdFile);
+        try
+        {
+            strainSet = new TreeSet<String>(
+                    mpdParser.parseAvailableStrainNames(mpdStream));
+        }
+        finally
+        {
+            mpdStream.close();
+        }
+        
+        if(phenotypes != null)
+        {
+            traitSet.retainAll(phenotypes);
+        }
+        String[] traitNames = traitSet.toArray(new String[traitSet.size()]);
+        String[] strains = strainSet.toArray(new String[strainSet.size()]);
+        PhenotypeMatrix matrix = PhenotypeMatrix.createPhenotypeMatrix(
+                name,
+                matrixFile,
+                strains,
+                traitNames);
+        
+        File countFile = File.createTempFile("phenotype-counts", ".matrix");
+        countFile.deleteOnExit();
+        PhenotypeMatrix counts = null;
+        try
+        {
+            counts = PhenotypeMatrix.createPhenotypeMatrix(
+                    "counts",
+                    countFile,
+                    strains,
+                    traitNames);
+            FlatFileReader mpdReader = new FlatFileReader(
+                    new BufferedReader(new FileReader(mpdFile)),
+                    CommonFlatFileFormat.CSV_RFC_4180);
+            try
+            {
+                String[] header = mpdReader.readRow();
+                if(header == null)
+                {
+                    throw new IOException(
+                            mpdFile.getAbsolutePath() + " is empty");
+                }
+                int strainColumn = indexOfColumn(header, MPD_STRAIN_COLUMN);
+                int sexColumn = indexOfColumn(header, MPD_SEX_COLUMN);
+                int valueColumn = indexOfColumn(header, MPD_VALUE_COLUMN);
+                int phenotypeColumn = indexOfColumn(header, MPD_PHENOTYPE_COLUMN);
+                if(phenotypeColumn == -1)
+                {
+                    phenotypeColumn = indexOfColumn(header, MPD_MEASUREMENT_COLUMN);
+                }
+                if(strainColumn == -1 || valueColumn == -1 || phenotypeColumn == -1 ||
+                   (sexColumn == -1 && sexFilter != SexFilter.AGNOSTIC))
+                {
+                    throw new IOException(
+                            "the header of " + mpdFile.getAbsolutePath() +
+                            " is missing a strain, sex, phenotype or value column");
+                }
+                
+                int rowNumber = 1;
+                for(String[] row = mpdReader.readRow(); row != null; row = mpdReader.readRow())
+                {
+                    rowNumber++;
+                    if(row.length <= Math.max(strainColumn, Math.max(valueColumn, phenotypeColumn)) ||
+                       (sexColumn != -1 && row.length <= sexColumn))
+                    {
+                        // blank or truncated rows don't hold a value
+                        continue;
+                    }
+                    
+                    int traitIndex = Arrays.binarySearch(
+                            traitNames,
+                            row[phenotypeColumn].trim());
+                    int strainIndex = matrix.getStrainIndex(row[strainColumn].trim());
+                    String valueString = row[valueColumn].trim();
+                    if(traitIndex >= 0 && strainIndex >= 0 &&
+                       !MISSING_VALUES.contains(valueString) &&
+                       (sexColumn == -1 || isSexAllowed(sexFilter, row[sexColumn].trim())))
+                    {
+                        double value;
+                        try
+                        {
+                            value = Double.parseDouble(valueString);
+                        }
+                        catch(NumberFormatException ex)
+                        {
+                            throw new IOException(
+                                    "bad value \"" + valueString +
+                                    "\" on row " + rowNumber + " of " +
+                                    mpdFile.getAbsolutePath());
+                        }
+                        
+                        addValue(matrix, counts, strainIndex, traitIndex, value);
+                    }
+                }
+            }
+            finally
+            {
+                mpdReader.close();
+            }
+            
+            divideByCounts(matrix, counts);
+        }
+        finally
+        {
+            deleteCounts(counts, countFile);
+        }
+        
+        return matrix;
+    }
+    
+    private static int indexOfColumn(String[] header, String columnName)
+    {
+        for(int i = 0; i < header.length; i++)
+        {
+            if(header[i].trim().equalsIgnoreCase(columnName))
+            {
+                return i;
+            }
+        }
+        
+        return -1;
+    }
+    
+    private static boolean isSexAllowed(SexFilter sexFilter, String sex)
+    {
+        if(sexFilter == SexFilter.ALLOW_FEMALE)
+        {
+            return sex.toLowerCase().startsWith("f");
+        }
+        else if(sexFilter == SexFilter.ALLOW_MALE)
+        {
+            return sex.toLowerCase().startsWith("m");
+        }
+        else
+        {
+            return true;
+        }
+    }
+    
+    private static void addValue(
+            PhenotypeMatrix sums,
+            PhenotypeMatrix counts,
+            int strainIndex,
+            int traitIndex,
+            double value)
+    {
+        double count = counts.getValue(strainIndex, traitIndex);
+        if(Double.isNaN(count))
+        {
+            sums.setValue(strainIndex, traitIndex, value);
+            counts.setValue(strainIndex, traitIndex, 1.0);
+        }
+        else
+        {
+            sums.setValue(
+                    strainIndex,
+                    traitIndex,
+                    sums.getValue(strainIndex, traitIndex) + value);
+            counts.setValue(strainIndex, traitIndex, count + 1.0);
+        }
+    }
+    
+    private static void deleteCounts(PhenotypeMatrix counts, File countFile)
+    {
+        // the counts have to be unmapped before the file can go. Where
+        // the mapping outlives close() (until the buffers are garbage
+        // collected) the delete fails and deleteOnExit cleans up
+        if(counts != null)
+        {
+            counts.close();
+        }
+        if(!countFile.delete())
+        {
+            LOG.fine(
+                    "leaving " + countFile.getAbsolutePath() +
+                    " to be deleted on exit");
+        }
+    }
+    
+    private static void divideByCounts(PhenotypeMatrix sums, PhenotypeMatrix counts)
+    {
+        int traitCount = sums.getTraitCount();
+        double[] rowSums = new double[traitCount];
+        double[] rowCounts = new double[traitCount];
+        for(int strainIndex = 0; strainIndex < sums.getStrainCount(); strainIndex++)
+        {
+            sums.getStrainValues(strainIndex, rowSums);
+            counts.getStrainValues(strainIndex, rowCounts);
+            for(int traitIndex = 0; traitIndex < traitCount; traitIndex++)
+            {
+                // a missing count means a missing sum so NaN carries over
+                if(rowCounts[traitIndex] > 1.0)
+                {
+                    sums.setValue(
+                            strainIndex,
+                            traitIndex,
+                            rowSums[traitIndex] / rowCounts[traitIndex]);
+                }
+            }
+        }
+    }
+    
+    private static int indexOfOrLength(String line, char delimiter)
+    {
+        int index = line.indexOf(delimiter);
+        return index == -1 ? line.length() : index;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jax.haplotype.analysis.PhenotypeDataSource;
+
+/**
+ * A phenotype data source for one trait of a {@link PhenotypeMatrix}. It
+ * only holds onto the matrix and the trait's column so there can be one
+ * for every trait without any cost. The phenotype map is built when it's
+ * asked for and isn't kept around
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class PhenotypeMatrixTraitDataSource implements PhenotypeDataSource
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = -7021380718356276305L;
+    
+    private final PhenotypeMatrix phenotypeMatrix;
+    
+    private final int traitIndex;
+    
+    /**
+     * Constructor
+     * @param phenotypeMatrix
+     *          the matrix
+     * @param traitIndex
+     *          the trait's column in the matrix
+     */
+    public PhenotypeMatrixTraitDataSource(
+            PhenotypeMatrix phenotypeMatrix,
+            int traitIndex)
+    {
+        this.phenotypeMatrix = phenotypeMatrix;
+        this.traitIndex = traitIndex;
+    }
+    
+    /**
+     * Getter for the matrix that this trait comes from
+     * @return
+     *          the matrix
+     */
+    public PhenotypeMatrix getPhenotypeMatrix()
+    {
+        return this.phenotypeMatrix;
+    }
+    
+    /**
+     * Getter for the trait's column in the matrix
+     * @return
+     *          the trait index
+     */
+    public int getTraitIndex()
+    {
+        return this.traitIndex;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String getName()
+    {
+        return this.phenotypeMatrix.getTraitName(this.traitIndex);
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, List<Double>> getPhenotypeData()
+    {
+        String[] strains = this.phenotypeMatrix.getStrains();
+        double[] strainValues =
+            this.phenotypeMatrix.getTraitValues(this.traitIndex);
+        Map<String, List<Double>> phenotypeData =
+            new HashMap<String, List<Double>>();
+        for(int i = 0; i < strains.length; i++)
+        {
+            if(!Double.isNaN(strainValues[i]))
+            {
+                List<Double> values = new ArrayList<Double>(1);
+                values.add(strainValues[i]);
+                phenotypeData.put(strains[i], values);
+            }
+        }
+        
+        return Collections.unmodifiableMap(phenotypeData);
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return this.getName();
+    }
+}
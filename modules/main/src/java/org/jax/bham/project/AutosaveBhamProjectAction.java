@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.project;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.AbstractAction;
+import javax.swing.AbstractButton;
+
+/**
+ * An action for turning project autosave on and off. This is meant to
+ * back a check box menu item
+ * @see BhamProjectManager#setAutosaveEnabled(boolean)
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class AutosaveBhamProjectAction extends AbstractAction
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = 4413590972640162745L;
+    
+    /**
+     * Constructor
+     */
+    public AutosaveBhamProjectAction()
+    {
+        super("Autosave Project Every "
+              + (BhamProjectManager.AUTOSAVE_INTERVAL_MILLISECONDS / 60000)
+              + " Minutes");
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void actionPerformed(ActionEvent e)
+    {
+        AbstractButton autosaveButton = (AbstractButton)e.getSource();
+        BhamProjectManager.getInstance().setAutosaveEnabled(
+                autosaveButton.isSelected());
+    }
+}
@@ -18,17 +18,27 @@
 package org.jax.bham.project;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import org.jax.bham.io.PhenotypeMatrix;
+import org.jax.bham.project.SectionedProjectFile.SectionType;
+import org.jax.bham.test.MultiPhenotypeHaplotypeAssociationScan;
+import org.jax.bham.test.SlidingWindowStrainMeanScan;
 import org.jax.haplotype.analysis.HaplotypeAssociationTest;
 import org.jax.haplotype.analysis.HaplotypeDataSource;
 import org.jax.haplotype.analysis.MultiGroupHaplotypeAssociationTest;
@@ -45,14 +55,20 @@ import org.jax.util.project.Project;
  */
 public class BhamProject extends Project
 {
+    /**
+     * our logger
+     */
+    private static final Logger LOG = Logger.getLogger(
+            BhamProject.class.getName());
+    
     /**
      * the genome data sources property
      * @see Project#addPropertyChangeListener(java.beans.PropertyChangeListener)
      */
     public static final String GENOME_DATA_SOURCES_PROPERTY_NAME =
         "genomeDataSources";
-    private final ArrayList<GenomeDataSource> genomeDataSources =
-        new ArrayList<GenomeDataSource>();
+    private final ArrayList<ProjectSection<GenomeDataSource>> genomeDataSources =
+        new ArrayList<ProjectSection<GenomeDataSource>>();
     
     /**
      * the phenotype data sources property
@@ -60,8 +76,17 @@ public class BhamProject extends Project
      */
     public static final String PHENOTYPE_DATA_SOURCES_PROPERTY_NAME =
         "phenotypeDataSources";
-    private final ArrayList<PhenotypeDataSource> phenotypeDataSources =
-        new ArrayList<PhenotypeDataSource>();
+    private final ArrayList<ProjectSection<PhenotypeDataSource>> phenotypeDataSources =
+        new ArrayList<ProjectSection<PhenotypeDataSource>>();
+    
+    /**
+     * the phenotype matrices property
+     * @see Project#addPropertyChangeListener(java.beans.PropertyChangeListener)
+     */
+    public static final String PHENOTYPE_MATRICES_PROPERTY_NAME =
+        "phenotypeMatrices";
+    private final ArrayList<ProjectSection<PhenotypeMatrix>> phenotypeMatrices =
+        new ArrayList<ProjectSection<PhenotypeMatrix>>();
     
     /**
      * the haplotype data sources property
@@ -69,8 +94,8 @@ public class BhamProject extends Project
      */
     public static final String HAPLOTYPE_DATA_SOURCES_PROPERTY_NAME =
         "haplotypeDataSources";
-    private final ArrayList<HaplotypeDataSource> haplotypeDataSources =
-        new ArrayList<HaplotypeDataSource>();
+    private final ArrayList<ProjectSection<HaplotypeDataSource>> haplotypeDataSources =
+        new ArrayList<ProjectSection<HaplotypeDataSource>>();
     
     /**
      * the haplotype association tests property
@@ -78,8 +103,8 @@ public class BhamProject extends Project
      */
     public static final String HAPLOTYPE_ASSOCIATION_TESTS_PROPERTY_NAME =
         "haplotypeAssociationTests";
-    private final ArrayList<HaplotypeAssociationTest> haplotypeAssociationTests =
-        new ArrayList<HaplotypeAssociationTest>();
+    private final ArrayList<ProjectSection<HaplotypeAssociationTest>> haplotypeAssociationTests =
+        new ArrayList<ProjectSection<HaplotypeAssociationTest>>();
     
     /**
      * the phylogeny data sources property
@@ -87,8 +112,8 @@ public class BhamProject extends Project
      */
     public static final String PHYLOGENY_DATA_SOURCES_PROPERTY_NAME =
         "phylogenyDataSources";
-    private final ArrayList<PhylogenyDataSource> phylogenyDataSources =
-        new ArrayList<PhylogenyDataSource>();
+    private final ArrayList<ProjectSection<PhylogenyDataSource>> phylogenyDataSources =
+        new ArrayList<ProjectSection<PhylogenyDataSource>>();
     
     /**
      * the phylogeny association tests property
@@ -96,8 +121,8 @@ public class BhamProject extends Project
      */
     public static final String PHYLOGENY_ASSOCIATION_TESTS_PROPERTY_NAME =
         "phylogenyAssociationTests";
-    private final ArrayList<PhylogenyAssociationTest> phylogenyAssociationTests =
-        new ArrayList<PhylogenyAssociationTest>();
+    private final ArrayList<ProjectSection<PhylogenyAssociationTest>> phylogenyAssociationTests =
+        new ArrayList<ProjectSection<PhylogenyAssociationTest>>();
     
     /**
      * the multi-group haplotype data source property
@@ -105,8 +130,8 @@ public class BhamProject extends Project
      */
     public static final String MULTI_GROUP_HAPLOTYPTE_DATA_SOURCES_PROPERTY_NAME =
         "multiGroupHaplotypeDataSources";
-    private final ArrayList<MultiGroupHaplotypeDataSource> multiGroupHaplotypeDataSources =
-        new ArrayList<MultiGroupHaplotypeDataSource>();
+    private final ArrayList<ProjectSection<MultiGroupHaplotypeDataSource>> multiGroupHaplotypeDataSources =
+        new ArrayList<ProjectSection<MultiGroupHaplotypeDataSource>>();
     
     /**
      * the multi-group haplotype association tests property
@@ -114,8 +139,42 @@ public class BhamProject extends Project
      */
     public static final String MULTI_GROUP_HAPLOTYPE_ASSOCIATION_TESTS_PROPERTY_NAME =
         "multiGroupHaplotypeAssociationTests";
-    private final ArrayList<MultiGroupHaplotypeAssociationTest> multiGroupHaplotypeAssociationTests =
-        new ArrayList<MultiGroupHaplotypeAssociationTest>();
+    private final ArrayList<ProjectSection<MultiGroupHaplotypeAssociationTest>> multiGroupHaplotypeAssociationTests =
+        new ArrayList<ProjectSection<MultiGroupHaplotypeAssociationTest>>();
+    
+    /**
+     * the sliding window scans property
+     * @see Project#addPropertyChangeListener(java.beans.PropertyChangeListener)
+     */
+    public static final String SLIDING_WINDOW_STRAIN_MEAN_SCANS_PROPERTY_NAME =
+        "slidingWindowStrainMeanScans";
+    private final ArrayList<ProjectSection<SlidingWindowStrainMeanScan>> slidingWindowStrainMeanScans =
+        new ArrayList<ProjectSection<SlidingWindowStrainMeanScan>>();
+    
+    /**
+     * the stored test results property
+     * @see Project#addPropertyChangeListener(java.beans.PropertyChangeListener)
+     */
+    public static final String STORED_TEST_RESULTS_PROPERTY_NAME =
+        "storedTestResults";
+    private final ArrayList<ProjectSection<StoredTestResults>> storedTestResults =
+        new ArrayList<ProjectSection<StoredTestResults>>();
+    
+    /**
+     * the multi-phenotype scans. These aren't shown in the project tree,
+     * only the phenotype tests that refer to them are
+     */
+    private final ArrayList<ProjectSection<MultiPhenotypeHaplotypeAssociationScan>> multiPhenotypeHaplotypeAssociationScans =
+        new ArrayList<ProjectSection<MultiPhenotypeHaplotypeAssociationScan>>();
+    
+    private final Map<Object, String> testInputFingerprints =
+        new IdentityHashMap<Object, String>();
+    
+    private int nextSectionId = 0;
+    
+    // chromosome workers store results in parallel so an increment must
+    // never be lost or a save could mark a changed project as clean
+    private final AtomicLong modificationCount = new AtomicLong();
     
     /**
      * Constructor
@@ -131,9 +190,22 @@ public class BhamProject extends Project
      * Getter for the genome data sources
      * @return the genomeDataSources
      */
-    public List<GenomeDataSource> getGenomeDataSources()
+    public synchronized List<GenomeDataSource> getGenomeDataSources()
     {
-        return this.genomeDataSources;
+        return new SectionValueList<GenomeDataSource>(
+                new ArrayList<ProjectSection<GenomeDataSource>>(this.genomeDataSources));
+    }
+    
+    /**
+     * Getter for the genome data source sections. Unlike
+     * {@link #getGenomeDataSources()} this doesn't load
+     * any of the genome data sources
+     * @return the sections
+     */
+    public synchronized List<ProjectSection<GenomeDataSource>> getGenomeDataSourceSections()
+    {
+        return Collections.unmodifiableList(
+                new ArrayList<ProjectSection<GenomeDataSource>>(this.genomeDataSources));
     }
     
     /**
@@ -143,22 +215,38 @@ public class BhamProject extends Project
      * @param genomeDataSource
      *          the genome data source to add
      */
-    public void addGenomeDataSource(GenomeDataSource genomeDataSource)
+    public synchronized void addGenomeDataSource(GenomeDataSource genomeDataSource)
     {
-        this.genomeDataSources.add(genomeDataSource);
+        this.genomeDataSources.add(this.createSection(
+                SectionType.GENOME_DATA_SOURCE,
+                genomeDataSource.getName(),
+                genomeDataSource));
         this.propertyChangeSupport.firePropertyChange(
                 GENOME_DATA_SOURCES_PROPERTY_NAME,
                 null,
-                this.genomeDataSources);
+                this.getGenomeDataSourceSections());
     }
     
     /**
      * Getter for the phenotype data sources
      * @return the phenotypeDataSources
      */
-    public List<PhenotypeDataSource> getPhenotypeDataSources()
+    public synchronized List<PhenotypeDataSource> getPhenotypeDataSources()
+    {
+        return new SectionValueList<PhenotypeDataSource>(
+                new ArrayList<ProjectSection<PhenotypeDataSource>>(this.phenotypeDataSources));
+    }
+    
+    /**
+     * Getter for the phenotype data source sections. Unlike
+     * {@link #getPhenotypeDataSources()} this doesn't load
+     * any of the phenotype data sources
+     * @return the sections
+     */
+    public synchronized List<ProjectSection<PhenotypeDataSource>> getPhenotypeDataSourceSections()
     {
-        return this.phenotypeDataSources;
+        return Collections.unmodifiableList(
+                new ArrayList<ProjectSection<PhenotypeDataSource>>(this.phenotypeDataSources));
     }
     
     /**
@@ -168,22 +256,79 @@ public class BhamProject extends Project
      * @param phenotypeDataSource
      *          the phenotype data source to add
      */
-    public void addPhenotypeDataSource(PhenotypeDataSource phenotypeDataSource)
+    public synchronized void addPhenotypeDataSource(PhenotypeDataSource phenotypeDataSource)
     {
-        this.phenotypeDataSources.add(phenotypeDataSource);
+        this.phenotypeDataSources.add(this.createSection(
+                SectionType.PHENOTYPE_DATA_SOURCE,
+                phenotypeDataSource.getName(),
+                phenotypeDataSource));
         this.propertyChangeSupport.firePropertyChange(
                 PHENOTYPE_DATA_SOURCES_PROPERTY_NAME,
                 null,
-                this.phenotypeDataSources);
+                this.getPhenotypeDataSourceSections());
+    }
+    
+    /**
+     * Getter for the phenotype matrices
+     * @return the phenotypeMatrices
+     */
+    public synchronized List<PhenotypeMatrix> getPhenotypeMatrices()
+    {
+        return new SectionValueList<PhenotypeMatrix>(
+                new ArrayList<ProjectSection<PhenotypeMatrix>>(this.phenotypeMatrices));
+    }
+    
+    /**
+     * Getter for the phenotype matrix sections. Unlike
+     * {@link #getPhenotypeMatrices()} this doesn't open any of the
+     * matrix files
+     * @return the sections
+     */
+    public synchronized List<ProjectSection<PhenotypeMatrix>> getPhenotypeMatrixSections()
+    {
+        return Collections.unmodifiableList(
+                new ArrayList<ProjectSection<PhenotypeMatrix>>(this.phenotypeMatrices));
+    }
+    
+    /**
+     * Add a phenotype matrix and fire a property change event using
+     * {@link #PHENOTYPE_MATRICES_PROPERTY_NAME}
+     * @see Project#addPropertyChangeListener(java.beans.PropertyChangeListener)
+     * @param phenotypeMatrix
+     *          the phenotype matrix to add
+     */
+    public synchronized void addPhenotypeMatrix(PhenotypeMatrix phenotypeMatrix)
+    {
+        this.phenotypeMatrices.add(this.createSection(
+                SectionType.PHENOTYPE_MATRIX,
+                phenotypeMatrix.getName(),
+                phenotypeMatrix));
+        this.propertyChangeSupport.firePropertyChange(
+                PHENOTYPE_MATRICES_PROPERTY_NAME,
+                null,
+                this.getPhenotypeMatrixSections());
     }
     
     /**
      * Getter for the phylogeny data sources
      * @return the phylogenyDataSources
      */
-    public List<PhylogenyDataSource> getPhylogenyDataSources()
+    public synchronized List<PhylogenyDataSource> getPhylogenyDataSources()
     {
-        return this.phylogenyDataSources;
+        return new SectionValueList<PhylogenyDataSource>(
+                new ArrayList<ProjectSection<PhylogenyDataSource>>(this.phylogenyDataSources));
+    }
+    
+    /**
+     * Getter for the phylogeny data source sections. Unlike
+     * {@link #getPhylogenyDataSources()} this doesn't load
+     * any of the phylogeny data sources
+     * @return the sections
+     */
+    public synchronized List<ProjectSection<PhylogenyDataSource>> getPhylogenyDataSourceSections()
+    {
+        return Collections.unmodifiableList(
+                new ArrayList<ProjectSection<PhylogenyDataSource>>(this.phylogenyDataSources));
     }
     
     /**
@@ -193,22 +338,38 @@ public class BhamProject extends Project
      * @param phylogenyDataSource
      *          the phylogeny data source to add
      */
-    public void addPhylogenyDataSource(PhylogenyDataSource phylogenyDataSource)
+    public synchronized void addPhylogenyDataSource(PhylogenyDataSource phylogenyDataSource)
     {
-        this.phylogenyDataSources.add(phylogenyDataSource);
+        this.phylogenyDataSources.add(this.createSection(
+                SectionType.PHYLOGENY_DATA_SOURCE,
+                phylogenyDataSource.getName(),
+                phylogenyDataSource));
         this.propertyChangeSupport.firePropertyChange(
                 PHYLOGENY_DATA_SOURCES_PROPERTY_NAME,
                 null,
-                this.phylogenyDataSources);
+                this.getPhylogenyDataSourceSections());
     }
     
     /**
      * Getter for the multi-group haplotype data sources
      * @return the data sources
      */
-    public List<MultiGroupHaplotypeDataSource> getMultiGroupHaplotypeDataSources()
+    public synchronized List<MultiGroupHaplotypeDataSource> getMultiGroupHaplotypeDataSources()
     {
-        return this.multiGroupHaplotypeDataSources;
+        return new SectionValueList<MultiGroupHaplotypeDataSource>(
+                new ArrayList<ProjectSection<MultiGroupHaplotypeDataSource>>(this.multiGroupHaplotypeDataSources));
+    }
+    
+    /**
+     * Getter for the multi-group haplotype data source sections. Unlike
+     * {@link #getMultiGroupHaplotypeDataSources()} this doesn't load
+     * any of the multi-group haplotype data sources
+     * @return the sections
+     */
+    public synchronized List<ProjectSection<MultiGroupHaplotypeDataSource>> getMultiGroupHaplotypeDataSourceSections()
+    {
+        return Collections.unmodifiableList(
+                new ArrayList<ProjectSection<MultiGroupHaplotypeDataSource>>(this.multiGroupHaplotypeDataSources));
     }
     
     /**
@@ -217,23 +378,39 @@ public class BhamProject extends Project
      * @param multiGroupHaplotypeDataSource
      *          the data source to add
      */
-    public void addMultiGroupHaplotypeDataSource(
+    public synchronized void addMultiGroupHaplotypeDataSource(
             MultiGroupHaplotypeDataSource multiGroupHaplotypeDataSource)
     {
-        this.multiGroupHaplotypeDataSources.add(multiGroupHaplotypeDataSource);
+        this.multiGroupHaplotypeDataSources.add(this.createSection(
+                SectionType.MULTI_GROUP_HAPLOTYPE_DATA_SOURCE,
+                multiGroupHaplotypeDataSource.getName(),
+                multiGroupHaplotypeDataSource));
         this.propertyChangeSupport.firePropertyChange(
                 MULTI_GROUP_HAPLOTYPTE_DATA_SOURCES_PROPERTY_NAME,
                 null,
-                this.multiGroupHaplotypeDataSources);
+                this.getMultiGroupHaplotypeDataSourceSections());
     }
     
     /**
      * Getter for the multi-group haplotype association tests
      * @return the multi-group haplotype association tests
      */
-    public List<MultiGroupHaplotypeAssociationTest> getMultiGroupHaplotypeAssociationTests()
+    public synchronized List<MultiGroupHaplotypeAssociationTest> getMultiGroupHaplotypeAssociationTests()
+    {
+        return new SectionValueList<MultiGroupHaplotypeAssociationTest>(
+                new ArrayList<ProjectSection<MultiGroupHaplotypeAssociationTest>>(this.multiGroupHaplotypeAssociationTests));
+    }
+    
+    /**
+     * Getter for the multi-group haplotype association test sections. Unlike
+     * {@link #getMultiGroupHaplotypeAssociationTests()} this doesn't load
+     * any of the multi-group haplotype association tests
+     * @return the sections
+     */
+    public synchronized List<ProjectSection<MultiGroupHaplotypeAssociationTest>> getMultiGroupHaplotypeAssociationTestSections()
     {
-        return this.multiGroupHaplotypeAssociationTests;
+        return Collections.unmodifiableList(
+                new ArrayList<ProjectSection<MultiGroupHaplotypeAssociationTest>>(this.multiGroupHaplotypeAssociationTests));
     }
     
     /**
@@ -242,23 +419,80 @@ public class BhamProject extends Project
      * @param multiGroupHaplotypeAssociationTest
      *          the test to add
      */
-    public void addMultiGroupHaplotypeAssociationTest(
+    public synchronized void addMultiGroupHaplotypeAssociationTest(
             MultiGroupHaplotypeAssociationTest multiGroupHaplotypeAssociationTest)
     {
-        this.multiGroupHaplotypeAssociationTests.add(multiGroupHaplotypeAssociationTest);
+        this.multiGroupHaplotypeAssociationTests.add(this.createSection(
+                SectionType.MULTI_GROUP_HAPLOTYPE_ASSOCIATION_TEST,
+                multiGroupHaplotypeAssociationTest.getName(),
+                multiGroupHaplotypeAssociationTest));
         this.propertyChangeSupport.firePropertyChange(
                 MULTI_GROUP_HAPLOTYPE_ASSOCIATION_TESTS_PROPERTY_NAME,
                 null,
-                this.multiGroupHaplotypeAssociationTests);
+                this.getMultiGroupHaplotypeAssociationTestSections());
+    }
+    
+    /**
+     * Getter for the sliding window scans
+     * @return the sliding window scans
+     */
+    public synchronized List<SlidingWindowStrainMeanScan> getSlidingWindowStrainMeanScans()
+    {
+        return new SectionValueList<SlidingWindowStrainMeanScan>(
+                new ArrayList<ProjectSection<SlidingWindowStrainMeanScan>>(this.slidingWindowStrainMeanScans));
+    }
+    
+    /**
+     * Getter for the sliding window scan sections. Unlike
+     * {@link #getSlidingWindowStrainMeanScans()} this doesn't load any of
+     * the scans
+     * @return the sections
+     */
+    public synchronized List<ProjectSection<SlidingWindowStrainMeanScan>> getSlidingWindowStrainMeanScanSections()
+    {
+        return Collections.unmodifiableList(
+                new ArrayList<ProjectSection<SlidingWindowStrainMeanScan>>(this.slidingWindowStrainMeanScans));
+    }
+    
+    /**
+     * Add the given scan and fire a property change event using
+     * {@link #SLIDING_WINDOW_STRAIN_MEAN_SCANS_PROPERTY_NAME}
+     * @param slidingWindowStrainMeanScan
+     *          the scan to add
+     */
+    public synchronized void addSlidingWindowStrainMeanScan(
+            SlidingWindowStrainMeanScan slidingWindowStrainMeanScan)
+    {
+        this.slidingWindowStrainMeanScans.add(this.createSection(
+                SectionType.SLIDING_WINDOW_STRAIN_MEAN_SCAN,
+                slidingWindowStrainMeanScan.getName(),
+                slidingWindowStrainMeanScan));
+        this.propertyChangeSupport.firePropertyChange(
+                SLIDING_WINDOW_STRAIN_MEAN_SCANS_PROPERTY_NAME,
+                null,
+                this.getSlidingWindowStrainMeanScanSections());
     }
     
     /**
      * Getter for the phylogeny association test
      * @return the phylogeny association test
      */
-    public List<PhylogenyAssociationTest> getPhylogenyAssociationTests()
+    public synchronized List<PhylogenyAssociationTest> getPhylogenyAssociationTests()
     {
-        return this.phylogenyAssociationTests;
+        return new SectionValueList<PhylogenyAssociationTest>(
+                new ArrayList<ProjectSection<PhylogenyAssociationTest>>(this.phylogenyAssociationTests));
+    }
+    
+    /**
+     * Getter for the phylogeny association test sections. Unlike
+     * {@link #getPhylogenyAssociationTests()} this doesn't load
+     * any of the phylogeny association tests
+     * @return the sections
+     */
+    public synchronized List<ProjectSection<PhylogenyAssociationTest>> getPhylogenyAssociationTestSections()
+    {
+        return Collections.unmodifiableList(
+                new ArrayList<ProjectSection<PhylogenyAssociationTest>>(this.phylogenyAssociationTests));
     }
     
     /**
@@ -267,23 +501,39 @@ public class BhamProject extends Project
      * @param phylogenyAssociationTest
      *          the phylogeny test to add
      */
-    public void addPhylogenyAssociationTest(
+    public synchronized void addPhylogenyAssociationTest(
             PhylogenyAssociationTest phylogenyAssociationTest)
     {
-        this.phylogenyAssociationTests.add(phylogenyAssociationTest);
+        this.phylogenyAssociationTests.add(this.createSection(
+                SectionType.PHYLOGENY_ASSOCIATION_TEST,
+                phylogenyAssociationTest.getName(),
+                phylogenyAssociationTest));
         this.propertyChangeSupport.firePropertyChange(
                 PHYLOGENY_ASSOCIATION_TESTS_PROPERTY_NAME,
                 null,
-                this.phylogenyAssociationTests);
+                this.getPhylogenyAssociationTestSections());
     }
     
     /**
      * Getter for the haplotype data sources
      * @return the haplotype data sources
      */
-    public List<HaplotypeDataSource> getHaplotypeDataSources()
+    public synchronized List<HaplotypeDataSource> getHaplotypeDataSources()
+    {
+        return new SectionValueList<HaplotypeDataSource>(
+                new ArrayList<ProjectSection<HaplotypeDataSource>>(this.haplotypeDataSources));
+    }
+    
+    /**
+     * Getter for the haplotype data source sections. Unlike
+     * {@link #getHaplotypeDataSources()} this doesn't load
+     * any of the haplotype data sources
+     * @return the sections
+     */
+    public synchronized List<ProjectSection<HaplotypeDataSource>> getHaplotypeDataSourceSections()
     {
-        return this.haplotypeDataSources;
+        return Collections.unmodifiableList(
+                new ArrayList<ProjectSection<HaplotypeDataSource>>(this.haplotypeDataSources));
     }
     
     /**
@@ -292,22 +542,38 @@ public class BhamProject extends Project
      * @param haplotypeDataSource
      *          the haplotype data source to add
      */
-    public void addHaplotypeDataSource(HaplotypeDataSource haplotypeDataSource)
+    public synchronized void addHaplotypeDataSource(HaplotypeDataSource haplotypeDataSource)
     {
-        this.haplotypeDataSources.add(haplotypeDataSource);
+        this.haplotypeDataSources.add(this.createSection(
+                SectionType.HAPLOTYPE_DATA_SOURCE,
+                haplotypeDataSource.getName(),
+                haplotypeDataSource));
         this.propertyChangeSupport.firePropertyChange(
                 HAPLOTYPE_DATA_SOURCES_PROPERTY_NAME,
                 null,
-                this.haplotypeDataSources);
+                this.getHaplotypeDataSourceSections());
     }
     
     /**
      * Getter for the haplotype association tests
      * @return the haplotype association tests
      */
-    public List<HaplotypeAssociationTest> getHaplotypeAssociationTests()
+    public synchronized List<HaplotypeAssociationTest> getHaplotypeAssociationTests()
+    {
+        return new SectionValueList<HaplotypeAssociationTest>(
+                new ArrayList<ProjectSection<HaplotypeAssociationTest>>(this.haplotypeAssociationTests));
+    }
+    
+    /**
+     * Getter for the haplotype association test sections. Unlike
+     * {@link #getHaplotypeAssociationTests()} this doesn't load
+     * any of the haplotype association tests
+     * @return the sections
+     */
+    public synchronized List<ProjectSection<HaplotypeAssociationTest>> getHaplotypeAssociationTestSections()
     {
-        return this.haplotypeAssociationTests;
+        return Collections.unmodifiableList(
+                new ArrayList<ProjectSection<HaplotypeAssociationTest>>(this.haplotypeAssociationTests));
     }
     
     /**
@@ -316,18 +582,371 @@ public class BhamProject extends Project
      * @param haplotypeAssociationTest
      *          the haplotype test to add
      */
-    public void addHaplotypeAssociationTest(
+    public synchronized void addHaplotypeAssociationTest(
             HaplotypeAssociationTest haplotypeAssociationTest)
     {
-        this.haplotypeAssociationTests.add(haplotypeAssociationTest);
+        this.haplotypeAssociationTests.add(this.createSection(
+                SectionType.HAPLOTYPE_ASSOCIATION_TEST,
+                haplotypeAssociationTest.getName(),
+                haplotypeAssociationTest));
         this.propertyChangeSupport.firePropertyChange(
                 HAPLOTYPE_ASSOCIATION_TESTS_PROPERTY_NAME,
                 null,
-                this.haplotypeAssociationTests);
+                this.getHaplotypeAssociationTestSections());
+    }
+    
+    /**
+     * Add a multi-phenotype scan. The scan is stored once in its own
+     * section and its phenotype tests (which are added separately with
+     * {@link #addHaplotypeAssociationTest(HaplotypeAssociationTest)}) find
+     * it again through {@link #getMultiPhenotypeHaplotypeAssociationScan(String)}
+     * @param scan
+     *          the scan to add
+     */
+    public synchronized void addMultiPhenotypeHaplotypeAssociationScan(
+            MultiPhenotypeHaplotypeAssociationScan scan)
+    {
+        this.multiPhenotypeHaplotypeAssociationScans.add(this.createSection(
+                SectionType.MULTI_PHENOTYPE_HAPLOTYPE_ASSOCIATION_SCAN,
+                scan.getName(),
+                scan));
+    }
+    
+    /**
+     * Get the multi-phenotype scan with the given ID. This loads the scan
+     * sections that haven't been loaded yet
+     * @param scanId
+     *          the scan ID
+     * @return
+     *          the scan or null if it isn't in this project
+     */
+    public synchronized MultiPhenotypeHaplotypeAssociationScan getMultiPhenotypeHaplotypeAssociationScan(
+            String scanId)
+    {
+        for(ProjectSection<MultiPhenotypeHaplotypeAssociationScan> scanSection:
+            this.multiPhenotypeHaplotypeAssociationScans)
+        {
+            MultiPhenotypeHaplotypeAssociationScan scan = scanSection.get();
+            if(scan.getScanId().equals(scanId))
+            {
+                return scan;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Determine if results for the given test are stored in this project
+     * under the given key without reading them. Like
+     * {@link #getStoredTestResults(Object, String)} this ignores results
+     * whose inputs have changed
+     * @param test
+     *          the test (one of the association tests or sliding window
+     *          scans in this project)
+     * @param resultsKey
+     *          the key that the results were stored under
+     * @return
+     *          true if the results are stored
+     */
+    public boolean containsStoredTestResults(Object test, String resultsKey)
+    {
+        try
+        {
+            ProjectSection<StoredTestResults> resultsSection =
+                this.getStoredTestResults(test, false);
+            return resultsSection != null &&
+                   resultsSection.get().containsResults(resultsKey);
+        }
+        catch(Exception ex)
+        {
+            LOG.log(Level.WARNING,
+                    "failed to check stored results for: " + resultsKey,
+                    ex);
+            return false;
+        }
+    }
+    
+    /**
+     * Get results for the given test that were stored in this project using
+     * {@link #storeTestResults(Object, String, Object)}. Results are only
+     * returned if the test's inputs haven't changed since they were stored
+     * @param <R>
+     *          the type of results
+     * @param test
+     *          the test (one of the association tests or sliding window
+     *          scans in this project)
+     * @param resultsKey
+     *          the key that the results were stored under
+     *          (see {@link StoredTestResults#getChromosomeKey(int)})
+     * @return
+     *          the results or null if none are stored
+     */
+    public <R> R getStoredTestResults(Object test, String resultsKey)
+    {
+        try
+        {
+            ProjectSection<StoredTestResults> resultsSection =
+                this.getStoredTestResults(test, false);
+            if(resultsSection == null)
+            {
+                return null;
+            }
+            else
+            {
+                return resultsSection.get().<R>getResults(resultsKey);
+            }
+        }
+        catch(Exception ex)
+        {
+            // fall back on recalculating the results
+            LOG.log(Level.WARNING,
+                    "failed to read stored results for: " + resultsKey,
+                    ex);
+            return null;
+        }
+    }
+    
+    /**
+     * Store computed results for the given test in this project so that
+     * they're saved along with the project and fire a property change event
+     * using {@link #STORED_TEST_RESULTS_PROPERTY_NAME}. Nothing is stored
+     * if the test isn't part of this project
+     * @param test
+     *          the test (one of the association tests or sliding window
+     *          scans in this project)
+     * @param resultsKey
+     *          the key to store the results under
+     *          (see {@link StoredTestResults#getChromosomeKey(int)})
+     * @param results
+     *          the results which must be serializable
+     */
+    public void storeTestResults(
+            Object test,
+            String resultsKey,
+            Object results)
+    {
+        try
+        {
+            ProjectSection<StoredTestResults> resultsSection =
+                this.getStoredTestResults(test, true);
+            if(resultsSection != null)
+            {
+                resultsSection.get().putResults(resultsKey, results);
+                resultsSection.markModified();
+                this.modificationCount.incrementAndGet();
+                this.propertyChangeSupport.firePropertyChange(
+                        STORED_TEST_RESULTS_PROPERTY_NAME,
+                        null,
+                        test);
+            }
+        }
+        catch(Exception ex)
+        {
+            // the results are still good, they just won't be saved
+            LOG.log(Level.WARNING,
+                    "failed to store results for: " + resultsKey,
+                    ex);
+        }
+    }
+    
+    /**
+     * Get the stored results for the given test. Results whose input
+     * fingerprint no longer matches the test are ignored, and are only
+     * dropped when create is true
+     * @param test
+     *          the test
+     * @param create
+     *          if true we create an empty set of results if there are none
+     * @return
+     *          the section holding the results or null if the test isn't
+     *          in this project or there are no results and create is false
+     * @throws IOException
+     *          if we fail to fingerprint the test
+     */
+    private synchronized ProjectSection<StoredTestResults> getStoredTestResults(
+            Object test,
+            boolean create)
+    throws IOException
+    {
+        ProjectSection<?> testSection = this.findTestSection(test);
+        if(testSection == null)
+        {
+            return null;
+        }
+        
+        String inputFingerprint = this.getTestInputFingerprint(test);
+        Iterator<ProjectSection<StoredTestResults>> resultsIter =
+            this.storedTestResults.iterator();
+        while(resultsIter.hasNext())
+        {
+            ProjectSection<StoredTestResults> resultsSection = resultsIter.next();
+            if(resultsSection.getParentSectionId() == testSection.getSectionId())
+            {
+                StoredTestResults testResults = resultsSection.get();
+                if(inputFingerprint.equals(testResults.getInputFingerprint()))
+                {
+                    return resultsSection;
+                }
+                else if(create)
+                {
+                    // these results came from different inputs and we're
+                    // about to store new ones in their place. Reads leave
+                    // them alone so that just looking doesn't modify the
+                    // project
+                    resultsIter.remove();
+                    this.modificationCount.incrementAndGet();
+                    break;
+                }
+                else
+                {
+                    return null;
+                }
+            }
+        }
+        
+        if(create)
+        {
+            ProjectSection<StoredTestResults> resultsSection =
+                new ProjectSection<StoredTestResults>(
+                        this.nextSectionId,
+                        testSection.getSectionId(),
+                        SectionType.TEST_RESULTS,
+                        testSection.getName() + " Results",
+                        new StoredTestResults(inputFingerprint));
+            this.storedTestResults.add(resultsSection);
+            this.nextSectionId++;
+            this.modificationCount.incrementAndGet();
+            
+            return resultsSection;
+        }
+        else
+        {
+            return null;
+        }
+    }
+    
+    /**
+     * Get the input fingerprint of the given test. Fingerprints are
+     * calculated the first time they're asked for and then remembered
+     * until the next project load
+     * @see StoredTestResults#calculateInputFingerprint(Object)
+     * @param test
+     *          the test
+     * @return
+     *          the fingerprint
+     * @throws IOException
+     *          if we fail to fingerprint the test
+     */
+    public synchronized String getTestInputFingerprint(Object test)
+    throws IOException
+    {
+        String inputFingerprint = this.testInputFingerprints.get(test);
+        if(inputFingerprint == null)
+        {
+            inputFingerprint = StoredTestResults.calculateInputFingerprint(test);
+            this.testInputFingerprints.put(test, inputFingerprint);
+        }
+        
+        return inputFingerprint;
+    }
+    
+    /**
+     * Find the section holding the given test
+     * @param test
+     *          the test
+     * @return
+     *          the section or null if the test isn't in this project
+     */
+    private ProjectSection<?> findTestSection(Object test)
+    {
+        List<ProjectSection<?>> testSections = new ArrayList<ProjectSection<?>>();
+        testSections.addAll(this.haplotypeAssociationTests);
+        testSections.addAll(this.phylogenyAssociationTests);
+        testSections.addAll(this.multiGroupHaplotypeAssociationTests);
+        testSections.addAll(this.slidingWindowStrainMeanScans);
+        for(ProjectSection<?> testSection: testSections)
+        {
+            // a test that the caller is holding has to be loaded already
+            if(testSection.isLoaded() && testSection.get() == test)
+            {
+                return testSection;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Getter for the modification count which goes up every time that a
+     * section is added to or removed from this project or a section's
+     * value changes. A background save uses this to tell if the project
+     * changed while it was being written
+     * @return the modification count
+     */
+    public long getModificationCount()
+    {
+        return this.modificationCount.get();
+    }
+    
+    /**
+     * Create a new in-memory section for this project
+     * @param <T>
+     *          the type of value held in the section
+     * @param sectionType
+     *          the type of section
+     * @param name
+     *          the name of the section
+     * @param value
+     *          the value
+     * @return
+     *          the section
+     */
+    private <T> ProjectSection<T> createSection(
+            SectionType sectionType,
+            String name,
+            T value)
+    {
+        ProjectSection<T> section = new ProjectSection<T>(
+                this.nextSectionId,
+                sectionType,
+                name,
+                value);
+        this.nextSectionId++;
+        this.modificationCount.incrementAndGet();
+        
+        return section;
     }
     
     /**
-     * Save this project to the given file
+     * Get every section in the project in the order that they're saved
+     * @return
+     *          the sections
+     */
+    private synchronized List<ProjectSection<?>> getAllSections()
+    {
+        List<ProjectSection<?>> allSections = new ArrayList<ProjectSection<?>>();
+        allSections.addAll(this.genomeDataSources);
+        allSections.addAll(this.phenotypeDataSources);
+        allSections.addAll(this.phenotypeMatrices);
+        allSections.addAll(this.haplotypeDataSources);
+        allSections.addAll(this.haplotypeAssociationTests);
+        allSections.addAll(this.phylogenyDataSources);
+        allSections.addAll(this.phylogenyAssociationTests);
+        allSections.addAll(this.multiGroupHaplotypeDataSources);
+        allSections.addAll(this.multiGroupHaplotypeAssociationTests);
+        allSections.addAll(this.multiPhenotypeHaplotypeAssociationScans);
+        allSections.addAll(this.slidingWindowStrainMeanScans);
+        allSections.addAll(this.storedTestResults);
+        
+        return allSections;
+    }
+    
+    /**
+     * Save this project to the given file. This is safe to call from a
+     * background thread: the sections are snapshotted up front and only
+     * the sections that changed since the last save are serialized again
+     * @see SectionedProjectFile
      * @param file
      *          the file to save this project to
      * @throws FileNotFoundException
@@ -339,140 +958,303 @@ public class BhamProject extends Project
     public void saveProjectToFile(File file)
     throws FileNotFoundException, IOException
     {
-        // TODO this should be changed to use XML to be more robust to
-        //      future modifications
-        ObjectOutputStream oos = new ObjectOutputStream(
-                new BufferedOutputStream(new FileOutputStream(file)));
+        SectionedProjectFile.write(
+                file,
+                this.getName(),
+                this.getAllSections());
+    }
+    
+    /**
+     * Load the given project file. it replaces all of the project data
+     * (except for the project event listeners). For sectioned project
+     * files only the table of contents is read here and the data sources
+     * and tests are deserialized as they're used. Older project files are
+     * read in full
+     * @param file
+     * @throws FileNotFoundException
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    public void loadProjectFromFile(File file)
+    throws FileNotFoundException, IOException, ClassNotFoundException
+    {
+        if(SectionedProjectFile.isSectionedProjectFile(file))
+        {
+            // only the table of contents is read here so this is quick, but
+            // there's still no need to hold the lock while we do it
+            SectionedProjectFile projectFile = SectionedProjectFile.read(file);
+            
+            synchronized(this)
+            {
+                this.testInputFingerprints.clear();
+                
+                this.genomeDataSources.clear();
+                this.genomeDataSources.addAll(projectFile.<GenomeDataSource>getSections(
+                        SectionType.GENOME_DATA_SOURCE));
+                
+                this.phenotypeDataSources.clear();
+                this.phenotypeDataSources.addAll(projectFile.<PhenotypeDataSource>getSections(
+                        SectionType.PHENOTYPE_DATA_SOURCE));
+                
+                this.phenotypeMatrices.clear();
+                this.phenotypeMatrices.addAll(projectFile.<PhenotypeMatrix>getSections(
+                        SectionType.PHENOTYPE_MATRIX));
+                
+                this.haplotypeDataSources.clear();
+                this.haplotypeDataSources.addAll(projectFile.<HaplotypeDataSource>getSections(
+                        SectionType.HAPLOTYPE_DATA_SOURCE));
+                
+                this.haplotypeAssociationTests.clear();
+                this.haplotypeAssociationTests.addAll(projectFile.<HaplotypeAssociationTest>getSections(
+                        SectionType.HAPLOTYPE_ASSOCIATION_TEST));
+                
+                this.phylogenyDataSources.clear();
+                this.phylogenyDataSources.addAll(projectFile.<PhylogenyDataSource>getSections(
+                        SectionType.PHYLOGENY_DATA_SOURCE));
+                
+                this.phylogenyAssociationTests.clear();
+                this.phylogenyAssociationTests.addAll(projectFile.<PhylogenyAssociationTest>getSections(
+                        SectionType.PHYLOGENY_ASSOCIATION_TEST));
+                
+                this.multiGroupHaplotypeDataSources.clear();
+                this.multiGroupHaplotypeDataSources.addAll(projectFile.<MultiGroupHaplotypeDataSource>getSections(
+                        SectionType.MULTI_GROUP_HAPLOTYPE_DATA_SOURCE));
+                
+                this.multiGroupHaplotypeAssociationTests.clear();
+                this.multiGroupHaplotypeAssociationTests.addAll(projectFile.<MultiGroupHaplotypeAssociationTest>getSections(
+                        SectionType.MULTI_GROUP_HAPLOTYPE_ASSOCIATION_TEST));
+                
+                this.storedTestResults.clear();
+                this.storedTestResults.addAll(projectFile.<StoredTestResults>getSections(
+                        SectionType.TEST_RESULTS));
+                
+                this.multiPhenotypeHaplotypeAssociationScans.clear();
+                this.multiPhenotypeHaplotypeAssociationScans.addAll(projectFile.<MultiPhenotypeHaplotypeAssociationScan>getSections(
+                        SectionType.MULTI_PHENOTYPE_HAPLOTYPE_ASSOCIATION_SCAN));
+                
+                this.slidingWindowStrainMeanScans.clear();
+                this.slidingWindowStrainMeanScans.addAll(projectFile.<SlidingWindowStrainMeanScan>getSections(
+                        SectionType.SLIDING_WINDOW_STRAIN_MEAN_SCAN));
+                
+                this.nextSectionId = projectFile.getMaximumSectionId() + 1;
+                this.modificationCount.incrementAndGet();
+                this.setName(projectFile.getProjectName());
+            }
+        }
+        else
+        {
+            synchronized(this)
+            {
+                this.testInputFingerprints.clear();
+                this.loadLegacyProjectFromFile(file);
+            }
+        }
         
-        this.genomeDataSources.trimToSize();
-        oos.writeObject(this.genomeDataSources);
+        // the events carry sections rather than values so that listeners
+        // don't force everything to load
+        this.propertyChangeSupport.firePropertyChange(
+                GENOME_DATA_SOURCES_PROPERTY_NAME,
+                null,
+                this.getGenomeDataSourceSections());
         
-        this.phenotypeDataSources.trimToSize();
-        oos.writeObject(this.phenotypeDataSources);
+        this.propertyChangeSupport.firePropertyChange(
+                PHENOTYPE_DATA_SOURCES_PROPERTY_NAME,
+                null,
+                this.getPhenotypeDataSourceSections());
         
-        this.haplotypeDataSources.trimToSize();
-        oos.writeObject(this.haplotypeDataSources);
+        this.propertyChangeSupport.firePropertyChange(
+                PHENOTYPE_MATRICES_PROPERTY_NAME,
+                null,
+                this.getPhenotypeMatrixSections());
         
-        this.haplotypeAssociationTests.trimToSize();
-        oos.writeObject(this.haplotypeAssociationTests);
+        this.propertyChangeSupport.firePropertyChange(
+                PHYLOGENY_DATA_SOURCES_PROPERTY_NAME,
+                null,
+                this.getPhylogenyDataSourceSections());
         
-        this.phylogenyDataSources.trimToSize();
-        oos.writeObject(this.phylogenyDataSources);
+        this.propertyChangeSupport.firePropertyChange(
+                MULTI_GROUP_HAPLOTYPTE_DATA_SOURCES_PROPERTY_NAME,
+                null,
+                this.getMultiGroupHaplotypeDataSourceSections());
         
-        this.phylogenyAssociationTests.trimToSize();
-        oos.writeObject(this.phylogenyAssociationTests);
+        this.propertyChangeSupport.firePropertyChange(
+                MULTI_GROUP_HAPLOTYPE_ASSOCIATION_TESTS_PROPERTY_NAME,
+                null,
+                this.getMultiGroupHaplotypeAssociationTestSections());
         
-        this.multiGroupHaplotypeDataSources.trimToSize();
-        oos.writeObject(this.multiGroupHaplotypeDataSources);
+        this.propertyChangeSupport.firePropertyChange(
+                SLIDING_WINDOW_STRAIN_MEAN_SCANS_PROPERTY_NAME,
+                null,
+                this.getSlidingWindowStrainMeanScanSections());
         
-        this.multiGroupHaplotypeAssociationTests.trimToSize();
-        oos.writeObject(this.multiGroupHaplotypeAssociationTests);
+        this.propertyChangeSupport.firePropertyChange(
+                PHYLOGENY_ASSOCIATION_TESTS_PROPERTY_NAME,
+                null,
+                this.getPhylogenyAssociationTestSections());
         
-        oos.writeObject(this.getName());
+        this.propertyChangeSupport.firePropertyChange(
+                HAPLOTYPE_DATA_SOURCES_PROPERTY_NAME,
+                null,
+                this.getHaplotypeDataSourceSections());
         
-        oos.flush();
-        oos.close();
+        this.propertyChangeSupport.firePropertyChange(
+                HAPLOTYPE_ASSOCIATION_TESTS_PROPERTY_NAME,
+                null,
+                this.getHaplotypeAssociationTestSections());
     }
     
     /**
-     * Load the given project file. it replaces all of the project data
-     * (except for the project event listeners)
+     * Load a project that was saved as a single object stream (the format
+     * used before {@link SectionedProjectFile}). Everything is read up
+     * front. The caller must hold this project's lock and is responsible
+     * for firing change events
      * @param file
+     *          the file to load
      * @throws FileNotFoundException
      * @throws IOException
      * @throws ClassNotFoundException
      */
     @SuppressWarnings("unchecked")
-    public void loadProjectFromFile(File file)
+    private void loadLegacyProjectFromFile(File file)
     throws FileNotFoundException, IOException, ClassNotFoundException
     {
         ObjectInputStream ois = new ObjectInputStream(
                 new BufferedInputStream(new FileInputStream(file)));
+        this.nextSectionId = 0;
         
         List<GenomeDataSource> loadedGenomeDataSources =
             (List<GenomeDataSource>)ois.readObject();
         this.genomeDataSources.clear();
-        this.genomeDataSources.addAll(loadedGenomeDataSources);
+        for(GenomeDataSource dataSource: loadedGenomeDataSources)
+        {
+            this.genomeDataSources.add(this.createSection(
+                    SectionType.GENOME_DATA_SOURCE,
+                    dataSource.getName(),
+                    dataSource));
+        }
         
         List<PhenotypeDataSource> loadedPhenotypeDataSources =
             (List<PhenotypeDataSource>)ois.readObject();
         this.phenotypeDataSources.clear();
-        this.phenotypeDataSources.addAll(loadedPhenotypeDataSources);
+        for(PhenotypeDataSource dataSource: loadedPhenotypeDataSources)
+        {
+            this.phenotypeDataSources.add(this.createSection(
+                    SectionType.PHENOTYPE_DATA_SOURCE,
+                    dataSource.getName(),
+                    dataSource));
+        }
         
         List<HaplotypeDataSource> loadedHaplotypeDataSources =
             (List<HaplotypeDataSource>)ois.readObject();
         this.haplotypeDataSources.clear();
-        this.haplotypeDataSources.addAll(loadedHaplotypeDataSources);
+        for(HaplotypeDataSource dataSource: loadedHaplotypeDataSources)
+        {
+            this.haplotypeDataSources.add(this.createSection(
+                    SectionType.HAPLOTYPE_DATA_SOURCE,
+                    dataSource.getName(),
+                    dataSource));
+        }
         
         List<HaplotypeAssociationTest> loadedHaplotypeAssociationTest =
             (List<HaplotypeAssociationTest>)ois.readObject();
         this.haplotypeAssociationTests.clear();
-        this.haplotypeAssociationTests.addAll(loadedHaplotypeAssociationTest);
+        for(HaplotypeAssociationTest test: loadedHaplotypeAssociationTest)
+        {
+            this.haplotypeAssociationTests.add(this.createSection(
+                    SectionType.HAPLOTYPE_ASSOCIATION_TEST,
+                    test.getName(),
+                    test));
+        }
         
         List<PhylogenyDataSource> loadedPhylogenyDataSource =
             (List<PhylogenyDataSource>)ois.readObject();
         this.phylogenyDataSources.clear();
-        this.phylogenyDataSources.addAll(loadedPhylogenyDataSource);
+        for(PhylogenyDataSource dataSource: loadedPhylogenyDataSource)
+        {
+            this.phylogenyDataSources.add(this.createSection(
+                    SectionType.PHYLOGENY_DATA_SOURCE,
+                    dataSource.getName(),
+                    dataSource));
+        }
         
         List<PhylogenyAssociationTest> loadedPhylogenyAssociationTests =
             (List<PhylogenyAssociationTest>)ois.readObject();
         this.phylogenyAssociationTests.clear();
-        this.phylogenyAssociationTests.addAll(loadedPhylogenyAssociationTests);
+        for(PhylogenyAssociationTest test: loadedPhylogenyAssociationTests)
+        {
+            this.phylogenyAssociationTests.add(this.createSection(
+                    SectionType.PHYLOGENY_ASSOCIATION_TEST,
+                    test.getName(),
+                    test));
+        }
         
         List<MultiGroupHaplotypeDataSource> loadedMultiGroupHaplotypeDataSource =
             (List<MultiGroupHaplotypeDataSource>)ois.readObject();
         this.multiGroupHaplotypeDataSources.clear();
-        this.multiGroupHaplotypeDataSources.addAll(loadedMultiGroupHaplotypeDataSource);
+        for(MultiGroupHaplotypeDataSource dataSource: loadedMultiGroupHaplotypeDataSource)
+        {
+            this.multiGroupHaplotypeDataSources.add(this.createSection(
+                    SectionType.MULTI_GROUP_HAPLOTYPE_DATA_SOURCE,
+                    dataSource.getName(),
+                    dataSource));
+        }
         
         List<MultiGroupHaplotypeAssociationTest> loadedMultiGroupHaplotypeAssociationTests =
             (List<MultiGroupHaplotypeAssociationTest>)ois.readObject();
         this.multiGroupHaplotypeAssociationTests.clear();
-        this.multiGroupHaplotypeAssociationTests.addAll(loadedMultiGroupHaplotypeAssociationTests);
+        for(MultiGroupHaplotypeAssociationTest test: loadedMultiGroupHaplotypeAssociationTests)
+        {
+            this.multiGroupHaplotypeAssociationTests.add(this.createSection(
+                    SectionType.MULTI_GROUP_HAPLOTYPE_ASSOCIATION_TEST,
+                    test.getName(),
+                    test));
+        }
+        
+        // older projects never had results, phenotype matrices or scans
+        // stored with them
+        this.storedTestResults.clear();
+        this.phenotypeMatrices.clear();
+        this.multiPhenotypeHaplotypeAssociationScans.clear();
+        this.slidingWindowStrainMeanScans.clear();
         
         String loadedName = (String)ois.readObject();
         this.setName(loadedName);
         
-        this.propertyChangeSupport.firePropertyChange(
-                GENOME_DATA_SOURCES_PROPERTY_NAME,
-                null,
-                this.genomeDataSources);
-
-        this.propertyChangeSupport.firePropertyChange(
-                PHENOTYPE_DATA_SOURCES_PROPERTY_NAME,
-                null,
-                this.phenotypeDataSources);
-        
-        this.propertyChangeSupport.firePropertyChange(
-                PHYLOGENY_DATA_SOURCES_PROPERTY_NAME,
-                null,
-                this.phylogenyDataSources);
-        
-        this.propertyChangeSupport.firePropertyChange(
-                MULTI_GROUP_HAPLOTYPTE_DATA_SOURCES_PROPERTY_NAME,
-                null,
-                this.multiGroupHaplotypeDataSources);
-        
-        this.propertyChangeSupport.firePropertyChange(
-                MULTI_GROUP_HAPLOTYPE_ASSOCIATION_TESTS_PROPERTY_NAME,
-                null,
-                this.multiGroupHaplotypeAssociationTests);
+        ois.close();
+    }
+    
+    /**
+     * A read only view of the values held in a list of sections. Values are
+     * loaded as they're accessed
+     * @param <T>
+     *          the value type
+     */
+    private static final class SectionValueList<T> extends AbstractList<T>
+    {
+        private final List<ProjectSection<T>> sections;
         
-        this.propertyChangeSupport.firePropertyChange(
-                PHYLOGENY_ASSOCIATION_TESTS_PROPERTY_NAME,
-                null,
-                this.phylogenyAssociationTests);
-
-        this.propertyChangeSupport.firePropertyChange(
-                HAPLOTYPE_DATA_SOURCES_PROPERTY_NAME,
-                null,
-                this.haplotypeDataSources);
+        public SectionValueList(List<ProjectSection<T>> sections)
+        {
+            this.sections = sections;
+        }
         
-        this.propertyChangeSupport.firePropertyChange(
-                HAPLOTYPE_ASSOCIATION_TESTS_PROPERTY_NAME,
-                null,
-                this.haplotypeAssociationTests);
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public T get(int index)
+        {
+            return this.sections.get(index).get();
+        }
         
-        ois.close();
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size()
+        {
+            return this.sections.size();
+        }
     }
     
 //    /**
@@ -17,10 +17,14 @@
 
 package org.jax.bham.project;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.io.File;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.filechooser.FileFilter;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -64,10 +68,24 @@ public class BhamProjectManager extends ProjectManager
                 BHAM_PROJECT_EXTENSION,
                 "BHAM Project (*.bham)");
     
+    /**
+     * How often autosave writes out a modified project
+     */
+    public static final int AUTOSAVE_INTERVAL_MILLISECONDS = 5 * 60 * 1000;
+    
     private final ObjectFactory objectFactory;
     
     private JAXBContext jaxbContext;
     
+    // the save fields are only touched from the AWT event dispatch thread
+    private final Timer autosaveTimer;
+    
+    private SaveBhamProjectTask activeSaveTask = null;
+    
+    private File pendingSaveFile = null;
+    
+    private long savedModificationCount = 0L;
+    
     /**
      * Constructor
      */
@@ -87,6 +105,18 @@ public class BhamProjectManager extends ProjectManager
                     ex);
         }
         
+        // swing timers fire on the event dispatch thread but all that we do
+        // there is kick off a background save
+        this.autosaveTimer = new Timer(
+                AUTOSAVE_INTERVAL_MILLISECONDS,
+                new ActionListener()
+                {
+                    public void actionPerformed(ActionEvent e)
+                    {
+                        BhamProjectManager.this.saveIfModified(false);
+                    }
+                });
+        
         this.createNewActiveProject();
     }
     
@@ -110,6 +140,7 @@ public class BhamProjectManager extends ProjectManager
         this.setActiveProjectModified(false);
         
         BhamProject newProject = new BhamProject(null);
+        this.savedModificationCount = newProject.getModificationCount();
         this.setActiveProject(newProject);
         
         return newProject;
@@ -141,6 +172,7 @@ public class BhamProjectManager extends ProjectManager
             // update and notify
             this.setActiveProjectFile(projectFile);
             this.setActiveProjectModified(false);
+            this.savedModificationCount = bhamProject.getModificationCount();
             this.setActiveProject(bhamProject);
             
             return true;
@@ -164,7 +196,15 @@ public class BhamProjectManager extends ProjectManager
     }
 
     /**
-     * {@inheritDoc}
+     * Save the active project and wait for the save to finish. This only
+     * holds the project's section lock briefly so background tasks keep
+     * running while it writes, but the GUI should use
+     * {@link #saveActiveProjectInBackground(File)} so that it stays
+     * responsive. This must be called from the AWT event dispatch thread
+     * @param projectFile
+     *          the file to save to
+     * @return
+     *          true if the project was saved
      */
     @Override
     public boolean saveActiveProject(File projectFile)
@@ -173,23 +213,18 @@ public class BhamProjectManager extends ProjectManager
         
         if(activeProject == null)
         {
-            String title = "No Active Project";
-            String message =
-                "Cannot save project because there is no active " +
-                "project to save";
-            LOG.severe(message);
-            MessageDialogUtilities.errorLater(
-                    BhamApplication.getInstance().getBhamFrame(),
-                    message,
-                    title);
-            
+            this.reportNoActiveProject();
             return false;
         }
         else
         {
             try
             {
+                // anything that changes after this point is picked up by
+                // the next save
+                long modificationCount = activeProject.getModificationCount();
                 activeProject.saveProjectToFile(projectFile);
+                this.projectSaved(activeProject, projectFile, modificationCount);
                 
                 return true;
             }
@@ -209,6 +244,216 @@ public class BhamProjectManager extends ProjectManager
         }
     }
     
+    /**
+     * Start saving the active project in the background. The returned
+     * value only tells if the save was started. Failures in the save
+     * itself are reported to the user by the {@link SaveBhamProjectTask}.
+     * This must be called from the AWT event dispatch thread
+     * @param projectFile
+     *          the file to save to
+     * @return
+     *          true if the save was started (or queued behind a save that
+     *          is already running)
+     */
+    public boolean saveActiveProjectInBackground(File projectFile)
+    {
+        BhamProject activeProject = this.getActiveProject();
+        
+        if(activeProject == null)
+        {
+            this.reportNoActiveProject();
+            return false;
+        }
+        else
+        {
+            if(this.activeSaveTask == null)
+            {
+                this.startSave(activeProject, projectFile);
+            }
+            else
+            {
+                // saves of the same project have to go one at a time. this
+                // one starts as soon as the running save finishes
+                this.pendingSaveFile = projectFile;
+            }
+            
+            return true;
+        }
+    }
+    
+    /**
+     * Tell the user that there's no project to save
+     */
+    private void reportNoActiveProject()
+    {
+        String title = "No Active Project";
+        String message =
+            "Cannot save project because there is no active " +
+            "project to save";
+        LOG.severe(message);
+        MessageDialogUtilities.errorLater(
+                BhamApplication.getInstance().getBhamFrame(),
+                message,
+                title);
+    }
+    
+    /**
+     * Update the active project file and modified flag after a save
+     * @param savedProject
+     *          the project that was saved
+     * @param projectFile
+     *          the file it was saved to
+     * @param savedModificationCount
+     *          the project's modification count when the save started
+     */
+    private void projectSaved(
+            BhamProject savedProject,
+            File projectFile,
+            long savedModificationCount)
+    {
+        if(savedProject == this.getActiveProject())
+        {
+            this.setActiveProjectFile(projectFile);
+            this.savedModificationCount = savedModificationCount;
+            
+            // the project is only clean if nothing changed while we were
+            // writing it
+            if(this.savedModificationCount == savedProject.getModificationCount())
+            {
+                this.setActiveProjectModified(false);
+            }
+        }
+    }
+    
+    /**
+     * Start a background save of the given project
+     * @param project
+     *          the project
+     * @param projectFile
+     *          the file to save to
+     */
+    private void startSave(BhamProject project, File projectFile)
+    {
+        this.activeSaveTask = new SaveBhamProjectTask(project, projectFile);
+        BhamApplication.getInstance().getBhamFrame().getMultiTaskProgress().addTaskToTrack(
+                this.activeSaveTask,
+                true);
+        new Thread(this.activeSaveTask).start();
+    }
+    
+    /**
+     * Called on the AWT event dispatch thread by a
+     * {@link SaveBhamProjectTask} when it's done
+     * @param saveTask
+     *          the task that finished
+     */
+    void saveFinished(SaveBhamProjectTask saveTask)
+    {
+        if(saveTask != this.activeSaveTask)
+        {
+            return;
+        }
+        this.activeSaveTask = null;
+        
+        if(saveTask.isSaveSucceeded())
+        {
+            this.projectSaved(
+                    saveTask.getProject(),
+                    saveTask.getProjectFile(),
+                    saveTask.getSavedModificationCount());
+        }
+        
+        if(this.pendingSaveFile != null)
+        {
+            File projectFile = this.pendingSaveFile;
+            this.pendingSaveFile = null;
+            this.saveActiveProjectInBackground(projectFile);
+        }
+    }
+    
+    /**
+     * Checkpoint the active project by saving it in the background if
+     * autosave is on, the project already has a file and it changed since
+     * it was last saved. Long running scans call this as they finish pieces
+     * of work so that the work survives a crash. With autosave off the
+     * project file is only ever written when the user asks, and the
+     * finished work is still kept in the project until then. Unlike the
+     * other save methods this is safe to call from any thread
+     */
+    public void checkpointActiveProject()
+    {
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            public void run()
+            {
+                if(BhamProjectManager.this.isAutosaveEnabled())
+                {
+                    BhamProjectManager.this.saveIfModified(true);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Save the active project if it has a file and it changed since it was
+     * last saved
+     * @param queueIfSaving
+     *          if true and a save is already running we queue another save
+     *          behind it, otherwise we leave it to the running save
+     */
+    private void saveIfModified(boolean queueIfSaving)
+    {
+        BhamProject activeProject = this.getActiveProject();
+        File activeProjectFile = this.getActiveProjectFile();
+        if(activeProject != null &&
+           activeProjectFile != null &&
+           activeProject.getModificationCount() != this.savedModificationCount)
+        {
+            if(this.activeSaveTask == null)
+            {
+                if(LOG.isLoggable(Level.FINE))
+                {
+                    LOG.fine("saving modified project to: " + activeProjectFile);
+                }
+                
+                this.startSave(activeProject, activeProjectFile);
+            }
+            else if(queueIfSaving)
+            {
+                this.pendingSaveFile = activeProjectFile;
+            }
+        }
+    }
+    
+    /**
+     * Turn periodic autosave on or off. Autosave only saves projects that
+     * already have a file. This must be called from the AWT event dispatch
+     * thread
+     * @see #AUTOSAVE_INTERVAL_MILLISECONDS
+     * @param autosaveEnabled
+     *          true to turn autosave on
+     */
+    public void setAutosaveEnabled(boolean autosaveEnabled)
+    {
+        if(autosaveEnabled)
+        {
+            this.autosaveTimer.start();
+        }
+        else
+        {
+            this.autosaveTimer.stop();
+        }
+    }
+    
+    /**
+     * Determine if periodic autosave is on
+     * @return true if autosave is on
+     */
+    public boolean isAutosaveEnabled()
+    {
+        return this.autosaveTimer.isRunning();
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -21,6 +21,8 @@ import javax.swing.SwingUtilities;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 
+import org.jax.bham.io.PhenotypeMatrix;
+import org.jax.bham.test.SlidingWindowStrainMeanScan;
 import org.jax.haplotype.analysis.HaplotypeAssociationTest;
 import org.jax.haplotype.analysis.HaplotypeDataSource;
 import org.jax.haplotype.analysis.MultiGroupHaplotypeAssociationTest;
@@ -122,6 +124,10 @@ public class BhamProjectTree extends ProjectTree
                     projectTreeNode.getPhenotypeDataSourcesTreeNode(),
                     projectTreeNode,
                     projectTreeNode.getChildCount());
+            model.insertNodeInto(
+                    projectTreeNode.getPhenotypeMatricesTreeNode(),
+                    projectTreeNode,
+                    projectTreeNode.getChildCount());
             model.insertNodeInto(
                     projectTreeNode.getHaplotypeDataSourcesTreeNode(),
                     projectTreeNode,
@@ -146,6 +152,10 @@ public class BhamProjectTree extends ProjectTree
                     projectTreeNode.getMultiGroupHaplotypeAssociationTestsTreeNode(),
                     projectTreeNode,
                     projectTreeNode.getChildCount());
+            model.insertNodeInto(
+                    projectTreeNode.getSlidingWindowStrainMeanScansTreeNode(),
+                    projectTreeNode,
+                    projectTreeNode.getChildCount());
             
             this.expandPath(new TreePath(
                     projectTreeNode.getPath()));
@@ -160,6 +170,8 @@ public class BhamProjectTree extends ProjectTree
                 projectTreeNode.getGenomeDataSourcesTreeNode());
         this.refreshPhenotypeDataSourceNodes(
                 projectTreeNode.getPhenotypeDataSourcesTreeNode());
+        this.refreshPhenotypeMatrixNodes(
+                projectTreeNode.getPhenotypeMatricesTreeNode());
         this.refreshHaplotypeDataSourceNodes(
                 projectTreeNode.getHaplotypeDataSourcesTreeNode());
         this.refreshHaplotypeAssociationTestNodes(
@@ -172,19 +184,21 @@ public class BhamProjectTree extends ProjectTree
                 projectTreeNode.getMultiGroupHaplotypeDataSourcesTreeNode());
         this.refreshMultiGroupHaplotypeAssociationTestNodes(
                 projectTreeNode.getMultiGroupHaplotypeAssociationTestsTreeNode());
+        this.refreshSlidingWindowStrainMeanScanNodes(
+                projectTreeNode.getSlidingWindowStrainMeanScansTreeNode());
     }
     
     private void refreshGenomeDataSourceNodes(
-            ListTreeNode<GenomeDataSource> genomeDataSourcesTreeNode)
+            ListTreeNode<ProjectSection<GenomeDataSource>> genomeDataSourcesTreeNode)
     {
-        TreeNodeFactory<GenomeDataSource, GenomeDataSourceTreeNode> genomeDataSourceNodeFactory =
-            new TreeNodeFactory<GenomeDataSource, GenomeDataSourceTreeNode>()
+        TreeNodeFactory<ProjectSection<GenomeDataSource>, GenomeDataSourceTreeNode> genomeDataSourceNodeFactory =
+            new TreeNodeFactory<ProjectSection<GenomeDataSource>, GenomeDataSourceTreeNode>()
             {
                 /**
                  * {@inheritDoc}
                  */
                 public GenomeDataSourceTreeNode createTreeNode(
-                        GenomeDataSource data)
+                        ProjectSection<GenomeDataSource> data)
                 {
                     return new GenomeDataSourceTreeNode(data);
                 }
@@ -198,16 +212,16 @@ public class BhamProjectTree extends ProjectTree
     }
     
     private void refreshPhenotypeDataSourceNodes(
-            ListTreeNode<PhenotypeDataSource> phenotypeDataSourcesTreeNode)
+            ListTreeNode<ProjectSection<PhenotypeDataSource>> phenotypeDataSourcesTreeNode)
     {
-        TreeNodeFactory<PhenotypeDataSource, PhenotypeDataSourceTreeNode> phenotypeDataSourceNodeFactory =
-            new TreeNodeFactory<PhenotypeDataSource, PhenotypeDataSourceTreeNode>()
+        TreeNodeFactory<ProjectSection<PhenotypeDataSource>, PhenotypeDataSourceTreeNode> phenotypeDataSourceNodeFactory =
+            new TreeNodeFactory<ProjectSection<PhenotypeDataSource>, PhenotypeDataSourceTreeNode>()
             {
                 /**
                  * {@inheritDoc}
                  */
                 public PhenotypeDataSourceTreeNode createTreeNode(
-                        PhenotypeDataSource data)
+                        ProjectSection<PhenotypeDataSource> data)
                 {
                     return new PhenotypeDataSourceTreeNode(data);
                 }
@@ -220,17 +234,40 @@ public class BhamProjectTree extends ProjectTree
                 phenotypeDataSourcesTreeNode.getList());
     }
     
+    private void refreshPhenotypeMatrixNodes(
+            ListTreeNode<ProjectSection<PhenotypeMatrix>> phenotypeMatricesTreeNode)
+    {
+        TreeNodeFactory<ProjectSection<PhenotypeMatrix>, PhenotypeMatrixTreeNode> phenotypeMatrixNodeFactory =
+            new TreeNodeFactory<ProjectSection<PhenotypeMatrix>, PhenotypeMatrixTreeNode>()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                public PhenotypeMatrixTreeNode createTreeNode(
+                        ProjectSection<PhenotypeMatrix> data)
+                {
+                    return new PhenotypeMatrixTreeNode(data);
+                }
+            };
+        
+        SwingTreeUtilities.updateChildNodes(
+                this.getModel(),
+                phenotypeMatrixNodeFactory,
+                phenotypeMatricesTreeNode,
+                phenotypeMatricesTreeNode.getList());
+    }
+    
     private void refreshHaplotypeDataSourceNodes(
-            ListTreeNode<HaplotypeDataSource> haplotypeDataSourcesTreeNode)
+            ListTreeNode<ProjectSection<HaplotypeDataSource>> haplotypeDataSourcesTreeNode)
     {
-        TreeNodeFactory<HaplotypeDataSource, HaplotypeDataSourceTreeNode> haplotypeDataSourceNodeFactory =
-            new TreeNodeFactory<HaplotypeDataSource, HaplotypeDataSourceTreeNode>()
+        TreeNodeFactory<ProjectSection<HaplotypeDataSource>, HaplotypeDataSourceTreeNode> haplotypeDataSourceNodeFactory =
+            new TreeNodeFactory<ProjectSection<HaplotypeDataSource>, HaplotypeDataSourceTreeNode>()
             {
                 /**
                  * {@inheritDoc}
                  */
                 public HaplotypeDataSourceTreeNode createTreeNode(
-                        HaplotypeDataSource data)
+                        ProjectSection<HaplotypeDataSource> data)
                 {
                     return new HaplotypeDataSourceTreeNode(data);
                 }
@@ -244,16 +281,16 @@ public class BhamProjectTree extends ProjectTree
     }
     
     private void refreshHaplotypeAssociationTestNodes(
-            ListTreeNode<HaplotypeAssociationTest> haplotypeAssociationTestsTreeNode)
+            ListTreeNode<ProjectSection<HaplotypeAssociationTest>> haplotypeAssociationTestsTreeNode)
     {
-        TreeNodeFactory<HaplotypeAssociationTest, HaplotypeAssociationTestTreeNode> haplotypeAssociationTestNodeFactory =
-            new TreeNodeFactory<HaplotypeAssociationTest, HaplotypeAssociationTestTreeNode>()
+        TreeNodeFactory<ProjectSection<HaplotypeAssociationTest>, HaplotypeAssociationTestTreeNode> haplotypeAssociationTestNodeFactory =
+            new TreeNodeFactory<ProjectSection<HaplotypeAssociationTest>, HaplotypeAssociationTestTreeNode>()
             {
                 /**
                  * {@inheritDoc}
                  */
                 public HaplotypeAssociationTestTreeNode createTreeNode(
-                        HaplotypeAssociationTest data)
+                        ProjectSection<HaplotypeAssociationTest> data)
                 {
                     return new HaplotypeAssociationTestTreeNode(data);
                 }
@@ -267,16 +304,16 @@ public class BhamProjectTree extends ProjectTree
     }
     
     private void refreshPhylogenyDataSourceNodes(
-            ListTreeNode<PhylogenyDataSource> phylogenyDataSourcesTreeNode)
+            ListTreeNode<ProjectSection<PhylogenyDataSource>> phylogenyDataSourcesTreeNode)
     {
-        TreeNodeFactory<PhylogenyDataSource, PhylogenyDataSourceTreeNode> phylogenyDataSourceNodeFactory =
-            new TreeNodeFactory<PhylogenyDataSource, PhylogenyDataSourceTreeNode>()
+        TreeNodeFactory<ProjectSection<PhylogenyDataSource>, PhylogenyDataSourceTreeNode> phylogenyDataSourceNodeFactory =
+            new TreeNodeFactory<ProjectSection<PhylogenyDataSource>, PhylogenyDataSourceTreeNode>()
             {
                 /**
                  * {@inheritDoc}
                  */
                 public PhylogenyDataSourceTreeNode createTreeNode(
-                        PhylogenyDataSource data)
+                        ProjectSection<PhylogenyDataSource> data)
                 {
                     return new PhylogenyDataSourceTreeNode(data);
                 }
@@ -290,16 +327,16 @@ public class BhamProjectTree extends ProjectTree
     }
     
     private void refreshPhylogenyAssociationTestNodes(
-            ListTreeNode<PhylogenyAssociationTest> phylogenyAssociationTestsTreeNode)
+            ListTreeNode<ProjectSection<PhylogenyAssociationTest>> phylogenyAssociationTestsTreeNode)
     {
-        TreeNodeFactory<PhylogenyAssociationTest, PhylogenyAssociationTestTreeNode> phylogenyAssociationTestNodeFactory =
-            new TreeNodeFactory<PhylogenyAssociationTest, PhylogenyAssociationTestTreeNode>()
+        TreeNodeFactory<ProjectSection<PhylogenyAssociationTest>, PhylogenyAssociationTestTreeNode> phylogenyAssociationTestNodeFactory =
+            new TreeNodeFactory<ProjectSection<PhylogenyAssociationTest>, PhylogenyAssociationTestTreeNode>()
             {
                 /**
                  * {@inheritDoc}
                  */
                 public PhylogenyAssociationTestTreeNode createTreeNode(
-                        PhylogenyAssociationTest data)
+                        ProjectSection<PhylogenyAssociationTest> data)
                 {
                     return new PhylogenyAssociationTestTreeNode(data);
                 }
@@ -313,16 +350,16 @@ public class BhamProjectTree extends ProjectTree
     }
     
     private void refreshMultiGroupHaplotypeDataSourceNodes(
-            ListTreeNode<MultiGroupHaplotypeDataSource> multiGroupHaploDataSourcesTreeNode)
+            ListTreeNode<ProjectSection<MultiGroupHaplotypeDataSource>> multiGroupHaploDataSourcesTreeNode)
     {
-        TreeNodeFactory<MultiGroupHaplotypeDataSource, MultiGroupHaplotypeDataSourceTreeNode> nodeFactory =
-            new TreeNodeFactory<MultiGroupHaplotypeDataSource, MultiGroupHaplotypeDataSourceTreeNode>()
+        TreeNodeFactory<ProjectSection<MultiGroupHaplotypeDataSource>, MultiGroupHaplotypeDataSourceTreeNode> nodeFactory =
+            new TreeNodeFactory<ProjectSection<MultiGroupHaplotypeDataSource>, MultiGroupHaplotypeDataSourceTreeNode>()
             {
                 /**
                  * {@inheritDoc}
                  */
                 public MultiGroupHaplotypeDataSourceTreeNode createTreeNode(
-                        MultiGroupHaplotypeDataSource data)
+                        ProjectSection<MultiGroupHaplotypeDataSource> data)
                 {
                     return new MultiGroupHaplotypeDataSourceTreeNode(data);
                 }
@@ -336,16 +373,16 @@ public class BhamProjectTree extends ProjectTree
     }
     
     private void refreshMultiGroupHaplotypeAssociationTestNodes(
-            ListTreeNode<MultiGroupHaplotypeAssociationTest> multiGroupHaplotypeAssociationTestsTreeNode)
+            ListTreeNode<ProjectSection<MultiGroupHaplotypeAssociationTest>> multiGroupHaplotypeAssociationTestsTreeNode)
     {
-        TreeNodeFactory<MultiGroupHaplotypeAssociationTest, MultiGroupHaplotypeAssociationTestTreeNode> nodeFactory =
-            new TreeNodeFactory<MultiGroupHaplotypeAssociationTest, MultiGroupHaplotypeAssociationTestTreeNode>()
+        TreeNodeFactory<ProjectSection<MultiGroupHaplotypeAssociationTest>, MultiGroupHaplotypeAssociationTestTreeNode> nodeFactory =
+            new TreeNodeFactory<ProjectSection<MultiGroupHaplotypeAssociationTest>, MultiGroupHaplotypeAssociationTestTreeNode>()
             {
                 /**
                  * {@inheritDoc}
                  */
                 public MultiGroupHaplotypeAssociationTestTreeNode createTreeNode(
-                        MultiGroupHaplotypeAssociationTest data)
+                        ProjectSection<MultiGroupHaplotypeAssociationTest> data)
                 {
                     return new MultiGroupHaplotypeAssociationTestTreeNode(data);
                 }
@@ -357,4 +394,27 @@ public class BhamProjectTree extends ProjectTree
                 multiGroupHaplotypeAssociationTestsTreeNode,
                 multiGroupHaplotypeAssociationTestsTreeNode.getList());
     }
+    
+    private void refreshSlidingWindowStrainMeanScanNodes(
+            ListTreeNode<ProjectSection<SlidingWindowStrainMeanScan>> slidingWindowStrainMeanScansTreeNode)
+    {
+        TreeNodeFactory<ProjectSection<SlidingWindowStrainMeanScan>, SlidingWindowStrainMeanScanTreeNode> nodeFactory =
+            new TreeNodeFactory<ProjectSection<SlidingWindowStrainMeanScan>, SlidingWindowStrainMeanScanTreeNode>()
+            {
+                /**
+                 * {@inheritDoc}
+                 */
+                public SlidingWindowStrainMeanScanTreeNode createTreeNode(
+                        ProjectSection<SlidingWindowStrainMeanScan> data)
+                {
+                    return new SlidingWindowStrainMeanScanTreeNode(data);
+                }
+            };
+        
+        SwingTreeUtilities.updateChildNodes(
+                this.getModel(),
+                nodeFactory,
+                slidingWindowStrainMeanScansTreeNode,
+                slidingWindowStrainMeanScansTreeNode.getList());
+    }
 }
@@ -19,6 +19,8 @@ package org.jax.bham.project;
 
 import javax.swing.tree.DefaultMutableTreeNode;
 
+import org.jax.bham.io.PhenotypeMatrix;
+import org.jax.bham.test.SlidingWindowStrainMeanScan;
 import org.jax.haplotype.analysis.HaplotypeAssociationTest;
 import org.jax.haplotype.analysis.HaplotypeDataSource;
 import org.jax.haplotype.analysis.MultiGroupHaplotypeAssociationTest;
@@ -41,21 +43,25 @@ public class BhamProjectTreeNode extends DefaultMutableTreeNode
      */
     private static final long serialVersionUID = 3517608478954616212L;
     
-    private final ListTreeNode<GenomeDataSource> genomeDataSourcesTreeNode;
+    private final ListTreeNode<ProjectSection<GenomeDataSource>> genomeDataSourcesTreeNode;
 
-    private final ListTreeNode<PhenotypeDataSource> phenotypeDataSourcesTreeNode;
+    private final ListTreeNode<ProjectSection<PhenotypeDataSource>> phenotypeDataSourcesTreeNode;
 
-    private final ListTreeNode<HaplotypeDataSource> haplotypeDataSourcesTreeNode;
+    private final ListTreeNode<ProjectSection<PhenotypeMatrix>> phenotypeMatricesTreeNode;
 
-    private final ListTreeNode<HaplotypeAssociationTest> haplotypeAssociationTestsTreeNode;
+    private final ListTreeNode<ProjectSection<HaplotypeDataSource>> haplotypeDataSourcesTreeNode;
 
-    private final ListTreeNode<PhylogenyDataSource> phylogenyDataSourcesTreeNode;
+    private final ListTreeNode<ProjectSection<HaplotypeAssociationTest>> haplotypeAssociationTestsTreeNode;
 
-    private final ListTreeNode<PhylogenyAssociationTest> phylogenyAssociationTestsTreeNode;
+    private final ListTreeNode<ProjectSection<PhylogenyDataSource>> phylogenyDataSourcesTreeNode;
+
+    private final ListTreeNode<ProjectSection<PhylogenyAssociationTest>> phylogenyAssociationTestsTreeNode;
+    
+    private final ListTreeNode<ProjectSection<MultiGroupHaplotypeDataSource>> multiGroupHaplotypeDataSourcesTreeNode;
     
-    private final ListTreeNode<MultiGroupHaplotypeDataSource> multiGroupHaplotypeDataSourcesTreeNode;
+    private final ListTreeNode<ProjectSection<MultiGroupHaplotypeAssociationTest>> multiGroupHaplotypeAssociationTestsTreeNode;
     
-    private final ListTreeNode<MultiGroupHaplotypeAssociationTest> multiGroupHaplotypeAssociationTestsTreeNode;
+    private final ListTreeNode<ProjectSection<SlidingWindowStrainMeanScan>> slidingWindowStrainMeanScansTreeNode;
     
     /**
      * Constructor
@@ -69,30 +75,36 @@ public class BhamProjectTreeNode extends DefaultMutableTreeNode
         this.setAllowsChildren(true);
         
         // create the direct children for this project
-        this.genomeDataSourcesTreeNode = new ListTreeNode<GenomeDataSource>(
+        this.genomeDataSourcesTreeNode = new ListTreeNode<ProjectSection<GenomeDataSource>>(
                 "Genome Data Sources",
-                bhamProject.getGenomeDataSources());
-        this.phenotypeDataSourcesTreeNode = new ListTreeNode<PhenotypeDataSource>(
+                bhamProject.getGenomeDataSourceSections());
+        this.phenotypeDataSourcesTreeNode = new ListTreeNode<ProjectSection<PhenotypeDataSource>>(
                 "Phenotype Data Sources",
-                bhamProject.getPhenotypeDataSources());
-        this.haplotypeDataSourcesTreeNode = new ListTreeNode<HaplotypeDataSource>(
+                bhamProject.getPhenotypeDataSourceSections());
+        this.phenotypeMatricesTreeNode = new ListTreeNode<ProjectSection<PhenotypeMatrix>>(
+                "Phenotype Matrices",
+                bhamProject.getPhenotypeMatrixSections());
+        this.haplotypeDataSourcesTreeNode = new ListTreeNode<ProjectSection<HaplotypeDataSource>>(
                 "Haplotype Data Sources",
-                bhamProject.getHaplotypeDataSources());
-        this.haplotypeAssociationTestsTreeNode = new ListTreeNode<HaplotypeAssociationTest>(
+                bhamProject.getHaplotypeDataSourceSections());
+        this.haplotypeAssociationTestsTreeNode = new ListTreeNode<ProjectSection<HaplotypeAssociationTest>>(
                 "Haplotype Association Tests",
-                bhamProject.getHaplotypeAssociationTests());
-        this.phylogenyDataSourcesTreeNode = new ListTreeNode<PhylogenyDataSource>(
+                bhamProject.getHaplotypeAssociationTestSections());
+        this.phylogenyDataSourcesTreeNode = new ListTreeNode<ProjectSection<PhylogenyDataSource>>(
                 "Phylogeny Data Sources",
-                bhamProject.getPhylogenyDataSources());
-        this.phylogenyAssociationTestsTreeNode = new ListTreeNode<PhylogenyAssociationTest>(
+                bhamProject.getPhylogenyDataSourceSections());
+        this.phylogenyAssociationTestsTreeNode = new ListTreeNode<ProjectSection<PhylogenyAssociationTest>>(
                 "Phylogeny Association Tests",
-                bhamProject.getPhylogenyAssociationTests());
-        this.multiGroupHaplotypeDataSourcesTreeNode = new ListTreeNode<MultiGroupHaplotypeDataSource>(
+                bhamProject.getPhylogenyAssociationTestSections());
+        this.multiGroupHaplotypeDataSourcesTreeNode = new ListTreeNode<ProjectSection<MultiGroupHaplotypeDataSource>>(
                 "Multi-Group Haplotype Data Sources",
-                bhamProject.getMultiGroupHaplotypeDataSources());
-        this.multiGroupHaplotypeAssociationTestsTreeNode = new ListTreeNode<MultiGroupHaplotypeAssociationTest>(
+                bhamProject.getMultiGroupHaplotypeDataSourceSections());
+        this.multiGroupHaplotypeAssociationTestsTreeNode = new ListTreeNode<ProjectSection<MultiGroupHaplotypeAssociationTest>>(
                 "Multi-Group Haplotype Association Tests",
-                bhamProject.getMultiGroupHaplotypeAssociationTests());
+                bhamProject.getMultiGroupHaplotypeAssociationTestSections());
+        this.slidingWindowStrainMeanScansTreeNode = new ListTreeNode<ProjectSection<SlidingWindowStrainMeanScan>>(
+                "Sliding Window Strain Mean Scans",
+                bhamProject.getSlidingWindowStrainMeanScanSections());
     }
     
     /**
@@ -109,7 +121,7 @@ public class BhamProjectTreeNode extends DefaultMutableTreeNode
      * Getter for the genome data sources tree node
      * @return the genome data sources tree node
      */
-    public ListTreeNode<GenomeDataSource> getGenomeDataSourcesTreeNode()
+    public ListTreeNode<ProjectSection<GenomeDataSource>> getGenomeDataSourcesTreeNode()
     {
         return this.genomeDataSourcesTreeNode;
     }
@@ -118,16 +130,25 @@ public class BhamProjectTreeNode extends DefaultMutableTreeNode
      * Getter for the phenotypes node
      * @return the phenotypes node
      */
-    public ListTreeNode<PhenotypeDataSource> getPhenotypeDataSourcesTreeNode()
+    public ListTreeNode<ProjectSection<PhenotypeDataSource>> getPhenotypeDataSourcesTreeNode()
     {
         return this.phenotypeDataSourcesTreeNode;
     }
     
+    /**
+     * Getter for the phenotype matrices node
+     * @return the phenotype matrices node
+     */
+    public ListTreeNode<ProjectSection<PhenotypeMatrix>> getPhenotypeMatricesTreeNode()
+    {
+        return this.phenotypeMatricesTreeNode;
+    }
+    
     /**
      * Get the haplotype data sources
      * @return the haplotype data sources
      */
-    public ListTreeNode<HaplotypeDataSource> getHaplotypeDataSourcesTreeNode()
+    public ListTreeNode<ProjectSection<HaplotypeDataSource>> getHaplotypeDataSourcesTreeNode()
     {
         return this.haplotypeDataSourcesTreeNode;
     }
@@ -136,7 +157,7 @@ public class BhamProjectTreeNode extends DefaultMutableTreeNode
      * Get the haplotype association tests node
      * @return the haplotypeAssociationTestsTreeNode
      */
-    public ListTreeNode<HaplotypeAssociationTest> getHaplotypeAssociationTestsTreeNode()
+    public ListTreeNode<ProjectSection<HaplotypeAssociationTest>> getHaplotypeAssociationTestsTreeNode()
     {
         return this.haplotypeAssociationTestsTreeNode;
     }
@@ -145,7 +166,7 @@ public class BhamProjectTreeNode extends DefaultMutableTreeNode
      * Get the phylogeny data sources node
      * @return the phylogenyDataSourcesTreeNode
      */
-    public ListTreeNode<PhylogenyDataSource> getPhylogenyDataSourcesTreeNode()
+    public ListTreeNode<ProjectSection<PhylogenyDataSource>> getPhylogenyDataSourcesTreeNode()
     {
         return this.phylogenyDataSourcesTreeNode;
     }
@@ -154,7 +175,7 @@ public class BhamProjectTreeNode extends DefaultMutableTreeNode
      * get the phylogeny association tests node
      * @return the phylogenyAssociationTests
      */
-    public ListTreeNode<PhylogenyAssociationTest> getPhylogenyAssociationTestsTreeNode()
+    public ListTreeNode<ProjectSection<PhylogenyAssociationTest>> getPhylogenyAssociationTestsTreeNode()
     {
         return this.phylogenyAssociationTestsTreeNode;
     }
@@ -163,7 +184,7 @@ public class BhamProjectTreeNode extends DefaultMutableTreeNode
      * Getter for the multi-group haplotype data sources
      * @return the multiGroupHaplotypeDataSourcesTreeNode
      */
-    public ListTreeNode<MultiGroupHaplotypeDataSource> getMultiGroupHaplotypeDataSourcesTreeNode()
+    public ListTreeNode<ProjectSection<MultiGroupHaplotypeDataSource>> getMultiGroupHaplotypeDataSourcesTreeNode()
     {
         return this.multiGroupHaplotypeDataSourcesTreeNode;
     }
@@ -172,11 +193,20 @@ public class BhamProjectTreeNode extends DefaultMutableTreeNode
      * Getter for the sliding window tests node
      * @return the tree node for sliding window tests
      */
-    public ListTreeNode<MultiGroupHaplotypeAssociationTest> getMultiGroupHaplotypeAssociationTestsTreeNode()
+    public ListTreeNode<ProjectSection<MultiGroupHaplotypeAssociationTest>> getMultiGroupHaplotypeAssociationTestsTreeNode()
     {
         return this.multiGroupHaplotypeAssociationTestsTreeNode;
     }
     
+    /**
+     * Getter for the sliding window strain mean scans node
+     * @return the tree node for sliding window strain mean scans
+     */
+    public ListTreeNode<ProjectSection<SlidingWindowStrainMeanScan>> getSlidingWindowStrainMeanScansTreeNode()
+    {
+        return this.slidingWindowStrainMeanScansTreeNode;
+    }
+    
     /**
      * {@inheritDoc}
      */
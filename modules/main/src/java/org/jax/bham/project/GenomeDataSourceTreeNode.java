@@ -17,23 +17,107 @@
 
 package org.jax.bham.project;
 
+import java.awt.Component;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+
+import javax.swing.JPopupMenu;
 import javax.swing.tree.DefaultMutableTreeNode;
 
+import org.jax.bham.test.ShowGenotypeKinshipHeatmapAction;
 import org.jax.haplotype.data.GenomeDataSource;
 
 /**
  * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
  */
-public class GenomeDataSourceTreeNode extends DefaultMutableTreeNode
+public class GenomeDataSourceTreeNode
+extends DefaultMutableTreeNode
+implements MouseListener
 {
-    public GenomeDataSourceTreeNode(GenomeDataSource genomeDataSource)
+    public GenomeDataSourceTreeNode(ProjectSection<GenomeDataSource> section)
+    {
+        super(section);
+    }
+    
+    /**
+     * Getter for the project section holding the data source
+     * @return
+     *          the section
+     */
+    @SuppressWarnings("unchecked")
+    public ProjectSection<GenomeDataSource> getSection()
     {
-        super(genomeDataSource);
+        return (ProjectSection<GenomeDataSource>)this.getUserObject();
     }
     
     public GenomeDataSource getGenomeDataSource()
     {
-        return (GenomeDataSource)this.getUserObject();
+        return this.getSection().get();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void mouseClicked(MouseEvent e)
+    {
+        if(e.isPopupTrigger())
+        {
+            this.contextMenuTriggered(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void mouseEntered(MouseEvent e)
+    {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void mouseExited(MouseEvent e)
+    {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void mousePressed(MouseEvent e)
+    {
+        if(e.isPopupTrigger())
+        {
+            this.contextMenuTriggered(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void mouseReleased(MouseEvent e)
+    {
+        if(e.isPopupTrigger())
+        {
+            this.contextMenuTriggered(e);
+        }
+    }
+    
+    /**
+     * Respond to a popup trigger event.
+     * @param e
+     *          the event we're responding to
+     */
+    private void contextMenuTriggered(MouseEvent e)
+    {
+        JPopupMenu popupMenu = new JPopupMenu(
+                this.toString());
+        popupMenu.add(new ShowGenotypeKinshipHeatmapAction(
+                this.getGenomeDataSource()));
+        
+        popupMenu.show(
+                (Component)e.getSource(),
+                e.getX(),
+                e.getY());
     }
     
     /**
@@ -42,7 +126,7 @@ public class GenomeDataSourceTreeNode extends DefaultMutableTreeNode
     @Override
     public String toString()
     {
-        String name = this.getGenomeDataSource().getName();
+        String name = this.getSection().getName();
         if(name == null)
         {
             return "anonymous";
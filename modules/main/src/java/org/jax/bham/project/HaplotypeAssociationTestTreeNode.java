@@ -42,13 +42,24 @@ implements MouseListener
 
     /**
      * Constructor
-     * @param haplotypeAssociationTest
-     *          the test in this node
+     * @param section
+     *          the project section holding the test
      */
     public HaplotypeAssociationTestTreeNode(
-            HaplotypeAssociationTest haplotypeAssociationTest)
+            ProjectSection<HaplotypeAssociationTest> section)
     {
-        super(haplotypeAssociationTest);
+        super(section);
+    }
+    
+    /**
+     * Getter for the project section holding the test
+     * @return
+     *          the section
+     */
+    @SuppressWarnings("unchecked")
+    public ProjectSection<HaplotypeAssociationTest> getSection()
+    {
+        return (ProjectSection<HaplotypeAssociationTest>)this.getUserObject();
     }
     
     /**
@@ -58,7 +69,7 @@ implements MouseListener
      */
     public HaplotypeAssociationTest getHaplotypeAssociationTest()
     {
-        return (HaplotypeAssociationTest)this.getUserObject();
+        return this.getSection().get();
     }
     
     /**
@@ -133,7 +144,7 @@ implements MouseListener
     @Override
     public String toString()
     {
-        String name = this.getHaplotypeAssociationTest().getName();
+        String name = this.getSection().getName();
         if(name == null)
         {
             return "anonymous";
@@ -34,12 +34,24 @@ public class HaplotypeDataSourceTreeNode extends DefaultMutableTreeNode
 
     /**
      * Constructor
-     * @param haplotypeDataSource
-     *          the data source
+     * @param section
+     *          the project section holding the data source
+     */
+    public HaplotypeDataSourceTreeNode(
+            ProjectSection<HaplotypeDataSource> section)
+    {
+        super(section);
+    }
+    
+    /**
+     * Getter for the project section holding the data source
+     * @return
+     *          the section
      */
-    public HaplotypeDataSourceTreeNode(HaplotypeDataSource haplotypeDataSource)
+    @SuppressWarnings("unchecked")
+    public ProjectSection<HaplotypeDataSource> getSection()
     {
-        super(haplotypeDataSource);
+        return (ProjectSection<HaplotypeDataSource>)this.getUserObject();
     }
     
     /**
@@ -49,7 +61,7 @@ public class HaplotypeDataSourceTreeNode extends DefaultMutableTreeNode
      */
     public HaplotypeDataSource getHaplotypeDataSource()
     {
-        return (HaplotypeDataSource)this.getUserObject();
+        return this.getSection().get();
     }
     
     /**
@@ -58,7 +70,7 @@ public class HaplotypeDataSourceTreeNode extends DefaultMutableTreeNode
     @Override
     public String toString()
     {
-        String name = this.getHaplotypeDataSource().getName();
+        String name = this.getSection().getName();
         if(name == null)
         {
             return "anonymous";
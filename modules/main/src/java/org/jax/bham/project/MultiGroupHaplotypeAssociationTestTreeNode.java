@@ -42,13 +42,24 @@ implements MouseListener
 
     /**
      * Constructor
-     * @param multiGroupHaplotypeAssociationTest
-     *          the test in this node
+     * @param section
+     *          the project section holding the test
      */
     public MultiGroupHaplotypeAssociationTestTreeNode(
-            MultiGroupHaplotypeAssociationTest multiGroupHaplotypeAssociationTest)
+            ProjectSection<MultiGroupHaplotypeAssociationTest> section)
     {
-        super(multiGroupHaplotypeAssociationTest);
+        super(section);
+    }
+    
+    /**
+     * Getter for the project section holding the test
+     * @return
+     *          the section
+     */
+    @SuppressWarnings("unchecked")
+    public ProjectSection<MultiGroupHaplotypeAssociationTest> getSection()
+    {
+        return (ProjectSection<MultiGroupHaplotypeAssociationTest>)this.getUserObject();
     }
     
     /**
@@ -58,7 +69,7 @@ implements MouseListener
      */
     public MultiGroupHaplotypeAssociationTest getMultiGroupHaplotypeAssociationTest()
     {
-        return (MultiGroupHaplotypeAssociationTest)this.getUserObject();
+        return this.getSection().get();
     }
     
     /**
@@ -133,7 +144,7 @@ implements MouseListener
     @Override
     public String toString()
     {
-        String name = this.getMultiGroupHaplotypeAssociationTest().getName();
+        String name = this.getSection().getName();
         if(name == null)
         {
             return "anonymous";
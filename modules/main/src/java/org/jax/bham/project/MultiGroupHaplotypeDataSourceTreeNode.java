@@ -33,13 +33,24 @@ public class MultiGroupHaplotypeDataSourceTreeNode extends DefaultMutableTreeNod
 
     /**
      * Constructor
-     * @param dataSource
-     *          the data source that this tree node represents
+     * @param section
+     *          the project section holding the data source
      */
     public MultiGroupHaplotypeDataSourceTreeNode(
-            MultiGroupHaplotypeDataSource dataSource)
+            ProjectSection<MultiGroupHaplotypeDataSource> section)
     {
-        super(dataSource);
+        super(section);
+    }
+    
+    /**
+     * Getter for the project section holding the data source
+     * @return
+     *          the section
+     */
+    @SuppressWarnings("unchecked")
+    public ProjectSection<MultiGroupHaplotypeDataSource> getSection()
+    {
+        return (ProjectSection<MultiGroupHaplotypeDataSource>)this.getUserObject();
     }
     
     /**
@@ -49,7 +60,7 @@ public class MultiGroupHaplotypeDataSourceTreeNode extends DefaultMutableTreeNod
      */
     public MultiGroupHaplotypeDataSource getDataSource()
     {
-        return (MultiGroupHaplotypeDataSource)this.getUserObject();
+        return this.getSection().get();
     }
     
     /**
@@ -58,7 +69,7 @@ public class MultiGroupHaplotypeDataSourceTreeNode extends DefaultMutableTreeNod
     @Override
     public String toString()
     {
-        String name = this.getDataSource().getName();
+        String name = this.getSection().getName();
         if(name == null)
         {
             return "anonymous";
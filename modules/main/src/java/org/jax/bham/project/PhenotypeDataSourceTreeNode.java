@@ -26,14 +26,26 @@ import org.jax.haplotype.analysis.PhenotypeDataSource;
  */
 public class PhenotypeDataSourceTreeNode extends DefaultMutableTreeNode
 {
-    public PhenotypeDataSourceTreeNode(PhenotypeDataSource phenotypeDataSource)
+    public PhenotypeDataSourceTreeNode(
+            ProjectSection<PhenotypeDataSource> section)
     {
-        super(phenotypeDataSource);
+        super(section);
+    }
+    
+    /**
+     * Getter for the project section holding the data source
+     * @return
+     *          the section
+     */
+    @SuppressWarnings("unchecked")
+    public ProjectSection<PhenotypeDataSource> getSection()
+    {
+        return (ProjectSection<PhenotypeDataSource>)this.getUserObject();
     }
     
     public PhenotypeDataSource getPhenotypeDataSource()
     {
-        return (PhenotypeDataSource)this.getUserObject();
+        return this.getSection().get();
     }
     
     /**
@@ -42,7 +54,7 @@ public class PhenotypeDataSourceTreeNode extends DefaultMutableTreeNode
     @Override
     public String toString()
     {
-        String name = this.getPhenotypeDataSource().getName();
+        String name = this.getSection().getName();
         if(name == null)
         {
             return "anonymous";
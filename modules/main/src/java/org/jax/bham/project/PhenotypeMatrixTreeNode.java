@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.project;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import org.jax.bham.io.PhenotypeMatrix;
+
+/**
+ * Tree node representation of a phenotype matrix
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class PhenotypeMatrixTreeNode extends DefaultMutableTreeNode
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = -3316870214519382245L;
+    
+    /**
+     * Constructor
+     * @param section
+     *          the project section holding the matrix
+     */
+    public PhenotypeMatrixTreeNode(
+            ProjectSection<PhenotypeMatrix> section)
+    {
+        super(section);
+    }
+    
+    /**
+     * Getter for the project section holding the matrix
+     * @return
+     *          the section
+     */
+    @SuppressWarnings("unchecked")
+    public ProjectSection<PhenotypeMatrix> getSection()
+    {
+        return (ProjectSection<PhenotypeMatrix>)this.getUserObject();
+    }
+    
+    /**
+     * Getter for the matrix
+     * @return
+     *          the matrix
+     */
+    public PhenotypeMatrix getPhenotypeMatrix()
+    {
+        return this.getSection().get();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        String name = this.getSection().getName();
+        if(name == null)
+        {
+            return "anonymous";
+        }
+        else
+        {
+            return name;
+        }
+    }
+}
@@ -42,12 +42,24 @@ implements MouseListener
 
     /**
      * Constructor
-     * @param phylogenyAssociationTest
-     *          the test that this node represents
+     * @param section
+     *          the project section holding the test
      */
-    public PhylogenyAssociationTestTreeNode(PhylogenyAssociationTest phylogenyAssociationTest)
+    public PhylogenyAssociationTestTreeNode(
+            ProjectSection<PhylogenyAssociationTest> section)
     {
-        super(phylogenyAssociationTest);
+        super(section);
+    }
+    
+    /**
+     * Getter for the project section holding the test
+     * @return
+     *          the section
+     */
+    @SuppressWarnings("unchecked")
+    public ProjectSection<PhylogenyAssociationTest> getSection()
+    {
+        return (ProjectSection<PhylogenyAssociationTest>)this.getUserObject();
     }
     
     /**
@@ -57,7 +69,7 @@ implements MouseListener
      */
     public PhylogenyAssociationTest getPhylogenyAssociationTest()
     {
-        return (PhylogenyAssociationTest)this.getUserObject();
+        return this.getSection().get();
     }
     
     /**
@@ -134,7 +146,7 @@ implements MouseListener
     @Override
     public String toString()
     {
-        String name = this.getPhylogenyAssociationTest().getName();
+        String name = this.getSection().getName();
         if(name == null)
         {
             return "anonymous";
@@ -26,14 +26,26 @@ import org.jax.haplotype.analysis.PhylogenyDataSource;
  */
 public class PhylogenyDataSourceTreeNode extends DefaultMutableTreeNode
 {
-    public PhylogenyDataSourceTreeNode(PhylogenyDataSource phylogenyDataSource)
+    public PhylogenyDataSourceTreeNode(
+            ProjectSection<PhylogenyDataSource> section)
     {
-        super(phylogenyDataSource);
+        super(section);
+    }
+    
+    /**
+     * Getter for the project section holding the data source
+     * @return
+     *          the section
+     */
+    @SuppressWarnings("unchecked")
+    public ProjectSection<PhylogenyDataSource> getSection()
+    {
+        return (ProjectSection<PhylogenyDataSource>)this.getUserObject();
     }
     
     public PhylogenyDataSource getPhylogenyDataSource()
     {
-        return (PhylogenyDataSource)this.getUserObject();
+        return this.getSection().get();
     }
     
     /**
@@ -42,7 +54,7 @@ public class PhylogenyDataSourceTreeNode extends DefaultMutableTreeNode
     @Override
     public String toString()
     {
-        String name = this.getPhylogenyDataSource().getName();
+        String name = this.getSection().getName();
         if(name == null)
         {
             return "anonymous";
@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.project;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jax.bham.project.SectionedProjectFile.SectionType;
+
+/**
+ * A single data source or test in a {@link BhamProject}. Sections that
+ * come from a {@link SectionedProjectFile} only know their name and where
+ * their bytes live until {@link #get()} is first called, so that a project
+ * tree can be shown without deserializing everything in the project.
+ * @param <T>
+ *          the type of object held in this section
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ProjectSection<T>
+{
+    /**
+     * Loading a section that isn't in memory yet and relocating a section
+     * both go through this lock. Loading one section can pull in the
+     * sections that it refers to so a single (reentrant) lock keeps us
+     * clear of lock ordering problems, and it stops a save from moving a
+     * section's bytes out from under a load. Sections that are already
+     * loaded never touch it, and a save only holds it long enough to
+     * snapshot the sections and later to relocate them.
+     */
+    static final Object SECTION_LOCK = new Object();
+    
+    /**
+     * The parent section ID used for sections that don't belong to
+     * another section
+     */
+    public static final int NO_PARENT_SECTION_ID = -1;
+    
+    private final int sectionId;
+    
+    private final int parentSectionId;
+    
+    private final SectionType sectionType;
+    
+    private final String name;
+    
+    private T value;
+    
+    // the value is always set before this flag so a reader that sees the
+    // flag set sees the value too
+    private volatile boolean loaded;
+    
+    private SectionedProjectFile sourceFile;
+    
+    private long offset;
+    
+    private int length;
+    
+    // the stored bytes are only current if nothing has changed since they
+    // were written
+    private final AtomicInteger modificationCount = new AtomicInteger();
+    
+    private int storedModificationCount;
+    
+    /**
+     * Constructor for a section that is already in memory
+     * @param sectionId
+     *          the ID of this section which must be unique in the project
+     * @param sectionType
+     *          the section type
+     * @param name
+     *          the name to show for this section
+     * @param value
+     *          the value held in this section
+     */
+    public ProjectSection(
+            int sectionId,
+            SectionType sectionType,
+            String name,
+            T value)
+    {
+        this(sectionId, NO_PARENT_SECTION_ID, sectionType, name, value);
+    }
+    
+    /**
+     * Constructor for a section that is already in memory and that belongs
+     * to another section (like the stored results of a test)
+     * @param sectionId
+     *          the ID of this section which must be unique in the project
+     * @param parentSectionId
+     *          the ID of the section that this section belongs to
+     * @param sectionType
+     *          the section type
+     * @param name
+     *          the name to show for this section
+     * @param value
+     *          the value held in this section
+     */
+    public ProjectSection(
+            int sectionId,
+            int parentSectionId,
+            SectionType sectionType,
+            String name,
+            T value)
+    {
+        this.sectionId = sectionId;
+        this.parentSectionId = parentSectionId;
+        this.sectionType = sectionType;
+        this.name = name;
+        this.value = value;
+        this.loaded = true;
+        this.storedModificationCount = -1;
+    }
+    
+    /**
+     * Constructor for a section that hasn't been read from the project
+     * file yet
+     * @param sectionId
+     *          the ID of this section
+     * @param parentSectionId
+     *          the ID of the section that this section belongs to or
+     *          {@link #NO_PARENT_SECTION_ID}
+     * @param sectionType
+     *          the section type
+     * @param name
+     *          the name to show for this section
+     * @param sourceFile
+     *          the file that holds the section
+     * @param offset
+     *          the offset of the section's bytes in the file
+     * @param length
+     *          the length of the section's bytes
+     */
+    ProjectSection(
+            int sectionId,
+            int parentSectionId,
+            SectionType sectionType,
+            String name,
+            SectionedProjectFile sourceFile,
+            long offset,
+            int length)
+    {
+        this.sectionId = sectionId;
+        this.parentSectionId = parentSectionId;
+        this.sectionType = sectionType;
+        this.name = name;
+        this.loaded = false;
+        this.sourceFile = sourceFile;
+        this.offset = offset;
+        this.length = length;
+        this.storedModificationCount = this.modificationCount.get();
+    }
+    
+    /**
+     * Getter for the ID of this section. References between sections are
+     * stored using this ID
+     * @return the ID
+     */
+    public int getSectionId()
+    {
+        return this.sectionId;
+    }
+    
+    /**
+     * Getter for the ID of the section that this section belongs to
+     * @return
+     *          the parent ID or {@link #NO_PARENT_SECTION_ID}
+     */
+    public int getParentSectionId()
+    {
+        return this.parentSectionId;
+    }
+    
+    /**
+     * Getter for the section type
+     * @return the section type
+     */
+    public SectionType getSectionType()
+    {
+        return this.sectionType;
+    }
+    
+    /**
+     * Getter for the name of this section. This is available without
+     * loading the section
+     * @return the name (can be null)
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+    
+    /**
+     * Determine if this section's value has been deserialized yet
+     * @return true if the section is in memory
+     */
+    public boolean isLoaded()
+    {
+        return this.loaded;
+    }
+    
+    /**
+     * Get the value held in this section, reading it from the project file
+     * if this is the first time that it's been asked for
+     * @return the value
+     * @throws IllegalStateException
+     *          if the section can't be read from the project file
+     */
+    public T get() throws IllegalStateException
+    {
+        if(this.loaded)
+        {
+            return this.value;
+        }
+        
+        synchronized(SECTION_LOCK)
+        {
+            if(!this.loaded)
+            {
+                try
+                {
+                    this.value = this.sourceFile.<T>readSectionValue(
+                            this.offset,
+                            this.length);
+                    this.loaded = true;
+                }
+                catch(IOException ex)
+                {
+                    throw new IllegalStateException(
+                            "failed to read project section: " + this.name,
+                            ex);
+                }
+                catch(ClassNotFoundException ex)
+                {
+                    throw new IllegalStateException(
+                            "failed to read project section: " + this.name,
+                            ex);
+                }
+            }
+            
+            return this.value;
+        }
+    }
+    
+    /**
+     * Tell this section that its value has changed so that it gets
+     * serialized again on the next save instead of having its stored bytes
+     * copied across
+     */
+    public void markModified()
+    {
+        this.modificationCount.incrementAndGet();
+    }
+    
+    /**
+     * Getter for the modification count. A save takes this when it
+     * snapshots the section so that it can tell if the section changed
+     * while the save was writing
+     * @return the modification count
+     */
+    int getModificationCount()
+    {
+        return this.modificationCount.get();
+    }
+    
+    /**
+     * Determine if this section has stored bytes that are still current
+     * (which is always true for sections that haven't been loaded). The
+     * caller must hold {@link #SECTION_LOCK}
+     * @return
+     *          true if the stored bytes can be copied as-is when saving
+     */
+    boolean hasCurrentStoredBytes()
+    {
+        return this.sourceFile != null &&
+               this.storedModificationCount == this.modificationCount.get();
+    }
+    
+    /**
+     * Getter for the file holding this section's stored bytes. The caller
+     * must hold {@link #SECTION_LOCK}
+     * @return the file or null if the section has never been stored
+     */
+    SectionedProjectFile getSourceFile()
+    {
+        return this.sourceFile;
+    }
+    
+    /**
+     * Getter for the offset of this section's stored bytes. The caller
+     * must hold {@link #SECTION_LOCK}
+     * @return the offset
+     */
+    long getOffset()
+    {
+        return this.offset;
+    }
+    
+    /**
+     * Getter for the length of this section's stored bytes. The caller
+     * must hold {@link #SECTION_LOCK}
+     * @return the length
+     */
+    int getLength()
+    {
+        return this.length;
+    }
+    
+    /**
+     * Point this section at a new copy of its bytes. The caller must hold
+     * {@link #SECTION_LOCK}
+     * @param sourceFile
+     *          the file that now holds the section
+     * @param offset
+     *          the offset of the section's bytes
+     * @param length
+     *          the length of the section's bytes
+     * @param storedModificationCount
+     *          the modification count that the new bytes were written at.
+     *          If the section changed since then it stays modified
+     */
+    void relocate(
+            SectionedProjectFile sourceFile,
+            long offset,
+            int length,
+            int storedModificationCount)
+    {
+        this.sourceFile = sourceFile;
+        this.offset = offset;
+        this.length = length;
+        this.storedModificationCount = storedModificationCount;
+    }
+}
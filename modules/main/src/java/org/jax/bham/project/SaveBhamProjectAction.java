@@ -109,7 +109,8 @@ public class SaveBhamProjectAction extends AbstractSaveProjectAction
         }
         else
         {
-            projectManager.saveActiveProject(activeProjFile);
+            BhamProjectManager.getInstance().saveActiveProjectInBackground(
+                    activeProjFile);
         }
     }
 }
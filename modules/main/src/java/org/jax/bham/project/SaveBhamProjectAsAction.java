@@ -144,7 +144,9 @@ public class SaveBhamProjectAsAction extends AbstractSaveProjectAction
                 }
             }
             
-            if(!projectManager.saveActiveProject(selectedFile))
+            // failures in the save itself are reported by the save task
+            if(!BhamProjectManager.getInstance().saveActiveProjectInBackground(
+                    selectedFile))
             {
                 // there was a problem... tell the user
                 String message =
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.project;
+
+import java.io.File;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.SwingUtilities;
+
+import org.jax.bham.BhamApplication;
+import org.jax.util.concurrent.AbstractLongRunningTask;
+import org.jax.util.gui.MessageDialogUtilities;
+
+/**
+ * A long running task that saves a BHAM project in the background so that
+ * the GUI stays responsive while a large project is written
+ * @see BhamProjectManager#saveActiveProjectInBackground(File)
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class SaveBhamProjectTask
+extends AbstractLongRunningTask
+implements Runnable
+{
+    private static final Logger LOG = Logger.getLogger(
+            SaveBhamProjectTask.class.getName());
+    
+    private final BhamProject project;
+    
+    private final File projectFile;
+    
+    private volatile int workUnitsCompleted = 0;
+    
+    private volatile long savedModificationCount = -1L;
+    
+    private volatile boolean saveSucceeded = false;
+    
+    /**
+     * Constructor
+     * @param project
+     *          the project to save
+     * @param projectFile
+     *          the file to save to
+     */
+    public SaveBhamProjectTask(BhamProject project, File projectFile)
+    {
+        this.project = project;
+        this.projectFile = projectFile;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void run()
+    {
+        try
+        {
+            // anything that changes after this point is picked up by the
+            // next save
+            long modificationCount = this.project.getModificationCount();
+            this.project.saveProjectToFile(this.projectFile);
+            this.savedModificationCount = modificationCount;
+            this.saveSucceeded = true;
+        }
+        catch(Exception ex)
+        {
+            String title = "Error Saving Project File";
+            LOG.log(Level.SEVERE,
+                    title,
+                    ex);
+            MessageDialogUtilities.errorLater(
+                    BhamApplication.getInstance().getBhamFrame(),
+                    ex.getMessage(),
+                    title);
+        }
+        finally
+        {
+            // no matter what we need to finish up
+            this.workUnitsCompleted = 1;
+            this.fireChangeEvent();
+            
+            SwingUtilities.invokeLater(new Runnable()
+            {
+                public void run()
+                {
+                    BhamProjectManager.getInstance().saveFinished(
+                            SaveBhamProjectTask.this);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Getter for the project being saved
+     * @return the project
+     */
+    public BhamProject getProject()
+    {
+        return this.project;
+    }
+    
+    /**
+     * Getter for the file that the project is saved to
+     * @return the file
+     */
+    public File getProjectFile()
+    {
+        return this.projectFile;
+    }
+    
+    /**
+     * Determine if the save succeeded. Only meaningful once the task is
+     * done
+     * @return true if the project was saved
+     */
+    public boolean isSaveSucceeded()
+    {
+        return this.saveSucceeded;
+    }
+    
+    /**
+     * Getter for the project's modification count at the time that it was
+     * snapshotted for saving
+     * @see BhamProject#getModificationCount()
+     * @return the modification count or -1 if the save failed
+     */
+    public long getSavedModificationCount()
+    {
+        return this.savedModificationCount;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String getTaskName()
+    {
+        return "Saving Project: " + this.projectFile.getName();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getTotalWorkUnits()
+    {
+        return 1;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getWorkUnitsCompleted()
+    {
+        return this.workUnitsCompleted;
+    }
+}
@@ -0,0 +1,743 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.project;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The BHAM! project file format. Every data source and test is serialized
+ * into its own section and the file ends with a table of contents giving
+ * the name, type and location of each section. Reading a project only
+ * reads the table of contents and each section is deserialized the first
+ * time that it's used (see {@link ProjectSection#get()}). Saving only
+ * serializes the sections that have changed since they were last read or
+ * written (see {@link ProjectSection#markModified()}) and copies the
+ * stored bytes of every other section straight across.
+ * <p>
+ * Since each section is serialized on its own, an object that is the
+ * value of another section (a test's phenotype data source for example)
+ * is written as a reference to that section's ID rather than a copy so
+ * that the object graph comes back with the same sharing that it had when
+ * it was saved.
+ * </p>
+ * <pre>
+ * int      magic number
+ * int      format version
+ * ...      section bytes (one java serialization stream per section)
+ * ...      table of contents:
+ *              project name
+ *              int section count
+ *              per section: int ID, int parent ID (version 2 and up),
+ *                           type, name, long offset, int length
+ * long     table of contents offset
+ * </pre>
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class SectionedProjectFile
+{
+    /**
+     * The magic number at the start of every sectioned project file. Older
+     * project files are plain java serialization streams which start with
+     * 0xACED so the two can't be confused
+     */
+    public static final int MAGIC_NUMBER = 0x4248414D;
+    
+    /**
+     * The version of the format that we write
+     */
+    public static final int FORMAT_VERSION = 2;
+    
+    private static final int HEADER_LENGTH = 8;
+    
+    /**
+     * Saves go one at a time. Unchanged sections are copied from the file
+     * that they were read from, which may be the same file that another
+     * save is about to replace
+     */
+    private static final Object SAVE_LOCK = new Object();
+    
+    /**
+     * The kinds of section that a project can hold. The type's name is
+     * what gets stored in the table of contents
+     */
+    public enum SectionType
+    {
+        /**
+         * a {@link org.jax.haplotype.data.GenomeDataSource}
+         */
+        GENOME_DATA_SOURCE,
+        
+        /**
+         * a {@link org.jax.haplotype.analysis.PhenotypeDataSource}
+         */
+        PHENOTYPE_DATA_SOURCE,
+        
+        /**
+         * a {@link org.jax.haplotype.analysis.HaplotypeDataSource}
+         */
+        HAPLOTYPE_DATA_SOURCE,
+        
+        /**
+         * a {@link org.jax.haplotype.analysis.HaplotypeAssociationTest}
+         */
+        HAPLOTYPE_ASSOCIATION_TEST,
+        
+        /**
+         * a {@link org.jax.haplotype.analysis.PhylogenyDataSource}
+         */
+        PHYLOGENY_DATA_SOURCE,
+        
+        /**
+         * a {@link org.jax.haplotype.analysis.PhylogenyAssociationTest}
+         */
+        PHYLOGENY_ASSOCIATION_TEST,
+        
+        /**
+         * a {@link org.jax.haplotype.data.MultiGroupHaplotypeDataSource}
+         */
+        MULTI_GROUP_HAPLOTYPE_DATA_SOURCE,
+        
+        /**
+         * a {@link org.jax.haplotype.analysis.MultiGroupHaplotypeAssociationTest}
+         */
+        MULTI_GROUP_HAPLOTYPE_ASSOCIATION_TEST,
+        
+        /**
+         * the {@link StoredTestResults} of the parent test section
+         */
+        TEST_RESULTS,
+        
+        /**
+         * a {@link org.jax.bham.io.PhenotypeMatrix}
+         */
+        PHENOTYPE_MATRIX,
+        
+        /**
+         * a {@link org.jax.bham.test.MultiPhenotypeHaplotypeAssociationScan}
+         * which its phenotype tests refer to by scan ID
+         */
+        MULTI_PHENOTYPE_HAPLOTYPE_ASSOCIATION_SCAN,
+        
+        /**
+         * a {@link org.jax.bham.test.SlidingWindowStrainMeanScan}
+         */
+        SLIDING_WINDOW_STRAIN_MEAN_SCAN
+    }
+    
+    private final File file;
+    
+    private final String projectName;
+    
+    private final List<ProjectSection<?>> sections =
+        new ArrayList<ProjectSection<?>>();
+    
+    private final Map<Integer, ProjectSection<?>> sectionsById =
+        new HashMap<Integer, ProjectSection<?>>();
+    
+    private SectionedProjectFile(File file, String projectName)
+    {
+        this.file = file;
+        this.projectName = projectName;
+    }
+    
+    /**
+     * Determine if the given file is in the sectioned format (as opposed
+     * to the older single serialization stream format)
+     * @param file
+     *          the file to check
+     * @return
+     *          true if the file starts with {@link #MAGIC_NUMBER}
+     * @throws IOException
+     *          if we fail to read the file
+     */
+    public static boolean isSectionedProjectFile(File file) throws IOException
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try
+        {
+            return randomAccessFile.length() >= HEADER_LENGTH &&
+                   randomAccessFile.readInt() == MAGIC_NUMBER;
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+    
+    /**
+     * Read the table of contents of the given project file. None of the
+     * sections are deserialized here
+     * @param file
+     *          the file to read
+     * @return
+     *          the project file
+     * @throws IOException
+     *          if the file can't be read or isn't a sectioned project file
+     */
+    public static SectionedProjectFile read(File file) throws IOException
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try
+        {
+            if(randomAccessFile.length() < HEADER_LENGTH + 8 ||
+               randomAccessFile.readInt() != MAGIC_NUMBER)
+            {
+                throw new IOException(
+                        file.getAbsolutePath() +
+                        " is not a sectioned BHAM project file");
+            }
+            
+            int version = randomAccessFile.readInt();
+            if(version > FORMAT_VERSION)
+            {
+                throw new IOException(
+                        "Unsupported project file format version: " + version);
+            }
+            
+            randomAccessFile.seek(randomAccessFile.length() - 8);
+            randomAccessFile.seek(randomAccessFile.readLong());
+            
+            SectionedProjectFile projectFile = new SectionedProjectFile(
+                    file,
+                    readNullableString(randomAccessFile));
+            int sectionCount = randomAccessFile.readInt();
+            for(int i = 0; i < sectionCount; i++)
+            {
+                int sectionId = randomAccessFile.readInt();
+                int parentSectionId = version >= 2 ?
+                        randomAccessFile.readInt() :
+                        ProjectSection.NO_PARENT_SECTION_ID;
+                String typeName = randomAccessFile.readUTF();
+                String sectionName = readNullableString(randomAccessFile);
+                long offset = randomAccessFile.readLong();
+                int length = randomAccessFile.readInt();
+                
+                SectionType sectionType;
+                try
+                {
+                    sectionType = SectionType.valueOf(typeName);
+                }
+                catch(IllegalArgumentException ex)
+                {
+                    throw new IOException(
+                            "Unknown project section type: " + typeName);
+                }
+                
+                projectFile.addSection(new ProjectSection<Object>(
+                        sectionId,
+                        parentSectionId,
+                        sectionType,
+                        sectionName,
+                        projectFile,
+                        offset,
+                        length));
+            }
+            
+            return projectFile;
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+    }
+    
+    /**
+     * Write the given sections to a project file. The file is written to a
+     * temporary file first and then moved into place so that a failed save
+     * leaves the old project intact. Once written, the sections are
+     * pointed at their copies in the new file.
+     * <p>
+     * The section lock is only held while the sections are snapshotted
+     * (changed sections are serialized and we note where the bytes of
+     * unchanged sections are) and again while the new file is moved into
+     * place and the sections are relocated. All of the copying and writing
+     * happens in between so loads aren't held up by a large save. A section
+     * that changes while we're writing stays modified and is serialized
+     * again by the next save
+     * </p>
+     * @param file
+     *          the file to write
+     * @param projectName
+     *          the project name
+     * @param sections
+     *          the sections to write (IDs must be unique)
+     * @return
+     *          the new project file
+     * @throws IOException
+     *          if the write fails
+     */
+    public static SectionedProjectFile write(
+            File file,
+            String projectName,
+            List<ProjectSection<?>> sections)
+    throws IOException
+    {
+        synchronized(SAVE_LOCK)
+        {
+            SectionSnapshot[] snapshots = new SectionSnapshot[sections.size()];
+            synchronized(ProjectSection.SECTION_LOCK)
+            {
+                // sections that are in memory may refer to each other
+                Map<Object, Integer> loadedSectionIds =
+                    new IdentityHashMap<Object, Integer>();
+                for(ProjectSection<?> section: sections)
+                {
+                    if(section.isLoaded() && section.get() != null)
+                    {
+                        loadedSectionIds.put(
+                                section.get(),
+                                section.getSectionId());
+                    }
+                }
+                
+                for(int i = 0; i < snapshots.length; i++)
+                {
+                    ProjectSection<?> section = sections.get(i);
+                    if(section.hasCurrentStoredBytes())
+                    {
+                        // this is what makes saving incremental. only
+                        // sections that changed get serialized
+                        snapshots[i] = new SectionSnapshot(
+                                section.getModificationCount(),
+                                section.getSourceFile(),
+                                section.getOffset(),
+                                section.getLength(),
+                                null);
+                    }
+                    else
+                    {
+                        snapshots[i] = new SectionSnapshot(
+                                section.getModificationCount(),
+                                null,
+                                0L,
+                                0,
+                                serializeSection(
+                                        section.get(),
+                                        loadedSectionIds));
+                    }
+                }
+            }
+            
+            File absoluteFile = file.getAbsoluteFile();
+            File tempFile = File.createTempFile(
+                    "bham",
+                    ".tmp",
+                    absoluteFile.getParentFile());
+            long[] offsets = new long[sections.size()];
+            int[] lengths = new int[sections.size()];
+            try
+            {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(
+                                new FileOutputStream(tempFile)));
+                try
+                {
+                    out.writeInt(MAGIC_NUMBER);
+                    out.writeInt(FORMAT_VERSION);
+                    
+                    long position = HEADER_LENGTH;
+                    for(int i = 0; i < snapshots.length; i++)
+                    {
+                        SectionSnapshot snapshot = snapshots[i];
+                        byte[] sectionBytes = snapshot.serializedBytes;
+                        if(sectionBytes == null)
+                        {
+                            // the save lock keeps another save from
+                            // replacing the source file while we read it
+                            sectionBytes = snapshot.sourceFile.readSectionBytes(
+                                    snapshot.offset,
+                                    snapshot.length);
+                        }
+                        
+                        out.write(sectionBytes);
+                        offsets[i] = position;
+                        lengths[i] = sectionBytes.length;
+                        position += sectionBytes.length;
+                    }
+                    
+                    long tableOfContentsOffset = position;
+                    writeNullableString(out, projectName);
+                    out.writeInt(sections.size());
+                    for(int i = 0; i < sections.size(); i++)
+                    {
+                        ProjectSection<?> section = sections.get(i);
+                        out.writeInt(section.getSectionId());
+                        out.writeInt(section.getParentSectionId());
+                        out.writeUTF(section.getSectionType().name());
+                        writeNullableString(out, section.getName());
+                        out.writeLong(offsets[i]);
+                        out.writeInt(lengths[i]);
+                    }
+                    out.writeLong(tableOfContentsOffset);
+                    out.flush();
+                }
+                finally
+                {
+                    out.close();
+                }
+                
+                // sections that haven't been loaded may be reading from the
+                // old file so the move and the relocation have to happen
+                // together
+                synchronized(ProjectSection.SECTION_LOCK)
+                {
+                    if(!tempFile.renameTo(absoluteFile))
+                    {
+                        // some platforms won't rename over an existing file
+                        if(!absoluteFile.delete() || !tempFile.renameTo(absoluteFile))
+                        {
+                            throw new IOException(
+                                    "Failed to move the saved project to " +
+                                    absoluteFile.getPath());
+                        }
+                    }
+                    
+                    SectionedProjectFile projectFile = new SectionedProjectFile(
+                            absoluteFile,
+                            projectName);
+                    for(int i = 0; i < sections.size(); i++)
+                    {
+                        ProjectSection<?> section = sections.get(i);
+                        section.relocate(
+                                projectFile,
+                                offsets[i],
+                                lengths[i],
+                                snapshots[i].modificationCount);
+                        projectFile.addSection(section);
+                    }
+                    
+                    return projectFile;
+                }
+            }
+            finally
+            {
+                if(tempFile.exists())
+                {
+                    tempFile.delete();
+                }
+            }
+        }
+    }
+    
+    private void addSection(ProjectSection<?> section)
+    {
+        this.sections.add(section);
+        this.sectionsById.put(section.getSectionId(), section);
+    }
+    
+    /**
+     * Getter for the file
+     * @return the file
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+    
+    /**
+     * Getter for the project name
+     * @return the project name (can be null)
+     */
+    public String getProjectName()
+    {
+        return this.projectName;
+    }
+    
+    /**
+     * Get the sections of the given type in file order
+     * @param <T>
+     *          the type of object held by sections of the given type
+     * @param sectionType
+     *          the section type
+     * @return
+     *          the sections
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<ProjectSection<T>> getSections(SectionType sectionType)
+    {
+        List<ProjectSection<T>> typedSections =
+            new ArrayList<ProjectSection<T>>();
+        for(ProjectSection<?> section: this.sections)
+        {
+            if(section.getSectionType() == sectionType)
+            {
+                typedSections.add((ProjectSection<T>)section);
+            }
+        }
+        
+        return typedSections;
+    }
+    
+    /**
+     * Get the largest section ID in this file
+     * @return
+     *          the largest ID or -1 if there are no sections
+     */
+    public int getMaximumSectionId()
+    {
+        if(this.sectionsById.isEmpty())
+        {
+            return -1;
+        }
+        else
+        {
+            return Collections.max(this.sectionsById.keySet());
+        }
+    }
+    
+    /**
+     * Read the raw bytes of a section
+     * @param offset
+     *          the section offset
+     * @param length
+     *          the section length
+     * @return
+     *          the bytes
+     * @throws IOException
+     *          if the read fails
+     */
+    byte[] readSectionBytes(long offset, int length) throws IOException
+    {
+        byte[] sectionBytes = new byte[length];
+        RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "r");
+        try
+        {
+            randomAccessFile.seek(offset);
+            randomAccessFile.readFully(sectionBytes);
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+        
+        return sectionBytes;
+    }
+    
+    /**
+     * Read and deserialize a section. Any references to other sections are
+     * resolved by loading those sections
+     * @param <T>
+     *          the type of the section's value
+     * @param offset
+     *          the section offset
+     * @param length
+     *          the section length
+     * @return
+     *          the deserialized value
+     * @throws IOException
+     *          if the read fails
+     * @throws ClassNotFoundException
+     *          if the section holds a class we don't know about
+     */
+    @SuppressWarnings("unchecked")
+    <T> T readSectionValue(long offset, int length)
+    throws IOException, ClassNotFoundException
+    {
+        ObjectInputStream in = new SectionObjectInputStream(
+                new ByteArrayInputStream(this.readSectionBytes(offset, length)));
+        try
+        {
+            return (T)in.readObject();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+    
+    private static byte[] serializeSection(
+            Object sectionValue,
+            Map<Object, Integer> loadedSectionIds)
+    throws IOException
+    {
+        ByteArrayOutputStream sectionBytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new SectionObjectOutputStream(
+                sectionBytes,
+                sectionValue,
+                loadedSectionIds);
+        out.writeObject(sectionValue);
+        out.close();
+        
+        return sectionBytes.toByteArray();
+    }
+    
+    private static String readNullableString(RandomAccessFile in)
+    throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+    
+    private static void writeNullableString(DataOutputStream out, String string)
+    throws IOException
+    {
+        out.writeBoolean(string != null);
+        if(string != null)
+        {
+            out.writeUTF(string);
+        }
+    }
+    
+    /**
+     * What a save needs to know about a section, taken while holding the
+     * section lock. Either the section's serialized bytes or the location
+     * of its current stored bytes
+     */
+    private static final class SectionSnapshot
+    {
+        private final int modificationCount;
+        
+        private final SectionedProjectFile sourceFile;
+        
+        private final long offset;
+        
+        private final int length;
+        
+        private final byte[] serializedBytes;
+        
+        public SectionSnapshot(
+                int modificationCount,
+                SectionedProjectFile sourceFile,
+                long offset,
+                int length,
+                byte[] serializedBytes)
+        {
+            this.modificationCount = modificationCount;
+            this.sourceFile = sourceFile;
+            this.offset = offset;
+            this.length = length;
+            this.serializedBytes = serializedBytes;
+        }
+    }
+    
+    /**
+     * Stands in for the value of another section in a serialized section
+     */
+    private static final class SectionReference implements Serializable
+    {
+        /**
+         * every {@link java.io.Serializable} is supposed to have one of these
+         */
+        private static final long serialVersionUID = -6254118737325150931L;
+        
+        private final int sectionId;
+        
+        public SectionReference(int sectionId)
+        {
+            this.sectionId = sectionId;
+        }
+    }
+    
+    /**
+     * Writes a section swapping any other section values for
+     * {@link SectionReference}s
+     */
+    private static final class SectionObjectOutputStream extends ObjectOutputStream
+    {
+        private final Object sectionValue;
+        
+        private final Map<Object, Integer> loadedSectionIds;
+        
+        public SectionObjectOutputStream(
+                OutputStream out,
+                Object sectionValue,
+                Map<Object, Integer> loadedSectionIds)
+        throws IOException
+        {
+            super(out);
+            this.sectionValue = sectionValue;
+            this.loadedSectionIds = loadedSectionIds;
+            this.enableReplaceObject(true);
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected Object replaceObject(Object obj) throws IOException
+        {
+            if(obj != this.sectionValue)
+            {
+                Integer sectionId = this.loadedSectionIds.get(obj);
+                if(sectionId != null)
+                {
+                    return new SectionReference(sectionId);
+                }
+            }
+            
+            return obj;
+        }
+    }
+    
+    /**
+     * Reads a section swapping any {@link SectionReference}s for the
+     * values of the sections that they refer to
+     */
+    private final class SectionObjectInputStream extends ObjectInputStream
+    {
+        public SectionObjectInputStream(InputStream in) throws IOException
+        {
+            super(in);
+            this.enableResolveObject(true);
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected Object resolveObject(Object obj) throws IOException
+        {
+            if(obj instanceof SectionReference)
+            {
+                int sectionId = ((SectionReference)obj).sectionId;
+                ProjectSection<?> section =
+                    SectionedProjectFile.this.sectionsById.get(sectionId);
+                if(section == null)
+                {
+                    throw new InvalidObjectException(
+                            "Project file refers to a missing section: " +
+                            sectionId);
+                }
+                
+                return section.get();
+            }
+            else
+            {
+                return obj;
+            }
+        }
+    }
+}
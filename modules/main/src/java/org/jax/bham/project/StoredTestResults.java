@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.project;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.jax.bham.test.SlidingWindowStrainMeanScan;
+import org.jax.haplotype.analysis.HaplotypeAssociationTest;
+import org.jax.haplotype.analysis.HaplotypeDataSource;
+import org.jax.haplotype.analysis.MultiGroupHaplotypeAssociationTest;
+import org.jax.haplotype.analysis.PhenotypeDataSource;
+import org.jax.haplotype.analysis.PhylogenyAssociationTest;
+import org.jax.haplotype.analysis.PhylogenyDataSource;
+import org.jax.haplotype.data.MultiGroupHaplotypeDataSource;
+
+/**
+ * The computed results of a single association test as they're stored in a
+ * {@link BhamProject}. Each block of results (usually one chromosome) is
+ * kept as its own compressed byte array and is only inflated when it's
+ * asked for. The results are tied to a fingerprint of the test's inputs so
+ * that results computed from different inputs are never handed back.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class StoredTestResults implements Serializable
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = -3851022796421157347L;
+    
+    /**
+     * The key used for a test's genome wide haplotype equivalence class
+     * results
+     */
+    public static final String EQUIVALENCE_CLASS_RESULTS_KEY =
+        "equivalenceClassResults";
+    
+    /**
+     * The version of the inputs that go into
+     * {@link #calculateInputFingerprint(Object)}. Changing this drops every
+     * stored result
+     */
+    private static final int INPUT_FINGERPRINT_VERSION = 2;
+    
+    private final String inputFingerprint;
+    
+    private final Map<String, byte[]> compressedResults =
+        new HashMap<String, byte[]>();
+    
+    /**
+     * Constructor
+     * @param inputFingerprint
+     *          the fingerprint of the test inputs that these results are
+     *          computed from (see {@link #calculateInputFingerprint(Object)})
+     */
+    public StoredTestResults(String inputFingerprint)
+    {
+        this.inputFingerprint = inputFingerprint;
+    }
+    
+    /**
+     * Get the key to use for the results of a single chromosome
+     * @param chromosomeNumber
+     *          the chromosome number
+     * @return
+     *          the key
+     */
+    public static String getChromosomeKey(int chromosomeNumber)
+    {
+        return "chromosome" + chromosomeNumber;
+    }
+    
+    /**
+     * Calculate a fingerprint for the given test's inputs (an association
+     * test or a {@link SlidingWindowStrainMeanScan}). The fingerprint
+     * covers an explicit list of everything that goes into the results: the
+     * test type and its {@link TestResultParameters}, the type, name and
+     * strains of its data source and the name and strain values of its
+     * phenotype. The test's own name isn't included since renaming a test
+     * doesn't change its results
+     * @param test
+     *          the test
+     * @return
+     *          the fingerprint (a hex encoded SHA-1 of the inputs)
+     * @throws IOException
+     *          if the test's phenotype can't be read
+     */
+    public static String calculateInputFingerprint(Object test)
+    throws IOException
+    {
+        Object dataSource;
+        Set<String> dataSourceStrains;
+        String dataSourceName;
+        PhenotypeDataSource phenotypeDataSource;
+        if(test instanceof HaplotypeAssociationTest)
+        {
+            HaplotypeAssociationTest haplotypeTest =
+                (HaplotypeAssociationTest)test;
+            HaplotypeDataSource haplotypeDataSource =
+                haplotypeTest.getHaplotypeDataSource();
+            dataSource = haplotypeDataSource;
+            dataSourceName = haplotypeDataSource.getName();
+            dataSourceStrains = haplotypeDataSource.getAvailableStrains();
+            phenotypeDataSource = haplotypeTest.getPhenotypeDataSource();
+        }
+        else if(test instanceof PhylogenyAssociationTest)
+        {
+            PhylogenyAssociationTest phylogenyTest =
+                (PhylogenyAssociationTest)test;
+            PhylogenyDataSource phylogenyDataSource =
+                phylogenyTest.getPhylogenyDataSource();
+            dataSource = phylogenyDataSource;
+            dataSourceName = phylogenyDataSource.getName();
+            dataSourceStrains = phylogenyDataSource.getAvailableStrains();
+            phenotypeDataSource = phylogenyTest.getPhenotypeDataSource();
+        }
+        else if(test instanceof MultiGroupHaplotypeAssociationTest)
+        {
+            MultiGroupHaplotypeAssociationTest multiGroupTest =
+                (MultiGroupHaplotypeAssociationTest)test;
+            MultiGroupHaplotypeDataSource multiGroupDataSource =
+                multiGroupTest.getHaplotypeDataSource();
+            dataSource = multiGroupDataSource;
+            dataSourceName = multiGroupDataSource.getName();
+            dataSourceStrains = multiGroupDataSource.getAvailableStrains();
+            phenotypeDataSource = multiGroupTest.getPhenotypeDataSource();
+        }
+        else if(test instanceof SlidingWindowStrainMeanScan)
+        {
+            // a scan only ever looks at the genome strains that have a
+            // phenotype so those are the only ones that matter here
+            SlidingWindowStrainMeanScan scan =
+                (SlidingWindowStrainMeanScan)test;
+            dataSource = scan.getGenomeDataSource();
+            dataSourceName = scan.getGenomeDataSource().getName();
+            dataSourceStrains = new TreeSet<String>(
+                    Arrays.asList(scan.getSortedStrains()));
+            phenotypeDataSource = scan.getPhenotypeDataSource();
+        }
+        else
+        {
+            throw new IllegalArgumentException(
+                    "can't fingerprint test type: " + test.getClass().getName());
+        }
+        
+        ByteArrayOutputStream inputBytes = new ByteArrayOutputStream();
+        DataOutputStream inputStream = new DataOutputStream(inputBytes);
+        
+        inputStream.writeInt(INPUT_FINGERPRINT_VERSION);
+        inputStream.writeUTF(test.getClass().getName());
+        if(test instanceof TestResultParameters)
+        {
+            String[] resultParameters =
+                ((TestResultParameters)test).getResultParameters();
+            inputStream.writeInt(resultParameters.length);
+            for(String resultParameter: resultParameters)
+            {
+                inputStream.writeUTF(resultParameter);
+            }
+        }
+        else
+        {
+            inputStream.writeInt(0);
+        }
+        
+        // sort everything so that set and map ordering can't change the
+        // fingerprint
+        inputStream.writeUTF(dataSource.getClass().getName());
+        inputStream.writeUTF(String.valueOf(dataSourceName));
+        Set<String> sortedStrains = new TreeSet<String>(dataSourceStrains);
+        inputStream.writeInt(sortedStrains.size());
+        for(String strain: sortedStrains)
+        {
+            inputStream.writeUTF(strain);
+        }
+        
+        Map<String, List<Double>> sortedPhenotype =
+            new TreeMap<String, List<Double>>(
+                    phenotypeDataSource.getPhenotypeData());
+        inputStream.writeUTF(phenotypeDataSource.getClass().getName());
+        inputStream.writeUTF(String.valueOf(phenotypeDataSource.getName()));
+        inputStream.writeInt(sortedPhenotype.size());
+        for(Map.Entry<String, List<Double>> strainEntry: sortedPhenotype.entrySet())
+        {
+            inputStream.writeUTF(strainEntry.getKey());
+            inputStream.writeInt(strainEntry.getValue().size());
+            for(Double value: strainEntry.getValue())
+            {
+                inputStream.writeDouble(value == null ? Double.NaN : value);
+            }
+        }
+        inputStream.close();
+        
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(
+                    inputBytes.toByteArray());
+            StringBuilder fingerprint = new StringBuilder(2 * digest.length);
+            for(byte digestByte: digest)
+            {
+                fingerprint.append(Character.forDigit((digestByte >> 4) & 0xF, 16));
+                fingerprint.append(Character.forDigit(digestByte & 0xF, 16));
+            }
+            
+            return fingerprint.toString();
+        }
+        catch(NoSuchAlgorithmException ex)
+        {
+            // every java platform is required to support SHA-1
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    /**
+     * Getter for the fingerprint of the inputs that these results were
+     * computed from
+     * @return the fingerprint
+     */
+    public String getInputFingerprint()
+    {
+        return this.inputFingerprint;
+    }
+    
+    /**
+     * Determine if results are stored under the given key
+     * @param resultsKey
+     *          the key
+     * @return
+     *          true if they are
+     */
+    public synchronized boolean containsResults(String resultsKey)
+    {
+        return this.compressedResults.containsKey(resultsKey);
+    }
+    
+    /**
+     * Get the results stored under the given key
+     * @param <R>
+     *          the results type
+     * @param resultsKey
+     *          the key
+     * @return
+     *          the results or null if none are stored under the key
+     * @throws IOException
+     *          if the stored results can't be read
+     * @throws ClassNotFoundException
+     *          if the stored results hold a class we don't know about
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R getResults(String resultsKey)
+    throws IOException, ClassNotFoundException
+    {
+        byte[] resultBytes;
+        synchronized(this)
+        {
+            resultBytes = this.compressedResults.get(resultsKey);
+        }
+        
+        if(resultBytes == null)
+        {
+            return null;
+        }
+        else
+        {
+            ObjectInputStream ois = new ObjectInputStream(
+                    new InflaterInputStream(
+                            new ByteArrayInputStream(resultBytes)));
+            try
+            {
+                return (R)ois.readObject();
+            }
+            finally
+            {
+                ois.close();
+            }
+        }
+    }
+    
+    /**
+     * Store results under the given key replacing any results that are
+     * already there
+     * @param resultsKey
+     *          the key
+     * @param results
+     *          the results which must be serializable
+     * @throws IOException
+     *          if the results can't be serialized
+     */
+    public void putResults(String resultsKey, Object results)
+    throws IOException
+    {
+        ByteArrayOutputStream resultBytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(
+                new DeflaterOutputStream(resultBytes));
+        oos.writeObject(results);
+        oos.close();
+        
+        synchronized(this)
+        {
+            this.compressedResults.put(resultsKey, resultBytes.toByteArray());
+        }
+    }
+    
+    /**
+     * Hold the lock while serializing so that results being stored by a
+     * running test can't change the map under us
+     * @param out
+     *          the stream to write to
+     * @throws IOException
+     *          if the write fails
+     */
+    private synchronized void writeObject(ObjectOutputStream out)
+    throws IOException
+    {
+        out.defaultWriteObject();
+    }
+}
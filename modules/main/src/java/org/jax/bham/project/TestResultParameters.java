@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.jax.bham.project;
+
+/**
+ * Implemented by association tests whose results depend on more than their
+ * data sources and phenotype. The parameters go into the test's input
+ * fingerprint (see {@link StoredTestResults#calculateInputFingerprint(Object)})
+ * so that stored and cached results are dropped when they change. Inferred
+ * data sources implement it too so that their inference parameters go into
+ * the keys of the shared {@link org.jax.bham.test.TestResultsCache}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public interface TestResultParameters
+{
+    /**
+     * Get the parameters that this test's results depend on. Along with
+     * any settings this should hold a version that goes up whenever the
+     * way that the results are calculated changes
+     * @return
+     *          the parameters
+     */
+    public String[] getResultParameters();
+}
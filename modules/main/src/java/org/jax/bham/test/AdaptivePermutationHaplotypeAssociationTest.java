@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jax.geneticutil.data.BinaryStrainPartition;
+import org.jax.geneticutil.data.PartitionedIntervalSet;
+import org.jax.haplotype.analysis.HaplotypeAssociationTest;
+import org.jax.haplotype.analysis.HaplotypeBlockTestResult;
+import org.jax.haplotype.analysis.HaplotypeDataSource;
+import org.jax.haplotype.analysis.HaplotypeEquivalenceClassTestResult;
+import org.jax.haplotype.analysis.PhenotypeDataSource;
+
+/**
+ * A haplotype association test whose p-values come from adaptive
+ * permutation (see {@link AdaptivePermutationTest}) rather than from the
+ * F distribution. The results are the usual result types so plots and
+ * exports work unchanged
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class AdaptivePermutationHaplotypeAssociationTest
+extends HaplotypeAssociationTest
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = -4417282385604905773L;
+    
+    /**
+     * a fixed seed keeps the p-values repeatable so that stored and cached
+     * results agree with freshly calculated ones
+     */
+    private static final long PERMUTATION_SEED = 0x6A09E667F3BCC908L;
+    
+    private transient AdaptivePermutationTest permutationTest = null;
+    
+    /**
+     * Constructor
+     * @param name
+     *          the name of the test
+     * @param haplotypeDataSource
+     *          the haplotype data source
+     * @param phenotypeDataSource
+     *          the phenotype data source
+     */
+    public AdaptivePermutationHaplotypeAssociationTest(
+            String name,
+            HaplotypeDataSource haplotypeDataSource,
+            PhenotypeDataSource phenotypeDataSource)
+    {
+        super(name, haplotypeDataSource, phenotypeDataSource);
+    }
+    
+    /**
+     * Get the permutation test, creating it the first time
+     * @return
+     *          the permutation test
+     */
+    protected synchronized AdaptivePermutationTest getPermutationTest()
+    {
+        if(this.permutationTest == null)
+        {
+            this.permutationTest = new AdaptivePermutationTest(
+                    PhenotypeStatistics.getPhenotypeStatistics(this).getMeans(),
+                    PERMUTATION_SEED);
+        }
+        
+        return this.permutationTest;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HaplotypeBlockTestResult[] getHaplotypeTestResults(int chromosome)
+    {
+        HaplotypeBlockTestResult[] blockResults =
+            super.getHaplotypeTestResults(chromosome);
+        AdaptivePermutationTest test = this.getPermutationTest();
+        
+        List<short[]> partitions = new ArrayList<short[]>(blockResults.length);
+        for(HaplotypeBlockTestResult blockResult: blockResults)
+        {
+            BinaryStrainPartition block =
+                (BinaryStrainPartition)blockResult.getDelegateInterval();
+            partitions.add(test.toStrainGroups(block.getStrainBitSet()));
+        }
+        double[] pValues = test.calculateEmpiricalPValues(partitions);
+        
+        HaplotypeBlockTestResult[] permutationResults =
+            new HaplotypeBlockTestResult[blockResults.length];
+        for(int i = 0; i < blockResults.length; i++)
+        {
+            permutationResults[i] = new HaplotypeBlockTestResult(
+                    (BinaryStrainPartition)blockResults[i].getDelegateInterval(),
+                    pValues[i]);
+        }
+        
+        return permutationResults;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HaplotypeEquivalenceClassTestResult[] getEquivalenceClassTestResults()
+    {
+        HaplotypeEquivalenceClassTestResult[] classResults =
+            super.getEquivalenceClassTestResults();
+        AdaptivePermutationTest test = this.getPermutationTest();
+        
+        List<short[]> partitions = new ArrayList<short[]>(classResults.length);
+        for(HaplotypeEquivalenceClassTestResult classResult: classResults)
+        {
+            partitions.add(test.toStrainGroups(
+                    classResult.getHaplotypeEquivalenceClass().getStrainBitSet()));
+        }
+        double[] pValues = test.calculateEmpiricalPValues(partitions);
+        
+        HaplotypeEquivalenceClassTestResult[] permutationResults =
+            new HaplotypeEquivalenceClassTestResult[classResults.length];
+        for(int i = 0; i < classResults.length; i++)
+        {
+            PartitionedIntervalSet equivalenceClass =
+                classResults[i].getHaplotypeEquivalenceClass();
+            permutationResults[i] = new HaplotypeEquivalenceClassTestResult(
+                    equivalenceClass,
+                    pValues[i]);
+        }
+        
+        return permutationResults;
+    }
+}
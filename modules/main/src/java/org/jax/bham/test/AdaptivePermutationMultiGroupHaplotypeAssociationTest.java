@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jax.geneticutil.data.MultiGroupStrainPartition;
+import org.jax.haplotype.analysis.MultiGroupHaplotypeAssociationTest;
+import org.jax.haplotype.analysis.MultiHaplotypeBlockTestResult;
+import org.jax.haplotype.analysis.PhenotypeDataSource;
+import org.jax.haplotype.data.MultiGroupHaplotypeDataSource;
+
+/**
+ * A multi-group haplotype association test whose p-values come from
+ * adaptive permutation (see {@link AdaptivePermutationTest}) rather than
+ * from the F distribution
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class AdaptivePermutationMultiGroupHaplotypeAssociationTest
+extends MultiGroupHaplotypeAssociationTest
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = 3065617268329012957L;
+    
+    /**
+     * a fixed seed keeps the p-values repeatable so that stored results
+     * agree with freshly calculated ones
+     */
+    private static final long PERMUTATION_SEED = 0xBB67AE8584CAA73BL;
+    
+    private transient AdaptivePermutationTest permutationTest = null;
+    
+    /**
+     * Constructor
+     * @param name
+     *          the name of the test
+     * @param haplotypeDataSource
+     *          the multi-group haplotype data source
+     * @param phenotypeDataSource
+     *          the phenotype data source
+     */
+    public AdaptivePermutationMultiGroupHaplotypeAssociationTest(
+            String name,
+            MultiGroupHaplotypeDataSource haplotypeDataSource,
+            PhenotypeDataSource phenotypeDataSource)
+    {
+        super(name, haplotypeDataSource, phenotypeDataSource);
+    }
+    
+    /**
+     * Get the permutation test, creating it the first time
+     * @return
+     *          the permutation test
+     */
+    protected synchronized AdaptivePermutationTest getPermutationTest()
+    {
+        if(this.permutationTest == null)
+        {
+            this.permutationTest = new AdaptivePermutationTest(
+                    PhenotypeStatistics.getPhenotypeStatistics(this).getMeans(),
+                    PERMUTATION_SEED);
+        }
+        
+        return this.permutationTest;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MultiHaplotypeBlockTestResult[] getTestResults(int chromosome)
+    {
+        MultiHaplotypeBlockTestResult[] blockResults =
+            super.getTestResults(chromosome);
+        
+        List<short[]> partitions = new ArrayList<short[]>(blockResults.length);
+        for(MultiHaplotypeBlockTestResult blockResult: blockResults)
+        {
+            partitions.add(blockResult.getStrainGroups());
+        }
+        double[] pValues =
+            this.getPermutationTest().calculateEmpiricalPValues(partitions);
+        
+        MultiHaplotypeBlockTestResult[] permutationResults =
+            new MultiHaplotypeBlockTestResult[blockResults.length];
+        for(int i = 0; i < blockResults.length; i++)
+        {
+            permutationResults[i] = new MultiHaplotypeBlockTestResult(
+                    (MultiGroupStrainPartition)blockResults[i].getDelegateInterval(),
+                    pValues[i]);
+        }
+        
+        return permutationResults;
+    }
+}
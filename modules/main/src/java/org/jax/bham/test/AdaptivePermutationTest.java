@@ -0,0 +1,507 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Adaptive permutation p-values for strain partitions. Each partition is
+ * scored with a one way ANOVA on the strain means and the strain means are
+ * permuted until the permuted statistic has reached the observed one
+ * enough times. Blocks that are obviously null stop after a handful of
+ * permutations and only the promising ones go on toward the maximum. The
+ * p-value estimate is (exceedances + 1) / (permutations + 1). Partitions
+ * that come up more than once (under any group numbering) are only
+ * permuted once: the p-values go into a {@link PartitionResultCache} that
+ * is shared by every test, so tests of the same phenotype with the same
+ * settings reuse each other's partitions too.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class AdaptivePermutationTest
+{
+    /**
+     * the default number of null exceedances to stop at
+     */
+    public static final int DEFAULT_MINIMUM_EXCEEDANCES = 10;
+    
+    /**
+     * the default cap on permutations for any one partition
+     */
+    public static final int DEFAULT_MAXIMUM_PERMUTATIONS = 1000000;
+    
+    /**
+     * relative tolerance so that ties aren't lost to rounding
+     */
+    private static final double TIE_TOLERANCE = 1e-12;
+    
+    /**
+     * the empirical p-values of every adaptive permutation test
+     */
+    private static final PartitionResultCache<PartitionKey, Double> EMPIRICAL_P_VALUE_CACHE =
+        new PartitionResultCache<PartitionKey, Double>(
+                "adaptive permutation p-values",
+                PartitionResultCache.getDefaultMaximumEntryCount());
+    
+    /**
+     * the threads that every adaptive permutation test shares. Tests are
+     * usually run from several chromosome workers at once so giving each
+     * call its own pool would run many times more permutation threads
+     * than there are processors
+     */
+    private static ExecutorService permutationExecutor = null;
+    
+    private final double[] strainMeans;
+    
+    private final int minimumExceedances;
+    
+    private final int maximumPermutations;
+    
+    private final long seed;
+    
+    private final PermutationSettings settings;
+    
+    /**
+     * Constructor which uses the default stopping rules
+     * @param strainMeans
+     *          the strain phenotype means
+     * @param seed
+     *          the random seed
+     */
+    public AdaptivePermutationTest(double[] strainMeans, long seed)
+    {
+        this(strainMeans,
+             DEFAULT_MINIMUM_EXCEEDANCES,
+             DEFAULT_MAXIMUM_PERMUTATIONS,
+             seed);
+    }
+    
+    /**
+     * Constructor
+     * @param strainMeans
+     *          the strain phenotype means
+     * @param minimumExceedances
+     *          a partition stops permuting once this many permutations
+     *          score at least as well as the observed phenotypes
+     * @param maximumPermutations
+     *          the most permutations that we'll run for any partition
+     * @param seed
+     *          the random seed. A partition's permutations only depend on
+     *          the seed and the partition so results are repeatable
+     */
+    public AdaptivePermutationTest(
+            double[] strainMeans,
+            int minimumExceedances,
+            int maximumPermutations,
+            long seed)
+    {
+        this.strainMeans = strainMeans;
+        this.minimumExceedances = minimumExceedances;
+        this.maximumPermutations = maximumPermutations;
+        this.seed = seed;
+        this.settings = new PermutationSettings(
+                strainMeans,
+                minimumExceedances,
+                maximumPermutations,
+                seed);
+    }
+    
+    /**
+     * Getter for the p-value cache that's shared by all of the adaptive
+     * permutation tests
+     * @return
+     *          the cache
+     */
+    public static PartitionResultCache<?, ?> getEmpiricalPValueCache()
+    {
+        return EMPIRICAL_P_VALUE_CACHE;
+    }
+    
+    /**
+     * Calculate the empirical p-value of a two group partition
+     * @param strainBitSet
+     *          the strains in the first group
+     * @return
+     *          the p-value
+     */
+    public double calculateEmpiricalPValue(BitSet strainBitSet)
+    {
+        return this.calculateEmpiricalPValue(this.toStrainGroups(strainBitSet));
+    }
+    
+    /**
+     * Calculate the empirical p-value of a partition
+     * @param strainGroups
+     *          the group number of each strain
+     * @return
+     *          the p-value
+     */
+    public double calculateEmpiricalPValue(short[] strainGroups)
+    {
+        PartitionKey key = new PartitionKey(this.settings, strainGroups);
+        Double pValue = EMPIRICAL_P_VALUE_CACHE.get(key);
+        if(pValue == null)
+        {
+            pValue = this.permute(key.canonicalGroups);
+            EMPIRICAL_P_VALUE_CACHE.put(key, pValue);
+        }
+        
+        return pValue;
+    }
+    
+    /**
+     * Get the executor that's shared by all of the adaptive permutation
+     * tests, creating it the first time. The threads are daemons so the
+     * executor is never shut down
+     * @return
+     *          the executor
+     */
+    private static synchronized ExecutorService getPermutationExecutor()
+    {
+        if(permutationExecutor == null)
+        {
+            permutationExecutor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactory()
+                    {
+                        /**
+                         * {@inheritDoc}
+                         */
+                        public Thread newThread(Runnable r)
+                        {
+                            Thread thread = new Thread(r, "adaptive-permutation");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        
+        return permutationExecutor;
+    }
+    
+    /**
+     * Calculate empirical p-values for many partitions using the shared
+     * permutation threads. This is safe to call from many threads at once
+     * and the calls share the processors rather than each taking all of
+     * them
+     * @param partitions
+     *          the group numbers of each partition
+     * @return
+     *          the p-values in the same order
+     */
+    public double[] calculateEmpiricalPValues(List<short[]> partitions)
+    {
+        ExecutorService executor = getPermutationExecutor();
+        List<Future<Double>> pValueFutures =
+            new ArrayList<Future<Double>>(partitions.size());
+        try
+        {
+            for(final short[] partition: partitions)
+            {
+                pValueFutures.add(executor.submit(new Callable<Double>()
+                {
+                    /**
+                     * {@inheritDoc}
+                     */
+                    public Double call()
+                    {
+                        return AdaptivePermutationTest.this.calculateEmpiricalPValue(
+                                partition);
+                    }
+                }));
+            }
+            
+            double[] pValues = new double[partitions.size()];
+            for(int i = 0; i < pValues.length; i++)
+            {
+                pValues[i] = pValueFutures.get(i).get();
+            }
+            return pValues;
+        }
+        catch(InterruptedException ex)
+        {
+            throw new IllegalStateException(
+                    "interrupted while permuting partitions");
+        }
+        catch(ExecutionException ex)
+        {
+            throw new IllegalStateException(
+                    "failed to permute partitions",
+                    ex.getCause());
+        }
+        finally
+        {
+            // the executor is shared so only our own work gets cancelled.
+            // this does nothing if everything finished
+            for(Future<Double> pValueFuture: pValueFutures)
+            {
+                pValueFuture.cancel(true);
+            }
+        }
+    }
+    
+    /**
+     * Convert a bit set into group numbers
+     * @param strainBitSet
+     *          the strains in group 1
+     * @return
+     *          the group number of each strain
+     */
+    public short[] toStrainGroups(BitSet strainBitSet)
+    {
+        short[] strainGroups = new short[this.strainMeans.length];
+        for(int i = 0; i < strainGroups.length; i++)
+        {
+            if(strainBitSet.get(i))
+            {
+                strainGroups[i] = 1;
+            }
+        }
+        
+        return strainGroups;
+    }
+    
+    private double permute(short[] groups)
+    {
+        int strainCount = this.strainMeans.length;
+        int groupCount = 0;
+        for(short group: groups)
+        {
+            groupCount = Math.max(groupCount, group + 1);
+        }
+        
+        if(groupCount < 2)
+        {
+            return 1.0;
+        }
+        else
+        {
+            double[] groupSizes = new double[groupCount];
+            for(short group: groups)
+            {
+                groupSizes[group]++;
+            }
+            
+            double[] groupSums = new double[groupCount];
+            double observedStatistic = betweenGroupStatistic(
+                    this.strainMeans,
+                    groups,
+                    groupSizes,
+                    groupSums);
+            double exceedanceLevel =
+                observedStatistic - TIE_TOLERANCE * Math.abs(observedStatistic);
+            
+            Random random = new Random(this.seed ^ Arrays.hashCode(groups));
+            double[] permutedMeans = this.strainMeans.clone();
+            int exceedances = 0;
+            int permutations = 0;
+            while(exceedances < this.minimumExceedances &&
+                  permutations < this.maximumPermutations)
+            {
+                // shuffling the last shuffle is still a uniform permutation
+                for(int i = strainCount - 1; i > 0; i--)
+                {
+                    int j = random.nextInt(i + 1);
+                    double temp = permutedMeans[i];
+                    permutedMeans[i] = permutedMeans[j];
+                    permutedMeans[j] = temp;
+                }
+                
+                double permutedStatistic = betweenGroupStatistic(
+                        permutedMeans,
+                        groups,
+                        groupSizes,
+                        groupSums);
+                if(permutedStatistic >= exceedanceLevel)
+                {
+                    exceedances++;
+                }
+                permutations++;
+            }
+            
+            return (exceedances + 1.0) / (permutations + 1.0);
+        }
+    }
+    
+    /**
+     * The sum over groups of (group sum)^2 / (group size). The total sum of
+     * squares doesn't change under permutation so the F statistic of a
+     * partition goes up and down with this
+     */
+    private static double betweenGroupStatistic(
+            double[] values,
+            short[] groups,
+            double[] groupSizes,
+            double[] groupSums)
+    {
+        Arrays.fill(groupSums, 0.0);
+        for(int i = 0; i < values.length; i++)
+        {
+            groupSums[groups[i]] += values[i];
+        }
+        
+        double statistic = 0.0;
+        for(int group = 0; group < groupSums.length; group++)
+        {
+            if(groupSizes[group] > 0.0)
+            {
+                statistic += groupSums[group] * groupSums[group] / groupSizes[group];
+            }
+        }
+        
+        return statistic;
+    }
+    
+    /**
+     * Everything other than the partition that a permutation p-value
+     * depends on
+     */
+    private static final class PermutationSettings
+    {
+        private final double[] strainMeans;
+        
+        private final int minimumExceedances;
+        
+        private final int maximumPermutations;
+        
+        private final long seed;
+        
+        private final int hashCode;
+        
+        public PermutationSettings(
+                double[] strainMeans,
+                int minimumExceedances,
+                int maximumPermutations,
+                long seed)
+        {
+            this.strainMeans = strainMeans.clone();
+            this.minimumExceedances = minimumExceedances;
+            this.maximumPermutations = maximumPermutations;
+            this.seed = seed;
+            this.hashCode =
+                31 * (31 * (31 * Arrays.hashCode(strainMeans) +
+                minimumExceedances) + maximumPermutations) +
+                (int)(seed ^ (seed >>> 32));
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object obj)
+        {
+            if(this == obj)
+            {
+                return true;
+            }
+            else if(obj instanceof PermutationSettings)
+            {
+                PermutationSettings otherSettings = (PermutationSettings)obj;
+                return this.hashCode == otherSettings.hashCode &&
+                       this.minimumExceedances == otherSettings.minimumExceedances &&
+                       this.maximumPermutations == otherSettings.maximumPermutations &&
+                       this.seed == otherSettings.seed &&
+                       Arrays.equals(this.strainMeans, otherSettings.strainMeans);
+            }
+            else
+            {
+                return false;
+            }
+        }
+    }
+    
+    /**
+     * A partition with its groups renumbered in order of first appearance
+     * so that the same partition always gives the same key
+     */
+    private static final class PartitionKey
+    {
+        private final PermutationSettings settings;
+        
+        private final short[] canonicalGroups;
+        
+        private final int hashCode;
+        
+        public PartitionKey(PermutationSettings settings, short[] strainGroups)
+        {
+            this.settings = settings;
+            Map<Short, Short> groupNumbers = new HashMap<Short, Short>();
+            this.canonicalGroups = new short[strainGroups.length];
+            for(int i = 0; i < strainGroups.length; i++)
+            {
+                Short groupNumber = groupNumbers.get(strainGroups[i]);
+                if(groupNumber == null)
+                {
+                    groupNumber = (short)groupNumbers.size();
+                    groupNumbers.put(strainGroups[i], groupNumber);
+                }
+                this.canonicalGroups[i] = groupNumber;
+            }
+            this.hashCode =
+                31 * settings.hashCode() + Arrays.hashCode(this.canonicalGroups);
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode()
+        {
+            return this.hashCode;
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object obj)
+        {
+            if(obj instanceof PartitionKey)
+            {
+                PartitionKey otherKey = (PartitionKey)obj;
+                return this.hashCode == otherKey.hashCode &&
+                       Arrays.equals(this.canonicalGroups, otherKey.canonicalGroups) &&
+                       this.settings.equals(otherKey.settings);
+            }
+            else
+            {
+                return false;
+            }
+        }
+    }
+}
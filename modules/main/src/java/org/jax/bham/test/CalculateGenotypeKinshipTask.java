@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jax.bham.BhamApplication;
+import org.jax.haplotype.data.ChromosomeDataSource;
+import org.jax.haplotype.data.GenomeDataSource;
+import org.jax.util.concurrent.AbstractLongRunningTask;
+import org.jax.util.gui.MessageDialogUtilities;
+
+/**
+ * A long running task that calculates the {@link GenotypeKinship} of a
+ * genome one chromosome at a time. Kinship that is already cached is
+ * reused without reading any genotypes
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class CalculateGenotypeKinshipTask
+extends AbstractLongRunningTask
+implements Runnable
+{
+    private static final Logger LOG = Logger.getLogger(
+            CalculateGenotypeKinshipTask.class.getName());
+    
+    private final GenomeDataSource genomeDataSource;
+    
+    private final String[] sortedStrains;
+    
+    private volatile int workUnitsCompleted = 0;
+    
+    private volatile int totalWorkUnits = 1;
+    
+    private volatile GenotypeKinship kinship = null;
+    
+    /**
+     * Constructor
+     * @param genomeDataSource
+     *          the genome to calculate kinship from
+     * @param sortedStrains
+     *          the strains in sorted order
+     */
+    public CalculateGenotypeKinshipTask(
+            GenomeDataSource genomeDataSource,
+            String[] sortedStrains)
+    {
+        this.genomeDataSource = genomeDataSource;
+        this.sortedStrains = sortedStrains;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void run()
+    {
+        try
+        {
+            GenotypeKinship kinship = GenotypeKinship.getCachedGenotypeKinship(
+                    this.genomeDataSource,
+                    this.sortedStrains);
+            if(kinship == null)
+            {
+                Map<Integer, ChromosomeDataSource> chromosomeDataSources =
+                    this.genomeDataSource.getChromosomeDataSources();
+                this.totalWorkUnits = chromosomeDataSources.size();
+                this.fireChangeEvent();
+                
+                kinship = new GenotypeKinship(this.sortedStrains);
+                for(Map.Entry<Integer, ChromosomeDataSource> chromosomeEntry:
+                    chromosomeDataSources.entrySet())
+                {
+                    kinship.addChromosome(
+                            chromosomeEntry.getKey(),
+                            chromosomeEntry.getValue());
+                    this.workUnitsCompleted++;
+                    this.fireChangeEvent();
+                }
+                GenotypeKinship.cacheGenotypeKinship(
+                        this.genomeDataSource,
+                        kinship);
+            }
+            
+            this.kinship = kinship;
+        }
+        catch(Exception ex)
+        {
+            String title = "Error Calculating Kinship";
+            LOG.log(Level.SEVERE,
+                    title,
+                    ex);
+            MessageDialogUtilities.errorLater(
+                    BhamApplication.getInstance().getBhamFrame(),
+                    ex.getMessage(),
+                    title);
+        }
+        finally
+        {
+            this.workUnitsCompleted = this.totalWorkUnits;
+            this.fireChangeEvent();
+        }
+    }
+    
+    /**
+     * Getter for the calculated kinship
+     * @return
+     *          the kinship or null if the task isn't done or it failed
+     */
+    public GenotypeKinship getKinship()
+    {
+        return this.kinship;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String getTaskName()
+    {
+        return "Calculating Kinship: " + this.genomeDataSource.getName();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getTotalWorkUnits()
+    {
+        return this.totalWorkUnits;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getWorkUnitsCompleted()
+    {
+        return this.workUnitsCompleted;
+    }
+}
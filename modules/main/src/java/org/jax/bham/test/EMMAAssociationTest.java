@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.jax.bham.project.TestResultParameters;
+import org.jax.geneticutil.data.BinaryStrainPartition;
+import org.jax.geneticutil.data.PartitionedIntervalSet;
+import org.jax.haplotype.analysis.HaplotypeAssociationTest;
+import org.jax.haplotype.analysis.HaplotypeBlockTestResult;
+import org.jax.haplotype.analysis.HaplotypeDataSource;
+import org.jax.haplotype.analysis.HaplotypeEquivalenceClassTestResult;
+import org.jax.haplotype.analysis.PhenotypeDataSource;
+import org.jax.haplotype.data.GenomeDataSource;
+
+/**
+ * A haplotype association test that corrects for population structure
+ * using the EMMA mixed model. The haplotype blocks are the same ones that
+ * the plain haplotype test uses (read straight from the haplotype data
+ * source, so the plain test's ANOVA is never run) but each block is scored
+ * with {@link EMMAMixedModel}. Kinship is the identity by state
+ * {@link GenotypeKinship} of a genome, which is packed and cached per
+ * genome so other tests and the kinship heatmap share it. Blocks are
+ * scored against leave one chromosome out (LOCO) kinship so that the tested
+ * chromosome doesn't soak up its own signal. Each chromosome's mixed model
+ * (and so its eigendecomposition) is built the first time that
+ * chromosome's results are asked for and then reused.
+ * Equivalence classes span chromosomes so they use the genome wide
+ * kinship. Since this is a
+ * {@link HaplotypeAssociationTest} the existing graph panels and exports
+ * work with it unchanged.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class EMMAAssociationTest
+extends HaplotypeAssociationTest
+implements TestResultParameters
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = 2740931585567340183L;
+    
+    /**
+     * The version of the way that this test calculates its p-values. This
+     * goes into the test's input fingerprint so it has to go up whenever a
+     * change (like the move to LOCO kinship) changes the results, otherwise
+     * stored and cached results from the old version get handed back
+     */
+    private static final String RESULTS_VERSION = "3";
+    
+    /**
+     * the key that the genome wide model is kept under alongside the leave
+     * one chromosome out models
+     */
+    private static final Integer GENOME_WIDE_MODEL_KEY = Integer.valueOf(-1);
+    
+    private final GenomeDataSource kinshipGenomeDataSource;
+    
+    private transient GenotypeKinship kinship = null;
+    
+    private transient double[] strainMeanPhenotype = null;
+    
+    private transient ConcurrentMap<Integer, FutureTask<EMMAMixedModel>> mixedModels = null;
+    
+    /**
+     * Constructor
+     * @param name
+     *          the name of the test
+     * @param haplotypeDataSource
+     *          the haplotype data source
+     * @param phenotypeDataSource
+     *          the phenotype data source
+     * @param kinshipGenomeDataSource
+     *          the genotypes that kinship is calculated from. This must
+     *          have every strain that the test uses
+     */
+    public EMMAAssociationTest(
+            String name,
+            HaplotypeDataSource haplotypeDataSource,
+            PhenotypeDataSource phenotypeDataSource,
+            GenomeDataSource kinshipGenomeDataSource)
+    {
+        super(name, haplotypeDataSource, phenotypeDataSource);
+        this.kinshipGenomeDataSource = kinshipGenomeDataSource;
+    }
+    
+    /**
+     * Getter for the genotypes that kinship is calculated from
+     * @return
+     *          the kinship genome data source
+     */
+    public GenomeDataSource getKinshipGenomeDataSource()
+    {
+        return this.kinshipGenomeDataSource;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String[] getResultParameters()
+    {
+        return new String[] {
+                "version=" + RESULTS_VERSION,
+                "leaveOneChromosomeOut=true",
+                "kinship=genotypeIBS",
+                "kinshipGenome=" + this.kinshipGenomeDataSource.getName()};
+    }
+    
+    /**
+     * Get the genome wide mixed model for this test, creating it if this is
+     * the first time that it's been asked for
+     * @return
+     *          the mixed model
+     */
+    protected EMMAMixedModel getMixedModel()
+    {
+        return this.getMixedModel(GENOME_WIDE_MODEL_KEY);
+    }
+    
+    /**
+     * Get the leave one chromosome out mixed model for the given chromosome,
+     * creating it if this is the first time that it's been asked for.
+     * Models for different chromosomes are built in parallel by whichever
+     * threads ask for them. Threads asking for the same chromosome wait for
+     * a single build
+     * @param chromosome
+     *          the chromosome being tested
+     * @return
+     *          the mixed model using kinship from every other chromosome
+     */
+    protected EMMAMixedModel getMixedModel(int chromosome)
+    {
+        return this.getMixedModel(Integer.valueOf(chromosome));
+    }
+    
+    /**
+     * Get the mixed model kept under the given key building it if needed
+     * @param modelKey
+     *          the chromosome or {@link #GENOME_WIDE_MODEL_KEY}
+     * @return
+     *          the model
+     */
+    private EMMAMixedModel getMixedModel(final Integer modelKey)
+    {
+        ConcurrentMap<Integer, FutureTask<EMMAMixedModel>> models =
+            this.getMixedModels();
+        FutureTask<EMMAMixedModel> modelTask = models.get(modelKey);
+        if(modelTask == null)
+        {
+            FutureTask<EMMAMixedModel> newModelTask =
+                new FutureTask<EMMAMixedModel>(new Callable<EMMAMixedModel>()
+                {
+                    public EMMAMixedModel call()
+                    {
+                        return EMMAAssociationTest.this.createMixedModel(
+                                modelKey);
+                    }
+                });
+            modelTask = models.putIfAbsent(modelKey, newModelTask);
+            if(modelTask == null)
+            {
+                // we won so the eigendecomposition happens on this thread
+                modelTask = newModelTask;
+                modelTask.run();
+            }
+        }
+        
+        try
+        {
+            return modelTask.get();
+        }
+        catch(InterruptedException ex)
+        {
+            throw new IllegalStateException(
+                    "interrupted while building the mixed model");
+        }
+        catch(ExecutionException ex)
+        {
+            // let the next caller try again
+            models.remove(modelKey, modelTask);
+            throw new IllegalStateException(
+                    "failed to build the mixed model",
+                    ex.getCause());
+        }
+    }
+    
+    /**
+     * Build the mixed model for the given key. This is where the
+     * eigendecomposition happens
+     * @param modelKey
+     *          the chromosome or {@link #GENOME_WIDE_MODEL_KEY}
+     * @return
+     *          the model
+     */
+    private EMMAMixedModel createMixedModel(Integer modelKey)
+    {
+        GenotypeKinship kinship = this.getKinship();
+        double[][] kinshipMatrix;
+        if(GENOME_WIDE_MODEL_KEY.equals(modelKey))
+        {
+            kinshipMatrix = kinship.getKinshipMatrix();
+        }
+        else
+        {
+            kinshipMatrix = kinship.getKinshipMatrixExcludingChromosome(
+                    modelKey.intValue());
+        }
+        
+        return new EMMAMixedModel(kinshipMatrix, this.getStrainMeanPhenotype());
+    }
+    
+    /**
+     * Get the map of mixed models creating it if needed. It's transient so
+     * it has to be created lazily
+     * @return
+     *          the models
+     */
+    private synchronized ConcurrentMap<Integer, FutureTask<EMMAMixedModel>> getMixedModels()
+    {
+        if(this.mixedModels == null)
+        {
+            this.mixedModels =
+                new ConcurrentHashMap<Integer, FutureTask<EMMAMixedModel>>();
+        }
+        
+        return this.mixedModels;
+    }
+    
+    /**
+     * Get the genotype kinship, calculating it (and the strain phenotype
+     * means that go with it) if this is the first time. Kinship that is
+     * already cached for the genome and strains is reused
+     * @return
+     *          the kinship
+     */
+    private synchronized GenotypeKinship getKinship()
+    {
+        if(this.kinship == null)
+        {
+            String[] sortedStrains = this.getSortedCommonStrains();
+            try
+            {
+                this.kinship = GenotypeKinship.getGenotypeKinship(
+                        this.kinshipGenomeDataSource,
+                        sortedStrains);
+            }
+            catch(IOException ex)
+            {
+                throw new IllegalStateException(
+                        "failed to calculate kinship from " +
+                        this.kinshipGenomeDataSource.getName(),
+                        ex);
+            }
+            this.strainMeanPhenotype = this.getStrainMeanPhenotype(sortedStrains);
+        }
+        
+        return this.kinship;
+    }
+    
+    /**
+     * Get the strain mean phenotype in kinship order
+     * @return
+     *          the strain means
+     */
+    private synchronized double[] getStrainMeanPhenotype()
+    {
+        this.getKinship();
+        return this.strainMeanPhenotype;
+    }
+    
+    /**
+     * Get the strains that are common to the haplotype and phenotype data
+     * in sorted order. Block bit sets use this order
+     * @return
+     *          the sorted strains
+     */
+    protected String[] getSortedCommonStrains()
+    {
+        Set<String> commonStrains = this.getCommonStrains();
+        String[] sortedStrains =
+            commonStrains.toArray(new String[commonStrains.size()]);
+        Arrays.sort(sortedStrains);
+        return sortedStrains;
+    }
+    
+    /**
+     * Get the mean phenotype value of each strain
+     * @param sortedStrains
+     *          the strains
+     * @return
+     *          the strain means in the same order as the strains
+     */
+    protected double[] getStrainMeanPhenotype(String[] sortedStrains)
+    {
+        return new PhenotypeStatistics(
+                this.getPhenotypeDataSource(),
+                sortedStrains).getMeans();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HaplotypeBlockTestResult[] getHaplotypeTestResults(int chromosome)
+    {
+        // we only need the blocks, not the library test's p-values
+        List<BinaryStrainPartition> blocks =
+            this.getHaplotypeDataSource().getHaplotypeData(
+                    chromosome,
+                    this.getCommonStrains());
+        EMMAMixedModel model = this.getMixedModel(chromosome);
+        
+        HaplotypeBlockTestResult[] emmaResults =
+            new HaplotypeBlockTestResult[blocks.size()];
+        for(int i = 0; i < emmaResults.length; i++)
+        {
+            BinaryStrainPartition block = blocks.get(i);
+            emmaResults[i] = new HaplotypeBlockTestResult(
+                    block,
+                    model.calculatePValue(block.getStrainBitSet()));
+        }
+        
+        return emmaResults;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HaplotypeEquivalenceClassTestResult[] getEquivalenceClassTestResults()
+    {
+        List<PartitionedIntervalSet> equivalenceClasses =
+            this.getHaplotypeDataSource().getHaplotypeEquivalenceClassData(
+                    this.getCommonStrains());
+        EMMAMixedModel model = this.getMixedModel();
+        
+        HaplotypeEquivalenceClassTestResult[] emmaResults =
+            new HaplotypeEquivalenceClassTestResult[equivalenceClasses.size()];
+        for(int i = 0; i < emmaResults.length; i++)
+        {
+            PartitionedIntervalSet equivalenceClass = equivalenceClasses.get(i);
+            emmaResults[i] = new HaplotypeEquivalenceClassTestResult(
+                    equivalenceClass,
+                    model.calculatePValue(equivalenceClass.getStrainBitSet()));
+        }
+        
+        return emmaResults;
+    }
+}
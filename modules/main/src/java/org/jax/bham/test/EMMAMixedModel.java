@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.util.BitSet;
+
+import org.jax.bham.util.DistributionUtil;
+import org.jax.bham.util.SymmetricEigendecomposition;
+
+/**
+ * The EMMA (efficient mixed-model association) linear mixed model
+ * y = Xb + u + e with Var(u) = sg^2 * K and Var(e) = se^2 * I. The kinship
+ * matrix K is eigendecomposed once (K = U * diag(lambda) * U') and the
+ * phenotype and intercept are rotated into that basis up front. Testing a
+ * genotype then only needs the rotated genotype and a one dimensional REML
+ * optimization over delta = se^2 / sg^2 where every likelihood evaluation
+ * is linear in the number of strains.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class EMMAMixedModel
+{
+    private static final double MINIMUM_LOG_DELTA = -10.0;
+    
+    private static final double MAXIMUM_LOG_DELTA = 10.0;
+    
+    private static final int LOG_DELTA_GRID_SIZE = 101;
+    
+    private static final int GOLDEN_SECTION_ITERATIONS = 30;
+    
+    private static final double GOLDEN_RATIO = (Math.sqrt(5.0) - 1.0) / 2.0;
+    
+    private static final double DEGENERATE_DETERMINANT = 1e-10;
+    
+    private final int strainCount;
+    
+    private final double[][] eigenvectors;
+    
+    private final double[] eigenvalues;
+    
+    private final double[] rotatedIntercept;
+    
+    private final double[] rotatedPhenotype;
+    
+    private final double[] gridDeltas;
+    
+    /**
+     * per grid point weights 1 / (lambda + delta)
+     */
+    private final double[][] gridWeights;
+    
+    private final double[] gridLogDeterminants;
+    
+    private final double[] gridInterceptInterceptSums;
+    
+    private final double[] gridInterceptPhenotypeSums;
+    
+    private final double[] gridPhenotypePhenotypeSums;
+    
+    /**
+     * Constructor. This does the eigendecomposition and all of the other
+     * work that doesn't depend on the genotype being tested
+     * @param kinshipMatrix
+     *          the kinship matrix
+     * @param phenotype
+     *          the phenotype in the same strain order as the kinship
+     */
+    public EMMAMixedModel(double[][] kinshipMatrix, double[] phenotype)
+    {
+        this.strainCount = phenotype.length;
+        
+        SymmetricEigendecomposition eigendecomposition =
+            new SymmetricEigendecomposition(kinshipMatrix);
+        this.eigenvectors = eigendecomposition.getEigenvectors();
+        this.eigenvalues = eigendecomposition.getEigenvalues().clone();
+        for(int k = 0; k < this.strainCount; k++)
+        {
+            // kinship is positive semi-definite so anything below zero is
+            // rounding error
+            this.eigenvalues[k] = Math.max(0.0, this.eigenvalues[k]);
+        }
+        
+        this.rotatedIntercept = new double[this.strainCount];
+        this.rotatedPhenotype = new double[this.strainCount];
+        for(int i = 0; i < this.strainCount; i++)
+        {
+            double[] eigenvectorRow = this.eigenvectors[i];
+            for(int k = 0; k < this.strainCount; k++)
+            {
+                this.rotatedIntercept[k] += eigenvectorRow[k];
+                this.rotatedPhenotype[k] += eigenvectorRow[k] * phenotype[i];
+            }
+        }
+        
+        this.gridDeltas = new double[LOG_DELTA_GRID_SIZE];
+        this.gridWeights = new double[LOG_DELTA_GRID_SIZE][this.strainCount];
+        this.gridLogDeterminants = new double[LOG_DELTA_GRID_SIZE];
+        this.gridInterceptInterceptSums = new double[LOG_DELTA_GRID_SIZE];
+        this.gridInterceptPhenotypeSums = new double[LOG_DELTA_GRID_SIZE];
+        this.gridPhenotypePhenotypeSums = new double[LOG_DELTA_GRID_SIZE];
+        for(int g = 0; g < LOG_DELTA_GRID_SIZE; g++)
+        {
+            this.gridDeltas[g] = Math.exp(this.getGridLogDelta(g));
+            double[] weights = this.gridWeights[g];
+            for(int k = 0; k < this.strainCount; k++)
+            {
+                double lambdaPlusDelta = this.eigenvalues[k] + this.gridDeltas[g];
+                weights[k] = 1.0 / lambdaPlusDelta;
+                this.gridLogDeterminants[g] += Math.log(lambdaPlusDelta);
+                this.gridInterceptInterceptSums[g] +=
+                    weights[k] * this.rotatedIntercept[k] * this.rotatedIntercept[k];
+                this.gridInterceptPhenotypeSums[g] +=
+                    weights[k] * this.rotatedIntercept[k] * this.rotatedPhenotype[k];
+                this.gridPhenotypePhenotypeSums[g] +=
+                    weights[k] * this.rotatedPhenotype[k] * this.rotatedPhenotype[k];
+            }
+        }
+    }
+    
+    private double getGridLogDelta(int gridIndex)
+    {
+        return MINIMUM_LOG_DELTA +
+            gridIndex * (MAXIMUM_LOG_DELTA - MINIMUM_LOG_DELTA) /
+            (LOG_DELTA_GRID_SIZE - 1);
+    }
+    
+    /**
+     * Getter for the number of strains in the model
+     * @return the strain count
+     */
+    public int getStrainCount()
+    {
+        return this.strainCount;
+    }
+    
+    /**
+     * Test the given bi-allelic genotype for association
+     * @param genotype
+     *          the genotype where set bits are strains carrying the allele
+     *          (same strain order as the kinship matrix)
+     * @return
+     *          the p-value of the genotype effect (1 if the genotype
+     *          doesn't vary or there are too few strains)
+     */
+    public double calculatePValue(BitSet genotype)
+    {
+        // the rotation U' * x is just a sum of eigenvector rows since x
+        // is binary
+        double[] rotatedGenotype = new double[this.strainCount];
+        for(int i = genotype.nextSetBit(0);
+            i >= 0 && i < this.strainCount;
+            i = genotype.nextSetBit(i + 1))
+        {
+            double[] eigenvectorRow = this.eigenvectors[i];
+            for(int k = 0; k < this.strainCount; k++)
+            {
+                rotatedGenotype[k] += eigenvectorRow[k];
+            }
+        }
+        
+        return this.calculatePValue(rotatedGenotype);
+    }
+    
+    /**
+     * Test the given rotated genotype for association
+     * @param rotatedGenotype
+     *          the genotype rotated into the kinship eigenbasis (U' * x)
+     * @return
+     *          the p-value of the genotype effect
+     */
+    private double calculatePValue(double[] rotatedGenotype)
+    {
+        int residualDegreesOfFreedom = this.strainCount - 2;
+        if(residualDegreesOfFreedom <= 0)
+        {
+            return 1.0;
+        }
+        
+        // a coarse grid search over log(delta) followed by golden section
+        // refinement around the best grid point
+        int bestGridIndex = -1;
+        double bestLikelihood = Double.NEGATIVE_INFINITY;
+        for(int g = 0; g < LOG_DELTA_GRID_SIZE; g++)
+        {
+            ModelFit fit = this.fitGridPoint(g, rotatedGenotype);
+            if(fit != null && fit.restrictedLikelihood > bestLikelihood)
+            {
+                bestLikelihood = fit.restrictedLikelihood;
+                bestGridIndex = g;
+            }
+        }
+        
+        if(bestGridIndex == -1)
+        {
+            // the genotype doesn't vary
+            return 1.0;
+        }
+        
+        double lowLogDelta = this.getGridLogDelta(Math.max(0, bestGridIndex - 1));
+        double highLogDelta = this.getGridLogDelta(
+                Math.min(LOG_DELTA_GRID_SIZE - 1, bestGridIndex + 1));
+        ModelFit bestFit = this.fitGridPoint(bestGridIndex, rotatedGenotype);
+        for(int i = 0; i < GOLDEN_SECTION_ITERATIONS; i++)
+        {
+            double span = highLogDelta - lowLogDelta;
+            double lowerProbe = highLogDelta - GOLDEN_RATIO * span;
+            double upperProbe = lowLogDelta + GOLDEN_RATIO * span;
+            ModelFit lowerFit = this.fit(Math.exp(lowerProbe), rotatedGenotype);
+            ModelFit upperFit = this.fit(Math.exp(upperProbe), rotatedGenotype);
+            if(lowerFit == null || upperFit == null)
+            {
+                break;
+            }
+            
+            if(lowerFit.restrictedLikelihood >= upperFit.restrictedLikelihood)
+            {
+                highLogDelta = upperProbe;
+                if(lowerFit.restrictedLikelihood > bestFit.restrictedLikelihood)
+                {
+                    bestFit = lowerFit;
+                }
+            }
+            else
+            {
+                lowLogDelta = lowerProbe;
+                if(upperFit.restrictedLikelihood > bestFit.restrictedLikelihood)
+                {
+                    bestFit = upperFit;
+                }
+            }
+        }
+        
+        return DistributionUtil.fDistributionUpperTail(
+                bestFit.fStatistic,
+                1,
+                residualDegreesOfFreedom);
+    }
+    
+    /**
+     * Fit the model at one of the precomputed grid points
+     */
+    private ModelFit fitGridPoint(int gridIndex, double[] rotatedGenotype)
+    {
+        double[] weights = this.gridWeights[gridIndex];
+        double interceptGenotype = 0.0;
+        double genotypeGenotype = 0.0;
+        double genotypePhenotype = 0.0;
+        for(int k = 0; k < this.strainCount; k++)
+        {
+            double weightedGenotype = weights[k] * rotatedGenotype[k];
+            interceptGenotype += weightedGenotype * this.rotatedIntercept[k];
+            genotypeGenotype += weightedGenotype * rotatedGenotype[k];
+            genotypePhenotype += weightedGenotype * this.rotatedPhenotype[k];
+        }
+        
+        return this.fit(
+                this.gridLogDeterminants[gridIndex],
+                this.gridInterceptInterceptSums[gridIndex],
+                interceptGenotype,
+                genotypeGenotype,
+                this.gridInterceptPhenotypeSums[gridIndex],
+                genotypePhenotype,
+                this.gridPhenotypePhenotypeSums[gridIndex]);
+    }
+    
+    /**
+     * Fit the model at an arbitrary delta
+     */
+    private ModelFit fit(double delta, double[] rotatedGenotype)
+    {
+        double logDeterminant = 0.0;
+        double interceptIntercept = 0.0;
+        double interceptGenotype = 0.0;
+        double genotypeGenotype = 0.0;
+        double interceptPhenotype = 0.0;
+        double genotypePhenotype = 0.0;
+        double phenotypePhenotype = 0.0;
+        for(int k = 0; k < this.strainCount; k++)
+        {
+            double lambdaPlusDelta = this.eigenvalues[k] + delta;
+            double weight = 1.0 / lambdaPlusDelta;
+            double intercept = this.rotatedIntercept[k];
+            double genotype = rotatedGenotype[k];
+            double phenotype = this.rotatedPhenotype[k];
+            
+            logDeterminant += Math.log(lambdaPlusDelta);
+            interceptIntercept += weight * intercept * intercept;
+            interceptGenotype += weight * intercept * genotype;
+            genotypeGenotype += weight * genotype * genotype;
+            interceptPhenotype += weight * intercept * phenotype;
+            genotypePhenotype += weight * genotype * phenotype;
+            phenotypePhenotype += weight * phenotype * phenotype;
+        }
+        
+        return this.fit(
+                logDeterminant,
+                interceptIntercept,
+                interceptGenotype,
+                genotypeGenotype,
+                interceptPhenotype,
+                genotypePhenotype,
+                phenotypePhenotype);
+    }
+    
+    /**
+     * Fit the generalized least squares model from the weighted sums of
+     * products of the rotated intercept (c), genotype (x) and phenotype (y)
+     * @return
+     *          the fit or null if the design matrix is singular
+     */
+    private ModelFit fit(
+            double logDeterminant,
+            double cc,
+            double cx,
+            double xx,
+            double cy,
+            double xy,
+            double yy)
+    {
+        double determinant = cc * xx - cx * cx;
+        if(determinant <= DEGENERATE_DETERMINANT * cc * xx)
+        {
+            return null;
+        }
+        
+        double interceptEffect = (xx * cy - cx * xy) / determinant;
+        double genotypeEffect = (cc * xy - cx * cy) / determinant;
+        double residualSumOfSquares =
+            yy - (cy * interceptEffect + xy * genotypeEffect);
+        if(residualSumOfSquares <= 0.0)
+        {
+            return null;
+        }
+        
+        int residualDegreesOfFreedom = this.strainCount - 2;
+        ModelFit modelFit = new ModelFit();
+        
+        // the REML log likelihood without the terms that don't depend on
+        // delta
+        modelFit.restrictedLikelihood = 0.5 * (
+                -residualDegreesOfFreedom * Math.log(residualSumOfSquares) -
+                logDeterminant -
+                Math.log(determinant));
+        
+        double variance = residualSumOfSquares / residualDegreesOfFreedom;
+        double genotypeEffectVariance = variance * cc / determinant;
+        modelFit.fStatistic =
+            genotypeEffect * genotypeEffect / genotypeEffectVariance;
+        
+        return modelFit;
+    }
+    
+    /**
+     * The result of fitting the model at a single delta
+     */
+    private static final class ModelFit
+    {
+        private double restrictedLikelihood;
+        
+        private double fStatistic;
+    }
+}
@@ -26,15 +26,15 @@ import java.util.Set;
 import javax.swing.JDialog;
 
 import org.jax.bham.project.BhamProject;
-import org.jax.haplotype.analysis.HaplotypeAssociationTest;
 import org.jax.haplotype.analysis.HaplotypeDataSource;
 import org.jax.haplotype.analysis.PhenotypeDataSource;
+import org.jax.haplotype.data.GenomeDataSource;
 import org.jax.util.datastructure.SequenceUtilities;
 import org.jax.util.gui.MessageDialogUtilities;
 
 /**
- * This dialog allows the user to specify the parameters for a haplotype
- * association test
+ * This dialog allows the user to specify the parameters for an EMMA
+ * mixed model association test
  * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
  */
 public class EMMATestDialog extends JDialog
@@ -57,7 +57,7 @@ public class EMMATestDialog extends JDialog
             Frame parent,
             BhamProject project)
     {
-        super(parent, "Haplotype Association Test", false);
+        super(parent, "EMMA Test", false);
         
         this.project = project;
         
@@ -80,6 +80,11 @@ public class EMMATestDialog extends JDialog
             this.phenotypeDataSourceComboBox.addItem(phenoDataSrc);
         }
         
+        for(GenomeDataSource genoDataSrc: this.project.getGenomeDataSources())
+        {
+            this.kinshipGenomeDataSourceComboBox.addItem(genoDataSrc);
+        }
+        
         this.okButton.addActionListener(new ActionListener()
         {
             /**
@@ -147,6 +152,16 @@ public class EMMATestDialog extends JDialog
         return (PhenotypeDataSource)this.phenotypeDataSourceComboBox.getSelectedItem();
     }
     
+    /**
+     * Getter for the selected kinship genome data source
+     * @return
+     *          the genome data source to calculate kinship from
+     */
+    private GenomeDataSource getSelectedKinshipGenomeDataSource()
+    {
+        return (GenomeDataSource)this.kinshipGenomeDataSourceComboBox.getSelectedItem();
+    }
+    
     private String getSelectedName()
     {
         return this.nameTextField.getText().trim();
@@ -176,13 +191,15 @@ public class EMMATestDialog extends JDialog
 //            }
 //            else
             {
-                // add test results to the project without precomputing
-                HaplotypeAssociationTest haplotypeAssociationTest =
-                    new HaplotypeAssociationTest(
+                // add the test to the project without precomputing. the
+                // kinship is calculated the first time results are needed
+                EMMAAssociationTest emmaAssociationTest =
+                    new EMMAAssociationTest(
                             this.getSelectedName(),
                             this.getSelectedHaplotypeDataSource(),
-                            this.getSelectedPhenotypeDataSource());
-                this.project.addHaplotypeAssociationTest(haplotypeAssociationTest);
+                            this.getSelectedPhenotypeDataSource(),
+                            this.getSelectedKinshipGenomeDataSource());
+                this.project.addHaplotypeAssociationTest(emmaAssociationTest);
             }
             
             this.dispose();
@@ -209,13 +226,35 @@ public class EMMATestDialog extends JDialog
                 "You cannot perform a haplotype association test without " +
                 "any phenotype data sources.";
         }
+        else if(this.getSelectedKinshipGenomeDataSource() == null)
+        {
+            errorMessage =
+                "You cannot perform an EMMA test without a genome data " +
+                "source to calculate kinship from.";
+        }
         
         if(errorMessage == null)
         {
             Set<String> haploStrains = this.getSelectedHaplotypeDataSource().getAvailableStrains();
             Set<String> phenoStrains = this.getSelectedPhenotypeDataSource().getPhenotypeData().keySet();
+            Set<String> kinshipStrains =
+                this.getSelectedKinshipGenomeDataSource().getChromosomeDataSources().values().iterator().next().getAvailableStrains();
             
-            if(haploStrains.equals(phenoStrains))
+            Set<String> missingKinshipStrains = new HashSet<String>(haploStrains);
+            missingKinshipStrains.retainAll(phenoStrains);
+            missingKinshipStrains.removeAll(kinshipStrains);
+            if(!missingKinshipStrains.isEmpty())
+            {
+                MessageDialogUtilities.warn(
+                        this,
+                        "The kinship genome does not have genotypes for [" +
+                        SequenceUtilities.toString(missingKinshipStrains, ", ") +
+                        "]. Please select a genome that has every strain " +
+                        "in the test.",
+                        "Validation Failed");
+                return false;
+            }
+            else if(haploStrains.equals(phenoStrains))
             {
                 return true;
             }
@@ -270,6 +309,8 @@ public class EMMATestDialog extends JDialog
         haplotypeDataSourceComboBox = new javax.swing.JComboBox();
         javax.swing.JLabel phenotypeDataSourceLabel = new javax.swing.JLabel();
         phenotypeDataSourceComboBox = new javax.swing.JComboBox();
+        javax.swing.JLabel kinshipGenomeDataSourceLabel = new javax.swing.JLabel();
+        kinshipGenomeDataSourceComboBox = new javax.swing.JComboBox();
         javax.swing.JPanel actionPanel = new javax.swing.JPanel();
         okButton = new javax.swing.JButton();
         cancelButton = new javax.swing.JButton();
@@ -283,6 +324,8 @@ public class EMMATestDialog extends JDialog
 
         phenotypeDataSourceLabel.setText("Phenotype Data:");
 
+        kinshipGenomeDataSourceLabel.setText("Kinship Genotypes:");
+
         okButton.setText("OK");
         actionPanel.add(okButton);
 
@@ -303,9 +346,13 @@ public class EMMATestDialog extends JDialog
                 .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
                     .add(nameLabel)
                     .add(haplotypeDataSourceLabel)
-                    .add(phenotypeDataSourceLabel))
+                    .add(phenotypeDataSourceLabel)
+                    .add(kinshipGenomeDataSourceLabel))
                 .add(19, 19, 19)
                 .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+                    .add(layout.createSequentialGroup()
+                        .add(kinshipGenomeDataSourceComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
+                        .addContainerGap())
                     .add(layout.createSequentialGroup()
                         .add(phenotypeDataSourceComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
                         .addContainerGap(174, Short.MAX_VALUE))
@@ -331,6 +378,10 @@ public class EMMATestDialog extends JDialog
                 .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
                     .add(phenotypeDataSourceLabel)
                     .add(phenotypeDataSourceComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(kinshipGenomeDataSourceLabel)
+                    .add(kinshipGenomeDataSourceComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
                 .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED, 8, Short.MAX_VALUE)
                 .add(actionPanel, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
         );
@@ -342,6 +393,7 @@ public class EMMATestDialog extends JDialog
     private javax.swing.JButton cancelButton;
     private javax.swing.JComboBox haplotypeDataSourceComboBox;
     private javax.swing.JButton helpButton;
+    private javax.swing.JComboBox kinshipGenomeDataSourceComboBox;
     private javax.swing.JTextField nameTextField;
     private javax.swing.JButton okButton;
     private javax.swing.JComboBox phenotypeDataSourceComboBox;
@@ -0,0 +1,525 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.jax.haplotype.data.ChromosomeDataSource;
+import org.jax.haplotype.data.GenomeDataSource;
+import org.jax.haplotype.io.SdpInputStream;
+
+/**
+ * A kinship matrix calculated from SNP genotypes using identity by state
+ * (IBS). The kinship between two strains is the fraction of SNPs where
+ * they have the same call. Calls are packed into <code>long</code> words
+ * so that 64 SNPs are compared at a time with {@link Long#bitCount(long)},
+ * the packed SNPs are processed in chunks that stay in cache, and the
+ * strain pairs are split into tiles that are counted in parallel.
+ * Mismatch counts are kept per chromosome along with genome totals so
+ * that leave one chromosome out kinship can be derived by subtraction.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class GenotypeKinship
+{
+    /**
+     * the number of packed words per strain that we hold at a time. At 4KB
+     * per strain a pair of strain tiles stays in the L2 cache
+     */
+    private static final int WORDS_PER_CHUNK = 512;
+    
+    private static final int SNPS_PER_CHUNK = WORDS_PER_CHUNK * Long.SIZE;
+    
+    /**
+     * the number of strains along each side of a strain pair tile
+     */
+    private static final int STRAINS_PER_TILE = 16;
+    
+    /**
+     * kinship that has already been calculated keyed on the genome data
+     * source and then on the strains. Weak keys let the kinship go when
+     * the data source is removed from the project
+     */
+    private static final Map<GenomeDataSource, Map<List<String>, GenotypeKinship>> KINSHIP_CACHE =
+        new WeakHashMap<GenomeDataSource, Map<List<String>, GenotypeKinship>>();
+    
+    private final String[] sortedStrains;
+    
+    private final int threadCount;
+    
+    private final Map<Integer, long[][]> chromosomeMismatchCounts =
+        new HashMap<Integer, long[][]>();
+    
+    private final Map<Integer, Long> chromosomeSnpCounts =
+        new HashMap<Integer, Long>();
+    
+    private final long[][] genomeMismatchCounts;
+    
+    private long genomeSnpCount = 0L;
+    
+    /**
+     * Constructor which uses one thread per available processor
+     * @param sortedStrains
+     *          the strains to calculate kinship for in sorted order
+     */
+    public GenotypeKinship(String[] sortedStrains)
+    {
+        this(sortedStrains, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Constructor
+     * @param sortedStrains
+     *          the strains to calculate kinship for in sorted order
+     * @param threadCount
+     *          the number of threads to count strain pair tiles with
+     */
+    public GenotypeKinship(String[] sortedStrains, int threadCount)
+    {
+        this.sortedStrains = sortedStrains;
+        this.threadCount = Math.max(1, threadCount);
+        this.genomeMismatchCounts =
+            new long[sortedStrains.length][sortedStrains.length];
+    }
+    
+    /**
+     * Get the kinship for the given genome and strains, calculating it if
+     * it isn't already cached
+     * @param genomeDataSource
+     *          the genome
+     * @param sortedStrains
+     *          the strains in sorted order
+     * @return
+     *          the kinship
+     * @throws IOException
+     *          if reading the genotypes fails
+     */
+    public static GenotypeKinship getGenotypeKinship(
+            GenomeDataSource genomeDataSource,
+            String[] sortedStrains)
+    throws IOException
+    {
+        GenotypeKinship kinship = getCachedGenotypeKinship(
+                genomeDataSource,
+                sortedStrains);
+        if(kinship == null)
+        {
+            kinship = new GenotypeKinship(sortedStrains);
+            for(Map.Entry<Integer, ChromosomeDataSource> chromosomeEntry:
+                genomeDataSource.getChromosomeDataSources().entrySet())
+            {
+                kinship.addChromosome(
+                        chromosomeEntry.getKey(),
+                        chromosomeEntry.getValue());
+            }
+            cacheGenotypeKinship(genomeDataSource, kinship);
+        }
+        
+        return kinship;
+    }
+    
+    /**
+     * Get the kinship for the given genome and strains if it has already
+     * been calculated
+     * @param genomeDataSource
+     *          the genome
+     * @param sortedStrains
+     *          the strains in sorted order
+     * @return
+     *          the kinship or null if it isn't cached
+     */
+    public static GenotypeKinship getCachedGenotypeKinship(
+            GenomeDataSource genomeDataSource,
+            String[] sortedStrains)
+    {
+        synchronized(KINSHIP_CACHE)
+        {
+            Map<List<String>, GenotypeKinship> strainKinships =
+                KINSHIP_CACHE.get(genomeDataSource);
+            if(strainKinships == null)
+            {
+                return null;
+            }
+            else
+            {
+                return strainKinships.get(Arrays.asList(sortedStrains));
+            }
+        }
+    }
+    
+    /**
+     * Cache a fully calculated kinship so that later calls to
+     * {@link #getGenotypeKinship(GenomeDataSource, String[])} can use it
+     * @param genomeDataSource
+     *          the genome that the kinship was calculated from
+     * @param kinship
+     *          the kinship
+     */
+    public static void cacheGenotypeKinship(
+            GenomeDataSource genomeDataSource,
+            GenotypeKinship kinship)
+    {
+        synchronized(KINSHIP_CACHE)
+        {
+            Map<List<String>, GenotypeKinship> strainKinships =
+                KINSHIP_CACHE.get(genomeDataSource);
+            if(strainKinships == null)
+            {
+                strainKinships = new HashMap<List<String>, GenotypeKinship>();
+                KINSHIP_CACHE.put(genomeDataSource, strainKinships);
+            }
+            strainKinships.put(
+                    Arrays.asList(kinship.getSortedStrains()),
+                    kinship);
+        }
+    }
+    
+    /**
+     * Read the genotypes of a chromosome and add them to the kinship
+     * @param chromosomeNumber
+     *          the chromosome number
+     * @param chromosomeDataSource
+     *          the chromosome's genotypes
+     * @throws IOException
+     *          if reading the genotypes fails
+     */
+    public void addChromosome(
+            int chromosomeNumber,
+            ChromosomeDataSource chromosomeDataSource)
+    throws IOException
+    {
+        final int strainCount = this.sortedStrains.length;
+        SdpInputStream sdpStream = chromosomeDataSource.getSdpInputStream(
+                new HashSet<String>(Arrays.asList(this.sortedStrains)));
+        
+        // map the stream's strain order onto ours
+        String[] sdpStrainNames = sdpStream.getSdpStrainNames();
+        int[] strainIndices = new int[sdpStrainNames.length];
+        for(int i = 0; i < sdpStrainNames.length; i++)
+        {
+            strainIndices[i] = Arrays.binarySearch(
+                    this.sortedStrains,
+                    sdpStrainNames[i]);
+        }
+        
+        long[][] packedCalls = new long[strainCount][WORDS_PER_CHUNK];
+        long[][] mismatchCounts = new long[strainCount][strainCount];
+        long snpCount = 0L;
+        ExecutorService executor = this.createExecutor();
+        try
+        {
+            int chunkSnpCount = 0;
+            while(sdpStream.hasNextSdp())
+            {
+                BitSet sdp = sdpStream.getNextSdp();
+                int word = chunkSnpCount >>> 6;
+                long snpMask = 1L << (chunkSnpCount & 63);
+                for(int bit = sdp.nextSetBit(0);
+                    bit >= 0 && bit < strainIndices.length;
+                    bit = sdp.nextSetBit(bit + 1))
+                {
+                    if(strainIndices[bit] >= 0)
+                    {
+                        packedCalls[strainIndices[bit]][word] |= snpMask;
+                    }
+                }
+                
+                chunkSnpCount++;
+                if(chunkSnpCount == SNPS_PER_CHUNK)
+                {
+                    this.countMismatches(
+                            executor,
+                            packedCalls,
+                            WORDS_PER_CHUNK,
+                            mismatchCounts);
+                    snpCount += chunkSnpCount;
+                    chunkSnpCount = 0;
+                    for(long[] strainCalls: packedCalls)
+                    {
+                        Arrays.fill(strainCalls, 0L);
+                    }
+                }
+            }
+            
+            if(chunkSnpCount > 0)
+            {
+                // the unused bits are zero for every strain so they never
+                // count as mismatches
+                this.countMismatches(
+                        executor,
+                        packedCalls,
+                        (chunkSnpCount + Long.SIZE - 1) / Long.SIZE,
+                        mismatchCounts);
+                snpCount += chunkSnpCount;
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        
+        // we only counted the upper triangle
+        for(int i = 0; i < strainCount; i++)
+        {
+            for(int j = i + 1; j < strainCount; j++)
+            {
+                mismatchCounts[j][i] = mismatchCounts[i][j];
+            }
+        }
+        
+        synchronized(this)
+        {
+            // keep the genome totals up to date so that leave one
+            // chromosome out kinship is just a subtraction
+            long[][] oldMismatchCounts = this.chromosomeMismatchCounts.put(
+                    chromosomeNumber,
+                    mismatchCounts);
+            Long oldSnpCount = this.chromosomeSnpCounts.put(
+                    chromosomeNumber,
+                    snpCount);
+            if(oldMismatchCounts != null)
+            {
+                addCounts(this.genomeMismatchCounts, oldMismatchCounts, -1L);
+                this.genomeSnpCount -= oldSnpCount;
+            }
+            addCounts(this.genomeMismatchCounts, mismatchCounts, 1L);
+            this.genomeSnpCount += snpCount;
+        }
+    }
+    
+    private static void addCounts(long[][] totals, long[][] counts, long sign)
+    {
+        for(int i = 0; i < totals.length; i++)
+        {
+            for(int j = 0; j < totals[i].length; j++)
+            {
+                totals[i][j] += sign * counts[i][j];
+            }
+        }
+    }
+    
+    private ExecutorService createExecutor()
+    {
+        return Executors.newFixedThreadPool(
+                this.threadCount,
+                new ThreadFactory()
+                {
+                    /**
+                     * {@inheritDoc}
+                     */
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread thread = new Thread(r, "kinship-counter");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+    
+    /**
+     * Add the mismatches in a chunk of packed calls to the upper triangle
+     * of the given counts. Each tile writes to its own cells so the tiles
+     * don't need to synchronize
+     * @param executor
+     *          the executor to count tiles with
+     * @param packedCalls
+     *          the packed calls of each strain
+     * @param wordCount
+     *          the number of words in use
+     * @param mismatchCounts
+     *          the counts to add to
+     * @throws IOException
+     *          if counting fails
+     */
+    private void countMismatches(
+            ExecutorService executor,
+            final long[][] packedCalls,
+            final int wordCount,
+            final long[][] mismatchCounts)
+    throws IOException
+    {
+        final int strainCount = packedCalls.length;
+        List<Future<?>> tileFutures = new ArrayList<Future<?>>();
+        for(int tileStart1 = 0;
+            tileStart1 < strainCount;
+            tileStart1 += STRAINS_PER_TILE)
+        {
+            for(int tileStart2 = tileStart1;
+                tileStart2 < strainCount;
+                tileStart2 += STRAINS_PER_TILE)
+            {
+                final int start1 = tileStart1;
+                final int end1 = Math.min(strainCount, start1 + STRAINS_PER_TILE);
+                final int start2 = tileStart2;
+                final int end2 = Math.min(strainCount, start2 + STRAINS_PER_TILE);
+                tileFutures.add(executor.submit(new Callable<Object>()
+                {
+                    /**
+                     * {@inheritDoc}
+                     */
+                    public Object call()
+                    {
+                        for(int i = start1; i < end1; i++)
+                        {
+                            long[] calls1 = packedCalls[i];
+                            long[] counts = mismatchCounts[i];
+                            for(int j = Math.max(i + 1, start2); j < end2; j++)
+                            {
+                                long[] calls2 = packedCalls[j];
+                                long mismatches = 0L;
+                                for(int word = 0; word < wordCount; word++)
+                                {
+                                    mismatches += Long.bitCount(
+                                            calls1[word] ^ calls2[word]);
+                                }
+                                counts[j] += mismatches;
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+        }
+        
+        try
+        {
+            for(Future<?> tileFuture: tileFutures)
+            {
+                tileFuture.get();
+            }
+        }
+        catch(InterruptedException ex)
+        {
+            throw new IOException("interrupted while counting mismatches");
+        }
+        catch(ExecutionException ex)
+        {
+            IOException ioException = new IOException(
+                    "failed to count mismatches");
+            ioException.initCause(ex.getCause());
+            throw ioException;
+        }
+    }
+    
+    /**
+     * Getter for the strains that this kinship is for
+     * @return
+     *          the strains in sorted order. Matrix rows and columns are in
+     *          the same order
+     */
+    public String[] getSortedStrains()
+    {
+        return this.sortedStrains;
+    }
+    
+    /**
+     * Get the genome wide kinship matrix
+     * @return
+     *          the kinship matrix
+     */
+    public synchronized double[][] getKinshipMatrix()
+    {
+        return toIdentityByState(this.genomeMismatchCounts, this.genomeSnpCount);
+    }
+    
+    /**
+     * Get the leave one chromosome out (LOCO) kinship matrix. This is
+     * derived by subtracting the chromosome's counts from the genome
+     * totals so it costs the same as the genome wide matrix
+     * @param chromosomeNumber
+     *          the chromosome to leave out
+     * @return
+     *          the kinship matrix calculated from every other chromosome
+     */
+    public synchronized double[][] getKinshipMatrixExcludingChromosome(
+            int chromosomeNumber)
+    {
+        long[][] chromosomeMismatches = this.chromosomeMismatchCounts.get(
+                chromosomeNumber);
+        if(chromosomeMismatches == null)
+        {
+            return this.getKinshipMatrix();
+        }
+        else
+        {
+            int strainCount = this.sortedStrains.length;
+            long[][] mismatchCounts = new long[strainCount][];
+            for(int i = 0; i < strainCount; i++)
+            {
+                mismatchCounts[i] = this.genomeMismatchCounts[i].clone();
+            }
+            addCounts(mismatchCounts, chromosomeMismatches, -1L);
+            
+            return toIdentityByState(
+                    mismatchCounts,
+                    this.genomeSnpCount - this.chromosomeSnpCounts.get(chromosomeNumber));
+        }
+    }
+    
+    /**
+     * Turn mismatch counts into the fraction of SNPs that are identical by
+     * state
+     * @param mismatchCounts
+     *          the mismatch counts
+     * @param snpCount
+     *          the number of SNPs that were compared
+     * @return
+     *          the kinship matrix
+     */
+    private static double[][] toIdentityByState(
+            long[][] mismatchCounts,
+            long snpCount)
+    {
+        int strainCount = mismatchCounts.length;
+        double[][] kinship = new double[strainCount][strainCount];
+        for(int i = 0; i < strainCount; i++)
+        {
+            for(int j = 0; j < strainCount; j++)
+            {
+                if(i == j)
+                {
+                    kinship[i][j] = 1.0;
+                }
+                else if(snpCount == 0L)
+                {
+                    kinship[i][j] = 0.0;
+                }
+                else
+                {
+                    kinship[i][j] =
+                        1.0 - mismatchCounts[i][j] / (double)snpCount;
+                }
+            }
+        }
+        
+        return kinship;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+
+import javax.swing.JPanel;
+
+import org.jax.haplotype.analysis.visualization.SmoothPaintScale;
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.axis.SymbolAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.PaintScale;
+import org.jfree.chart.renderer.xy.XYBlockRenderer;
+import org.jfree.chart.title.PaintScaleLegend;
+import org.jfree.data.xy.DefaultXYZDataset;
+import org.jfree.ui.RectangleEdge;
+
+/**
+ * A panel that shows a kinship matrix as a heatmap with a cell for every
+ * pair of strains
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class GenotypeKinshipHeatmapPanel extends JPanel
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = -6210937517286432871L;
+    
+    private final ChartPanel chartPanel;
+    
+    /**
+     * Constructor
+     * @param kinship
+     *          the kinship to show
+     */
+    public GenotypeKinshipHeatmapPanel(GenotypeKinship kinship)
+    {
+        super(new BorderLayout());
+        
+        this.chartPanel = new ChartPanel(
+                createHeatmap(kinship.getSortedStrains(), kinship.getKinshipMatrix()),
+                true);
+        this.add(this.chartPanel, BorderLayout.CENTER);
+    }
+    
+    private static JFreeChart createHeatmap(
+            String[] sortedStrains,
+            double[][] kinshipMatrix)
+    {
+        int strainCount = sortedStrains.length;
+        int cellCount = strainCount * strainCount;
+        double[] xValues = new double[cellCount];
+        double[] yValues = new double[cellCount];
+        double[] zValues = new double[cellCount];
+        double minimumKinship = 1.0;
+        int cell = 0;
+        for(int i = 0; i < strainCount; i++)
+        {
+            for(int j = 0; j < strainCount; j++)
+            {
+                xValues[cell] = i;
+                yValues[cell] = j;
+                zValues[cell] = kinshipMatrix[i][j];
+                minimumKinship = Math.min(minimumKinship, kinshipMatrix[i][j]);
+                cell++;
+            }
+        }
+        
+        DefaultXYZDataset dataset = new DefaultXYZDataset();
+        dataset.addSeries(
+                "Kinship",
+                new double[][] {xValues, yValues, zValues});
+        
+        // the scale can't be empty even if every strain is identical
+        PaintScale paintScale = new SmoothPaintScale(
+                Math.min(minimumKinship, 1.0 - 1e-6),
+                1.0,
+                Color.BLUE,
+                Color.RED);
+        XYBlockRenderer renderer = new XYBlockRenderer();
+        renderer.setPaintScale(paintScale);
+        
+        SymbolAxis xAxis = new SymbolAxis("Strain", sortedStrains);
+        xAxis.setVerticalTickLabels(true);
+        SymbolAxis yAxis = new SymbolAxis("Strain", sortedStrains);
+        yAxis.setInverted(true);
+        XYPlot plot = new XYPlot(dataset, xAxis, yAxis, renderer);
+        
+        JFreeChart chart = new JFreeChart(plot);
+        chart.removeLegend();
+        NumberAxis scaleAxis = new NumberAxis("Identity by State");
+        scaleAxis.setRange(paintScale.getLowerBound(), paintScale.getUpperBound());
+        PaintScaleLegend legend = new PaintScaleLegend(paintScale, scaleAxis);
+        legend.setPosition(RectangleEdge.RIGHT);
+        chart.addSubtitle(legend);
+        
+        return chart;
+    }
+}
@@ -177,11 +177,22 @@ public class HaplotypeAssociationTestDialog extends JDialog
 //            else
             {
                 // add test results to the project without precomputing
-                HaplotypeAssociationTest haplotypeAssociationTest =
-                    new HaplotypeAssociationTest(
+                HaplotypeAssociationTest haplotypeAssociationTest;
+                if(this.adaptivePermutationCheckBox.isSelected())
+                {
+                    haplotypeAssociationTest =
+                        new AdaptivePermutationHaplotypeAssociationTest(
+                                this.getSelectedName(),
+                                this.getSelectedHaplotypeDataSource(),
+                                this.getSelectedPhenotypeDataSource());
+                }
+                else
+                {
+                    haplotypeAssociationTest = new HaplotypeAssociationTest(
                             this.getSelectedName(),
                             this.getSelectedHaplotypeDataSource(),
                             this.getSelectedPhenotypeDataSource());
+                }
                 this.project.addHaplotypeAssociationTest(haplotypeAssociationTest);
             }
             
@@ -270,6 +281,7 @@ public class HaplotypeAssociationTestDialog extends JDialog
         haplotypeDataSourceComboBox = new javax.swing.JComboBox();
         javax.swing.JLabel phenotypeDataSourceLabel = new javax.swing.JLabel();
         phenotypeDataSourceComboBox = new javax.swing.JComboBox();
+        adaptivePermutationCheckBox = new javax.swing.JCheckBox();
         javax.swing.JPanel actionPanel = new javax.swing.JPanel();
         okButton = new javax.swing.JButton();
         cancelButton = new javax.swing.JButton();
@@ -283,6 +295,8 @@ public class HaplotypeAssociationTestDialog extends JDialog
 
         phenotypeDataSourceLabel.setText("Phenotype Data:");
 
+        adaptivePermutationCheckBox.setText("Calculate Adaptive Permutation P-Values");
+
         okButton.setText("OK");
         actionPanel.add(okButton);
 
@@ -298,6 +312,10 @@ public class HaplotypeAssociationTestDialog extends JDialog
         layout.setHorizontalGroup(
             layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
             .add(org.jdesktop.layout.GroupLayout.TRAILING, actionPanel, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 362, Short.MAX_VALUE)
+            .add(layout.createSequentialGroup()
+                .addContainerGap()
+                .add(adaptivePermutationCheckBox)
+                .addContainerGap(org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
             .add(layout.createSequentialGroup()
                 .addContainerGap()
                 .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
@@ -331,6 +349,8 @@ public class HaplotypeAssociationTestDialog extends JDialog
                 .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
                     .add(phenotypeDataSourceLabel)
                     .add(phenotypeDataSourceComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(adaptivePermutationCheckBox)
                 .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED, 8, Short.MAX_VALUE)
                 .add(actionPanel, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
         );
@@ -339,6 +359,7 @@ public class HaplotypeAssociationTestDialog extends JDialog
     }// </editor-fold>//GEN-END:initComponents
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JCheckBox adaptivePermutationCheckBox;
     private javax.swing.JButton cancelButton;
     private javax.swing.JComboBox haplotypeDataSourceComboBox;
     private javax.swing.JButton helpButton;
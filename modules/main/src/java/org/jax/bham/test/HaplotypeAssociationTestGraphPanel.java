@@ -17,8 +17,11 @@
 
 package org.jax.bham.test;
 
+import java.awt.BasicStroke;
 import java.awt.BorderLayout;
+import java.awt.Color;
 import java.awt.Point;
+import java.awt.event.ActionEvent;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.geom.Point2D;
@@ -32,10 +35,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.swing.AbstractAction;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JSeparator;
@@ -43,6 +48,7 @@ import javax.swing.JToolBar;
 import javax.swing.SwingUtilities;
 
 import org.jax.bham.BhamApplication;
+import org.jax.bham.io.ExportGenomeTrackAction;
 import org.jax.bham.util.JFreeChartUtil;
 import org.jax.geneticutil.data.BasePairInterval;
 import org.jax.geneticutil.data.BinaryStrainPartition;
@@ -61,6 +67,10 @@ import org.jax.util.concurrent.MultiTaskProgressPanel;
 import org.jax.util.datastructure.SequenceUtilities;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.ValueMarker;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.ui.RectangleAnchor;
+import org.jfree.ui.TextAnchor;
 
 /**
  * A panel for graphing haplotype association results
@@ -73,6 +83,14 @@ public class HaplotypeAssociationTestGraphPanel extends JPanel
      */
     private static final long serialVersionUID = 618496235032301159L;
     
+    /**
+     * the genome wide significance levels that we draw permutation
+     * thresholds for
+     */
+    private static final double[] THRESHOLD_ALPHAS = new double[] {0.05, 0.01};
+    
+    private static final int DEFAULT_PERMUTATION_COUNT = 1000;
+    
     private final HaplotypeAssociationTest testToPlot;
     
     private final GenomicGraphFactory graphFactory = new GenomicGraphFactory();
@@ -103,6 +121,8 @@ public class HaplotypeAssociationTestGraphPanel extends JPanel
     
     private final Map<Integer, RealValuedBasePairInterval[]> chromosomeToNegLogValueMap =
         Collections.synchronizedMap(new HashMap<Integer, RealValuedBasePairInterval[]>());
+    
+    private volatile double[] permutationMaximums = null;
 
     /**
      * Constructor
@@ -249,6 +269,33 @@ public class HaplotypeAssociationTestGraphPanel extends JPanel
                 this.chromosomeComboBox.getPreferredSize());
         toolBar.add(this.chromosomeComboBox);
         
+        // the thresholds come from permuting a strain mean F test. that
+        // isn't valid under the mixed model and the adaptive test already
+        // has empirical p-values so they're only offered for the plain
+        // test. the permutation task also checks that the plain test's
+        // p-values really are the F test's
+        toolBar.addSeparator();
+        AbstractAction permutationAction = new AbstractAction(
+                "Permutation Thresholds...")
+        {
+            /**
+             * every {@link java.io.Serializable} is supposed to have one of these
+             */
+            private static final long serialVersionUID = -8013750296871204815L;
+            
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                HaplotypeAssociationTestGraphPanel.this.calculatePermutationThresholds();
+            }
+        };
+        permutationAction.setEnabled(
+                !(this.testToPlot instanceof EMMAAssociationTest) &&
+                !(this.testToPlot instanceof AdaptivePermutationHaplotypeAssociationTest));
+        toolBar.add(permutationAction);
+        
         this.add(toolBar, BorderLayout.PAGE_START);
         
         this.add(this.chartPanel, BorderLayout.CENTER);
@@ -307,6 +354,115 @@ public class HaplotypeAssociationTestGraphPanel extends JPanel
         runTestsThread.start();
     }
     
+    private void calculatePermutationThresholds()
+    {
+        String permutationCountString = JOptionPane.showInputDialog(
+                this,
+                "Number of permutations:",
+                Integer.toString(DEFAULT_PERMUTATION_COUNT));
+        if(permutationCountString != null)
+        {
+            int permutationCount;
+            try
+            {
+                permutationCount = Integer.parseInt(permutationCountString.trim());
+            }
+            catch(NumberFormatException ex)
+            {
+                permutationCount = -1;
+            }
+            
+            if(permutationCount <= 0)
+            {
+                JOptionPane.showMessageDialog(
+                        this,
+                        "The number of permutations must be a positive integer",
+                        "Invalid Permutation Count",
+                        JOptionPane.WARNING_MESSAGE);
+            }
+            else
+            {
+                List<Integer> allChromosomes = new ArrayList<Integer>();
+                for(int i = 1; i < this.chromosomeComboBox.getItemCount(); i++)
+                {
+                    allChromosomes.add((Integer)this.chromosomeComboBox.getItemAt(i));
+                }
+                
+                final PerformPermutationTestTask permutationTask =
+                    new PerformPermutationTestTask(
+                            this.testToPlot,
+                            allChromosomes,
+                            permutationCount,
+                            System.currentTimeMillis());
+                BhamApplication.getInstance().getBhamFrame().getMultiTaskProgress().addTaskToTrack(
+                        permutationTask,
+                        true);
+                new Thread(new Runnable()
+                {
+                    /**
+                     * {@inheritDoc}
+                     */
+                    public void run()
+                    {
+                        permutationTask.run();
+                        final double[] maximums =
+                            permutationTask.getMaximumNegLog10PValues();
+                        if(maximums != null)
+                        {
+                            SwingUtilities.invokeLater(new Runnable()
+                            {
+                                /**
+                                 * {@inheritDoc}
+                                 */
+                                public void run()
+                                {
+                                    HaplotypeAssociationTestGraphPanel.this.permutationMaximums =
+                                        maximums;
+                                    HaplotypeAssociationTestGraphPanel.this.repaintGraphNow();
+                                }
+                            });
+                        }
+                    }
+                }).start();
+            }
+        }
+    }
+    
+    /**
+     * Draw the permutation thresholds on the given chart if we have them
+     * @param chart
+     *          the chart
+     */
+    private void addPermutationThresholds(JFreeChart chart)
+    {
+        double[] maximums = this.permutationMaximums;
+        if(maximums != null && chart.getPlot() instanceof XYPlot)
+        {
+            XYPlot plot = (XYPlot)chart.getPlot();
+            for(double alpha: THRESHOLD_ALPHAS)
+            {
+                ValueMarker thresholdMarker = new ValueMarker(
+                        HaplotypePermutationTest.getSignificanceThreshold(
+                                maximums,
+                                alpha));
+                thresholdMarker.setPaint(Color.RED);
+                thresholdMarker.setStroke(new BasicStroke(
+                        1.0F,
+                        BasicStroke.CAP_BUTT,
+                        BasicStroke.JOIN_MITER,
+                        10.0F,
+                        new float[] {6.0F, 4.0F},
+                        0.0F));
+                thresholdMarker.setLabel(
+                        "alpha = " + alpha + " (" + maximums.length +
+                        " permutations)");
+                thresholdMarker.setLabelAnchor(RectangleAnchor.TOP_RIGHT);
+                thresholdMarker.setLabelTextAnchor(TextAnchor.BOTTOM_RIGHT);
+                plot.addRangeMarker(thresholdMarker);
+            }
+        }
+    }
+    
     private void cacheChromosomeTests(
             final int[] chromosomes)
     {
@@ -385,6 +541,7 @@ public class HaplotypeAssociationTestGraphPanel extends JPanel
                 jFreeChart.setTitle(
                         this.testToPlot.getName() + " - Chromosome " +
                         chromosome);
+                this.addPermutationThresholds(jFreeChart);
                 
                 this.chartPanel.setChart(jFreeChart);
             }
@@ -433,11 +590,35 @@ public class HaplotypeAssociationTestGraphPanel extends JPanel
             
             jFreeChart.setTitle(
                     this.testToPlot.getName() + " - All Chromosomes");
+            this.addPermutationThresholds(jFreeChart);
             
             this.chartPanel.setChart(jFreeChart);
         }
     }
     
+    /**
+     * Get the -log10(p-value) intervals for the plotted chromosomes that
+     * have finished calculating
+     * @return
+     *          the values keyed on chromosome
+     */
+    private Map<Integer, RealValuedBasePairInterval[]> getPlottedNegLogValues()
+    {
+        Map<Integer, RealValuedBasePairInterval[]> plottedValues =
+            new HashMap<Integer, RealValuedBasePairInterval[]>();
+        for(int chromosome: this.getSelectedChromosomes())
+        {
+            RealValuedBasePairInterval[] values =
+                this.chromosomeToNegLogValueMap.get(chromosome);
+            if(values != null)
+            {
+                plottedValues.put(chromosome, values);
+            }
+        }
+        
+        return plottedValues;
+    }
+    
     private List<JComponent> createContextMenuItems()
     {
         List<JComponent> menuItems = new ArrayList<JComponent>();
@@ -500,6 +681,11 @@ public class HaplotypeAssociationTestGraphPanel extends JPanel
             }
         }
         
+        menuItems.add(new JMenuItem(new ExportGenomeTrackAction(
+                this.testToPlot.getName(),
+                this.getPlottedNegLogValues())));
+        menuItems.add(new JSeparator());
+        
         return menuItems;
     }
 }
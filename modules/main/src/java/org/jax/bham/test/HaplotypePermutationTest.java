@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jax.bham.util.DistributionUtil;
+import org.jax.geneticutil.data.BinaryStrainPartition;
+import org.jax.haplotype.analysis.HaplotypeAssociationTest;
+import org.jax.haplotype.analysis.HaplotypeBlockTestResult;
+
+/**
+ * Permutation testing for haplotype association scans. The haplotype
+ * partitions are held fixed while the strain phenotypes are permuted, and
+ * each partition is scored with a two group F test on the strain means.
+ * The total sum and sum of squares don't change under permutation so a
+ * partition's F statistic only depends on the sum of its group, which we
+ * accumulate for a whole batch of permutations in one pass over the
+ * group's members. Partitions that repeat across blocks are only scored
+ * once.
+ * <p>
+ * The thresholds are only meaningful if this strain mean F test gives the
+ * same p-values as the test being permuted, so every block that is added
+ * is also scored unpermuted and compared against the test's own p-value
+ * (see {@link #getMaximumNegLog10PValueDiscrepancy()}). Tests that score
+ * blocks some other way (EMMA, adaptive permutation) can't be permuted
+ * like this.
+ * </p>
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class HaplotypePermutationTest
+{
+    /**
+     * how far apart (in -log10(p-value)) another test's p-values and this F
+     * test's can be and still count as the same statistic. This allows for
+     * the other test keeping its p-values with less precision than we
+     * calculate them
+     */
+    static final double MAXIMUM_NEG_LOG10_P_VALUE_DISCREPANCY = 1e-3;
+    
+    private final PhenotypeStatistics statistics;
+    
+    private final String[] sortedStrains;
+    
+    private final double[] strainMeans;
+    
+    private final double phenotypeSum;
+    
+    private final double phenotypeSumOfSquares;
+    
+    private final List<int[]> partitionGroups = new ArrayList<int[]>();
+    
+    private final Set<BitSet> partitionStrainBitSets = new HashSet<BitSet>();
+    
+    private double maximumNegLog10PValueDiscrepancy = 0.0;
+    
+    /**
+     * Constructor
+     * @param statistics
+     *          the phenotype statistics over the strains that the
+     *          partition bit sets are over in sorted order
+     */
+    public HaplotypePermutationTest(PhenotypeStatistics statistics)
+    {
+        this.statistics = statistics;
+        this.sortedStrains = statistics.getStrains();
+        this.strainMeans = statistics.getMeans();
+        this.phenotypeSum =
+            statistics.getTotalStatistics().getStrainMeanSum();
+        this.phenotypeSumOfSquares =
+            statistics.getTotalStatistics().getStrainMeanSumOfSquares();
+    }
+    
+    /**
+     * Create a permutation test for the blocks of the given test
+     * @param test
+     *          the test
+     * @return
+     *          the permutation test with no partitions added yet
+     */
+    public static HaplotypePermutationTest createPermutationTest(
+            HaplotypeAssociationTest test)
+    {
+        return new HaplotypePermutationTest(
+                PhenotypeStatistics.getPhenotypeStatistics(test));
+    }
+    
+    /**
+     * Add the partitions of the given block results. Partitions that we
+     * already have are skipped. Each block's p-value is checked against
+     * the unpermuted F test
+     * @param blockResults
+     *          the block results
+     */
+    public synchronized void addPartitions(HaplotypeBlockTestResult[] blockResults)
+    {
+        for(HaplotypeBlockTestResult blockResult: blockResults)
+        {
+            BinaryStrainPartition partition =
+                (BinaryStrainPartition)blockResult.getDelegateInterval();
+            BitSet strainBitSet = partition.getStrainBitSet();
+            this.checkObservedPValue(strainBitSet, blockResult.getPValue());
+            this.addPartition(strainBitSet);
+        }
+    }
+    
+    /**
+     * Compare the given p-value with the one that our F test gives the
+     * unpermuted phenotypes and remember the largest difference
+     * @param strainBitSet
+     *          the strains in the partition's group
+     * @param observedPValue
+     *          the p-value that the permuted test gave the partition
+     */
+    private void checkObservedPValue(BitSet strainBitSet, double observedPValue)
+    {
+        int strainCount = this.sortedStrains.length;
+        PhenotypeStatistics.GroupStatistics groupStatistics =
+            this.statistics.getGroupStatistics(strainBitSet);
+        int groupSize = groupStatistics.getStrainCount();
+        if(groupSize > 0 && groupSize < strainCount)
+        {
+            double discrepancy = getNegLog10PValueDiscrepancy(
+                    this.calculatePValue(this.calculateF(
+                            groupStatistics.getStrainMeanSum(),
+                            groupSize)),
+                    observedPValue);
+            // once a NaN shows up it stays as the maximum so that a later
+            // finite discrepancy can't hide it
+            if(!Double.isNaN(this.maximumNegLog10PValueDiscrepancy) &&
+               (Double.isNaN(discrepancy) ||
+                discrepancy > this.maximumNegLog10PValueDiscrepancy))
+            {
+                this.maximumNegLog10PValueDiscrepancy = discrepancy;
+            }
+        }
+    }
+    
+    /**
+     * Get the difference between two p-values in -log10(p-value)
+     * @param expectedPValue
+     *          the p-value that we calculated
+     * @param observedPValue
+     *          the p-value to compare it with
+     * @return
+     *          the difference which is NaN if either p-value is NaN
+     */
+    static double getNegLog10PValueDiscrepancy(
+            double expectedPValue,
+            double observedPValue)
+    {
+        if(expectedPValue == observedPValue)
+        {
+            // this covers both being zero
+            return 0.0;
+        }
+        else
+        {
+            return Math.abs(Math.log10(expectedPValue) - Math.log10(observedPValue));
+        }
+    }
+    
+    /**
+     * Getter for the largest difference in -log10(p-value) between the
+     * p-values of the blocks that were added and what this F test gives
+     * the same blocks before any permutation. If this isn't close to zero
+     * the permuted test doesn't use the strain mean F statistic and the
+     * thresholds don't apply to it
+     * @return
+     *          the largest discrepancy (which is NaN if a p-value was NaN)
+     */
+    public synchronized double getMaximumNegLog10PValueDiscrepancy()
+    {
+        return this.maximumNegLog10PValueDiscrepancy;
+    }
+    
+    /**
+     * Add a partition. Nothing is added if we already have it or if it
+     * doesn't split the strains
+     * @param strainBitSet
+     *          the strains in the partition's group
+     */
+    public synchronized void addPartition(BitSet strainBitSet)
+    {
+        int strainCount = this.sortedStrains.length;
+        BitSet group = strainBitSet.get(0, strainCount);
+        int groupSize = group.cardinality();
+        
+        // a partition and its complement are the same test
+        BitSet partitionKey = PartitionResultCache.toPartitionKey(
+                group,
+                strainCount);
+        
+        if(groupSize > 0 && groupSize < strainCount &&
+           this.partitionStrainBitSets.add(partitionKey))
+        {
+            // the other side of the partition is cheaper to sum if it's
+            // smaller and it gives the same F statistic
+            if(2 * groupSize > strainCount)
+            {
+                group = (BitSet)group.clone();
+                group.flip(0, strainCount);
+                groupSize = strainCount - groupSize;
+            }
+            
+            int[] members = new int[groupSize];
+            int memberIndex = 0;
+            for(int i = group.nextSetBit(0); i >= 0; i = group.nextSetBit(i + 1))
+            {
+                members[memberIndex] = i;
+                memberIndex++;
+            }
+            this.partitionGroups.add(members);
+        }
+    }
+    
+    /**
+     * Getter for the number of distinct partitions that we're testing
+     * @return
+     *          the partition count
+     */
+    public synchronized int getPartitionCount()
+    {
+        return this.partitionGroups.size();
+    }
+    
+    /**
+     * Getter for the strains in sorted order
+     * @return
+     *          the strains
+     */
+    public String[] getSortedStrains()
+    {
+        return this.sortedStrains;
+    }
+    
+    /**
+     * Calculate the maximum -log10(p-value) over every partition for each
+     * of the given permutations. This is safe to call from many threads at
+     * once as long as partitions aren't being added
+     * @param permutations
+     *          the batch of permutations. Each one maps a strain index to
+     *          the index of the strain whose phenotype it takes
+     * @return
+     *          the maximum -log10(p-value) of each permutation
+     */
+    public double[] calculateMaximumNegLog10PValues(int[][] permutations)
+    {
+        int permutationCount = permutations.length;
+        int strainCount = this.sortedStrains.length;
+        
+        // lay the permuted phenotypes out by strain so that summing a
+        // group over the batch is a run of vector adds
+        double[][] permutedMeans = new double[strainCount][permutationCount];
+        for(int p = 0; p < permutationCount; p++)
+        {
+            int[] permutation = permutations[p];
+            for(int i = 0; i < strainCount; i++)
+            {
+                permutedMeans[i][p] = this.strainMeans[permutation[i]];
+            }
+        }
+        
+        double[] maximumF = new double[permutationCount];
+        double[] groupSums = new double[permutationCount];
+        int[][] partitionGroups = this.getPartitionGroups();
+        for(int[] members: partitionGroups)
+        {
+            Arrays.fill(groupSums, 0.0);
+            for(int member: members)
+            {
+                double[] memberMeans = permutedMeans[member];
+                for(int p = 0; p < permutationCount; p++)
+                {
+                    groupSums[p] += memberMeans[p];
+                }
+            }
+            
+            for(int p = 0; p < permutationCount; p++)
+            {
+                double f = this.calculateF(groupSums[p], members.length);
+                if(f > maximumF[p])
+                {
+                    maximumF[p] = f;
+                }
+            }
+        }
+        
+        // every partition has the same degrees of freedom so the largest F
+        // is the smallest p-value
+        double[] maximumNegLog10PValues = new double[permutationCount];
+        for(int p = 0; p < permutationCount; p++)
+        {
+            maximumNegLog10PValues[p] = -Math.log10(
+                    this.calculatePValue(maximumF[p]));
+        }
+        
+        return maximumNegLog10PValues;
+    }
+    
+    private synchronized int[][] getPartitionGroups()
+    {
+        return this.partitionGroups.toArray(new int[this.partitionGroups.size()][]);
+    }
+    
+    /**
+     * Calculate the F statistic for a partition
+     * @param groupSum
+     *          the sum of the phenotypes in the group
+     * @param groupSize
+     *          the number of strains in the group
+     * @return
+     *          the F statistic
+     */
+    double calculateF(double groupSum, int groupSize)
+    {
+        return calculateF(
+                groupSum,
+                groupSize,
+                this.strainMeans.length,
+                this.phenotypeSum,
+                this.phenotypeSumOfSquares);
+    }
+    
+    /**
+     * Calculate the two group F statistic of a partition from the sums of
+     * the phenotype values
+     * @param groupSum
+     *          the sum of the phenotypes in the group
+     * @param groupSize
+     *          the number of strains in the group
+     * @param strainCount
+     *          the number of strains in all
+     * @param phenotypeSum
+     *          the sum of the phenotypes over all strains
+     * @param phenotypeSumOfSquares
+     *          the sum of the squared phenotypes over all strains
+     * @return
+     *          the F statistic
+     */
+    static double calculateF(
+            double groupSum,
+            int groupSize,
+            int strainCount,
+            double phenotypeSum,
+            double phenotypeSumOfSquares)
+    {
+        int otherSize = strainCount - groupSize;
+        double otherSum = phenotypeSum - groupSum;
+        double betweenSumOfSquares =
+            groupSum * groupSum / groupSize +
+            otherSum * otherSum / otherSize -
+            phenotypeSum * phenotypeSum / strainCount;
+        double withinSumOfSquares =
+            phenotypeSumOfSquares -
+            phenotypeSum * phenotypeSum / strainCount -
+            betweenSumOfSquares;
+        
+        if(betweenSumOfSquares <= 0.0)
+        {
+            return 0.0;
+        }
+        else if(withinSumOfSquares <= 0.0)
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+        else
+        {
+            return betweenSumOfSquares * (strainCount - 2) / withinSumOfSquares;
+        }
+    }
+    
+    /**
+     * Convert an F statistic into a p-value
+     * @param f
+     *          the F statistic
+     * @return
+     *          the p-value
+     */
+    double calculatePValue(double f)
+    {
+        return DistributionUtil.fDistributionUpperTail(
+                f,
+                1.0,
+                this.strainMeans.length - 2.0);
+    }
+    
+    /**
+     * Get the genome wide significance threshold from the permutation
+     * maximums
+     * @param maximumNegLog10PValues
+     *          the maximum -log10(p-value) of every permutation
+     * @param alpha
+     *          the genome wide significance level (eg 0.05)
+     * @return
+     *          the -log10(p-value) that a block must exceed to be
+     *          significant at the given level
+     */
+    public static double getSignificanceThreshold(
+            double[] maximumNegLog10PValues,
+            double alpha)
+    {
+        double[] sortedMaximums = maximumNegLog10PValues.clone();
+        Arrays.sort(sortedMaximums);
+        int index = (int)Math.ceil((1.0 - alpha) * sortedMaximums.length) - 1;
+        index = Math.max(0, Math.min(sortedMaximums.length - 1, index));
+        
+        return sortedMaximums[index];
+    }
+}
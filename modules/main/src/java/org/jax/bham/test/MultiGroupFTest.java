@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.util.Arrays;
+
+import org.jax.bham.util.DistributionUtil;
+
+/**
+ * A one way ANOVA F test on strain means that keeps the size and sum of
+ * every group as sufficient statistics. Moving from one partition to the
+ * next only touches the strains whose group changed, which makes it cheap
+ * to walk through sliding windows where neighbors differ by a strain or
+ * two. Group numbers are arbitrary from one partition to the next, so
+ * each new partition's groups are matched up with the groups that we
+ * already have in the same pass that works out which strains moved.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class MultiGroupFTest
+{
+    /**
+     * the sums are rebuilt after this many strain moves so that rounding
+     * error from all of the adds and subtracts can't pile up
+     */
+    private static final int MOVES_BETWEEN_RESUMS = 1 << 16;
+    
+    private final double[] strainMeans;
+    
+    private final double phenotypeSum;
+    
+    private final double phenotypeSumOfSquares;
+    
+    /**
+     * the group of each strain in our own numbering
+     */
+    private final int[] strainGroups;
+    
+    private int[] groupSizes;
+    
+    private double[] groupSums;
+    
+    /**
+     * the partition that last claimed each of our groups
+     */
+    private int[] groupClaimStamps;
+    
+    /**
+     * our group for each new group number, which is only good if the new
+     * group's stamp is the current partition's
+     */
+    private int[] newGroupMapping = new int[0];
+    
+    private int[] newGroupStamps = new int[0];
+    
+    private int partitionStamp = 0;
+    
+    private int movesSinceResum = 0;
+    
+    /**
+     * Constructor. All of the strains start out in one group
+     * @param strainMeans
+     *          the strain phenotype means
+     */
+    public MultiGroupFTest(double[] strainMeans)
+    {
+        this.strainMeans = strainMeans;
+        
+        double sum = 0.0;
+        double sumOfSquares = 0.0;
+        for(double strainMean: strainMeans)
+        {
+            sum += strainMean;
+            sumOfSquares += strainMean * strainMean;
+        }
+        this.phenotypeSum = sum;
+        this.phenotypeSumOfSquares = sumOfSquares;
+        
+        this.strainGroups = new int[strainMeans.length];
+        this.groupSizes = new int[] {strainMeans.length};
+        this.groupSums = new double[] {sum};
+        this.groupClaimStamps = new int[1];
+    }
+    
+    /**
+     * Move to a new partition of the strains. This is one pass over the
+     * new group numbers: a new group takes over our group of its first
+     * strain unless another new group already has it, in which case it
+     * gets the lowest group that hasn't been taken, and only the strains
+     * that end up in a different group have their sums moved. If a
+     * negative group number turns up part way through, the strains before
+     * it will have moved
+     * @param newStrainGroups
+     *          the group number of each strain
+     * @return
+     *          the number of strains that changed groups
+     */
+    public int setStrainGroups(short[] newStrainGroups)
+    {
+        int strainCount = this.strainMeans.length;
+        if(newStrainGroups.length != strainCount)
+        {
+            throw new IllegalArgumentException(
+                    "expected " + strainCount + " strain groups but got " +
+                    newStrainGroups.length);
+        }
+        
+        // stamping the claims with the partition number saves clearing
+        // them for every partition
+        if(this.partitionStamp == Integer.MAX_VALUE)
+        {
+            Arrays.fill(this.groupClaimStamps, 0);
+            Arrays.fill(this.newGroupStamps, 0);
+            this.partitionStamp = 0;
+        }
+        this.partitionStamp++;
+        int stamp = this.partitionStamp;
+        
+        int freeGroup = 0;
+        int moveCount = 0;
+        for(int i = 0; i < strainCount; i++)
+        {
+            short newGroup = newStrainGroups[i];
+            if(newGroup < 0)
+            {
+                throw new IllegalArgumentException(
+                        "strain groups can't be negative: " + newGroup);
+            }
+            if(newGroup >= this.newGroupStamps.length)
+            {
+                this.growNewGroups(newGroup + 1);
+            }
+            
+            int oldGroup = this.strainGroups[i];
+            int group;
+            if(this.newGroupStamps[newGroup] == stamp)
+            {
+                group = this.newGroupMapping[newGroup];
+            }
+            else
+            {
+                if(this.groupClaimStamps[oldGroup] != stamp)
+                {
+                    group = oldGroup;
+                }
+                else
+                {
+                    while(freeGroup < this.groupClaimStamps.length &&
+                          this.groupClaimStamps[freeGroup] == stamp)
+                    {
+                        freeGroup++;
+                    }
+                    if(freeGroup == this.groupClaimStamps.length)
+                    {
+                        this.growGroups(freeGroup + 1);
+                    }
+                    group = freeGroup;
+                }
+                this.groupClaimStamps[group] = stamp;
+                this.newGroupStamps[newGroup] = stamp;
+                this.newGroupMapping[newGroup] = group;
+            }
+            
+            if(oldGroup != group)
+            {
+                double strainMean = this.strainMeans[i];
+                this.groupSizes[oldGroup]--;
+                this.groupSums[oldGroup] -= strainMean;
+                this.groupSizes[group]++;
+                this.groupSums[group] += strainMean;
+                this.strainGroups[i] = group;
+                moveCount++;
+            }
+        }
+        
+        this.movesSinceResum += moveCount;
+        if(this.movesSinceResum >= MOVES_BETWEEN_RESUMS)
+        {
+            this.resum();
+        }
+        
+        return moveCount;
+    }
+    
+    /**
+     * Make room for more of our groups
+     * @param minimumCapacity
+     *          the number of groups that we need room for
+     */
+    private void growGroups(int minimumCapacity)
+    {
+        int capacity = Math.max(minimumCapacity, 2 * this.groupSizes.length);
+        int[] groupSizes = new int[capacity];
+        System.arraycopy(this.groupSizes, 0, groupSizes, 0, this.groupSizes.length);
+        this.groupSizes = groupSizes;
+        double[] groupSums = new double[capacity];
+        System.arraycopy(this.groupSums, 0, groupSums, 0, this.groupSums.length);
+        this.groupSums = groupSums;
+        int[] groupClaimStamps = new int[capacity];
+        System.arraycopy(this.groupClaimStamps, 0, groupClaimStamps, 0, this.groupClaimStamps.length);
+        this.groupClaimStamps = groupClaimStamps;
+    }
+    
+    /**
+     * Make room for higher new group numbers
+     * @param minimumCapacity
+     *          one more than the highest new group number
+     */
+    private void growNewGroups(int minimumCapacity)
+    {
+        int capacity = Math.max(minimumCapacity, 2 * this.newGroupStamps.length);
+        int[] newGroupMapping = new int[capacity];
+        System.arraycopy(this.newGroupMapping, 0, newGroupMapping, 0, this.newGroupMapping.length);
+        this.newGroupMapping = newGroupMapping;
+        int[] newGroupStamps = new int[capacity];
+        System.arraycopy(this.newGroupStamps, 0, newGroupStamps, 0, this.newGroupStamps.length);
+        this.newGroupStamps = newGroupStamps;
+    }
+    
+    /**
+     * Rebuild the group sums from the strain means
+     */
+    private void resum()
+    {
+        Arrays.fill(this.groupSums, 0.0);
+        for(int i = 0; i < this.strainMeans.length; i++)
+        {
+            this.groupSums[this.strainGroups[i]] += this.strainMeans[i];
+        }
+        this.movesSinceResum = 0;
+    }
+    
+    /**
+     * Get the number of groups that have strains in them
+     * @return
+     *          the group count
+     */
+    public int getGroupCount()
+    {
+        int groupCount = 0;
+        for(int groupSize: this.groupSizes)
+        {
+            if(groupSize > 0)
+            {
+                groupCount++;
+            }
+        }
+        
+        return groupCount;
+    }
+    
+    /**
+     * Calculate the F statistic of the current partition. This is
+     * proportional to the number of groups, not the number of strains
+     * @return
+     *          the F statistic
+     */
+    public double calculateF()
+    {
+        int strainCount = this.strainMeans.length;
+        int groupCount = 0;
+        double groupTerm = 0.0;
+        for(int group = 0; group < this.groupSizes.length; group++)
+        {
+            int groupSize = this.groupSizes[group];
+            if(groupSize > 0)
+            {
+                groupCount++;
+                groupTerm += this.groupSums[group] * this.groupSums[group] / groupSize;
+            }
+        }
+        
+        double correction = this.phenotypeSum * this.phenotypeSum / strainCount;
+        double betweenSumOfSquares = groupTerm - correction;
+        double withinSumOfSquares = this.phenotypeSumOfSquares - groupTerm;
+        if(groupCount < 2 || groupCount >= strainCount ||
+           betweenSumOfSquares <= 0.0)
+        {
+            // with no degrees of freedom left for the error term there's
+            // nothing to test
+            return 0.0;
+        }
+        else if(withinSumOfSquares <= 0.0)
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+        else
+        {
+            return
+                (betweenSumOfSquares / (groupCount - 1)) /
+                (withinSumOfSquares / (strainCount - groupCount));
+        }
+    }
+    
+    /**
+     * Calculate the p-value of the current partition
+     * @return
+     *          the p-value
+     */
+    public double calculatePValue()
+    {
+        int groupCount = this.getGroupCount();
+        int strainCount = this.strainMeans.length;
+        if(groupCount < 2 || groupCount >= strainCount)
+        {
+            return 1.0;
+        }
+        else
+        {
+            return DistributionUtil.fDistributionUpperTail(
+                    this.calculateF(),
+                    groupCount - 1.0,
+                    strainCount - (double)groupCount);
+        }
+    }
+}
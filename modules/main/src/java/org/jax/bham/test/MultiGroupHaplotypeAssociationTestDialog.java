@@ -156,10 +156,28 @@ public class MultiGroupHaplotypeAssociationTestDialog extends JDialog
     {
         if(this.validateData())
         {
-            MultiGroupHaplotypeAssociationTest test = new MultiGroupHaplotypeAssociationTest(
-                    this.getSelectedName(),
-                    this.getSelectedHaplotypeDataSource(),
-                    this.getSelectedPhenotypeDataSource());
+            MultiGroupHaplotypeAssociationTest test;
+            if(this.adaptivePermutationCheckBox.isSelected())
+            {
+                test = new AdaptivePermutationMultiGroupHaplotypeAssociationTest(
+                        this.getSelectedName(),
+                        this.getSelectedHaplotypeDataSource(),
+                        this.getSelectedPhenotypeDataSource());
+            }
+            else if(this.strainMeanFTestCheckBox.isSelected())
+            {
+                test = new StrainMeanMultiGroupHaplotypeAssociationTest(
+                        this.getSelectedName(),
+                        this.getSelectedHaplotypeDataSource(),
+                        this.getSelectedPhenotypeDataSource());
+            }
+            else
+            {
+                test = new MultiGroupHaplotypeAssociationTest(
+                        this.getSelectedName(),
+                        this.getSelectedHaplotypeDataSource(),
+                        this.getSelectedPhenotypeDataSource());
+            }
             this.project.addMultiGroupHaplotypeAssociationTest(test);
             this.dispose();
         }
@@ -185,6 +203,13 @@ public class MultiGroupHaplotypeAssociationTestDialog extends JDialog
                 "You cannot perform an association test without " +
                 "any phenotype data sources.";
         }
+        else if(this.adaptivePermutationCheckBox.isSelected() &&
+                this.strainMeanFTestCheckBox.isSelected())
+        {
+            errorMessage =
+                "Please choose either adaptive permutation or strain mean " +
+                "F-test p-values, not both.";
+        }
         
         if(errorMessage == null)
         {
@@ -246,6 +271,8 @@ public class MultiGroupHaplotypeAssociationTestDialog extends JDialog
         haplotypeDataSourceComboBox = new javax.swing.JComboBox();
         javax.swing.JLabel phenotypeDataSourceLabel = new javax.swing.JLabel();
         phenotypeDataSourceComboBox = new javax.swing.JComboBox();
+        adaptivePermutationCheckBox = new javax.swing.JCheckBox();
+        strainMeanFTestCheckBox = new javax.swing.JCheckBox();
         javax.swing.JPanel actionPanel = new javax.swing.JPanel();
         okButton = new javax.swing.JButton();
         cancelButton = new javax.swing.JButton();
@@ -259,6 +286,10 @@ public class MultiGroupHaplotypeAssociationTestDialog extends JDialog
 
         phenotypeDataSourceLabel.setText("Phenotype Data:");
 
+        adaptivePermutationCheckBox.setText("Calculate Adaptive Permutation P-Values");
+
+        strainMeanFTestCheckBox.setText("Calculate Strain Mean F-Test P-Values");
+
         okButton.setText("OK");
         actionPanel.add(okButton);
 
@@ -274,6 +305,14 @@ public class MultiGroupHaplotypeAssociationTestDialog extends JDialog
         layout.setHorizontalGroup(
             layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
             .add(org.jdesktop.layout.GroupLayout.TRAILING, actionPanel, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 420, Short.MAX_VALUE)
+            .add(layout.createSequentialGroup()
+                .addContainerGap()
+                .add(adaptivePermutationCheckBox)
+                .addContainerGap(org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
+            .add(layout.createSequentialGroup()
+                .addContainerGap()
+                .add(strainMeanFTestCheckBox)
+                .addContainerGap(org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
             .add(layout.createSequentialGroup()
                 .addContainerGap()
                 .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
@@ -302,6 +341,10 @@ public class MultiGroupHaplotypeAssociationTestDialog extends JDialog
                 .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
                     .add(phenotypeDataSourceLabel)
                     .add(phenotypeDataSourceComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(adaptivePermutationCheckBox)
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(strainMeanFTestCheckBox)
                 .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED, 8, Short.MAX_VALUE)
                 .add(actionPanel, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
         );
@@ -310,12 +353,14 @@ public class MultiGroupHaplotypeAssociationTestDialog extends JDialog
     }// </editor-fold>//GEN-END:initComponents
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JCheckBox adaptivePermutationCheckBox;
     private javax.swing.JButton cancelButton;
     private javax.swing.JComboBox haplotypeDataSourceComboBox;
     private javax.swing.JButton helpButton;
     private javax.swing.JTextField nameTextField;
     private javax.swing.JButton okButton;
     private javax.swing.JComboBox phenotypeDataSourceComboBox;
+    private javax.swing.JCheckBox strainMeanFTestCheckBox;
     // End of variables declaration//GEN-END:variables
 
 }
@@ -42,6 +42,7 @@ import javax.swing.JToolBar;
 import javax.swing.SwingUtilities;
 
 import org.jax.bham.BhamApplication;
+import org.jax.bham.io.ExportGenomeTrackAction;
 import org.jax.bham.util.JFreeChartUtil;
 import org.jax.geneticutil.data.BasePairInterval;
 import org.jax.geneticutil.data.CompositeRealValuedBasePairInterval;
@@ -438,6 +439,29 @@ public class MultiHaplotypeBlockTestGraphPanel extends JPanel
         return clickIndex;
     }
     
+    /**
+     * Get the -log10(p-value) intervals for the plotted chromosomes that
+     * have finished calculating
+     * @return
+     *          the values keyed on chromosome
+     */
+    private Map<Integer, RealValuedBasePairInterval[]> getPlottedNegLogValues()
+    {
+        Map<Integer, RealValuedBasePairInterval[]> plottedValues =
+            new HashMap<Integer, RealValuedBasePairInterval[]>();
+        for(int chromosome: this.getSelectedChromosomes())
+        {
+            RealValuedBasePairInterval[] values =
+                this.chromosomeToNegLogValueMap.get(chromosome);
+            if(values != null)
+            {
+                plottedValues.put(chromosome, values);
+            }
+        }
+        
+        return plottedValues;
+    }
+    
     private List<JComponent> createContextMenuItems()
     {
         List<JComponent> menuItems = new ArrayList<JComponent>();
@@ -505,6 +529,11 @@ public class MultiHaplotypeBlockTestGraphPanel extends JPanel
             }
         }
         
+        menuItems.add(new JMenuItem(new ExportGenomeTrackAction(
+                this.testToPlot.getName(),
+                this.getPlottedNegLogValues())));
+        menuItems.add(new JSeparator());
+        
         return menuItems;
     }
 }
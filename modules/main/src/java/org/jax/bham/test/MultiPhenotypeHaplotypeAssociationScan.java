@@ -0,0 +1,603 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.jax.bham.io.PhenotypeMatrix;
+import org.jax.bham.io.PhenotypeMatrixTraitDataSource;
+import org.jax.bham.util.DistributionUtil;
+import org.jax.geneticutil.data.BinaryStrainPartition;
+import org.jax.haplotype.analysis.HaplotypeAssociationTest;
+import org.jax.haplotype.analysis.HaplotypeBlockTestResult;
+import org.jax.haplotype.analysis.HaplotypeDataSource;
+import org.jax.haplotype.analysis.PhenotypeDataSource;
+
+/**
+ * Scans many phenotypes against the same haplotype data in one pass. The
+ * haplotype blocks of a chromosome are only inferred once and then every
+ * phenotype is scored against each block's strain partition together:
+ * the strain means are laid out as a strain by phenotype matrix so the
+ * group sums for all of the phenotypes come from one run of vector adds
+ * over the group's members, and each phenotype gets the same two group F
+ * test on strain means that the permutation thresholds use. The phenotypes
+ * can be a list of phenotype data sources or every trait of a
+ * {@link PhenotypeMatrix}, in which case the strain rows are read straight
+ * from the mapped matrix. Phenotypes whose strains don't line up with the
+ * first phenotype's can't share the partitions and are left to their own
+ * test (see {@link MultiPhenotypeHaplotypeAssociationTest}). The blocks
+ * come from the first phenotype's plain haplotype test and that test's
+ * p-values are checked against the F test, so the scan never quietly
+ * disagrees with a single phenotype test. The p-values of each partition
+ * are kept in a {@link PartitionResultCache} so a partition that turns up
+ * again on another chromosome isn't scored twice
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class MultiPhenotypeHaplotypeAssociationScan implements Serializable
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = 4395738610328826917L;
+    
+    /**
+     * roughly how much memory the cached p-values are allowed to take
+     */
+    private static final long MAXIMUM_CACHED_P_VALUE_BYTES = 64L * 1024L * 1024L;
+    
+    private final String scanId = UUID.randomUUID().toString();
+    
+    private final String name;
+    
+    private final HaplotypeDataSource haplotypeDataSource;
+    
+    private final PhenotypeDataSource[] phenotypeDataSources;
+    
+    private final PhenotypeMatrix phenotypeMatrix;
+    
+    private transient HaplotypeAssociationTest blockTest = null;
+    
+    private transient String[] sortedStrains = null;
+    
+    private transient boolean[] scannedPhenotypes = null;
+    
+    /**
+     * the strain means by phenotype when we're scanning data sources
+     */
+    private transient double[][] strainMeans = null;
+    
+    /**
+     * the matrix row of each strain when we're scanning a matrix
+     */
+    private transient int[] matrixStrainIndices = null;
+    
+    private transient double[] phenotypeSums = null;
+    
+    private transient double[] phenotypeSumsOfSquares = null;
+    
+    private transient Map<Integer, SoftReference<ChromosomeScan>> chromosomeScans = null;
+    
+    private transient PartitionResultCache<BitSet, double[]> partitionCache = null;
+    
+    /**
+     * Constructor
+     * @param name
+     *          the name of the scan
+     * @param haplotypeDataSource
+     *          the haplotype data that all of the phenotypes are scanned
+     *          against
+     * @param phenotypeDataSources
+     *          the phenotypes to scan
+     */
+    public MultiPhenotypeHaplotypeAssociationScan(
+            String name,
+            HaplotypeDataSource haplotypeDataSource,
+            List<PhenotypeDataSource> phenotypeDataSources)
+    {
+        if(phenotypeDataSources.isEmpty())
+        {
+            throw new IllegalArgumentException(
+                    "a multi-phenotype scan needs at least one phenotype");
+        }
+        
+        this.name = name;
+        this.haplotypeDataSource = haplotypeDataSource;
+        this.phenotypeDataSources = phenotypeDataSources.toArray(
+                new PhenotypeDataSource[phenotypeDataSources.size()]);
+        this.phenotypeMatrix = null;
+    }
+    
+    /**
+     * Constructor for scanning every trait in a phenotype matrix
+     * @param name
+     *          the name of the scan
+     * @param haplotypeDataSource
+     *          the haplotype data that all of the traits are scanned
+     *          against
+     * @param phenotypeMatrix
+     *          the traits to scan
+     */
+    public MultiPhenotypeHaplotypeAssociationScan(
+            String name,
+            HaplotypeDataSource haplotypeDataSource,
+            PhenotypeMatrix phenotypeMatrix)
+    {
+        if(phenotypeMatrix.getTraitCount() == 0)
+        {
+            throw new IllegalArgumentException(
+                    "a multi-phenotype scan needs at least one phenotype");
+        }
+        
+        this.name = name;
+        this.haplotypeDataSource = haplotypeDataSource;
+        this.phenotypeDataSources = null;
+        this.phenotypeMatrix = phenotypeMatrix;
+    }
+    
+    /**
+     * Create a test for each of the phenotypes. The tests can be added to
+     * a project like any other haplotype association test
+     * @return
+     *          the tests in the same order as the phenotypes
+     */
+    public MultiPhenotypeHaplotypeAssociationTest[] createPhenotypeTests()
+    {
+        MultiPhenotypeHaplotypeAssociationTest[] tests =
+            new MultiPhenotypeHaplotypeAssociationTest[this.getPhenotypeCount()];
+        for(int i = 0; i < tests.length; i++)
+        {
+            tests[i] = new MultiPhenotypeHaplotypeAssociationTest(
+                    this.name + ": " + this.getPhenotypeDataSource(i).getName(),
+                    this,
+                    i);
+        }
+        
+        return tests;
+    }
+    
+    /**
+     * Getter for the ID that the scan's phenotype tests find it by
+     * @return
+     *          the scan ID
+     */
+    public String getScanId()
+    {
+        return this.scanId;
+    }
+    
+    /**
+     * Getter for the name of the scan
+     * @return
+     *          the name
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+    
+    /**
+     * Getter for the haplotype data source
+     * @return
+     *          the haplotype data
+     */
+    public HaplotypeDataSource getHaplotypeDataSource()
+    {
+        return this.haplotypeDataSource;
+    }
+    
+    /**
+     * Getter for the phenotype data source at the given index. For a
+     * matrix scan this is a view of the trait's column
+     * @param phenotypeIndex
+     *          the index
+     * @return
+     *          the phenotype data
+     */
+    public PhenotypeDataSource getPhenotypeDataSource(int phenotypeIndex)
+    {
+        if(this.phenotypeMatrix == null)
+        {
+            return this.phenotypeDataSources[phenotypeIndex];
+        }
+        else
+        {
+            return new PhenotypeMatrixTraitDataSource(
+                    this.phenotypeMatrix,
+                    phenotypeIndex);
+        }
+    }
+    
+    /**
+     * Getter for the number of phenotypes in the scan
+     * @return
+     *          the phenotype count
+     */
+    public int getPhenotypeCount()
+    {
+        if(this.phenotypeMatrix == null)
+        {
+            return this.phenotypeDataSources.length;
+        }
+        else
+        {
+            return this.phenotypeMatrix.getTraitCount();
+        }
+    }
+    
+    /**
+     * Determine if the given phenotype is scored with the shared
+     * partitions
+     * @param phenotypeIndex
+     *          the phenotype index
+     * @return
+     *          true if the phenotype has the same common strains as the
+     *          scan
+     */
+    public synchronized boolean isPhenotypeScanned(int phenotypeIndex)
+    {
+        this.initialize();
+        return this.scannedPhenotypes[phenotypeIndex];
+    }
+    
+    /**
+     * Get the block results of a phenotype. The first request for a
+     * chromosome scores every phenotype and the p-values are held onto
+     * for the phenotypes that come after
+     * @param chromosome
+     *          the chromosome
+     * @param phenotypeIndex
+     *          the phenotype. This must be one of the scanned phenotypes
+     * @return
+     *          the block results
+     */
+    public HaplotypeBlockTestResult[] getHaplotypeTestResults(
+            int chromosome,
+            int phenotypeIndex)
+    {
+        if(!this.isPhenotypeScanned(phenotypeIndex))
+        {
+            throw new IllegalArgumentException(
+                    this.getPhenotypeDataSource(phenotypeIndex).getName() +
+                    " doesn't share its strains with the scan");
+        }
+        
+        ChromosomeScan scan = this.getChromosomeScan(chromosome);
+        HaplotypeBlockTestResult[] results =
+            new HaplotypeBlockTestResult[scan.blockPartitions.length];
+        for(int block = 0; block < results.length; block++)
+        {
+            results[block] = new HaplotypeBlockTestResult(
+                    scan.blockPartitions[block],
+                    scan.blockPValues[block][phenotypeIndex]);
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Getter for the cache of partition p-values. Its statistics show how
+     * many partitions were reused rather than scored
+     * @return
+     *          the cache
+     */
+    public synchronized PartitionResultCache<BitSet, double[]> getPartitionResultCache()
+    {
+        this.initialize();
+        return this.partitionCache;
+    }
+    
+    private synchronized ChromosomeScan getChromosomeScan(int chromosome)
+    {
+        this.initialize();
+        SoftReference<ChromosomeScan> scanReference =
+            this.chromosomeScans.get(chromosome);
+        ChromosomeScan scan =
+            scanReference == null ? null : scanReference.get();
+        if(scan == null)
+        {
+            scan = this.scanChromosome(chromosome);
+            this.chromosomeScans.put(
+                    chromosome,
+                    new SoftReference<ChromosomeScan>(scan));
+        }
+        
+        return scan;
+    }
+    
+    private ChromosomeScan scanChromosome(int chromosome)
+    {
+        HaplotypeBlockTestResult[] blockResults =
+            this.blockTest.getHaplotypeTestResults(chromosome);
+        int phenotypeCount = this.getPhenotypeCount();
+        int strainCount = this.sortedStrains.length;
+        
+        ChromosomeScan scan = new ChromosomeScan(blockResults.length);
+        double[] groupSums = new double[phenotypeCount];
+        double[] rowBuffer = new double[phenotypeCount];
+        for(int block = 0; block < blockResults.length; block++)
+        {
+            BinaryStrainPartition partition =
+                (BinaryStrainPartition)blockResults[block].getDelegateInterval();
+            scan.blockPartitions[block] = partition;
+            
+            // neighboring blocks and blocks on other chromosomes often
+            // split the strains the same way
+            BitSet partitionKey = PartitionResultCache.toPartitionKey(
+                    partition.getStrainBitSet(),
+                    strainCount);
+            double[] pValues = this.partitionCache.get(partitionKey);
+            if(pValues == null)
+            {
+                pValues = this.scorePartition(
+                        partitionKey,
+                        groupSums,
+                        rowBuffer);
+                this.partitionCache.put(partitionKey, pValues);
+            }
+            scan.blockPValues[block] = pValues;
+            
+            // the first phenotype's test gave us the blocks so make sure
+            // that it agrees with the F test that we score every
+            // phenotype with
+            if(this.scannedPhenotypes[0])
+            {
+                double discrepancy = HaplotypePermutationTest.getNegLog10PValueDiscrepancy(
+                        pValues[0],
+                        blockResults[block].getPValue());
+                if(!(discrepancy <= HaplotypePermutationTest.MAXIMUM_NEG_LOG10_P_VALUE_DISCREPANCY))
+                {
+                    throw new IllegalStateException(
+                            "the haplotype test of " +
+                            this.getPhenotypeDataSource(0).getName() +
+                            " differs from the strain mean F test by " +
+                            discrepancy + " in -log10(p-value) on chromosome " +
+                            chromosome);
+                }
+            }
+        }
+        
+        return scan;
+    }
+    
+    /**
+     * Score every phenotype against a partition
+     * @param group
+     *          the strains in one of the partition's groups
+     * @param groupSums
+     *          a buffer for the group sums
+     * @param rowBuffer
+     *          a buffer that matrix rows can be read into
+     * @return
+     *          the p-value of every phenotype
+     */
+    private double[] scorePartition(
+            BitSet group,
+            double[] groupSums,
+            double[] rowBuffer)
+    {
+        int phenotypeCount = this.getPhenotypeCount();
+        int strainCount = this.sortedStrains.length;
+        
+        double[] pValues = new double[phenotypeCount];
+        Arrays.fill(pValues, 1.0);
+        int groupSize = group.cardinality();
+        if(groupSize > 0 && groupSize < strainCount)
+        {
+            Arrays.fill(groupSums, 0.0);
+            for(int i = group.nextSetBit(0); i >= 0; i = group.nextSetBit(i + 1))
+            {
+                double[] memberMeans = this.getStrainMeans(i, rowBuffer);
+                for(int p = 0; p < phenotypeCount; p++)
+                {
+                    groupSums[p] += memberMeans[p];
+                }
+            }
+            
+            for(int p = 0; p < phenotypeCount; p++)
+            {
+                if(this.scannedPhenotypes[p])
+                {
+                    double f = HaplotypePermutationTest.calculateF(
+                            groupSums[p],
+                            groupSize,
+                            strainCount,
+                            this.phenotypeSums[p],
+                            this.phenotypeSumsOfSquares[p]);
+                    pValues[p] = DistributionUtil.fDistributionUpperTail(
+                            f,
+                            1.0,
+                            strainCount - 2.0);
+                }
+            }
+        }
+        
+        return pValues;
+    }
+    
+    /**
+     * Get the means of every phenotype for a strain
+     * @param strainIndex
+     *          the strain's index in the sorted strains
+     * @param rowBuffer
+     *          a buffer that matrix rows can be read into
+     * @return
+     *          the means
+     */
+    private double[] getStrainMeans(int strainIndex, double[] rowBuffer)
+    {
+        if(this.phenotypeMatrix == null)
+        {
+            return this.strainMeans[strainIndex];
+        }
+        else
+        {
+            return this.phenotypeMatrix.getStrainValues(
+                    this.matrixStrainIndices[strainIndex],
+                    rowBuffer);
+        }
+    }
+    
+    /**
+     * Work out the shared strains and the phenotype sums. This is done
+     * lazily because none of it is serialized
+     */
+    private void initialize()
+    {
+        if(this.blockTest == null)
+        {
+            // the first phenotype's test gives us the blocks. Its p-values
+            // are only used to check the F test
+            HaplotypeAssociationTest blockTest = new HaplotypeAssociationTest(
+                    this.name,
+                    this.haplotypeDataSource,
+                    this.getPhenotypeDataSource(0));
+            Set<String> commonStrains = blockTest.getCommonStrains();
+            String[] sortedStrains =
+                commonStrains.toArray(new String[commonStrains.size()]);
+            Arrays.sort(sortedStrains);
+            
+            int phenotypeCount = this.getPhenotypeCount();
+            this.scannedPhenotypes = new boolean[phenotypeCount];
+            this.phenotypeSums = new double[phenotypeCount];
+            this.phenotypeSumsOfSquares = new double[phenotypeCount];
+            if(this.phenotypeMatrix == null)
+            {
+                this.initializeStrainMeans(commonStrains, sortedStrains);
+            }
+            else
+            {
+                this.initializeMatrixStrains(commonStrains, sortedStrains);
+            }
+            
+            this.sortedStrains = sortedStrains;
+            this.chromosomeScans =
+                new HashMap<Integer, SoftReference<ChromosomeScan>>();
+            
+            // a scan over thousands of traits has big entries so the cap
+            // is on memory rather than the entry count
+            long entryBytes = 8L * phenotypeCount + 64L;
+            this.partitionCache = new PartitionResultCache<BitSet, double[]>(
+                    this.name + " partition p-values",
+                    (int)Math.min(
+                            PartitionResultCache.getDefaultMaximumEntryCount(),
+                            Math.max(1024L, MAXIMUM_CACHED_P_VALUE_BYTES / entryBytes)));
+            this.blockTest = blockTest;
+        }
+    }
+    
+    private void initializeStrainMeans(
+            Set<String> commonStrains,
+            String[] sortedStrains)
+    {
+        int phenotypeCount = this.phenotypeDataSources.length;
+        Set<String> haplotypeStrains =
+            this.haplotypeDataSource.getAvailableStrains();
+        this.strainMeans = new double[sortedStrains.length][phenotypeCount];
+        for(int p = 0; p < phenotypeCount; p++)
+        {
+            Set<String> phenotypeCommonStrains = new HashSet<String>(
+                    this.phenotypeDataSources[p].getPhenotypeData().keySet());
+            phenotypeCommonStrains.retainAll(haplotypeStrains);
+            if(phenotypeCommonStrains.equals(commonStrains))
+            {
+                this.scannedPhenotypes[p] = true;
+                PhenotypeStatistics statistics = new PhenotypeStatistics(
+                        this.phenotypeDataSources[p],
+                        sortedStrains);
+                for(int i = 0; i < sortedStrains.length; i++)
+                {
+                    this.strainMeans[i][p] = statistics.getMean(i);
+                }
+                this.phenotypeSums[p] =
+                    statistics.getTotalStatistics().getStrainMeanSum();
+                this.phenotypeSumsOfSquares[p] =
+                    statistics.getTotalStatistics().getStrainMeanSumOfSquares();
+            }
+        }
+    }
+    
+    private void initializeMatrixStrains(
+            Set<String> commonStrains,
+            String[] sortedStrains)
+    {
+        this.matrixStrainIndices = new int[sortedStrains.length];
+        for(int i = 0; i < sortedStrains.length; i++)
+        {
+            this.matrixStrainIndices[i] =
+                this.phenotypeMatrix.getStrainIndex(sortedStrains[i]);
+        }
+        
+        // a trait shares the scan's strains if it has values for exactly
+        // the common strains out of the strains with haplotype data. One
+        // pass over the rows checks every trait at once
+        int traitCount = this.phenotypeMatrix.getTraitCount();
+        Arrays.fill(this.scannedPhenotypes, true);
+        Set<String> haplotypeStrains =
+            this.haplotypeDataSource.getAvailableStrains();
+        String[] matrixStrains = this.phenotypeMatrix.getStrains();
+        double[] rowBuffer = new double[traitCount];
+        for(int strainIndex = 0; strainIndex < matrixStrains.length; strainIndex++)
+        {
+            if(haplotypeStrains.contains(matrixStrains[strainIndex]))
+            {
+                boolean common = commonStrains.contains(matrixStrains[strainIndex]);
+                this.phenotypeMatrix.getStrainValues(strainIndex, rowBuffer);
+                for(int p = 0; p < traitCount; p++)
+                {
+                    double value = rowBuffer[p];
+                    if(Double.isNaN(value) == common)
+                    {
+                        this.scannedPhenotypes[p] = false;
+                    }
+                    else if(common)
+                    {
+                        this.phenotypeSums[p] += value;
+                        this.phenotypeSumsOfSquares[p] += value * value;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * The scan of one chromosome. Every block points at its partition's
+     * p-value of each phenotype, which blocks with the same partition
+     * share
+     */
+    private static final class ChromosomeScan
+    {
+        private final BinaryStrainPartition[] blockPartitions;
+        
+        private final double[][] blockPValues;
+        
+        public ChromosomeScan(int blockCount)
+        {
+            this.blockPartitions = new BinaryStrainPartition[blockCount];
+            this.blockPValues = new double[blockCount][];
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import org.jax.bham.project.BhamProject;
+import org.jax.bham.project.BhamProjectManager;
+import org.jax.haplotype.analysis.HaplotypeAssociationTest;
+import org.jax.haplotype.analysis.HaplotypeBlockTestResult;
+
+/**
+ * One phenotype's share of a {@link MultiPhenotypeHaplotypeAssociationScan}.
+ * The block results come from the scan so the blocks are only inferred
+ * once for all of the phenotypes, and since the results are the usual
+ * result types the plots and exports work unchanged. The scan is stored
+ * once in the project rather than with every phenotype's test so the test
+ * only serializes the scan's ID and finds the scan again after a load
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class MultiPhenotypeHaplotypeAssociationTest
+extends HaplotypeAssociationTest
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = -2289114657307761384L;
+    
+    private final String scanId;
+    
+    private transient MultiPhenotypeHaplotypeAssociationScan scan;
+    
+    private final int phenotypeIndex;
+    
+    /**
+     * Constructor
+     * @param name
+     *          the name of the test
+     * @param scan
+     *          the scan that this test belongs to
+     * @param phenotypeIndex
+     *          the index of this test's phenotype in the scan
+     */
+    public MultiPhenotypeHaplotypeAssociationTest(
+            String name,
+            MultiPhenotypeHaplotypeAssociationScan scan,
+            int phenotypeIndex)
+    {
+        super(name,
+              scan.getHaplotypeDataSource(),
+              scan.getPhenotypeDataSource(phenotypeIndex));
+        this.scanId = scan.getScanId();
+        this.scan = scan;
+        this.phenotypeIndex = phenotypeIndex;
+    }
+    
+    /**
+     * Getter for the scan that this test belongs to. After the test is
+     * loaded the scan is looked up in the active project by its ID
+     * @return
+     *          the scan
+     */
+    public synchronized MultiPhenotypeHaplotypeAssociationScan getScan()
+    {
+        if(this.scan == null)
+        {
+            BhamProject project = BhamProjectManager.getInstance().getActiveProject();
+            if(project != null)
+            {
+                this.scan = project.getMultiPhenotypeHaplotypeAssociationScan(
+                        this.scanId);
+            }
+            
+            if(this.scan == null)
+            {
+                throw new IllegalStateException(
+                        "the multi-phenotype scan for " + this.getName() +
+                        " is not in the project");
+            }
+        }
+        
+        return this.scan;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public HaplotypeBlockTestResult[] getHaplotypeTestResults(int chromosome)
+    {
+        MultiPhenotypeHaplotypeAssociationScan scan = this.getScan();
+        if(scan.isPhenotypeScanned(this.phenotypeIndex))
+        {
+            return scan.getHaplotypeTestResults(
+                    chromosome,
+                    this.phenotypeIndex);
+        }
+        else
+        {
+            return super.getHaplotypeTestResults(chromosome);
+        }
+    }
+}
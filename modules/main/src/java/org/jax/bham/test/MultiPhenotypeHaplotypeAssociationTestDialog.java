@@ -0,0 +1,411 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JDialog;
+
+import org.jax.bham.io.PhenotypeMatrix;
+import org.jax.bham.project.BhamProject;
+import org.jax.haplotype.analysis.HaplotypeDataSource;
+import org.jax.haplotype.analysis.PhenotypeDataSource;
+import org.jax.util.datastructure.SequenceUtilities;
+import org.jax.util.gui.MessageDialogUtilities;
+
+/**
+ * This dialog allows the user to specify the parameters for scanning
+ * many phenotypes against one haplotype data source. The scan adds a
+ * haplotype association test to the project for every phenotype. A
+ * phenotype matrix can be selected instead of the phenotype data sources
+ * in which case every trait in the matrix is scanned
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class MultiPhenotypeHaplotypeAssociationTestDialog extends JDialog
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = 7264390812263305717L;
+    
+    private final BhamProject project;
+    
+    /**
+     * Constructor
+     * @param parent
+     *          the parent to use for this dialog
+     * @param project
+     *          the project to create a test for
+     */
+    public MultiPhenotypeHaplotypeAssociationTestDialog(
+            Frame parent,
+            BhamProject project)
+    {
+        super(parent, "Multi-Phenotype Haplotype Association Test", false);
+        
+        this.project = project;
+        
+        this.initComponents();
+        this.postGuiInit();
+    }
+
+    /**
+     * handle the initialization not done by the GUI builder
+     */
+    private void postGuiInit()
+    {
+        for(HaplotypeDataSource hapDataSrc: this.project.getHaplotypeDataSources())
+        {
+            this.haplotypeDataSourceComboBox.addItem(hapDataSrc);
+        }
+        
+        DefaultListModel phenotypeListModel = new DefaultListModel();
+        for(PhenotypeDataSource phenoDataSrc: this.project.getPhenotypeDataSources())
+        {
+            phenotypeListModel.addElement(phenoDataSrc);
+        }
+        for(PhenotypeMatrix phenotypeMatrix: this.project.getPhenotypeMatrices())
+        {
+            phenotypeListModel.addElement(phenotypeMatrix);
+        }
+        this.phenotypeDataSourcesList.setModel(phenotypeListModel);
+        
+        this.okButton.addActionListener(new ActionListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                MultiPhenotypeHaplotypeAssociationTestDialog.this.ok();
+            }
+        });
+        
+        this.cancelButton.addActionListener(new ActionListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                MultiPhenotypeHaplotypeAssociationTestDialog.this.cancel();
+            }
+        });
+        
+        this.helpButton.addActionListener(new ActionListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                MultiPhenotypeHaplotypeAssociationTestDialog.this.showHelp();
+            }
+        });
+    }
+    
+    private void showHelp()
+    {
+        MessageDialogUtilities.inform(
+                this,
+                "Sorry, no help yet..",
+                "Help Not Implemented");
+    }
+    
+    private void cancel()
+    {
+        this.dispose();
+    }
+    
+    /**
+     * Getter for the selected haplotype data source
+     * @return
+     *          the selected haplotype data source
+     */
+    private HaplotypeDataSource getSelectedHaplotypeDataSource()
+    {
+        return (HaplotypeDataSource)this.haplotypeDataSourceComboBox.getSelectedItem();
+    }
+    
+    /**
+     * Getter for the selected phenotype data sources
+     * @return
+     *          the selected phenotype data sources in list order
+     */
+    private List<PhenotypeDataSource> getSelectedPhenotypeDataSources()
+    {
+        Object[] selectedValues = this.phenotypeDataSourcesList.getSelectedValues();
+        List<PhenotypeDataSource> selectedPhenotypeDataSources =
+            new ArrayList<PhenotypeDataSource>(selectedValues.length);
+        for(Object selectedValue: selectedValues)
+        {
+            if(selectedValue instanceof PhenotypeDataSource)
+            {
+                selectedPhenotypeDataSources.add((PhenotypeDataSource)selectedValue);
+            }
+        }
+        
+        return selectedPhenotypeDataSources;
+    }
+    
+    /**
+     * Getter for the selected phenotype matrix
+     * @return
+     *          the first selected phenotype matrix or null if none of
+     *          the selections are matrices
+     */
+    private PhenotypeMatrix getSelectedPhenotypeMatrix()
+    {
+        for(Object selectedValue: this.phenotypeDataSourcesList.getSelectedValues())
+        {
+            if(selectedValue instanceof PhenotypeMatrix)
+            {
+                return (PhenotypeMatrix)selectedValue;
+            }
+        }
+        
+        return null;
+    }
+    
+    private String getSelectedName()
+    {
+        return this.nameTextField.getText().trim();
+    }
+    
+    private void ok()
+    {
+        if(this.validateData())
+        {
+            PhenotypeMatrix phenotypeMatrix = this.getSelectedPhenotypeMatrix();
+            MultiPhenotypeHaplotypeAssociationScan scan;
+            if(phenotypeMatrix == null)
+            {
+                scan = new MultiPhenotypeHaplotypeAssociationScan(
+                        this.getSelectedName(),
+                        this.getSelectedHaplotypeDataSource(),
+                        this.getSelectedPhenotypeDataSources());
+            }
+            else
+            {
+                scan = new MultiPhenotypeHaplotypeAssociationScan(
+                        this.getSelectedName(),
+                        this.getSelectedHaplotypeDataSource(),
+                        phenotypeMatrix);
+            }
+            this.project.addMultiPhenotypeHaplotypeAssociationScan(scan);
+            for(MultiPhenotypeHaplotypeAssociationTest test: scan.createPhenotypeTests())
+            {
+                this.project.addHaplotypeAssociationTest(test);
+            }
+            
+            this.dispose();
+        }
+    }
+    
+    private boolean validateData()
+    {
+        String errorMessage = null;
+        if(this.getSelectedName().length() == 0)
+        {
+            errorMessage =
+                "Please enter a name for the test before continuing";
+        }
+        else if(this.getSelectedHaplotypeDataSource() == null)
+        {
+            errorMessage =
+                "You cannot perform a haplotype association test without " +
+                "any haplotype data sources.";
+        }
+        else if(this.phenotypeDataSourcesList.isSelectionEmpty())
+        {
+            errorMessage =
+                "Please select at least one phenotype data source before " +
+                "continuing";
+        }
+        else if(this.getSelectedPhenotypeMatrix() != null &&
+                this.phenotypeDataSourcesList.getSelectedValues().length > 1)
+        {
+            errorMessage =
+                "A phenotype matrix must be selected on its own. Please " +
+                "deselect the other phenotype data before continuing";
+        }
+        
+        if(errorMessage == null && this.getSelectedPhenotypeMatrix() != null)
+        {
+            // traits that are missing strains are tested separately by
+            // the matrix scan so there's nothing more to check here
+            return true;
+        }
+        else if(errorMessage == null)
+        {
+            // the phenotypes can only share block partitions if they have
+            // the same strains in common with the haplotype data
+            Set<String> haploStrains = this.getSelectedHaplotypeDataSource().getAvailableStrains();
+            List<PhenotypeDataSource> phenotypeDataSources =
+                this.getSelectedPhenotypeDataSources();
+            Set<String> scanStrains = null;
+            List<String> unsharedPhenotypes = new ArrayList<String>();
+            for(PhenotypeDataSource phenotypeDataSource: phenotypeDataSources)
+            {
+                Set<String> commonStrains = new HashSet<String>(haploStrains);
+                commonStrains.retainAll(phenotypeDataSource.getPhenotypeData().keySet());
+                if(scanStrains == null)
+                {
+                    scanStrains = commonStrains;
+                }
+                else if(!scanStrains.equals(commonStrains))
+                {
+                    unsharedPhenotypes.add(phenotypeDataSource.getName());
+                }
+            }
+            
+            if(unsharedPhenotypes.isEmpty())
+            {
+                return true;
+            }
+            else
+            {
+                boolean performTest = MessageDialogUtilities.ask(
+                        this,
+                        "[" + SequenceUtilities.toString(unsharedPhenotypes, ", ") +
+                        "] do not have the same strains in common with the " +
+                        "haplotype data as " + phenotypeDataSources.get(0).getName() +
+                        " and will be tested separately, which is slower. " +
+                        "Would you like to continue?",
+                        "Strains Do Not Match");
+                return performTest;
+            }
+        }
+        else
+        {
+            MessageDialogUtilities.warn(
+                    this,
+                    errorMessage,
+                    "Validation Failed");
+            return false;
+        }
+    }
+    
+    /**
+     * This method is called from within the constructor to
+     * initialize the form.
+     * WARNING: Do NOT modify this code. The content of this method is
+     * always regenerated by the Form Editor.
+     */
+    @SuppressWarnings("all")
+    // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
+    private void initComponents() {
+
+        javax.swing.JLabel nameLabel = new javax.swing.JLabel();
+        nameTextField = new javax.swing.JTextField();
+        javax.swing.JLabel haplotypeDataSourceLabel = new javax.swing.JLabel();
+        haplotypeDataSourceComboBox = new javax.swing.JComboBox();
+        javax.swing.JLabel phenotypeDataSourcesLabel = new javax.swing.JLabel();
+        javax.swing.JScrollPane phenotypeDataSourcesScrollPane = new javax.swing.JScrollPane();
+        phenotypeDataSourcesList = new javax.swing.JList();
+        javax.swing.JPanel actionPanel = new javax.swing.JPanel();
+        okButton = new javax.swing.JButton();
+        cancelButton = new javax.swing.JButton();
+        helpButton = new javax.swing.JButton();
+
+        setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
+
+        nameLabel.setText("Test Name:");
+
+        haplotypeDataSourceLabel.setText("Haplotype Data:");
+
+        phenotypeDataSourcesLabel.setText("Phenotype Data (select one or more):");
+
+        phenotypeDataSourcesScrollPane.setViewportView(phenotypeDataSourcesList);
+
+        okButton.setText("OK");
+        actionPanel.add(okButton);
+
+        cancelButton.setText("Cancel");
+        actionPanel.add(cancelButton);
+
+        helpButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/images/help-16x16.png"))); // NOI18N
+        helpButton.setText("Help...");
+        actionPanel.add(helpButton);
+
+        org.jdesktop.layout.GroupLayout layout = new org.jdesktop.layout.GroupLayout(getContentPane());
+        getContentPane().setLayout(layout);
+        layout.setHorizontalGroup(
+            layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+            .add(org.jdesktop.layout.GroupLayout.TRAILING, actionPanel, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 362, Short.MAX_VALUE)
+            .add(layout.createSequentialGroup()
+                .addContainerGap()
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+                    .add(nameLabel)
+                    .add(haplotypeDataSourceLabel))
+                .add(19, 19, 19)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+                    .add(layout.createSequentialGroup()
+                        .add(nameTextField, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 194, Short.MAX_VALUE)
+                        .add(27, 27, 27))
+                    .add(layout.createSequentialGroup()
+                        .add(haplotypeDataSourceComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
+                        .addContainerGap())))
+            .add(layout.createSequentialGroup()
+                .addContainerGap()
+                .add(phenotypeDataSourcesLabel)
+                .addContainerGap(org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
+            .add(layout.createSequentialGroup()
+                .addContainerGap()
+                .add(phenotypeDataSourcesScrollPane, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 338, Short.MAX_VALUE)
+                .addContainerGap())
+        );
+        layout.setVerticalGroup(
+            layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+            .add(layout.createSequentialGroup()
+                .addContainerGap()
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(nameLabel)
+                    .add(nameTextField, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(haplotypeDataSourceLabel)
+                    .add(haplotypeDataSourceComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(phenotypeDataSourcesLabel)
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(phenotypeDataSourcesScrollPane, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 130, Short.MAX_VALUE)
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(actionPanel, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+        );
+
+        pack();
+    }// </editor-fold>//GEN-END:initComponents
+
+    // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton cancelButton;
+    private javax.swing.JComboBox haplotypeDataSourceComboBox;
+    private javax.swing.JButton helpButton;
+    private javax.swing.JTextField nameTextField;
+    private javax.swing.JButton okButton;
+    private javax.swing.JList phenotypeDataSourcesList;
+    // End of variables declaration//GEN-END:variables
+
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * A bounded in-memory cache of test results keyed on strain partitions.
+ * Haplotype blocks all over the genome split the strains the same way, so
+ * a result that's calculated for one block can be reused by every other
+ * block (on any chromosome) that has the same partition. When the cache
+ * is full the least recently used entries are dropped. Hits and misses
+ * are counted so that we can see how much work the cache is saving.
+ * All of the methods are thread safe
+ * @param <K>
+ *          the partition key type. Keys need to be canonical, meaning
+ *          that two keys for the same partition must be equal
+ *          (see {@link #toPartitionKey(BitSet, int)})
+ * @param <V>
+ *          the result type
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class PartitionResultCache<K, V>
+{
+    private static final Logger LOG = Logger.getLogger(
+            PartitionResultCache.class.getName());
+    
+    /**
+     * The system property used to override the default entry cap
+     */
+    public static final String MAXIMUM_ENTRY_COUNT_PROPERTY =
+        "bham.partitionCacheEntries";
+    
+    private static final int DEFAULT_MAXIMUM_ENTRY_COUNT = 100000;
+    
+    private final String name;
+    
+    private final int maximumEntryCount;
+    
+    private final LinkedHashMap<K, V> entries;
+    
+    private long hitCount = 0L;
+    
+    private long missCount = 0L;
+    
+    private long evictionCount = 0L;
+    
+    /**
+     * Constructor
+     * @param name
+     *          the name of the cache, which is used in the statistics
+     * @param maximumEntryCount
+     *          the most entries that we'll hold
+     */
+    public PartitionResultCache(String name, int maximumEntryCount)
+    {
+        this.name = name;
+        this.maximumEntryCount = Math.max(1, maximumEntryCount);
+        
+        // access ordering is what makes the eviction LRU
+        this.entries = new LinkedHashMap<K, V>(16, 0.75F, true)
+        {
+            /**
+             * every {@link java.io.Serializable} is supposed to have one of these
+             */
+            private static final long serialVersionUID = -3175529542968741125L;
+            
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+            {
+                if(this.size() > PartitionResultCache.this.maximumEntryCount)
+                {
+                    PartitionResultCache.this.evictionCount++;
+                    return true;
+                }
+                else
+                {
+                    return false;
+                }
+            }
+        };
+    }
+    
+    /**
+     * Get the default entry cap, which can be changed with the
+     * {@value #MAXIMUM_ENTRY_COUNT_PROPERTY} system property
+     * @return
+     *          the default cap
+     */
+    public static int getDefaultMaximumEntryCount()
+    {
+        String maximumEntryCountString = System.getProperty(
+                MAXIMUM_ENTRY_COUNT_PROPERTY);
+        if(maximumEntryCountString != null)
+        {
+            try
+            {
+                return Integer.parseInt(maximumEntryCountString.trim());
+            }
+            catch(NumberFormatException ex)
+            {
+                LOG.warning(
+                        "ignoring bad " + MAXIMUM_ENTRY_COUNT_PROPERTY +
+                        " value: " + maximumEntryCountString);
+            }
+        }
+        
+        return DEFAULT_MAXIMUM_ENTRY_COUNT;
+    }
+    
+    /**
+     * Get the canonical key of a two group partition. A partition and its
+     * complement are the same split of the strains, so the key is always
+     * the side holding the first strain
+     * @param strainBitSet
+     *          the strains in one of the groups
+     * @param strainCount
+     *          the number of strains being split
+     * @return
+     *          the key. This is a new bit set so the caller is free to
+     *          change the one that's passed in
+     */
+    public static BitSet toPartitionKey(BitSet strainBitSet, int strainCount)
+    {
+        BitSet partitionKey = strainBitSet.get(0, strainCount);
+        if(!partitionKey.get(0))
+        {
+            partitionKey.flip(0, strainCount);
+        }
+        
+        return partitionKey;
+    }
+    
+    /**
+     * Get the cached result of a partition
+     * @param partitionKey
+     *          the partition's key
+     * @return
+     *          the result or null if it isn't cached
+     */
+    public synchronized V get(K partitionKey)
+    {
+        V result = this.entries.get(partitionKey);
+        if(result == null)
+        {
+            this.missCount++;
+        }
+        else
+        {
+            this.hitCount++;
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Cache the result of a partition
+     * @param partitionKey
+     *          the partition's key
+     * @param result
+     *          the result
+     */
+    public synchronized void put(K partitionKey, V result)
+    {
+        this.entries.put(partitionKey, result);
+    }
+    
+    /**
+     * Getter for the name of this cache
+     * @return
+     *          the name
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+    
+    /**
+     * Getter for the number of entries in the cache
+     * @return
+     *          the entry count
+     */
+    public synchronized int getEntryCount()
+    {
+        return this.entries.size();
+    }
+    
+    /**
+     * Getter for the number of lookups that found a result
+     * @return
+     *          the hit count
+     */
+    public synchronized long getHitCount()
+    {
+        return this.hitCount;
+    }
+    
+    /**
+     * Getter for the number of lookups that came up empty
+     * @return
+     *          the miss count
+     */
+    public synchronized long getMissCount()
+    {
+        return this.missCount;
+    }
+    
+    /**
+     * Getter for the number of entries dropped to stay under the cap
+     * @return
+     *          the eviction count
+     */
+    public synchronized long getEvictionCount()
+    {
+        return this.evictionCount;
+    }
+    
+    /**
+     * Get the fraction of lookups that were hits. Each hit is a partition
+     * that didn't have to be tested again
+     * @return
+     *          the hit rate or 0 if there haven't been any lookups
+     */
+    public synchronized double getHitRate()
+    {
+        long lookupCount = this.hitCount + this.missCount;
+        return lookupCount == 0L ? 0.0 : this.hitCount / (double)lookupCount;
+    }
+    
+    /**
+     * Drop all of the entries. The statistics are kept
+     */
+    public synchronized void clear()
+    {
+        this.entries.clear();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString()
+    {
+        return
+            this.name + ": " + this.hitCount + " hits, " +
+            this.missCount + " misses (" +
+            Math.round(100.0 * this.getHitRate()) + "% hit rate), " +
+            this.entries.size() + " entries, " +
+            this.evictionCount + " evictions";
+    }
+}
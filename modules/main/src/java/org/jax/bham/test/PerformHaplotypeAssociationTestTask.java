@@ -24,6 +24,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.jax.bham.BhamApplication;
+import org.jax.bham.project.BhamProjectManager;
 import org.jax.haplotype.analysis.HaplotypeAssociationTest;
 import org.jax.haplotype.analysis.HaplotypeBlockTestResult;
 import org.jax.util.concurrent.AbstractLongRunningTask;
@@ -48,6 +49,8 @@ implements Enumeration<HaplotypeBlockTestResult[]>
     
     private final List<Integer> chromosomeNumbers;
     
+    private final int checkpointedChromosomeCount;
+    
     private volatile int chromosomeIndex = 0;
 
     /**
@@ -62,7 +65,21 @@ implements Enumeration<HaplotypeBlockTestResult[]>
             List<Integer> chromosomeNumbers)
     {
         this.test = test;
-        this.chromosomeNumbers = chromosomeNumbers;
+        
+        // chromosomes that a previous run already checkpointed in the
+        // project go first so that resuming skips straight past them
+        this.chromosomeNumbers = StoredTestResultsUtil.checkpointedChromosomesFirst(
+                test,
+                chromosomeNumbers);
+        int checkpointedCount = 0;
+        while(checkpointedCount < this.chromosomeNumbers.size() &&
+              StoredTestResultsUtil.isChromosomeCheckpointed(
+                      test,
+                      this.chromosomeNumbers.get(checkpointedCount)))
+        {
+            checkpointedCount++;
+        }
+        this.checkpointedChromosomeCount = checkpointedCount;
     }
     
     /**
@@ -91,8 +108,18 @@ implements Enumeration<HaplotypeBlockTestResult[]>
         HaplotypeBlockTestResult[] testResults = null;
         try
         {
-            testResults = this.test.getHaplotypeTestResults(
-                    this.getNextChromosome());
+            int chromosome = this.getNextChromosome();
+            boolean checkpointed = StoredTestResultsUtil.isChromosomeCheckpointed(
+                    this.test,
+                    chromosome);
+            testResults = StoredTestResultsUtil.getHaplotypeTestResults(
+                    this.test,
+                    chromosome);
+            if(!checkpointed)
+            {
+                // get the new results onto disk in case we don't finish
+                BhamProjectManager.getInstance().checkpointActiveProject();
+            }
             Arrays.sort(testResults);
         }
         catch(Exception ex)
@@ -111,11 +138,39 @@ implements Enumeration<HaplotypeBlockTestResult[]>
         {
             this.chromosomeIndex++;
             this.fireChangeEvent();
+            
+            if(this.isComplete())
+            {
+                this.logPartitionCacheStatistics();
+            }
         }
         
         return testResults;
     }
     
+    /**
+     * Log how much work the test's partition cache saved, if it has one
+     */
+    private void logPartitionCacheStatistics()
+    {
+        PartitionResultCache<?, ?> partitionCache = null;
+        if(this.test instanceof MultiPhenotypeHaplotypeAssociationTest)
+        {
+            MultiPhenotypeHaplotypeAssociationTest multiPhenotypeTest =
+                (MultiPhenotypeHaplotypeAssociationTest)this.test;
+            partitionCache = multiPhenotypeTest.getScan().getPartitionResultCache();
+        }
+        else if(this.test instanceof AdaptivePermutationHaplotypeAssociationTest)
+        {
+            partitionCache = AdaptivePermutationTest.getEmpiricalPValueCache();
+        }
+        
+        if(partitionCache != null)
+        {
+            LOG.info(this.test.getName() + " done. " + partitionCache);
+        }
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -123,9 +178,13 @@ implements Enumeration<HaplotypeBlockTestResult[]>
     {
         if(!this.isComplete())
         {
+            String resumeNote =
+                this.chromosomeIndex < this.checkpointedChromosomeCount ?
+                ", from checkpoint" :
+                "";
             return
                 this.test.getName() + " (Chr " +
-                this.getNextChromosome() + ")";
+                this.getNextChromosome() + resumeNote + ")";
         }
         else
         {
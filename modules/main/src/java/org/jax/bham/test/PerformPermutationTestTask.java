@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jax.bham.BhamApplication;
+import org.jax.haplotype.analysis.HaplotypeAssociationTest;
+import org.jax.util.concurrent.AbstractLongRunningTask;
+import org.jax.util.gui.MessageDialogUtilities;
+
+/**
+ * A long running task that runs a {@link HaplotypePermutationTest} over
+ * a whole scan. The block partitions of every chromosome are gathered
+ * first and then the permutations are run in batches on all of the
+ * available processors
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class PerformPermutationTestTask
+extends AbstractLongRunningTask
+implements Runnable
+{
+    private static final Logger LOG = Logger.getLogger(
+            PerformPermutationTestTask.class.getName());
+    
+    /**
+     * the number of permutations that are scored in one pass over the
+     * partitions
+     */
+    private static final int PERMUTATIONS_PER_BATCH = 64;
+    
+    private final HaplotypeAssociationTest test;
+    
+    private final List<Integer> chromosomeNumbers;
+    
+    private final int permutationCount;
+    
+    private final long seed;
+    
+    private volatile int workUnitsCompleted = 0;
+    
+    private volatile double[] maximumNegLog10PValues = null;
+    
+    /**
+     * Constructor
+     * @param test
+     *          the test whose blocks we're permuting
+     * @param chromosomeNumbers
+     *          the chromosomes that make up the genome
+     * @param permutationCount
+     *          the number of permutations to run
+     * @param seed
+     *          the random seed. The same seed always gives the same
+     *          permutations no matter how many threads there are
+     */
+    public PerformPermutationTestTask(
+            HaplotypeAssociationTest test,
+            List<Integer> chromosomeNumbers,
+            int permutationCount,
+            long seed)
+    {
+        this.test = test;
+        this.chromosomeNumbers = chromosomeNumbers;
+        this.permutationCount = permutationCount;
+        this.seed = seed;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void run()
+    {
+        ExecutorService executor = null;
+        try
+        {
+            final HaplotypePermutationTest permutationTest =
+                HaplotypePermutationTest.createPermutationTest(this.test);
+            for(int chromosome: this.chromosomeNumbers)
+            {
+                permutationTest.addPartitions(
+                        StoredTestResultsUtil.getHaplotypeTestResults(
+                                this.test,
+                                chromosome));
+                this.workUnitsCompleted++;
+                this.fireChangeEvent();
+            }
+            
+            double discrepancy =
+                permutationTest.getMaximumNegLog10PValueDiscrepancy();
+            if(!(discrepancy <= HaplotypePermutationTest.MAXIMUM_NEG_LOG10_P_VALUE_DISCREPANCY))
+            {
+                throw new IllegalStateException(
+                        "The p-values of " + this.test.getName() + " differ " +
+                        "from a strain mean F test by up to " + discrepancy +
+                        " in -log10(p-value) so permutation thresholds " +
+                        "calculated from the F test would not apply to them.");
+            }
+            
+            executor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactory()
+                    {
+                        /**
+                         * {@inheritDoc}
+                         */
+                        public Thread newThread(Runnable r)
+                        {
+                            Thread thread = new Thread(r, "permutation-test");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            
+            final int strainCount = permutationTest.getSortedStrains().length;
+            List<Future<double[]>> batchFutures = new ArrayList<Future<double[]>>();
+            for(int batchStart = 0;
+                batchStart < this.permutationCount;
+                batchStart += PERMUTATIONS_PER_BATCH)
+            {
+                final int batchSize = Math.min(
+                        PERMUTATIONS_PER_BATCH,
+                        this.permutationCount - batchStart);
+                final Random random = new Random(this.seed + batchStart);
+                batchFutures.add(executor.submit(new Callable<double[]>()
+                {
+                    /**
+                     * {@inheritDoc}
+                     */
+                    public double[] call()
+                    {
+                        int[][] permutations = new int[batchSize][];
+                        for(int p = 0; p < batchSize; p++)
+                        {
+                            permutations[p] = randomPermutation(strainCount, random);
+                        }
+                        
+                        double[] batchMaximums =
+                            permutationTest.calculateMaximumNegLog10PValues(
+                                    permutations);
+                        PerformPermutationTestTask.this.batchCompleted();
+                        return batchMaximums;
+                    }
+                }));
+            }
+            
+            double[] maximumNegLog10PValues = new double[this.permutationCount];
+            int permutationIndex = 0;
+            for(Future<double[]> batchFuture: batchFutures)
+            {
+                double[] batchMaximums = batchFuture.get();
+                System.arraycopy(
+                        batchMaximums,
+                        0,
+                        maximumNegLog10PValues,
+                        permutationIndex,
+                        batchMaximums.length);
+                permutationIndex += batchMaximums.length;
+            }
+            this.maximumNegLog10PValues = maximumNegLog10PValues;
+        }
+        catch(Exception ex)
+        {
+            String title = "Error Running Permutation Test";
+            LOG.log(Level.SEVERE,
+                    title,
+                    ex);
+            MessageDialogUtilities.errorLater(
+                    BhamApplication.getInstance().getBhamFrame(),
+                    ex.getMessage(),
+                    title);
+        }
+        finally
+        {
+            if(executor != null)
+            {
+                executor.shutdownNow();
+            }
+            
+            this.workUnitsCompleted = this.getTotalWorkUnits();
+            this.fireChangeEvent();
+        }
+    }
+    
+    private synchronized void batchCompleted()
+    {
+        this.workUnitsCompleted++;
+        this.fireChangeEvent();
+    }
+    
+    private static int[] randomPermutation(int size, Random random)
+    {
+        int[] permutation = new int[size];
+        for(int i = 0; i < size; i++)
+        {
+            permutation[i] = i;
+        }
+        for(int i = size - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+            int temp = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = temp;
+        }
+        
+        return permutation;
+    }
+    
+    /**
+     * Getter for the maximum -log10(p-value) of each permutation
+     * @see HaplotypePermutationTest#getSignificanceThreshold(double[], double)
+     * @return
+     *          the maximums or null if the task isn't done or it failed
+     */
+    public double[] getMaximumNegLog10PValues()
+    {
+        return this.maximumNegLog10PValues;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String getTaskName()
+    {
+        return "Permuting " + this.test.getName() +
+               " (" + this.permutationCount + " permutations)";
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getTotalWorkUnits()
+    {
+        int batchCount =
+            (this.permutationCount + PERMUTATIONS_PER_BATCH - 1) /
+            PERMUTATIONS_PER_BATCH;
+        return this.chromosomeNumbers.size() + batchCount;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getWorkUnitsCompleted()
+    {
+        return this.workUnitsCompleted;
+    }
+}
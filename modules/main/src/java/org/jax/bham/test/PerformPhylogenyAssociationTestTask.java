@@ -23,6 +23,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.jax.bham.BhamApplication;
+import org.jax.bham.project.BhamProjectManager;
 import org.jax.haplotype.analysis.PhylogenyAssociationTest;
 import org.jax.haplotype.phylogeny.data.PhylogenyTestResult;
 import org.jax.util.concurrent.AbstractLongRunningTask;
@@ -41,6 +42,8 @@ implements Enumeration<List<PhylogenyTestResult>>
     
     private final PhylogenyAssociationTest test;
     
+    private final int checkpointedChromosomeCount;
+    
     private volatile int chromosomeIndex = 0;
 
     private final List<Integer> chromosomeNumbers;
@@ -57,7 +60,21 @@ implements Enumeration<List<PhylogenyTestResult>>
             List<Integer> chromosomeNumbers)
     {
         this.test = test;
-        this.chromosomeNumbers = chromosomeNumbers;
+        
+        // chromosomes that a previous run already checkpointed in the
+        // project go first so that resuming skips straight past them
+        this.chromosomeNumbers = StoredTestResultsUtil.checkpointedChromosomesFirst(
+                test,
+                chromosomeNumbers);
+        int checkpointedCount = 0;
+        while(checkpointedCount < this.chromosomeNumbers.size() &&
+              StoredTestResultsUtil.isChromosomeCheckpointed(
+                      test,
+                      this.chromosomeNumbers.get(checkpointedCount)))
+        {
+            checkpointedCount++;
+        }
+        this.checkpointedChromosomeCount = checkpointedCount;
     }
     
     /**
@@ -86,8 +103,18 @@ implements Enumeration<List<PhylogenyTestResult>>
         List<PhylogenyTestResult> testResults = null;
         try
         {
-            testResults = this.test.getTestResults(
-                    this.getNextChromosome());
+            int chromosome = this.getNextChromosome();
+            boolean checkpointed = StoredTestResultsUtil.isChromosomeCheckpointed(
+                    this.test,
+                    chromosome);
+            testResults = StoredTestResultsUtil.getPhylogenyTestResults(
+                    this.test,
+                    chromosome);
+            if(!checkpointed)
+            {
+                // get the new results onto disk in case we don't finish
+                BhamProjectManager.getInstance().checkpointActiveProject();
+            }
         }
         catch(Exception ex)
         {
@@ -117,9 +144,13 @@ implements Enumeration<List<PhylogenyTestResult>>
     {
         if(!this.isComplete())
         {
+            String resumeNote =
+                this.chromosomeIndex < this.checkpointedChromosomeCount ?
+                ", from checkpoint" :
+                "";
             return
                 this.test.getName() + " (Chr " +
-                this.getNextChromosome() + ")";
+                this.getNextChromosome() + resumeNote + ")";
         }
         else
         {
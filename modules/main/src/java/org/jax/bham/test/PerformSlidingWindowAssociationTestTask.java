@@ -24,6 +24,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.jax.bham.BhamApplication;
+import org.jax.bham.project.BhamProjectManager;
 import org.jax.haplotype.analysis.MultiHaplotypeBlockTest;
 import org.jax.haplotype.analysis.MultiHaplotypeBlockTestResult;
 import org.jax.util.concurrent.AbstractLongRunningTask;
@@ -48,6 +49,8 @@ implements Enumeration<MultiHaplotypeBlockTestResult[]>
     
     private final List<Integer> chromosomeNumbers;
     
+    private final int checkpointedChromosomeCount;
+    
     private volatile int chromosomeIndex = 0;
     
     /**
@@ -62,7 +65,21 @@ implements Enumeration<MultiHaplotypeBlockTestResult[]>
             List<Integer> chromosomeNumbers)
     {
         this.test = test;
-        this.chromosomeNumbers = chromosomeNumbers;
+        
+        // chromosomes that a previous run already checkpointed in the
+        // project go first so that resuming skips straight past them
+        this.chromosomeNumbers = StoredTestResultsUtil.checkpointedChromosomesFirst(
+                test,
+                chromosomeNumbers);
+        int checkpointedCount = 0;
+        while(checkpointedCount < this.chromosomeNumbers.size() &&
+              StoredTestResultsUtil.isChromosomeCheckpointed(
+                      test,
+                      this.chromosomeNumbers.get(checkpointedCount)))
+        {
+            checkpointedCount++;
+        }
+        this.checkpointedChromosomeCount = checkpointedCount;
     }
     
     /**
@@ -91,7 +108,18 @@ implements Enumeration<MultiHaplotypeBlockTestResult[]>
         MultiHaplotypeBlockTestResult[] testResults = null;
         try
         {
-            testResults = this.test.getTestResults(this.getNextChromosome());
+            int chromosome = this.getNextChromosome();
+            boolean checkpointed = StoredTestResultsUtil.isChromosomeCheckpointed(
+                    this.test,
+                    chromosome);
+            testResults = StoredTestResultsUtil.getMultiHaplotypeBlockTestResults(
+                    this.test,
+                    chromosome);
+            if(!checkpointed)
+            {
+                // get the new results onto disk in case we don't finish
+                BhamProjectManager.getInstance().checkpointActiveProject();
+            }
             
             Arrays.sort(testResults);
         }
@@ -123,9 +151,13 @@ implements Enumeration<MultiHaplotypeBlockTestResult[]>
     {
         if(!this.isComplete())
         {
+            String resumeNote =
+                this.chromosomeIndex < this.checkpointedChromosomeCount ?
+                ", from checkpoint" :
+                "";
             return
                 this.test.getName() + " (Chr " +
-                this.getNextChromosome() + ")";
+                this.getNextChromosome() + resumeNote + ")";
         }
         else
         {
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jax.bham.BhamApplication;
+import org.jax.util.concurrent.AbstractLongRunningTask;
+import org.jax.util.gui.MessageDialogUtilities;
+
+/**
+ * A long running task that runs a {@link SlidingWindowStrainMeanScan} over
+ * every chromosome of its genome. Chromosomes are scanned in parallel on
+ * all of the available processors and results that are already stored in
+ * the project are reused
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class PerformSlidingWindowStrainMeanScanTask
+extends AbstractLongRunningTask
+implements Runnable
+{
+    private static final Logger LOG = Logger.getLogger(
+            PerformSlidingWindowStrainMeanScanTask.class.getName());
+    
+    private final SlidingWindowStrainMeanScan scan;
+    
+    private final List<Integer> chromosomeNumbers;
+    
+    private volatile int workUnitsCompleted = 0;
+    
+    private volatile Map<Integer, SnpBinMaximumTrack[]> chromosomeNegLog10PValues = null;
+    
+    /**
+     * Constructor
+     * @param scan
+     *          the scan to run
+     */
+    public PerformSlidingWindowStrainMeanScanTask(SlidingWindowStrainMeanScan scan)
+    {
+        this.scan = scan;
+        this.chromosomeNumbers = new ArrayList<Integer>(
+                scan.getGenomeDataSource().getChromosomeDataSources().keySet());
+        Collections.sort(this.chromosomeNumbers);
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void run()
+    {
+        ExecutorService executor = null;
+        try
+        {
+            executor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    new ThreadFactory()
+                    {
+                        /**
+                         * {@inheritDoc}
+                         */
+                        public Thread newThread(Runnable r)
+                        {
+                            Thread thread = new Thread(r, "sliding-window-scan");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            
+            Map<Integer, Future<SnpBinMaximumTrack[]>> chromosomeFutures =
+                new TreeMap<Integer, Future<SnpBinMaximumTrack[]>>();
+            for(final int chromosome: this.chromosomeNumbers)
+            {
+                chromosomeFutures.put(chromosome, executor.submit(new Callable<SnpBinMaximumTrack[]>()
+                {
+                    /**
+                     * {@inheritDoc}
+                     */
+                    public SnpBinMaximumTrack[] call() throws Exception
+                    {
+                        SnpBinMaximumTrack[] negLog10PValues =
+                            StoredTestResultsUtil.getSlidingWindowStrainMeanScanResults(
+                                    PerformSlidingWindowStrainMeanScanTask.this.scan,
+                                    chromosome);
+                        PerformSlidingWindowStrainMeanScanTask.this.chromosomeCompleted();
+                        return negLog10PValues;
+                    }
+                }));
+            }
+            
+            Map<Integer, SnpBinMaximumTrack[]> chromosomeNegLog10PValues =
+                new TreeMap<Integer, SnpBinMaximumTrack[]>();
+            for(Map.Entry<Integer, Future<SnpBinMaximumTrack[]>> chromosomeEntry:
+                chromosomeFutures.entrySet())
+            {
+                chromosomeNegLog10PValues.put(
+                        chromosomeEntry.getKey(),
+                        chromosomeEntry.getValue().get());
+            }
+            this.chromosomeNegLog10PValues = chromosomeNegLog10PValues;
+        }
+        catch(Exception ex)
+        {
+            String title = "Error Running Sliding Window Scan";
+            LOG.log(Level.SEVERE,
+                    title,
+                    ex);
+            MessageDialogUtilities.errorLater(
+                    BhamApplication.getInstance().getBhamFrame(),
+                    ex.getMessage(),
+                    title);
+        }
+        finally
+        {
+            if(executor != null)
+            {
+                executor.shutdownNow();
+            }
+            
+            this.workUnitsCompleted = this.getTotalWorkUnits();
+            this.fireChangeEvent();
+        }
+    }
+    
+    private synchronized void chromosomeCompleted()
+    {
+        this.workUnitsCompleted++;
+        this.fireChangeEvent();
+    }
+    
+    /**
+     * Getter for the scan that this task runs
+     * @return
+     *          the scan
+     */
+    public SlidingWindowStrainMeanScan getScan()
+    {
+        return this.scan;
+    }
+    
+    /**
+     * Getter for the results of the scan
+     * @see SlidingWindowStrainMeanScan#scanChromosome(int)
+     * @return
+     *          the binned -log10(p-values) of each scale keyed on chromosome
+     *          number or null if the task isn't done or it failed
+     */
+    public Map<Integer, SnpBinMaximumTrack[]> getChromosomeNegLog10PValues()
+    {
+        return this.chromosomeNegLog10PValues;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String getTaskName()
+    {
+        return "Running " + this.scan.getName();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getTotalWorkUnits()
+    {
+        return this.chromosomeNumbers.size();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public int getWorkUnitsCompleted()
+    {
+        return this.workUnitsCompleted;
+    }
+}
@@ -22,7 +22,6 @@ import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -59,6 +58,8 @@ public class PhenotypeEffectPlotPanel extends JPanel
 
     private final Map<String, List<Double>> phenotypeData;
     
+    private final PhenotypeStatistics phenotypeStatistics;
+    
     private final Map<String, ? extends Collection<String>> strainGroups;
 
     /**
@@ -80,6 +81,10 @@ public class PhenotypeEffectPlotPanel extends JPanel
                 false);
         this.phenotypeDataSource = phenotypeDataSource;
         this.phenotypeData = phenotypeDataSource.getPhenotypeData();
+        this.phenotypeStatistics = new PhenotypeStatistics(
+                this.phenotypeData,
+                this.phenotypeData.keySet().toArray(
+                        new String[this.phenotypeData.size()]));
         this.strainGroups = strainGroups;
         
         this.updateChart();
@@ -138,30 +143,21 @@ public class PhenotypeEffectPlotPanel extends JPanel
         }
         else
         {
-            Map<String, Double> meanPhenoData = new HashMap<String, Double>(
-                    this.phenotypeData.size());
-            for(Entry<String, List<Double>> phenoEntry: this.phenotypeData.entrySet())
-            {
-                if(!phenoEntry.getValue().isEmpty())
-                {
-                    double sum = 0.0;
-                    for(double value: phenoEntry.getValue())
-                    {
-                        sum += value;
-                    }
-                    double mean = sum / phenoEntry.getValue().size();
-                    
-                    meanPhenoData.put(phenoEntry.getKey(), mean);
-                }
-            }
-            
             for(Entry<String, ? extends Collection<String>> strainGroupEntry: this.strainGroups.entrySet())
             {
                 List<Double> valueList = new ArrayList<Double>(
                         strainGroupEntry.getValue().size());
                 for(String strain: strainGroupEntry.getValue())
                 {
-                    valueList.add(meanPhenoData.get(strain));
+                    int strainIndex = this.phenotypeStatistics.getStrainIndex(strain);
+                    if(strainIndex >= 0 && this.phenotypeStatistics.getValueCount(strainIndex) > 0)
+                    {
+                        valueList.add(this.phenotypeStatistics.getMean(strainIndex));
+                    }
+                    else
+                    {
+                        valueList.add(null);
+                    }
                 }
                 dataset.add(
                         valueList,
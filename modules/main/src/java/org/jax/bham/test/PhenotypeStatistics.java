@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.jax.haplotype.analysis.HaplotypeAssociationTest;
+import org.jax.haplotype.analysis.MultiHaplotypeBlockTest;
+import org.jax.haplotype.analysis.PhenotypeDataSource;
+
+/**
+ * Per strain phenotype statistics in primitive arrays. The phenotype data
+ * is resolved against the strain names once, and after that the value
+ * counts, sums and sums of squares of each strain are looked up by the
+ * strain's index. When the strains are a test's sorted common strains
+ * the indices line up with the bits of the test's strain partitions, so
+ * the statistics of a partition's group come from one pass over its set
+ * bits (see {@link #getGroupStatistics(BitSet)}). The permutation test
+ * uses these to check a test's p-values against the F test
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class PhenotypeStatistics
+{
+    /**
+     * the statistics of each test. The keys are weak so a test's
+     * statistics go away with the test
+     */
+    private static final Map<Object, PhenotypeStatistics> TEST_STATISTICS =
+        new WeakHashMap<Object, PhenotypeStatistics>();
+    
+    private final String[] strains;
+    
+    private final int[] valueCounts;
+    
+    private final double[] sums;
+    
+    private final double[] sumsOfSquares;
+    
+    private final double[] means;
+    
+    private final GroupStatistics totalStatistics;
+    
+    private Map<String, Integer> strainIndices = null;
+    
+    /**
+     * Constructor
+     * @param phenotypeDataSource
+     *          the phenotype data
+     * @param strains
+     *          the strains to summarize. A strain without phenotype
+     *          values gets a count of zero and a mean of NaN
+     */
+    public PhenotypeStatistics(
+            PhenotypeDataSource phenotypeDataSource,
+            String[] strains)
+    {
+        this(phenotypeDataSource.getPhenotypeData(), strains);
+    }
+    
+    /**
+     * Constructor
+     * @param phenotypeData
+     *          the phenotype values of each strain
+     * @param strains
+     *          the strains to summarize. A strain without phenotype
+     *          values gets a count of zero and a mean of NaN
+     */
+    public PhenotypeStatistics(
+            Map<String, List<Double>> phenotypeData,
+            String[] strains)
+    {
+        int strainCount = strains.length;
+        this.strains = strains;
+        this.valueCounts = new int[strainCount];
+        this.sums = new double[strainCount];
+        this.sumsOfSquares = new double[strainCount];
+        this.means = new double[strainCount];
+        
+        for(int i = 0; i < strainCount; i++)
+        {
+            List<Double> strainValues = phenotypeData.get(strains[i]);
+            if(strainValues != null)
+            {
+                for(Double value: strainValues)
+                {
+                    this.sums[i] += value;
+                    this.sumsOfSquares[i] += value * value;
+                }
+                this.valueCounts[i] = strainValues.size();
+            }
+            this.means[i] = this.sums[i] / this.valueCounts[i];
+        }
+        
+        BitSet allStrains = new BitSet(strainCount);
+        allStrains.set(0, strainCount);
+        this.totalStatistics = this.getGroupStatistics(allStrains);
+    }
+    
+    /**
+     * Get the statistics of a haplotype test's phenotype over the test's
+     * sorted common strains. These are only calculated the first time
+     * @param test
+     *          the test
+     * @return
+     *          the statistics
+     */
+    public static PhenotypeStatistics getPhenotypeStatistics(
+            HaplotypeAssociationTest test)
+    {
+        return getPhenotypeStatistics(
+                test,
+                test.getPhenotypeDataSource(),
+                test.getCommonStrains());
+    }
+    
+    /**
+     * Get the statistics of a multi-group test's phenotype over the test's
+     * sorted common strains. These are only calculated the first time
+     * @param test
+     *          the test
+     * @return
+     *          the statistics
+     */
+    public static PhenotypeStatistics getPhenotypeStatistics(
+            MultiHaplotypeBlockTest test)
+    {
+        return getPhenotypeStatistics(
+                test,
+                test.getPhenotypeDataSource(),
+                test.getCommonStrains());
+    }
+    
+    private static PhenotypeStatistics getPhenotypeStatistics(
+            Object test,
+            PhenotypeDataSource phenotypeDataSource,
+            Set<String> commonStrains)
+    {
+        synchronized(TEST_STATISTICS)
+        {
+            PhenotypeStatistics statistics = TEST_STATISTICS.get(test);
+            if(statistics == null)
+            {
+                String[] sortedStrains =
+                    commonStrains.toArray(new String[commonStrains.size()]);
+                Arrays.sort(sortedStrains);
+                statistics = new PhenotypeStatistics(
+                        phenotypeDataSource,
+                        sortedStrains);
+                TEST_STATISTICS.put(test, statistics);
+            }
+            
+            return statistics;
+        }
+    }
+    
+    /**
+     * Getter for the strains in index order
+     * @return
+     *          the strains
+     */
+    public String[] getStrains()
+    {
+        return this.strains;
+    }
+    
+    /**
+     * Getter for the number of strains
+     * @return
+     *          the strain count
+     */
+    public int getStrainCount()
+    {
+        return this.strains.length;
+    }
+    
+    /**
+     * Get the index of the given strain
+     * @param strain
+     *          the strain name
+     * @return
+     *          the index or -1 if we don't have the strain
+     */
+    public synchronized int getStrainIndex(String strain)
+    {
+        if(this.strainIndices == null)
+        {
+            this.strainIndices = new HashMap<String, Integer>(this.strains.length);
+            for(int i = 0; i < this.strains.length; i++)
+            {
+                this.strainIndices.put(this.strains[i], i);
+            }
+        }
+        
+        Integer strainIndex = this.strainIndices.get(strain);
+        return strainIndex == null ? -1 : strainIndex;
+    }
+    
+    /**
+     * Get the number of phenotype values that a strain has
+     * @param strainIndex
+     *          the strain's index
+     * @return
+     *          the count
+     */
+    public int getValueCount(int strainIndex)
+    {
+        return this.valueCounts[strainIndex];
+    }
+    
+    /**
+     * Get the sum of a strain's phenotype values
+     * @param strainIndex
+     *          the strain's index
+     * @return
+     *          the sum
+     */
+    public double getSum(int strainIndex)
+    {
+        return this.sums[strainIndex];
+    }
+    
+    /**
+     * Get the sum of a strain's squared phenotype values
+     * @param strainIndex
+     *          the strain's index
+     * @return
+     *          the sum of squares
+     */
+    public double getSumOfSquares(int strainIndex)
+    {
+        return this.sumsOfSquares[strainIndex];
+    }
+    
+    /**
+     * Get the mean of a strain's phenotype values
+     * @param strainIndex
+     *          the strain's index
+     * @return
+     *          the mean or NaN if the strain has no values
+     */
+    public double getMean(int strainIndex)
+    {
+        return this.means[strainIndex];
+    }
+    
+    /**
+     * Get the means of all of the strains
+     * @return
+     *          a copy of the means in strain index order
+     */
+    public double[] getMeans()
+    {
+        return this.means.clone();
+    }
+    
+    /**
+     * Get the statistics over all of the strains
+     * @return
+     *          the statistics
+     */
+    public GroupStatistics getTotalStatistics()
+    {
+        return this.totalStatistics;
+    }
+    
+    /**
+     * Get the statistics of a group of strains in one pass over the
+     * group's bits
+     * @param group
+     *          the strain indices in the group
+     * @return
+     *          the statistics
+     */
+    public GroupStatistics getGroupStatistics(BitSet group)
+    {
+        int strainCount = 0;
+        int valueCount = 0;
+        double sum = 0.0;
+        double sumOfSquares = 0.0;
+        double strainMeanSum = 0.0;
+        double strainMeanSumOfSquares = 0.0;
+        for(int i = group.nextSetBit(0);
+            i >= 0 && i < this.strains.length;
+            i = group.nextSetBit(i + 1))
+        {
+            if(this.valueCounts[i] > 0)
+            {
+                strainCount++;
+                valueCount += this.valueCounts[i];
+                sum += this.sums[i];
+                sumOfSquares += this.sumsOfSquares[i];
+                strainMeanSum += this.means[i];
+                strainMeanSumOfSquares += this.means[i] * this.means[i];
+            }
+        }
+        
+        return new GroupStatistics(
+                strainCount,
+                valueCount,
+                sum,
+                sumOfSquares,
+                strainMeanSum,
+                strainMeanSumOfSquares);
+    }
+    
+    /**
+     * The phenotype statistics of a group of strains. Strains that don't
+     * have any phenotype values aren't counted
+     */
+    public static final class GroupStatistics
+    {
+        private final int strainCount;
+        
+        private final int valueCount;
+        
+        private final double sum;
+        
+        private final double sumOfSquares;
+        
+        private final double strainMeanSum;
+        
+        private final double strainMeanSumOfSquares;
+        
+        private GroupStatistics(
+                int strainCount,
+                int valueCount,
+                double sum,
+                double sumOfSquares,
+                double strainMeanSum,
+                double strainMeanSumOfSquares)
+        {
+            this.strainCount = strainCount;
+            this.valueCount = valueCount;
+            this.sum = sum;
+            this.sumOfSquares = sumOfSquares;
+            this.strainMeanSum = strainMeanSum;
+            this.strainMeanSumOfSquares = strainMeanSumOfSquares;
+        }
+        
+        /**
+         * Getter for the number of strains in the group
+         * @return
+         *          the strain count
+         */
+        public int getStrainCount()
+        {
+            return this.strainCount;
+        }
+        
+        /**
+         * Getter for the number of phenotype values in the group
+         * @return
+         *          the value count
+         */
+        public int getValueCount()
+        {
+            return this.valueCount;
+        }
+        
+        /**
+         * Getter for the sum of the phenotype values
+         * @return
+         *          the sum
+         */
+        public double getSum()
+        {
+            return this.sum;
+        }
+        
+        /**
+         * Getter for the sum of the squared phenotype values
+         * @return
+         *          the sum of squares
+         */
+        public double getSumOfSquares()
+        {
+            return this.sumOfSquares;
+        }
+        
+        /**
+         * Getter for the sum of the strain means
+         * @return
+         *          the sum
+         */
+        public double getStrainMeanSum()
+        {
+            return this.strainMeanSum;
+        }
+        
+        /**
+         * Getter for the sum of the squared strain means
+         * @return
+         *          the sum of squares
+         */
+        public double getStrainMeanSumOfSquares()
+        {
+            return this.strainMeanSumOfSquares;
+        }
+        
+        /**
+         * Get the mean of all of the phenotype values in the group
+         * @return
+         *          the mean or NaN if there aren't any values
+         */
+        public double getMean()
+        {
+            return this.sum / this.valueCount;
+        }
+    }
+}
@@ -40,6 +40,7 @@ import javax.swing.JToolBar;
 import javax.swing.SwingUtilities;
 
 import org.jax.bham.BhamApplication;
+import org.jax.bham.io.ExportGenomeTrackAction;
 import org.jax.bham.infer.PlotPhylogeneticTreeAction;
 import org.jax.bham.util.JFreeChartUtil;
 import org.jax.geneticutil.data.BasePairInterval;
@@ -445,6 +446,29 @@ public class PhylogenyAssociationTestGraphPanel extends JPanel
         }
     }
     
+    /**
+     * Get the -log10(p-value) intervals for the plotted chromosomes that
+     * have finished calculating
+     * @return
+     *          the values keyed on chromosome
+     */
+    private Map<Integer, RealValuedBasePairInterval[]> getPlottedNegLogValues()
+    {
+        Map<Integer, RealValuedBasePairInterval[]> plottedValues =
+            new HashMap<Integer, RealValuedBasePairInterval[]>();
+        for(int chromosome: this.getSelectedChromosomes())
+        {
+            List<PhylogenyTestResult> results =
+                this.chromosomeResultsCache.get(chromosome);
+            if(results != null)
+            {
+                plottedValues.put(chromosome, this.toNegLogResults(results));
+            }
+        }
+        
+        return plottedValues;
+    }
+    
     private List<JComponent> createContextMenuItems()
     {
         List<JComponent> menuItems = new ArrayList<JComponent>();
@@ -481,6 +505,11 @@ public class PhylogenyAssociationTestGraphPanel extends JPanel
                     strainGroups)));
         }
         
+        menuItems.add(new JMenuItem(new ExportGenomeTrackAction(
+                this.testToPlot.getName(),
+                this.getPlottedNegLogValues())));
+        menuItems.add(new JSeparator());
+        
         return menuItems;
     }
 
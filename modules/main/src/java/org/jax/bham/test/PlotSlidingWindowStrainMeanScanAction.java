@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.AbstractAction;
+import javax.swing.Action;
+import javax.swing.SwingUtilities;
+
+import org.jax.bham.BhamApplication;
+import org.jax.util.gui.MessageDialogUtilities;
+import org.jax.util.gui.desktoporganization.Desktop;
+
+/**
+ * Runs a sliding window strain mean scan (or reuses the results that are
+ * stored in the project) and then plots it
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class PlotSlidingWindowStrainMeanScanAction extends AbstractAction
+{
+    /**
+     * our logger
+     */
+    private static final Logger LOG = Logger.getLogger(
+            PlotSlidingWindowStrainMeanScanAction.class.getName());
+    
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = 4170581627463935402L;
+    
+    private final SlidingWindowStrainMeanScan scanToPlot;
+    
+    /**
+     * Constructor
+     * @param scanToPlot
+     *          the scan that we want to plot
+     */
+    public PlotSlidingWindowStrainMeanScanAction(
+            SlidingWindowStrainMeanScan scanToPlot)
+    {
+        super("Plot " + scanToPlot.getName());
+        this.putValue(Action.MNEMONIC_KEY, KeyEvent.VK_P);
+        this.scanToPlot = scanToPlot;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void actionPerformed(ActionEvent e)
+    {
+        final PerformSlidingWindowStrainMeanScanTask scanTask =
+            new PerformSlidingWindowStrainMeanScanTask(this.scanToPlot);
+        BhamApplication.getInstance().getBhamFrame().getMultiTaskProgress().addTaskToTrack(
+                scanTask,
+                true);
+        new Thread(new Runnable()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void run()
+            {
+                scanTask.run();
+                if(scanTask.getChromosomeNegLog10PValues() != null)
+                {
+                    SwingUtilities.invokeLater(new Runnable()
+                    {
+                        /**
+                         * {@inheritDoc}
+                         */
+                        public void run()
+                        {
+                            PlotSlidingWindowStrainMeanScanAction.this.showScanResults(
+                                    scanTask);
+                        }
+                    });
+                }
+            }
+        }).start();
+    }
+    
+    private void showScanResults(PerformSlidingWindowStrainMeanScanTask scanTask)
+    {
+        try
+        {
+            SlidingWindowStrainMeanScanPanel scanPanel =
+                new SlidingWindowStrainMeanScanPanel(
+                        this.scanToPlot,
+                        scanTask.getChromosomeNegLog10PValues());
+            Desktop desktop = BhamApplication.getInstance().getBhamFrame().getDesktop();
+            desktop.createInternalFrame(
+                    scanPanel,
+                    "Sliding Window Scan: " + this.scanToPlot.getName(),
+                    null,
+                    "sliding window scan: " + this.scanToPlot.getName());
+        }
+        catch(Exception ex)
+        {
+            String title = "Error Plotting Sliding Window Scan";
+            LOG.log(Level.SEVERE,
+                    title,
+                    ex);
+            MessageDialogUtilities.errorLater(
+                    BhamApplication.getInstance().getBhamFrame(),
+                    ex.getMessage(),
+                    title);
+        }
+    }
+}
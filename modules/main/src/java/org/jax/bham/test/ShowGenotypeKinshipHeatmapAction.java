@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.awt.event.ActionEvent;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.AbstractAction;
+import javax.swing.SwingUtilities;
+
+import org.jax.bham.BhamApplication;
+import org.jax.haplotype.data.ChromosomeDataSource;
+import org.jax.haplotype.data.GenomeDataSource;
+import org.jax.util.gui.desktoporganization.Desktop;
+
+/**
+ * An action for showing the genotype kinship of all of the strains in a
+ * genome as a heatmap. The kinship is calculated in the background the
+ * first time
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ShowGenotypeKinshipHeatmapAction extends AbstractAction
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = 2973548153427519436L;
+    
+    private final GenomeDataSource genomeDataSource;
+    
+    /**
+     * Constructor
+     * @param genomeDataSource
+     *          the genome to show kinship for
+     */
+    public ShowGenotypeKinshipHeatmapAction(GenomeDataSource genomeDataSource)
+    {
+        super("Show Kinship Heatmap");
+        this.genomeDataSource = genomeDataSource;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void actionPerformed(ActionEvent e)
+    {
+        final CalculateGenotypeKinshipTask kinshipTask =
+            new CalculateGenotypeKinshipTask(
+                    this.genomeDataSource,
+                    this.getSortedStrains());
+        BhamApplication.getInstance().getBhamFrame().getMultiTaskProgress().addTaskToTrack(
+                kinshipTask,
+                true);
+        new Thread(new Runnable()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void run()
+            {
+                kinshipTask.run();
+                if(kinshipTask.getKinship() != null)
+                {
+                    SwingUtilities.invokeLater(new Runnable()
+                    {
+                        /**
+                         * {@inheritDoc}
+                         */
+                        public void run()
+                        {
+                            ShowGenotypeKinshipHeatmapAction.this.showHeatmap(
+                                    kinshipTask.getKinship());
+                        }
+                    });
+                }
+            }
+        }).start();
+    }
+    
+    private String[] getSortedStrains()
+    {
+        Map<Integer, ChromosomeDataSource> chromosomeDataSources =
+            this.genomeDataSource.getChromosomeDataSources();
+        Set<String> strains;
+        if(chromosomeDataSources.isEmpty())
+        {
+            strains = Collections.emptySet();
+        }
+        else
+        {
+            strains = chromosomeDataSources.values().iterator().next().getAvailableStrains();
+        }
+        
+        String[] sortedStrains = strains.toArray(new String[strains.size()]);
+        Arrays.sort(sortedStrains);
+        return sortedStrains;
+    }
+    
+    private void showHeatmap(GenotypeKinship kinship)
+    {
+        GenotypeKinshipHeatmapPanel heatmapPanel =
+            new GenotypeKinshipHeatmapPanel(kinship);
+        Desktop desktop =
+            BhamApplication.getInstance().getBhamFrame().getDesktop();
+        desktop.createInternalFrame(
+                heatmapPanel,
+                "Kinship Heatmap",
+                null,
+                "kinship heatmap: " + this.genomeDataSource.getName());
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jax.bham.infer.SlidingWindowStrainGrouper;
+import org.jax.bham.project.TestResultParameters;
+import org.jax.geneticutil.data.MultiGroupStrainPartition;
+import org.jax.haplotype.analysis.PhenotypeDataSource;
+import org.jax.haplotype.data.ChromosomeDataSource;
+import org.jax.haplotype.data.GenomeDataSource;
+import org.jax.haplotype.data.SlidingWindowHaplotypeDataSource;
+import org.jax.haplotype.io.SdpInputStream;
+
+/**
+ * A sliding window association scan that reads each chromosome's SNPs
+ * once. The window's strain groups are kept up to date by a
+ * {@link SlidingWindowStrainGrouper} and scored with a
+ * {@link MultiGroupFTest} on the strain means, so each step only costs
+ * time in proportion to the number of strains. Any number of window
+ * sizes can be scanned together, all from the same pass over the SNPs.
+ * Only the best window in each bin of SNPs is kept for each scale (see
+ * {@link SnpBinMaximumTrack}) so memory doesn't grow with the number of
+ * windows. Windows are binned on their center SNP and each bin's best
+ * window is placed at that SNP's base pair position. Scans are kept in the
+ * project like the association tests and their results are stored through
+ * {@link StoredTestResultsUtil}
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class SlidingWindowStrainMeanScan
+implements Serializable, TestResultParameters
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = -6184097719361550347L;
+    
+    /**
+     * goes up whenever the way that the scan results are calculated
+     * changes
+     */
+    private static final int RESULTS_VERSION = 2;
+    
+    /**
+     * the most bins that a scale's track keeps for each chromosome. This is
+     * comfortably more than the pixels that a plot has to draw
+     */
+    private static final int MAXIMUM_BIN_COUNT = 8192;
+    
+    private final String name;
+    
+    private final GenomeDataSource genomeDataSource;
+    
+    private final PhenotypeDataSource phenotypeDataSource;
+    
+    private final int[] windowSizes;
+    
+    private final boolean stepOneSnpAtATime;
+    
+    private final String[] sortedStrains;
+    
+    private final double[] strainMeans;
+    
+    /**
+     * Constructor
+     * @param name
+     *          the name of the scan
+     * @param genomeDataSource
+     *          the genotypes to slide the window over
+     * @param phenotypeDataSource
+     *          the phenotype to test
+     * @param windowSize
+     *          the number of SNPs in a window
+     * @param stepOneSnpAtATime
+     *          if true the window moves one SNP at a time, otherwise it
+     *          moves a whole window width at a time
+     */
+    public SlidingWindowStrainMeanScan(
+            String name,
+            GenomeDataSource genomeDataSource,
+            PhenotypeDataSource phenotypeDataSource,
+            int windowSize,
+            boolean stepOneSnpAtATime)
+    {
+        this(name,
+             genomeDataSource,
+             phenotypeDataSource,
+             new int[] {windowSize},
+             stepOneSnpAtATime);
+    }
+    
+    /**
+     * Constructor
+     * @param name
+     *          the name of the scan
+     * @param genomeDataSource
+     *          the genotypes to slide the windows over
+     * @param phenotypeDataSource
+     *          the phenotype to test
+     * @param windowSizes
+     *          the number of SNPs in the window at each scale
+     * @param stepOneSnpAtATime
+     *          if true the windows move one SNP at a time, otherwise each
+     *          one moves its own window width at a time
+     */
+    public SlidingWindowStrainMeanScan(
+            String name,
+            GenomeDataSource genomeDataSource,
+            PhenotypeDataSource phenotypeDataSource,
+            int[] windowSizes,
+            boolean stepOneSnpAtATime)
+    {
+        this.name = name;
+        this.genomeDataSource = genomeDataSource;
+        this.phenotypeDataSource = phenotypeDataSource;
+        this.windowSizes = windowSizes.clone();
+        this.stepOneSnpAtATime = stepOneSnpAtATime;
+        
+        Set<String> commonStrains = new HashSet<String>(
+                phenotypeDataSource.getPhenotypeData().keySet());
+        Map<Integer, ChromosomeDataSource> chromosomeDataSources =
+            genomeDataSource.getChromosomeDataSources();
+        if(chromosomeDataSources.isEmpty())
+        {
+            commonStrains.clear();
+        }
+        else
+        {
+            commonStrains.retainAll(
+                    chromosomeDataSources.values().iterator().next().getAvailableStrains());
+        }
+        this.sortedStrains = commonStrains.toArray(new String[commonStrains.size()]);
+        Arrays.sort(this.sortedStrains);
+        this.strainMeans = new PhenotypeStatistics(
+                phenotypeDataSource,
+                this.sortedStrains).getMeans();
+    }
+    
+    /**
+     * Getter for the name of this scan
+     * @return
+     *          the name
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+    
+    /**
+     * Getter for the genome that we scan
+     * @return
+     *          the genome
+     */
+    public GenomeDataSource getGenomeDataSource()
+    {
+        return this.genomeDataSource;
+    }
+    
+    /**
+     * Getter for the phenotype that we test
+     * @return
+     *          the phenotype
+     */
+    public PhenotypeDataSource getPhenotypeDataSource()
+    {
+        return this.phenotypeDataSource;
+    }
+    
+    /**
+     * Getter for the number of SNPs in the window at each scale
+     * @return
+     *          the window sizes
+     */
+    public int[] getWindowSizes()
+    {
+        return this.windowSizes.clone();
+    }
+    
+    /**
+     * Determine if the window moves one SNP at a time
+     * @return
+     *          true if the window moves one SNP at a time and false if it
+     *          moves a whole window width at a time
+     */
+    public boolean getStepOneSnpAtATime()
+    {
+        return this.stepOneSnpAtATime;
+    }
+    
+    /**
+     * Getter for the strains that have both genotypes and phenotypes
+     * @return
+     *          the strains in sorted order
+     */
+    public String[] getSortedStrains()
+    {
+        return this.sortedStrains;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public String[] getResultParameters()
+    {
+        return new String[] {
+                "resultsVersion=" + RESULTS_VERSION,
+                "windowSizes=" + Arrays.toString(this.windowSizes),
+                "stepOneSnpAtATime=" + this.stepOneSnpAtATime};
+    }
+    
+    /**
+     * Scan a chromosome at every scale. Rather than calling this directly
+     * use {@link StoredTestResultsUtil#getSlidingWindowStrainMeanScanResults(SlidingWindowStrainMeanScan, int)}
+     * which keeps the results in the project
+     * @param chromosome
+     *          the chromosome number
+     * @return
+     *          the best -log10(p-value) in each bin for each scale. Windows
+     *          are binned on their center SNP and the bins' peaks are
+     *          mapped to base pair positions
+     * @throws IOException
+     *          if reading the genotypes fails
+     */
+    public SnpBinMaximumTrack[] scanChromosome(int chromosome) throws IOException
+    {
+        ChromosomeDataSource chromosomeDataSource =
+            this.genomeDataSource.getChromosomeDataSources().get(chromosome);
+        if(chromosomeDataSource == null)
+        {
+            throw new IllegalArgumentException(
+                    "there is no chromosome " + chromosome + " in " +
+                    this.genomeDataSource.getName());
+        }
+        
+        SdpInputStream sdpStream = chromosomeDataSource.getSdpInputStream(
+                new HashSet<String>(Arrays.asList(this.sortedStrains)));
+        
+        // map the stream's strain order onto ours
+        String[] sdpStrainNames = sdpStream.getSdpStrainNames();
+        int[] strainIndices = new int[sdpStrainNames.length];
+        for(int i = 0; i < sdpStrainNames.length; i++)
+        {
+            strainIndices[i] = Arrays.binarySearch(
+                    this.sortedStrains,
+                    sdpStrainNames[i]);
+        }
+        
+        int scaleCount = this.windowSizes.length;
+        SlidingWindowStrainGrouper grouper = new SlidingWindowStrainGrouper(
+                this.sortedStrains.length,
+                this.windowSizes);
+        MultiGroupFTest[] fTests = new MultiGroupFTest[scaleCount];
+        SnpBinMaximumTrack[] negLog10PValues = new SnpBinMaximumTrack[scaleCount];
+        for(int scale = 0; scale < scaleCount; scale++)
+        {
+            fTests[scale] = new MultiGroupFTest(this.strainMeans);
+            negLog10PValues[scale] = new SnpBinMaximumTrack(MAXIMUM_BIN_COUNT);
+        }
+        while(sdpStream.hasNextSdp())
+        {
+            BitSet sdp = sdpStream.getNextSdp();
+            BitSet strainSdp = new BitSet(this.sortedStrains.length);
+            for(int bit = sdp.nextSetBit(0);
+                bit >= 0 && bit < strainIndices.length;
+                bit = sdp.nextSetBit(bit + 1))
+            {
+                if(strainIndices[bit] >= 0)
+                {
+                    strainSdp.set(strainIndices[bit]);
+                }
+            }
+            grouper.addSnp(strainSdp);
+            
+            for(int scale = 0; scale < scaleCount; scale++)
+            {
+                if(grouper.isWindowFull(scale) &&
+                   (this.stepOneSnpAtATime ||
+                    grouper.getSnpCount() % this.windowSizes[scale] == 0L))
+                {
+                    MultiGroupFTest fTest = fTests[scale];
+                    fTest.setStrainGroups(grouper.getStrainGroups(scale));
+                    long windowCenterSnp =
+                        grouper.getSnpCount() - this.windowSizes[scale] +
+                        (this.windowSizes[scale] - 1) / 2;
+                    negLog10PValues[scale].add(
+                            windowCenterSnp,
+                            -Math.log10(fTest.calculatePValue()));
+                }
+            }
+        }
+        
+        long[] snpPositions = this.getSnpPositions(
+                chromosome,
+                grouper.getSnpCount());
+        for(SnpBinMaximumTrack scaleNegLog10PValues: negLog10PValues)
+        {
+            scaleNegLog10PValues.mapPeakSnpsToPositions(snpPositions);
+        }
+        
+        return negLog10PValues;
+    }
+    
+    /**
+     * Get the base pair position of every SNP on a chromosome. The SDP
+     * stream doesn't carry positions so they come from a one SNP sliding
+     * window over the same genome and strains, which yields one interval
+     * per SNP
+     * @param chromosome
+     *          the chromosome number
+     * @param snpCount
+     *          the number of SNPs that the scan read
+     * @return
+     *          the positions in SNP order
+     * @throws IOException
+     *          if the windows don't line up with the SNPs that the scan
+     *          read
+     */
+    private long[] getSnpPositions(int chromosome, long snpCount)
+    throws IOException
+    {
+        SlidingWindowHaplotypeDataSource snpWindows =
+            new SlidingWindowHaplotypeDataSource(
+                    this.genomeDataSource.getName(),
+                    this.genomeDataSource,
+                    1,
+                    true);
+        List<MultiGroupStrainPartition> snps = snpWindows.getHaplotypeData(
+                chromosome,
+                new HashSet<String>(Arrays.asList(this.sortedStrains)));
+        if(snps.size() != snpCount)
+        {
+            throw new IOException(
+                    "found " + snps.size() + " SNP positions on chromosome " +
+                    chromosome + " of " + this.genomeDataSource.getName() +
+                    " but the scan read " + snpCount + " SNPs");
+        }
+        
+        long[] snpPositions = new long[snps.size()];
+        for(int snp = 0; snp < snpPositions.length; snp++)
+        {
+            snpPositions[snp] = snps.get(snp).getStartInBasePairs();
+        }
+        
+        return snpPositions;
+    }
+}
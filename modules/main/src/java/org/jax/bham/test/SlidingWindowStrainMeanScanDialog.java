@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Arrays;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.swing.JDialog;
+
+import org.jax.bham.project.BhamProject;
+import org.jax.haplotype.analysis.PhenotypeDataSource;
+import org.jax.haplotype.data.GenomeDataSource;
+import org.jax.util.gui.MessageDialogUtilities;
+
+/**
+ * This dialog allows the user to scan a phenotype with sliding windows of
+ * several sizes at once. Every size is derived from the same pass over the
+ * genotypes and the results are shown as stacked tracks
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class SlidingWindowStrainMeanScanDialog extends JDialog
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = 6829146930475021846L;
+    
+    private static final String STEP_ONE_SNP_AT_A_TIME = "One SNP at a Time";
+    
+    private static final String STEP_WHOLE_WINDOW_WIDTH = "One Window Width at a Time";
+    
+    private final BhamProject project;
+    
+    /**
+     * Constructor
+     * @param parent
+     *          the parent to use for this dialog
+     * @param project
+     *          the project
+     */
+    public SlidingWindowStrainMeanScanDialog(
+            Frame parent,
+            BhamProject project)
+    {
+        super(parent, "Multi-Scale Sliding Window Scan", false);
+        
+        this.project = project;
+        
+        this.initComponents();
+        this.postGuiInit();
+    }
+    
+    /**
+     * handle the initialization not done by the GUI builder
+     */
+    private void postGuiInit()
+    {
+        for(GenomeDataSource genoDataSrc: this.project.getGenomeDataSources())
+        {
+            this.genotypeDataSourceComboBox.addItem(genoDataSrc);
+        }
+        
+        for(PhenotypeDataSource phenoDataSrc: this.project.getPhenotypeDataSources())
+        {
+            this.phenotypeDataSourceComboBox.addItem(phenoDataSrc);
+        }
+        
+        this.moveWindowComboBox.addItem(STEP_ONE_SNP_AT_A_TIME);
+        this.moveWindowComboBox.addItem(STEP_WHOLE_WINDOW_WIDTH);
+        
+        this.windowSizesTextField.setText("3, 10, 30");
+        
+        this.okButton.addActionListener(new ActionListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                SlidingWindowStrainMeanScanDialog.this.ok();
+            }
+        });
+        
+        this.cancelButton.addActionListener(new ActionListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                SlidingWindowStrainMeanScanDialog.this.cancel();
+            }
+        });
+        
+        this.helpButton.addActionListener(new ActionListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent e)
+            {
+                SlidingWindowStrainMeanScanDialog.this.showHelp();
+            }
+        });
+    }
+    
+    private void showHelp()
+    {
+        MessageDialogUtilities.inform(
+                this,
+                "Sorry, no help yet..",
+                "Help Not Implemented");
+    }
+    
+    private void cancel()
+    {
+        this.dispose();
+    }
+    
+    /**
+     * Getter for the selected genome data source
+     * @return
+     *          the selected genome data source
+     */
+    private GenomeDataSource getSelectedGenomeDataSource()
+    {
+        return (GenomeDataSource)this.genotypeDataSourceComboBox.getSelectedItem();
+    }
+    
+    /**
+     * Getter for the selected phenotype data source
+     * @return
+     *          the selected phenotype data source
+     */
+    private PhenotypeDataSource getSelectedPhenotypeDataSource()
+    {
+        return (PhenotypeDataSource)this.phenotypeDataSourceComboBox.getSelectedItem();
+    }
+    
+    private boolean getStepWindowOneSnpAtATime()
+    {
+        return STEP_ONE_SNP_AT_A_TIME.equals(
+                this.moveWindowComboBox.getSelectedItem());
+    }
+    
+    /**
+     * Parse the window sizes that the user typed in
+     * @return
+     *          the distinct window sizes in increasing order or null if
+     *          they can't be parsed
+     */
+    private int[] getWindowSizes()
+    {
+        SortedSet<Integer> windowSizes = new TreeSet<Integer>();
+        for(String windowSizeString:
+            this.windowSizesTextField.getText().trim().split("[\\s,]+"))
+        {
+            if(windowSizeString.length() > 0)
+            {
+                try
+                {
+                    int windowSize = Integer.parseInt(windowSizeString);
+                    if(windowSize < 1)
+                    {
+                        return null;
+                    }
+                    windowSizes.add(windowSize);
+                }
+                catch(NumberFormatException ex)
+                {
+                    return null;
+                }
+            }
+        }
+        
+        int[] windowSizeArray = new int[windowSizes.size()];
+        int i = 0;
+        for(Integer windowSize: windowSizes)
+        {
+            windowSizeArray[i] = windowSize;
+            i++;
+        }
+        return windowSizeArray;
+    }
+    
+    private void ok()
+    {
+        if(this.validateData())
+        {
+            PhenotypeDataSource phenotypeDataSource =
+                this.getSelectedPhenotypeDataSource();
+            int[] windowSizes = this.getWindowSizes();
+            SlidingWindowStrainMeanScan scan = new SlidingWindowStrainMeanScan(
+                    phenotypeDataSource.getName() + " Sliding Window Scan " +
+                    Arrays.toString(windowSizes),
+                    this.getSelectedGenomeDataSource(),
+                    phenotypeDataSource,
+                    windowSizes,
+                    this.getStepWindowOneSnpAtATime());
+            this.project.addSlidingWindowStrainMeanScan(scan);
+            new PlotSlidingWindowStrainMeanScanAction(scan).actionPerformed(null);
+            
+            this.dispose();
+        }
+    }
+    
+    private boolean validateData()
+    {
+        String errorMessage = null;
+        int[] windowSizes = this.getWindowSizes();
+        if(this.getSelectedGenomeDataSource() == null)
+        {
+            errorMessage =
+                "You cannot perform a sliding window scan without " +
+                "any genome data sources.";
+        }
+        else if(this.getSelectedPhenotypeDataSource() == null)
+        {
+            errorMessage =
+                "You cannot perform a sliding window scan without " +
+                "any phenotype data sources.";
+        }
+        else if(windowSizes == null || windowSizes.length == 0)
+        {
+            errorMessage =
+                "Please enter one or more window sizes as positive whole " +
+                "numbers separated by commas (eg: 3, 10, 30)";
+        }
+        
+        if(errorMessage != null)
+        {
+            MessageDialogUtilities.warn(
+                    this,
+                    errorMessage,
+                    "Validation Failed");
+            return false;
+        }
+        else
+        {
+            return true;
+        }
+    }
+    
+    /**
+     * This method is called from within the constructor to
+     * initialize the form.
+     * WARNING: Do NOT modify this code. The content of this method is
+     * always regenerated by the Form Editor.
+     */
+    @SuppressWarnings("all")
+    // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
+    private void initComponents() {
+
+        javax.swing.JLabel genotypeDataSourceLabel = new javax.swing.JLabel();
+        genotypeDataSourceComboBox = new javax.swing.JComboBox();
+        javax.swing.JLabel phenotypeDataSourceLabel = new javax.swing.JLabel();
+        phenotypeDataSourceComboBox = new javax.swing.JComboBox();
+        javax.swing.JLabel moveWindowLabel = new javax.swing.JLabel();
+        moveWindowComboBox = new javax.swing.JComboBox();
+        javax.swing.JLabel windowSizesLabel = new javax.swing.JLabel();
+        windowSizesTextField = new javax.swing.JTextField();
+        javax.swing.JPanel actionPanel = new javax.swing.JPanel();
+        okButton = new javax.swing.JButton();
+        cancelButton = new javax.swing.JButton();
+        helpButton = new javax.swing.JButton();
+
+        setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
+
+        genotypeDataSourceLabel.setText("Genotype Data:");
+
+        phenotypeDataSourceLabel.setText("Phenotype Data:");
+
+        moveWindowLabel.setText("Move Windows:");
+
+        windowSizesLabel.setText("Window Sizes (SNPs):");
+
+        okButton.setText("OK");
+        actionPanel.add(okButton);
+
+        cancelButton.setText("Cancel");
+        actionPanel.add(cancelButton);
+
+        helpButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/images/help-16x16.png"))); // NOI18N
+        helpButton.setText("Help...");
+        actionPanel.add(helpButton);
+
+        org.jdesktop.layout.GroupLayout layout = new org.jdesktop.layout.GroupLayout(getContentPane());
+        getContentPane().setLayout(layout);
+        layout.setHorizontalGroup(
+            layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+            .add(org.jdesktop.layout.GroupLayout.TRAILING, actionPanel, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 420, Short.MAX_VALUE)
+            .add(layout.createSequentialGroup()
+                .addContainerGap()
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+                    .add(genotypeDataSourceLabel)
+                    .add(phenotypeDataSourceLabel)
+                    .add(moveWindowLabel)
+                    .add(windowSizesLabel))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+                    .add(genotypeDataSourceComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
+                    .add(phenotypeDataSourceComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
+                    .add(moveWindowComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE)
+                    .add(windowSizesTextField, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, 230, Short.MAX_VALUE))
+                .addContainerGap())
+        );
+        layout.setVerticalGroup(
+            layout.createParallelGroup(org.jdesktop.layout.GroupLayout.LEADING)
+            .add(layout.createSequentialGroup()
+                .addContainerGap()
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(genotypeDataSourceLabel)
+                    .add(genotypeDataSourceComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(phenotypeDataSourceLabel)
+                    .add(phenotypeDataSourceComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(moveWindowLabel)
+                    .add(moveWindowComboBox, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED)
+                .add(layout.createParallelGroup(org.jdesktop.layout.GroupLayout.BASELINE)
+                    .add(windowSizesLabel)
+                    .add(windowSizesTextField, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(org.jdesktop.layout.LayoutStyle.RELATED, 8, Short.MAX_VALUE)
+                .add(actionPanel, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE, org.jdesktop.layout.GroupLayout.DEFAULT_SIZE, org.jdesktop.layout.GroupLayout.PREFERRED_SIZE))
+        );
+
+        pack();
+    }// </editor-fold>//GEN-END:initComponents
+
+    // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton cancelButton;
+    private javax.swing.JComboBox genotypeDataSourceComboBox;
+    private javax.swing.JButton helpButton;
+    private javax.swing.JComboBox moveWindowComboBox;
+    private javax.swing.JButton okButton;
+    private javax.swing.JComboBox phenotypeDataSourceComboBox;
+    private javax.swing.JTextField windowSizesTextField;
+    // End of variables declaration//GEN-END:variables
+
+}
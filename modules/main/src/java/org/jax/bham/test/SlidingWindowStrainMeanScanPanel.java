@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.awt.BorderLayout;
+import java.awt.Toolkit;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+import java.util.Map;
+
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JToolBar;
+
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.plot.CombinedDomainXYPlot;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.StandardXYItemRenderer;
+import org.jfree.data.xy.DefaultXYDataset;
+
+/**
+ * A panel that plots the results of a {@link SlidingWindowStrainMeanScan}
+ * with one track per window size stacked over a shared base pair axis, so
+ * that a peak can be compared across scales at a glance. Each track is
+ * merged down to its maximum per pixel of screen width before it's plotted
+ * and each point sits at the position of the center SNP of the window that
+ * gave the maximum so that the scales line up
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class SlidingWindowStrainMeanScanPanel extends JPanel
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = -2290418623515037164L;
+    
+    private final SlidingWindowStrainMeanScan scan;
+    
+    private final Map<Integer, SnpBinMaximumTrack[]> chromosomeNegLog10PValues;
+    
+    private final JComboBox chromosomeComboBox = new JComboBox();
+    
+    private final ChartPanel chartPanel = new ChartPanel(null, true);
+    
+    /**
+     * Constructor
+     * @param scan
+     *          the scan that was run
+     * @param chromosomeNegLog10PValues
+     *          the scan results keyed on chromosome number
+     */
+    public SlidingWindowStrainMeanScanPanel(
+            SlidingWindowStrainMeanScan scan,
+            Map<Integer, SnpBinMaximumTrack[]> chromosomeNegLog10PValues)
+    {
+        super(new BorderLayout());
+        
+        this.scan = scan;
+        this.chromosomeNegLog10PValues = chromosomeNegLog10PValues;
+        
+        this.initialize();
+    }
+    
+    /**
+     * a function to initialize the components for this panel
+     */
+    private void initialize()
+    {
+        for(Integer chromosome: this.chromosomeNegLog10PValues.keySet())
+        {
+            this.chromosomeComboBox.addItem(chromosome);
+        }
+        this.chromosomeComboBox.addItemListener(new ItemListener()
+        {
+            /**
+             * {@inheritDoc}
+             */
+            public void itemStateChanged(ItemEvent e)
+            {
+                if(e.getStateChange() == ItemEvent.SELECTED)
+                {
+                    SlidingWindowStrainMeanScanPanel.this.chromosomeSelectionChanged();
+                }
+            }
+        });
+        
+        JToolBar toolBar = new JToolBar();
+        toolBar.add(new JLabel("Chromosome:"));
+        
+        // limit the size or the toolbar will try to make the drop-down huge
+        this.chromosomeComboBox.setMaximumSize(
+                this.chromosomeComboBox.getPreferredSize());
+        toolBar.add(this.chromosomeComboBox);
+        
+        this.add(toolBar, BorderLayout.PAGE_START);
+        this.add(this.chartPanel, BorderLayout.CENTER);
+        
+        this.chromosomeSelectionChanged();
+    }
+    
+    private void chromosomeSelectionChanged()
+    {
+        Integer chromosome = (Integer)this.chromosomeComboBox.getSelectedItem();
+        if(chromosome == null)
+        {
+            this.chartPanel.setChart(null);
+        }
+        else
+        {
+            this.chartPanel.setChart(this.createScaleTracks(
+                    chromosome,
+                    this.chromosomeNegLog10PValues.get(chromosome)));
+        }
+    }
+    
+    private JFreeChart createScaleTracks(
+            int chromosome,
+            SnpBinMaximumTrack[] scaleNegLog10PValues)
+    {
+        int[] windowSizes = this.scan.getWindowSizes();
+        int pixelCount = Toolkit.getDefaultToolkit().getScreenSize().width;
+        NumberAxis positionAxis = new NumberAxis(
+                "Base Pair Position (Chromosome " + chromosome + ")");
+        positionAxis.setAutoRangeIncludesZero(false);
+        CombinedDomainXYPlot combinedPlot = new CombinedDomainXYPlot(positionAxis);
+        combinedPlot.setGap(4.0);
+        for(int scale = 0; scale < windowSizes.length; scale++)
+        {
+            SnpBinMaximumTrack negLog10PValues =
+                scaleNegLog10PValues[scale].createMergedTrack(pixelCount);
+            
+            // empty bins are left out rather than plotted as gaps
+            int pointCount = 0;
+            double[] xValues = new double[negLog10PValues.getBinCount()];
+            double[] yValues = new double[negLog10PValues.getBinCount()];
+            for(int bin = 0; bin < negLog10PValues.getBinCount(); bin++)
+            {
+                double binMaximum = negLog10PValues.getBinMaximum(bin);
+                long peakPosition = negLog10PValues.getBinPeakPosition(bin);
+                if(!Double.isNaN(binMaximum) && peakPosition != -1L)
+                {
+                    xValues[pointCount] = peakPosition;
+                    yValues[pointCount] = binMaximum;
+                    pointCount++;
+                }
+            }
+            double[] pointXValues = new double[pointCount];
+            double[] pointYValues = new double[pointCount];
+            System.arraycopy(xValues, 0, pointXValues, 0, pointCount);
+            System.arraycopy(yValues, 0, pointYValues, 0, pointCount);
+            
+            DefaultXYDataset dataset = new DefaultXYDataset();
+            String trackName = windowSizes[scale] + " SNP Windows";
+            dataset.addSeries(
+                    trackName,
+                    new double[][] {pointXValues, pointYValues});
+            NumberAxis negLog10Axis = new NumberAxis(
+                    windowSizes[scale] + " SNPs: -log10(p)");
+            combinedPlot.add(
+                    new XYPlot(
+                            dataset,
+                            null,
+                            negLog10Axis,
+                            new StandardXYItemRenderer()),
+                    1);
+        }
+        
+        JFreeChart chart = new JFreeChart(
+                this.scan.getName(),
+                JFreeChart.DEFAULT_TITLE_FONT,
+                combinedPlot,
+                false);
+        return chart;
+    }
+}
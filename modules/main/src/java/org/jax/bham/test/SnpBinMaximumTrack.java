@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.io.Serializable;
+
+/**
+ * A track of -log10(p-values) along a chromosome that only keeps the
+ * largest value in each bin of SNPs. The bins start one SNP wide and
+ * whenever a value lands past the last bin neighbouring bins are merged
+ * and the bin width doubles, so a track never holds more than its maximum
+ * bin count no matter how long the chromosome is. Taking the maximum means
+ * that peaks survive, which is all that plotting a scan needs. Each bin
+ * also remembers which SNP its maximum came from so that the peak can be
+ * placed in base pairs once the SNP positions are known
+ * (see {@link #mapPeakSnpsToPositions(long[])})
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class SnpBinMaximumTrack implements Serializable
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = 2710837760216655093L;
+    
+    private final double[] binMaxima;
+    
+    private final long[] binPeakSnps;
+    
+    private final long[] binPeakPositions;
+    
+    private long binSnpCount = 1L;
+    
+    private int binCount = 0;
+    
+    /**
+     * Constructor
+     * @param maximumBinCount
+     *          the most bins that the track will hold. This has to be at
+     *          least 2
+     */
+    public SnpBinMaximumTrack(int maximumBinCount)
+    {
+        if(maximumBinCount < 2)
+        {
+            throw new IllegalArgumentException(
+                    "a track needs at least 2 bins but was given " +
+                    maximumBinCount);
+        }
+        this.binMaxima = new double[maximumBinCount];
+        this.binPeakSnps = new long[maximumBinCount];
+        this.binPeakPositions = new long[maximumBinCount];
+    }
+    
+    /**
+     * Add a value to the track
+     * @param snp
+     *          the index of the SNP that the value belongs to. Values can be
+     *          added in any order but they are cheapest in SNP order
+     * @param value
+     *          the value. NaN values are ignored
+     */
+    public void add(long snp, double value)
+    {
+        if(snp < 0L)
+        {
+            throw new IllegalArgumentException(
+                    "SNP indices can't be negative: " + snp);
+        }
+        
+        this.addPeak(snp, snp, value, -1L);
+    }
+    
+    /**
+     * Add a value to the bin holding the given SNP
+     * @param binSnp
+     *          the index of a SNP in the bin that the value goes in
+     * @param peakSnp
+     *          the index of the SNP that the value came from
+     * @param value
+     *          the value
+     * @param peakPosition
+     *          the peak SNP's position in base pairs or -1 if it isn't
+     *          known
+     */
+    private void addPeak(long binSnp, long peakSnp, double value, long peakPosition)
+    {
+        while(binSnp / this.binSnpCount >= this.binMaxima.length)
+        {
+            this.mergeNeighbouringBins();
+        }
+        
+        int bin = (int)(binSnp / this.binSnpCount);
+        while(this.binCount <= bin)
+        {
+            this.binMaxima[this.binCount] = Double.NaN;
+            this.binPeakSnps[this.binCount] = -1L;
+            this.binPeakPositions[this.binCount] = -1L;
+            this.binCount++;
+        }
+        if(isLarger(value, this.binMaxima[bin]))
+        {
+            this.binMaxima[bin] = value;
+            this.binPeakSnps[bin] = peakSnp;
+            this.binPeakPositions[bin] = peakPosition;
+        }
+    }
+    
+    /**
+     * Merge each pair of bins into one and double the bin width
+     */
+    private void mergeNeighbouringBins()
+    {
+        int mergedBinCount = (this.binCount + 1) / 2;
+        for(int mergedBin = 0; mergedBin < mergedBinCount; mergedBin++)
+        {
+            int bin = 2 * mergedBin;
+            if(bin + 1 < this.binCount &&
+               isLarger(this.binMaxima[bin + 1], this.binMaxima[bin]))
+            {
+                bin++;
+            }
+            this.binMaxima[mergedBin] = this.binMaxima[bin];
+            this.binPeakSnps[mergedBin] = this.binPeakSnps[bin];
+            this.binPeakPositions[mergedBin] = this.binPeakPositions[bin];
+        }
+        this.binCount = mergedBinCount;
+        this.binSnpCount *= 2L;
+    }
+    
+    /**
+     * Determine if a value should replace a bin's maximum
+     * @param value
+     *          the new value
+     * @param binMaximum
+     *          the bin's maximum so far
+     * @return
+     *          true if the value isn't NaN and it's larger than the maximum
+     *          (or the maximum is NaN)
+     */
+    private static boolean isLarger(double value, double binMaximum)
+    {
+        return !Double.isNaN(value) &&
+               (Double.isNaN(binMaximum) || value > binMaximum);
+    }
+    
+    /**
+     * Look up the base pair position of every bin's peak
+     * @param snpPositions
+     *          the position of every SNP on the chromosome in SNP order
+     */
+    public void mapPeakSnpsToPositions(long[] snpPositions)
+    {
+        for(int bin = 0; bin < this.binCount; bin++)
+        {
+            long peakSnp = this.binPeakSnps[bin];
+            if(peakSnp >= 0L)
+            {
+                if(peakSnp >= snpPositions.length)
+                {
+                    throw new IllegalArgumentException(
+                            "there's no position for SNP " + peakSnp +
+                            " in the " + snpPositions.length +
+                            " SNP positions");
+                }
+                this.binPeakPositions[bin] = snpPositions[(int)peakSnp];
+            }
+        }
+    }
+    
+    /**
+     * Create a copy of this track that has been merged down to no more
+     * than the given number of bins. This is how the plot gets down to
+     * a value per pixel
+     * @param maximumBinCount
+     *          the most bins that the copy can have
+     * @return
+     *          the copy
+     */
+    public SnpBinMaximumTrack createMergedTrack(int maximumBinCount)
+    {
+        SnpBinMaximumTrack mergedTrack = new SnpBinMaximumTrack(
+                Math.max(2, Math.min(maximumBinCount, this.binMaxima.length)));
+        mergedTrack.binSnpCount = this.binSnpCount;
+        
+        // adding merges the copy's bins whenever it runs out of room
+        for(int bin = 0; bin < this.binCount; bin++)
+        {
+            mergedTrack.addPeak(
+                    bin * this.binSnpCount,
+                    this.binPeakSnps[bin],
+                    this.binMaxima[bin],
+                    this.binPeakPositions[bin]);
+        }
+        
+        return mergedTrack;
+    }
+    
+    /**
+     * Getter for the number of SNPs that each bin covers
+     * @return
+     *          the bin width in SNPs
+     */
+    public long getBinSnpCount()
+    {
+        return this.binSnpCount;
+    }
+    
+    /**
+     * Getter for the number of bins in use
+     * @return
+     *          the bin count
+     */
+    public int getBinCount()
+    {
+        return this.binCount;
+    }
+    
+    /**
+     * Get the largest value in a bin
+     * @param bin
+     *          the bin index. Bin i covers SNPs starting at
+     *          i * {@link #getBinSnpCount()}
+     * @return
+     *          the maximum or NaN if nothing landed in the bin
+     */
+    public double getBinMaximum(int bin)
+    {
+        this.checkBin(bin);
+        return this.binMaxima[bin];
+    }
+    
+    /**
+     * Get the SNP that a bin's maximum came from
+     * @param bin
+     *          the bin index
+     * @return
+     *          the SNP index or -1 if nothing landed in the bin
+     */
+    public long getBinPeakSnp(int bin)
+    {
+        this.checkBin(bin);
+        return this.binPeakSnps[bin];
+    }
+    
+    /**
+     * Get the position of the SNP that a bin's maximum came from
+     * @param bin
+     *          the bin index
+     * @return
+     *          the position in base pairs or -1 if nothing landed in the
+     *          bin or the positions haven't been mapped
+     */
+    public long getBinPeakPosition(int bin)
+    {
+        this.checkBin(bin);
+        return this.binPeakPositions[bin];
+    }
+    
+    private void checkBin(int bin)
+    {
+        if(bin < 0 || bin >= this.binCount)
+        {
+            throw new IndexOutOfBoundsException(
+                    "bin " + bin + " is outside of the track's " +
+                    this.binCount + " bins");
+        }
+    }
+}
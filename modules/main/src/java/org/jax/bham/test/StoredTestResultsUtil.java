@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jax.bham.project.BhamProject;
+import org.jax.bham.project.BhamProjectManager;
+import org.jax.bham.project.StoredTestResults;
+import org.jax.haplotype.analysis.HaplotypeAssociationTest;
+import org.jax.haplotype.analysis.HaplotypeBlockTestResult;
+import org.jax.haplotype.analysis.HaplotypeEquivalenceClassTestResult;
+import org.jax.haplotype.analysis.MultiHaplotypeBlockTest;
+import org.jax.haplotype.analysis.MultiHaplotypeBlockTestResult;
+import org.jax.haplotype.analysis.PhylogenyAssociationTest;
+import org.jax.haplotype.phylogeny.data.PhylogenyTestResult;
+
+/**
+ * Gets association test results from the active project if they've been
+ * computed and stored there before, otherwise runs the test and stores
+ * the results in the project so that they're saved with it. Haplotype and
+ * phylogeny test results are also looked up in (and added to) the
+ * {@link TestResultsCache} that's shared across projects before the test
+ * is run
+ * @see BhamProject#getStoredTestResults(Object, String)
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class StoredTestResultsUtil
+{
+    private static final Logger LOG = Logger.getLogger(
+            StoredTestResultsUtil.class.getName());
+    
+    /**
+     * the per test part of the shared cache keys. Tests are immutable so
+     * the keys never go stale, and the weak keys let closed projects go
+     */
+    private static final Map<Object, String> TEST_CACHE_KEYS =
+        new WeakHashMap<Object, String>();
+    
+    /**
+     * Get the haplotype test results for a single chromosome
+     * @param test
+     *          the test
+     * @param chromosome
+     *          the chromosome
+     * @return
+     *          the results
+     */
+    public static HaplotypeBlockTestResult[] getHaplotypeTestResults(
+            HaplotypeAssociationTest test,
+            int chromosome)
+    {
+        BhamProject project = BhamProjectManager.getInstance().getActiveProject();
+        String resultsKey = StoredTestResults.getChromosomeKey(chromosome);
+        HaplotypeBlockTestResult[] testResults = project.getStoredTestResults(
+                test,
+                resultsKey);
+        if(testResults == null)
+        {
+            String cacheKey = getCacheKey(
+                    project,
+                    test,
+                    test.getHaplotypeDataSource(),
+                    resultsKey);
+            testResults = getCachedResults(cacheKey);
+            if(testResults == null)
+            {
+                testResults = test.getHaplotypeTestResults(chromosome);
+                cacheResults(cacheKey, testResults);
+            }
+            project.storeTestResults(test, resultsKey, testResults);
+        }
+        
+        return testResults;
+    }
+    
+    /**
+     * Get the genome wide equivalence class results for a haplotype test
+     * @param test
+     *          the test
+     * @return
+     *          the results
+     */
+    public static HaplotypeEquivalenceClassTestResult[] getEquivalenceClassTestResults(
+            HaplotypeAssociationTest test)
+    {
+        BhamProject project = BhamProjectManager.getInstance().getActiveProject();
+        HaplotypeEquivalenceClassTestResult[] testResults =
+            project.getStoredTestResults(
+                    test,
+                    StoredTestResults.EQUIVALENCE_CLASS_RESULTS_KEY);
+        if(testResults == null)
+        {
+            String cacheKey = getCacheKey(
+                    project,
+                    test,
+                    test.getHaplotypeDataSource(),
+                    StoredTestResults.EQUIVALENCE_CLASS_RESULTS_KEY);
+            testResults = getCachedResults(cacheKey);
+            if(testResults == null)
+            {
+                testResults = test.getEquivalenceClassTestResults();
+                cacheResults(cacheKey, testResults);
+            }
+            project.storeTestResults(
+                    test,
+                    StoredTestResults.EQUIVALENCE_CLASS_RESULTS_KEY,
+                    testResults);
+        }
+        
+        return testResults;
+    }
+    
+    /**
+     * Get the phylogeny test results for a single chromosome
+     * @param test
+     *          the test
+     * @param chromosome
+     *          the chromosome
+     * @return
+     *          the results
+     */
+    public static List<PhylogenyTestResult> getPhylogenyTestResults(
+            PhylogenyAssociationTest test,
+            int chromosome)
+    {
+        BhamProject project = BhamProjectManager.getInstance().getActiveProject();
+        String resultsKey = StoredTestResults.getChromosomeKey(chromosome);
+        List<PhylogenyTestResult> testResults = project.getStoredTestResults(
+                test,
+                resultsKey);
+        if(testResults == null)
+        {
+            String cacheKey = getCacheKey(
+                    project,
+                    test,
+                    test.getPhylogenyDataSource(),
+                    resultsKey);
+            testResults = getCachedResults(cacheKey);
+            if(testResults == null)
+            {
+                // copy into a list type that we know is serializable
+                testResults = new ArrayList<PhylogenyTestResult>(
+                        test.getTestResults(chromosome));
+                cacheResults(cacheKey, testResults);
+            }
+            project.storeTestResults(test, resultsKey, testResults);
+        }
+        
+        return testResults;
+    }
+    
+    /**
+     * Get the multi-group haplotype test results for a single chromosome
+     * @param test
+     *          the test
+     * @param chromosome
+     *          the chromosome
+     * @return
+     *          the results
+     */
+    public static MultiHaplotypeBlockTestResult[] getMultiHaplotypeBlockTestResults(
+            MultiHaplotypeBlockTest test,
+            int chromosome)
+    {
+        BhamProject project = BhamProjectManager.getInstance().getActiveProject();
+        String resultsKey = StoredTestResults.getChromosomeKey(chromosome);
+        MultiHaplotypeBlockTestResult[] testResults =
+            project.getStoredTestResults(test, resultsKey);
+        if(testResults == null)
+        {
+            testResults = test.getTestResults(chromosome);
+            project.storeTestResults(test, resultsKey, testResults);
+        }
+        
+        return testResults;
+    }
+    
+    /**
+     * Get the sliding window scan results for a single chromosome
+     * @param scan
+     *          the scan
+     * @param chromosome
+     *          the chromosome
+     * @return
+     *          the results
+     * @throws IOException
+     *          if the scan can't read the genotypes
+     */
+    public static SnpBinMaximumTrack[] getSlidingWindowStrainMeanScanResults(
+            SlidingWindowStrainMeanScan scan,
+            int chromosome)
+    throws IOException
+    {
+        BhamProject project = BhamProjectManager.getInstance().getActiveProject();
+        String resultsKey = StoredTestResults.getChromosomeKey(chromosome);
+        SnpBinMaximumTrack[] scanResults =
+            project.getStoredTestResults(scan, resultsKey);
+        if(scanResults == null)
+        {
+            scanResults = scan.scanChromosome(chromosome);
+            project.storeTestResults(scan, resultsKey, scanResults);
+        }
+        
+        return scanResults;
+    }
+    
+    /**
+     * Determine if the given chromosome's results for the given test are
+     * already stored (checkpointed) in the active project
+     * @param test
+     *          the test
+     * @param chromosome
+     *          the chromosome
+     * @return
+     *          true if the results are stored
+     */
+    public static boolean isChromosomeCheckpointed(Object test, int chromosome)
+    {
+        return BhamProjectManager.getInstance().getActiveProject().containsStoredTestResults(
+                test,
+                StoredTestResults.getChromosomeKey(chromosome));
+    }
+    
+    /**
+     * Reorder the given chromosomes so that the ones that are already
+     * checkpointed in the active project come first. A resumed scan then
+     * gets through the finished work right away
+     * @param test
+     *          the test
+     * @param chromosomeNumbers
+     *          the chromosomes to scan
+     * @return
+     *          the reordered chromosomes
+     */
+    public static List<Integer> checkpointedChromosomesFirst(
+            Object test,
+            List<Integer> chromosomeNumbers)
+    {
+        List<Integer> checkpointedChromosomes = new ArrayList<Integer>();
+        List<Integer> remainingChromosomes = new ArrayList<Integer>();
+        for(Integer chromosome: chromosomeNumbers)
+        {
+            if(isChromosomeCheckpointed(test, chromosome))
+            {
+                checkpointedChromosomes.add(chromosome);
+            }
+            else
+            {
+                remainingChromosomes.add(chromosome);
+            }
+        }
+        
+        checkpointedChromosomes.addAll(remainingChromosomes);
+        return checkpointedChromosomes;
+    }
+    
+    /**
+     * Get the shared cache key for a block of test results. The part of the
+     * key that covers the test's inputs is only calculated once per test
+     * @param project
+     *          the project that the test belongs to
+     * @param test
+     *          the test
+     * @param dataSource
+     *          the haplotype or phylogeny data source of the test
+     * @param resultsKey
+     *          the key of the results block
+     * @return
+     *          the cache key or null if the results can't be shared
+     */
+    private static String getCacheKey(
+            BhamProject project,
+            Object test,
+            Object dataSource,
+            String resultsKey)
+    {
+        try
+        {
+            String testCacheKey;
+            synchronized(TEST_CACHE_KEYS)
+            {
+                testCacheKey = TEST_CACHE_KEYS.get(test);
+            }
+            
+            if(testCacheKey == null)
+            {
+                // calculate the key outside of the lock so one test's
+                // fingerprint doesn't hold up every other test. If two
+                // threads race here they calculate the same key
+                testCacheKey = TestResultsCache.calculateTestCacheKey(
+                        project.getTestInputFingerprint(test),
+                        dataSource);
+                if(testCacheKey == null)
+                {
+                    // the data source doesn't list its inference parameters
+                    // so we can't share its results
+                    return null;
+                }
+                
+                synchronized(TEST_CACHE_KEYS)
+                {
+                    TEST_CACHE_KEYS.put(test, testCacheKey);
+                }
+            }
+            
+            return TestResultsCache.getCacheKey(testCacheKey, resultsKey);
+        }
+        catch(Exception ex)
+        {
+            // without a key we just skip the shared cache
+            LOG.log(Level.WARNING,
+                    "failed to calculate result cache key for: " + resultsKey,
+                    ex);
+            return null;
+        }
+    }
+    
+    private static <R> R getCachedResults(String cacheKey)
+    {
+        if(cacheKey == null)
+        {
+            return null;
+        }
+        else
+        {
+            return TestResultsCache.getInstance().<R>get(cacheKey);
+        }
+    }
+    
+    private static void cacheResults(String cacheKey, Object results)
+    {
+        if(cacheKey != null)
+        {
+            TestResultsCache.getInstance().put(cacheKey, results);
+        }
+    }
+}
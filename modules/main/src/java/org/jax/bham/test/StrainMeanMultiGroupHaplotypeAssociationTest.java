@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.util.List;
+
+import org.jax.geneticutil.data.MultiGroupStrainPartition;
+import org.jax.haplotype.analysis.MultiGroupHaplotypeAssociationTest;
+import org.jax.haplotype.analysis.MultiHaplotypeBlockTestResult;
+import org.jax.haplotype.analysis.PhenotypeDataSource;
+import org.jax.haplotype.data.MultiGroupHaplotypeDataSource;
+
+/**
+ * A multi-group haplotype association test whose p-values come from a one
+ * way ANOVA on the strain means. The blocks are read straight from the
+ * haplotype data source, so the plain test's ANOVA is never run, and they
+ * are scored in order with a single {@link MultiGroupFTest} so each block
+ * only pays for the strains that changed groups since the block before it
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class StrainMeanMultiGroupHaplotypeAssociationTest
+extends MultiGroupHaplotypeAssociationTest
+{
+    /**
+     * every {@link java.io.Serializable} is supposed to have one of these
+     */
+    private static final long serialVersionUID = -4417790323866205819L;
+    
+    /**
+     * Constructor
+     * @param name
+     *          the name of the test
+     * @param haplotypeDataSource
+     *          the multi-group haplotype data source
+     * @param phenotypeDataSource
+     *          the phenotype data source
+     */
+    public StrainMeanMultiGroupHaplotypeAssociationTest(
+            String name,
+            MultiGroupHaplotypeDataSource haplotypeDataSource,
+            PhenotypeDataSource phenotypeDataSource)
+    {
+        super(name, haplotypeDataSource, phenotypeDataSource);
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MultiHaplotypeBlockTestResult[] getTestResults(int chromosome)
+    {
+        // we only need the blocks, not the library test's p-values
+        List<MultiGroupStrainPartition> blocks =
+            this.getHaplotypeDataSource().getHaplotypeData(
+                    chromosome,
+                    this.getCommonStrains());
+        
+        // a new F test for every call keeps this safe to call from more
+        // than one thread
+        MultiGroupFTest fTest = new MultiGroupFTest(
+                PhenotypeStatistics.getPhenotypeStatistics(this).getMeans());
+        MultiHaplotypeBlockTestResult[] strainMeanResults =
+            new MultiHaplotypeBlockTestResult[blocks.size()];
+        for(int i = 0; i < strainMeanResults.length; i++)
+        {
+            MultiGroupStrainPartition block = blocks.get(i);
+            fTest.setStrainGroups(block.getStrainGroups());
+            strainMeanResults[i] = new MultiHaplotypeBlockTestResult(
+                    block,
+                    fTest.calculatePValue());
+        }
+        
+        return strainMeanResults;
+    }
+}
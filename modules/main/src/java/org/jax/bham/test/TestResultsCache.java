@@ -0,0 +1,450 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.jax.bham.project.TestResultParameters;
+
+/**
+ * A local on-disk cache of association test results that is shared by
+ * every project. Entries are content addressed: the file name is a digest
+ * of the test's input fingerprint and the inference parameters of its
+ * haplotype (or phylogeny) data source followed by the results key. Since the test name isn't part of
+ * the digest, two projects that run the same test over the same data get
+ * the same entry. When the cache grows past its size cap the least
+ * recently used entries are deleted.
+ * <p>
+ * The cache directory defaults to <code>~/.bham/result-cache</code> and
+ * the cap to 1024 MB. They can be changed with the
+ * {@value #CACHE_DIRECTORY_PROPERTY} and
+ * {@value #MAXIMUM_SIZE_MEGABYTES_PROPERTY} system properties
+ * </p>
+ * @see StoredTestResultsUtil
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class TestResultsCache
+{
+    private static final Logger LOG = Logger.getLogger(
+            TestResultsCache.class.getName());
+    
+    /**
+     * The system property used to override the cache directory
+     */
+    public static final String CACHE_DIRECTORY_PROPERTY =
+        "bham.resultCacheDirectory";
+    
+    /**
+     * The system property used to override the cache size cap
+     */
+    public static final String MAXIMUM_SIZE_MEGABYTES_PROPERTY =
+        "bham.resultCacheMegabytes";
+    
+    private static final long DEFAULT_MAXIMUM_SIZE_MEGABYTES = 1024L;
+    
+    private static final String ENTRY_EXTENSION = ".result";
+    
+    /**
+     * goes up whenever the way that we calculate test cache keys changes
+     */
+    private static final int CACHE_KEY_VERSION = 2;
+    
+    private static final TestResultsCache instance = new TestResultsCache(
+            getDefaultCacheDirectory(),
+            getDefaultMaximumSizeInBytes());
+    
+    private final File cacheDirectory;
+    
+    private final long maximumSizeInBytes;
+    
+    /**
+     * entry sizes in least to most recently used order. This is null until
+     * the cache directory is first scanned
+     */
+    private LinkedHashMap<String, Long> entrySizes = null;
+    
+    private long totalSizeInBytes = 0L;
+    
+    /**
+     * Constructor
+     * @param cacheDirectory
+     *          the directory to keep the cache in
+     * @param maximumSizeInBytes
+     *          the size cap for the cache
+     */
+    public TestResultsCache(File cacheDirectory, long maximumSizeInBytes)
+    {
+        this.cacheDirectory = cacheDirectory;
+        this.maximumSizeInBytes = maximumSizeInBytes;
+    }
+    
+    /**
+     * Get the cache that is shared by all projects
+     * @return
+     *          the instance
+     */
+    public static TestResultsCache getInstance()
+    {
+        return TestResultsCache.instance;
+    }
+    
+    private static File getDefaultCacheDirectory()
+    {
+        String cacheDirectoryName = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+        if(cacheDirectoryName == null)
+        {
+            File bhamDirectory = new File(
+                    System.getProperty("user.home"),
+                    ".bham");
+            return new File(bhamDirectory, "result-cache");
+        }
+        else
+        {
+            return new File(cacheDirectoryName);
+        }
+    }
+    
+    private static long getDefaultMaximumSizeInBytes()
+    {
+        long maximumSizeMegabytes = DEFAULT_MAXIMUM_SIZE_MEGABYTES;
+        String maximumSizeString = System.getProperty(
+                MAXIMUM_SIZE_MEGABYTES_PROPERTY);
+        if(maximumSizeString != null)
+        {
+            try
+            {
+                maximumSizeMegabytes = Long.parseLong(maximumSizeString.trim());
+            }
+            catch(NumberFormatException ex)
+            {
+                LOG.warning(
+                        "ignoring bad " + MAXIMUM_SIZE_MEGABYTES_PROPERTY +
+                        " value: " + maximumSizeString);
+            }
+        }
+        
+        return maximumSizeMegabytes * 1024L * 1024L;
+    }
+    
+    /**
+     * Calculate the part of the cache key that's shared by every block of
+     * results for a test. The key only covers explicit inputs: the test's
+     * input fingerprint and the parameters that its data source was
+     * inferred with. Data sources that don't list their parameters don't get
+     * a key since we can't tell two of them with the same name apart
+     * @param inputFingerprint
+     *          the test's input fingerprint (see
+     *          {@link org.jax.bham.project.StoredTestResults#calculateInputFingerprint(Object)})
+     * @param dataSource
+     *          the haplotype or phylogeny data source that the test runs
+     *          against
+     * @return
+     *          the test's cache key (a hex encoded SHA-1) or null if the
+     *          data source isn't a {@link TestResultParameters}
+     */
+    public static String calculateTestCacheKey(
+            String inputFingerprint,
+            Object dataSource)
+    {
+        if(!(dataSource instanceof TestResultParameters))
+        {
+            return null;
+        }
+        
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        }
+        catch(NoSuchAlgorithmException ex)
+        {
+            // every java platform is required to support SHA-1
+            throw new IllegalStateException(ex);
+        }
+        
+        String[] dataSourceParameters =
+            ((TestResultParameters)dataSource).getResultParameters();
+        ByteArrayOutputStream keyBytes = new ByteArrayOutputStream();
+        DataOutputStream keyStream = new DataOutputStream(keyBytes);
+        try
+        {
+            keyStream.writeInt(CACHE_KEY_VERSION);
+            keyStream.writeUTF(inputFingerprint);
+            keyStream.writeUTF(dataSource.getClass().getName());
+            keyStream.writeInt(dataSourceParameters.length);
+            for(String dataSourceParameter: dataSourceParameters)
+            {
+                keyStream.writeUTF(dataSourceParameter);
+            }
+            keyStream.flush();
+        }
+        catch(IOException ex)
+        {
+            // writing to memory doesn't fail
+            throw new IllegalStateException(ex);
+        }
+        
+        StringBuilder cacheKey = new StringBuilder();
+        for(byte digestByte: digest.digest(keyBytes.toByteArray()))
+        {
+            cacheKey.append(Character.forDigit((digestByte >> 4) & 0xF, 16));
+            cacheKey.append(Character.forDigit(digestByte & 0xF, 16));
+        }
+        
+        return cacheKey.toString();
+    }
+    
+    /**
+     * Get the cache key for a single block of test results
+     * @param testCacheKey
+     *          the test's key from
+     *          {@link #calculateTestCacheKey(String, Object)}
+     * @param resultsKey
+     *          the key of the results block within the test (like
+     *          {@link org.jax.bham.project.StoredTestResults#getChromosomeKey(int)})
+     * @return
+     *          the cache key
+     */
+    public static String getCacheKey(String testCacheKey, String resultsKey)
+    {
+        return testCacheKey + "-" + resultsKey;
+    }
+    
+    /**
+     * Get the results cached under the given key
+     * @param <R>
+     *          the results type
+     * @param cacheKey
+     *          the key (see {@link #getCacheKey(String, String)})
+     * @return
+     *          the results or null if they aren't cached
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R get(String cacheKey)
+    {
+        File entryFile = this.getEntryFile(cacheKey);
+        synchronized(this)
+        {
+            this.scanCacheDirectoryIfNeeded();
+            if(this.entrySizes.get(cacheKey) == null)
+            {
+                return null;
+            }
+            
+            // the timestamp is what keeps LRU order across sessions
+            entryFile.setLastModified(System.currentTimeMillis());
+        }
+        
+        try
+        {
+            ObjectInputStream ois = new ObjectInputStream(
+                    new InflaterInputStream(new BufferedInputStream(
+                            new FileInputStream(entryFile))));
+            try
+            {
+                return (R)ois.readObject();
+            }
+            finally
+            {
+                ois.close();
+            }
+        }
+        catch(Exception ex)
+        {
+            // a broken entry is just a cache miss
+            LOG.log(Level.WARNING,
+                    "dropping unreadable result cache entry: " + entryFile,
+                    ex);
+            synchronized(this)
+            {
+                this.removeEntry(cacheKey);
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * Cache the given results. Failures are logged and otherwise ignored
+     * since the cache is only an optimization
+     * @param cacheKey
+     *          the key (see {@link #getCacheKey(String, String)})
+     * @param results
+     *          the results which must be serializable
+     */
+    public void put(String cacheKey, Object results)
+    {
+        File entryFile = this.getEntryFile(cacheKey);
+        File tempFile = null;
+        try
+        {
+            if(!this.cacheDirectory.isDirectory() && !this.cacheDirectory.mkdirs())
+            {
+                throw new IOException(
+                        "failed to create result cache directory: " +
+                        this.cacheDirectory);
+            }
+            
+            // write to a temp file first so that a reader (which could be
+            // another BHAM! process) never sees half an entry
+            tempFile = File.createTempFile(
+                    "entry",
+                    ".tmp",
+                    this.cacheDirectory);
+            ObjectOutputStream oos = new ObjectOutputStream(
+                    new DeflaterOutputStream(new BufferedOutputStream(
+                            new FileOutputStream(tempFile))));
+            try
+            {
+                oos.writeObject(results);
+            }
+            finally
+            {
+                oos.close();
+            }
+            
+            synchronized(this)
+            {
+                this.scanCacheDirectoryIfNeeded();
+                this.removeEntry(cacheKey);
+                if(!tempFile.renameTo(entryFile))
+                {
+                    throw new IOException(
+                            "failed to move result cache entry into place: " +
+                            entryFile);
+                }
+                this.entrySizes.put(cacheKey, entryFile.length());
+                this.totalSizeInBytes += entryFile.length();
+                this.evictEntries();
+            }
+        }
+        catch(Exception ex)
+        {
+            LOG.log(Level.WARNING,
+                    "failed to cache results: " + cacheKey,
+                    ex);
+        }
+        finally
+        {
+            if(tempFile != null && tempFile.exists())
+            {
+                tempFile.delete();
+            }
+        }
+    }
+    
+    private File getEntryFile(String cacheKey)
+    {
+        return new File(this.cacheDirectory, cacheKey + ENTRY_EXTENSION);
+    }
+    
+    /**
+     * Remove the given entry. The caller must hold this cache's lock
+     * @param cacheKey
+     *          the entry's key
+     */
+    private void removeEntry(String cacheKey)
+    {
+        Long entrySize = this.entrySizes.remove(cacheKey);
+        if(entrySize != null)
+        {
+            this.totalSizeInBytes -= entrySize;
+            this.getEntryFile(cacheKey).delete();
+        }
+    }
+    
+    /**
+     * Delete least recently used entries until we're under the cap. The
+     * caller must hold this cache's lock
+     */
+    private void evictEntries()
+    {
+        Iterator<Map.Entry<String, Long>> entryIter =
+            this.entrySizes.entrySet().iterator();
+        while(this.totalSizeInBytes > this.maximumSizeInBytes && entryIter.hasNext())
+        {
+            Map.Entry<String, Long> lruEntry = entryIter.next();
+            entryIter.remove();
+            this.totalSizeInBytes -= lruEntry.getValue();
+            this.getEntryFile(lruEntry.getKey()).delete();
+            
+            if(LOG.isLoggable(Level.FINE))
+            {
+                LOG.fine("evicted result cache entry: " + lruEntry.getKey());
+            }
+        }
+    }
+    
+    /**
+     * Build the LRU index from the cache directory the first time that
+     * the cache is used. The caller must hold this cache's lock
+     */
+    private void scanCacheDirectoryIfNeeded()
+    {
+        if(this.entrySizes == null)
+        {
+            this.entrySizes = new LinkedHashMap<String, Long>(16, 0.75F, true);
+            File[] entryFiles = this.cacheDirectory.listFiles();
+            if(entryFiles != null)
+            {
+                Arrays.sort(entryFiles, new Comparator<File>()
+                {
+                    public int compare(File file1, File file2)
+                    {
+                        long lastModified1 = file1.lastModified();
+                        long lastModified2 = file2.lastModified();
+                        return lastModified1 < lastModified2 ? -1 :
+                               lastModified1 > lastModified2 ? 1 : 0;
+                    }
+                });
+                
+                for(File entryFile: entryFiles)
+                {
+                    String fileName = entryFile.getName();
+                    if(fileName.endsWith(ENTRY_EXTENSION))
+                    {
+                        String cacheKey = fileName.substring(
+                                0,
+                                fileName.length() - ENTRY_EXTENSION.length());
+                        this.entrySizes.put(cacheKey, entryFile.length());
+                        this.totalSizeInBytes += entryFile.length();
+                    }
+                }
+            }
+        }
+    }
+}
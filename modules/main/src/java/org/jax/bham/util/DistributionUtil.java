@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.util;
+
+/**
+ * Some utility functions for probability distributions
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class DistributionUtil
+{
+    private static final int MAXIMUM_ITERATIONS = 1000;
+    
+    private static final double EPSILON = 1.0e-15;
+    
+    private static final double TINY = 1.0e-300;
+    
+    /**
+     * below this we shift the argument up with the recurrence before
+     * using the asymptotic series
+     */
+    private static final double STIRLING_SERIES_MINIMUM = 10.0;
+    
+    private static final double HALF_LOG_TWO_PI = 0.5 * Math.log(2.0 * Math.PI);
+    
+    /**
+     * B(2k) / (2k (2k - 1)) for k = 1 to 6, the terms of the Stirling series
+     * for ln(gamma(x))
+     */
+    private static final double[] STIRLING_COEFFICIENTS = new double[] {
+        1.0 / 12.0,
+        -1.0 / 360.0,
+        1.0 / 1260.0,
+        -1.0 / 1680.0,
+        1.0 / 1188.0,
+        -691.0 / 360360.0};
+    
+    /**
+     * Get the upper tail probability of the F distribution. This is the
+     * p-value of an F test
+     * @param f
+     *          the F statistic
+     * @param numeratorDegreesOfFreedom
+     *          the numerator degrees of freedom
+     * @param denominatorDegreesOfFreedom
+     *          the denominator degrees of freedom
+     * @return
+     *          P(F' >= f)
+     */
+    public static double fDistributionUpperTail(
+            double f,
+            double numeratorDegreesOfFreedom,
+            double denominatorDegreesOfFreedom)
+    {
+        if(Double.isNaN(f))
+        {
+            return Double.NaN;
+        }
+        else if(f <= 0.0)
+        {
+            return 1.0;
+        }
+        else if(Double.isInfinite(f))
+        {
+            return 0.0;
+        }
+        else
+        {
+            double x = denominatorDegreesOfFreedom /
+                (denominatorDegreesOfFreedom + numeratorDegreesOfFreedom * f);
+            return regularizedIncompleteBeta(
+                    x,
+                    denominatorDegreesOfFreedom / 2.0,
+                    numeratorDegreesOfFreedom / 2.0);
+        }
+    }
+    
+    /**
+     * Get the regularized incomplete beta function I_x(a, b). This
+     * evaluates the continued fraction in DLMF 8.17.22 on whichever side of
+     * the distribution's mean it converges quickly and uses
+     * I_x(a, b) = 1 - I_(1-x)(b, a) on the other side
+     * @param x
+     *          the upper limit of integration which must be in [0, 1]
+     * @param a
+     *          the first shape parameter
+     * @param b
+     *          the second shape parameter
+     * @return
+     *          the value
+     */
+    public static double regularizedIncompleteBeta(double x, double a, double b)
+    {
+        if(x <= 0.0)
+        {
+            return 0.0;
+        }
+        else if(x >= 1.0)
+        {
+            return 1.0;
+        }
+        else if(x > (a + 1.0) / (a + b + 2.0))
+        {
+            return 1.0 - regularizedIncompleteBeta(1.0 - x, b, a);
+        }
+        else
+        {
+            // x^a (1 - x)^b / (a B(a, b)) in log space so that large shape
+            // parameters don't overflow
+            double logPrefix =
+                a * Math.log(x) + b * Math.log1p(-x) -
+                Math.log(a) - logBeta(a, b);
+            return Math.exp(logPrefix) / betaContinuedFraction(x, a, b);
+        }
+    }
+    
+    /**
+     * The natural log of the beta function
+     * @param a
+     *          the first parameter which must be positive
+     * @param b
+     *          the second parameter which must be positive
+     * @return
+     *          ln(B(a, b))
+     */
+    public static double logBeta(double a, double b)
+    {
+        return logGamma(a) + logGamma(b) - logGamma(a + b);
+    }
+    
+    /**
+     * The natural log of the gamma function. Small arguments are moved up
+     * past {@link #STIRLING_SERIES_MINIMUM} using
+     * gamma(x + 1) = x gamma(x) and then the Stirling series is summed. The
+     * series is truncated where its error is well under double precision
+     * @param x
+     *          the value which must be positive
+     * @return
+     *          ln(gamma(x))
+     */
+    public static double logGamma(double x)
+    {
+        // ln(x (x + 1) ... (x + n - 1)) which we take back off at the end
+        double logShiftProduct = 0.0;
+        double shiftedX = x;
+        if(shiftedX < STIRLING_SERIES_MINIMUM)
+        {
+            double shiftProduct = 1.0;
+            while(shiftedX < STIRLING_SERIES_MINIMUM)
+            {
+                shiftProduct *= shiftedX;
+                shiftedX++;
+            }
+            logShiftProduct = Math.log(shiftProduct);
+        }
+        
+        double inverseX = 1.0 / shiftedX;
+        double inverseXSquared = inverseX * inverseX;
+        double seriesSum = 0.0;
+        double inversePower = inverseX;
+        for(double coefficient: STIRLING_COEFFICIENTS)
+        {
+            seriesSum += coefficient * inversePower;
+            inversePower *= inverseXSquared;
+        }
+        
+        return (shiftedX - 0.5) * Math.log(shiftedX) - shiftedX +
+               HALF_LOG_TWO_PI + seriesSum - logShiftProduct;
+    }
+    
+    /**
+     * The numerator of the nth term of the incomplete beta continued
+     * fraction 1 + d(1) / (1 + d(2) / (1 + ...)) from DLMF 8.17.22
+     */
+    private static double betaContinuedFractionTerm(
+            int n,
+            double x,
+            double a,
+            double b)
+    {
+        int m = n / 2;
+        if(n % 2 == 0)
+        {
+            return m * (b - m) * x / ((a + n - 1.0) * (a + n));
+        }
+        else
+        {
+            return -(a + m) * (a + b + m) * x / ((a + n - 1.0) * (a + n));
+        }
+    }
+    
+    /**
+     * Evaluate 1 + d(1) / (1 + d(2) / (1 + ...)) front to back with Lentz's
+     * method, which keeps a ratio of successive numerators and denominators
+     * rather than recomputing the fraction from the tail
+     */
+    private static double betaContinuedFraction(double x, double a, double b)
+    {
+        double value = 1.0;
+        double numeratorRatio = 1.0;
+        double denominatorRatio = 0.0;
+        for(int n = 1; n <= MAXIMUM_ITERATIONS; n++)
+        {
+            double term = betaContinuedFractionTerm(n, x, a, b);
+            
+            denominatorRatio = 1.0 + term * denominatorRatio;
+            if(Math.abs(denominatorRatio) < TINY)
+            {
+                denominatorRatio = TINY;
+            }
+            denominatorRatio = 1.0 / denominatorRatio;
+            
+            numeratorRatio = 1.0 + term / numeratorRatio;
+            if(Math.abs(numeratorRatio) < TINY)
+            {
+                numeratorRatio = TINY;
+            }
+            
+            double step = numeratorRatio * denominatorRatio;
+            value *= step;
+            if(Math.abs(step - 1.0) < EPSILON)
+            {
+                break;
+            }
+        }
+        
+        return value;
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.util;
+
+/**
+ * Eigendecomposition of a real symmetric matrix using Householder
+ * tridiagonalization followed by the implicit QL algorithm (the tred2 and
+ * tql2 routines from EISPACK by way of the public domain JAMA package).
+ * The decomposition is A = V * diag(d) * V' where the columns of V are
+ * orthonormal eigenvectors and d is in ascending order.
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class SymmetricEigendecomposition
+{
+    private final int n;
+    
+    private final double[] d;
+    
+    private final double[] e;
+    
+    private final double[][] v;
+    
+    /**
+     * Constructor. This does the decomposition
+     * @param symmetricMatrix
+     *          the matrix to decompose. Only the lower triangle is read and
+     *          the matrix is not modified
+     */
+    public SymmetricEigendecomposition(double[][] symmetricMatrix)
+    {
+        this.n = symmetricMatrix.length;
+        this.d = new double[this.n];
+        this.e = new double[this.n];
+        this.v = new double[this.n][this.n];
+        for(int i = 0; i < this.n; i++)
+        {
+            for(int j = 0; j <= i; j++)
+            {
+                this.v[i][j] = symmetricMatrix[i][j];
+                this.v[j][i] = symmetricMatrix[i][j];
+            }
+        }
+        
+        if(this.n > 0)
+        {
+            this.tridiagonalize();
+            this.diagonalize();
+        }
+    }
+    
+    /**
+     * Getter for the eigenvalues in ascending order
+     * @return
+     *          the eigenvalues (the array is not copied)
+     */
+    public double[] getEigenvalues()
+    {
+        return this.d;
+    }
+    
+    /**
+     * Getter for the eigenvectors. Column j holds the eigenvector for
+     * eigenvalue j
+     * @return
+     *          the eigenvector matrix (the array is not copied)
+     */
+    public double[][] getEigenvectors()
+    {
+        return this.v;
+    }
+    
+    /**
+     * Householder reduction to tridiagonal form (tred2)
+     */
+    private void tridiagonalize()
+    {
+        final int n = this.n;
+        final double[] d = this.d;
+        final double[] e = this.e;
+        final double[][] v = this.v;
+        
+        for(int j = 0; j < n; j++)
+        {
+            d[j] = v[n - 1][j];
+        }
+        
+        for(int i = n - 1; i > 0; i--)
+        {
+            // scale to avoid under/overflow
+            double scale = 0.0;
+            double h = 0.0;
+            for(int k = 0; k < i; k++)
+            {
+                scale += Math.abs(d[k]);
+            }
+            
+            if(scale == 0.0)
+            {
+                e[i] = d[i - 1];
+                for(int j = 0; j < i; j++)
+                {
+                    d[j] = v[i - 1][j];
+                    v[i][j] = 0.0;
+                    v[j][i] = 0.0;
+                }
+            }
+            else
+            {
+                // generate the householder vector
+                for(int k = 0; k < i; k++)
+                {
+                    d[k] /= scale;
+                    h += d[k] * d[k];
+                }
+                double f = d[i - 1];
+                double g = Math.sqrt(h);
+                if(f > 0)
+                {
+                    g = -g;
+                }
+                e[i] = scale * g;
+                h = h - f * g;
+                d[i - 1] = f - g;
+                for(int j = 0; j < i; j++)
+                {
+                    e[j] = 0.0;
+                }
+                
+                // apply the similarity transformation to the remaining
+                // columns
+                for(int j = 0; j < i; j++)
+                {
+                    f = d[j];
+                    v[j][i] = f;
+                    g = e[j] + v[j][j] * f;
+                    for(int k = j + 1; k <= i - 1; k++)
+                    {
+                        g += v[k][j] * d[k];
+                        e[k] += v[k][j] * f;
+                    }
+                    e[j] = g;
+                }
+                f = 0.0;
+                for(int j = 0; j < i; j++)
+                {
+                    e[j] /= h;
+                    f += e[j] * d[j];
+                }
+                double hh = f / (h + h);
+                for(int j = 0; j < i; j++)
+                {
+                    e[j] -= hh * d[j];
+                }
+                for(int j = 0; j < i; j++)
+                {
+                    f = d[j];
+                    g = e[j];
+                    for(int k = j; k <= i - 1; k++)
+                    {
+                        v[k][j] -= (f * e[k] + g * d[k]);
+                    }
+                    d[j] = v[i - 1][j];
+                    v[i][j] = 0.0;
+                }
+            }
+            d[i] = h;
+        }
+        
+        // accumulate the transformations
+        for(int i = 0; i < n - 1; i++)
+        {
+            v[n - 1][i] = v[i][i];
+            v[i][i] = 1.0;
+            double h = d[i + 1];
+            if(h != 0.0)
+            {
+                for(int k = 0; k <= i; k++)
+                {
+                    d[k] = v[k][i + 1] / h;
+                }
+                for(int j = 0; j <= i; j++)
+                {
+                    double g = 0.0;
+                    for(int k = 0; k <= i; k++)
+                    {
+                        g += v[k][i + 1] * v[k][j];
+                    }
+                    for(int k = 0; k <= i; k++)
+                    {
+                        v[k][j] -= g * d[k];
+                    }
+                }
+            }
+            for(int k = 0; k <= i; k++)
+            {
+                v[k][i + 1] = 0.0;
+            }
+        }
+        for(int j = 0; j < n; j++)
+        {
+            d[j] = v[n - 1][j];
+            v[n - 1][j] = 0.0;
+        }
+        v[n - 1][n - 1] = 1.0;
+        e[0] = 0.0;
+    }
+    
+    /**
+     * Symmetric tridiagonal QL algorithm (tql2)
+     */
+    private void diagonalize()
+    {
+        final int n = this.n;
+        final double[] d = this.d;
+        final double[] e = this.e;
+        final double[][] v = this.v;
+        
+        for(int i = 1; i < n; i++)
+        {
+            e[i - 1] = e[i];
+        }
+        e[n - 1] = 0.0;
+        
+        double f = 0.0;
+        double tst1 = 0.0;
+        double eps = Math.pow(2.0, -52.0);
+        for(int l = 0; l < n; l++)
+        {
+            // find a small subdiagonal element
+            tst1 = Math.max(tst1, Math.abs(d[l]) + Math.abs(e[l]));
+            int m = l;
+            while(m < n)
+            {
+                if(Math.abs(e[m]) <= eps * tst1)
+                {
+                    break;
+                }
+                m++;
+            }
+            
+            // if m == l then d[l] is an eigenvalue, otherwise iterate
+            if(m > l)
+            {
+                do
+                {
+                    // compute the implicit shift
+                    double g = d[l];
+                    double p = (d[l + 1] - g) / (2.0 * e[l]);
+                    double r = hypot(p, 1.0);
+                    if(p < 0)
+                    {
+                        r = -r;
+                    }
+                    d[l] = e[l] / (p + r);
+                    d[l + 1] = e[l] * (p + r);
+                    double dl1 = d[l + 1];
+                    double h = g - d[l];
+                    for(int i = l + 2; i < n; i++)
+                    {
+                        d[i] -= h;
+                    }
+                    f = f + h;
+                    
+                    // implicit QL transformation
+                    p = d[m];
+                    double c = 1.0;
+                    double c2 = c;
+                    double c3 = c;
+                    double el1 = e[l + 1];
+                    double s = 0.0;
+                    double s2 = 0.0;
+                    for(int i = m - 1; i >= l; i--)
+                    {
+                        c3 = c2;
+                        c2 = c;
+                        s2 = s;
+                        g = c * e[i];
+                        h = c * p;
+                        r = hypot(p, e[i]);
+                        e[i + 1] = s * r;
+                        s = e[i] / r;
+                        c = p / r;
+                        p = c * d[i] - s * g;
+                        d[i + 1] = h + s * (c * g + s * d[i]);
+                        
+                        // accumulate the transformation
+                        for(int k = 0; k < n; k++)
+                        {
+                            h = v[k][i + 1];
+                            v[k][i + 1] = s * v[k][i] + c * h;
+                            v[k][i] = c * v[k][i] - s * h;
+                        }
+                    }
+                    p = -s * s2 * c3 * el1 * e[l] / dl1;
+                    e[l] = s * p;
+                    d[l] = c * p;
+                } while(Math.abs(e[l]) > eps * tst1);
+            }
+            d[l] = d[l] + f;
+            e[l] = 0.0;
+        }
+        
+        // sort the eigenvalues and vectors into ascending order
+        for(int i = 0; i < n - 1; i++)
+        {
+            int k = i;
+            double p = d[i];
+            for(int j = i + 1; j < n; j++)
+            {
+                if(d[j] < p)
+                {
+                    k = j;
+                    p = d[j];
+                }
+            }
+            if(k != i)
+            {
+                d[k] = d[i];
+                d[i] = p;
+                for(int j = 0; j < n; j++)
+                {
+                    p = v[j][i];
+                    v[j][i] = v[j][k];
+                    v[j][k] = p;
+                }
+            }
+        }
+    }
+    
+    /**
+     * sqrt(a^2 + b^2) without under/overflow
+     */
+    private static double hypot(double a, double b)
+    {
+        double absA = Math.abs(a);
+        double absB = Math.abs(b);
+        if(absA > absB)
+        {
+            double ratio = b / a;
+            return absA * Math.sqrt(1.0 + ratio * ratio);
+        }
+        else if(b != 0)
+        {
+            double ratio = a / b;
+            return absB * Math.sqrt(1.0 + ratio * ratio);
+        }
+        else
+        {
+            return 0.0;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.infer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SlidingWindowStrainGrouper}. The modular arithmetic is
+ * checked against {@link BigInteger} and the groups of every window are
+ * checked against grouping the strains by brute force
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class SlidingWindowStrainGrouperTest
+{
+    private static final BigInteger MERSENNE_PRIME =
+        BigInteger.ONE.shiftLeft(61).subtract(BigInteger.ONE);
+    
+    /**
+     * Check multiplication modulo 2^61 - 1 including the values at the
+     * edges of its range
+     */
+    @Test
+    public void testMulMod()
+    {
+        long maximumValue = MERSENNE_PRIME.longValue() - 1L;
+        long[] edgeValues = new long[] {
+                0L, 1L, 2L, 0x7FFFFFFFL, 0x80000000L,
+                1L << 60, maximumValue - 1L, maximumValue};
+        for(long a: edgeValues)
+        {
+            for(long b: edgeValues)
+            {
+                checkMulMod(a, b);
+            }
+        }
+        
+        Random random = new Random(7);
+        for(int i = 0; i < 100000; i++)
+        {
+            checkMulMod(
+                    randomResidue(random),
+                    randomResidue(random));
+        }
+    }
+    
+    private static void checkMulMod(long a, long b)
+    {
+        long expected = BigInteger.valueOf(a).multiply(
+                BigInteger.valueOf(b)).mod(MERSENNE_PRIME).longValue();
+        assertEquals(
+                a + " * " + b,
+                expected,
+                SlidingWindowStrainGrouper.mulMod(a, b));
+    }
+    
+    /**
+     * Check raising to a power modulo 2^61 - 1
+     */
+    @Test
+    public void testPowMod()
+    {
+        Random random = new Random(11);
+        for(int i = 0; i < 1000; i++)
+        {
+            long base = randomResidue(random);
+            long exponent = random.nextInt(100000);
+            long expected = BigInteger.valueOf(base).modPow(
+                    BigInteger.valueOf(exponent),
+                    MERSENNE_PRIME).longValue();
+            assertEquals(
+                    expected,
+                    SlidingWindowStrainGrouper.powMod(base, exponent));
+        }
+    }
+    
+    private static long randomResidue(Random random)
+    {
+        return (random.nextLong() >>> 3) % MERSENNE_PRIME.longValue();
+    }
+    
+    /**
+     * Slide windows both narrower and wider than 64 SNPs (which switches
+     * from exact masks to ring hashes) over strains that share haplotypes
+     * and compare every window's groups with brute force grouping
+     */
+    @Test
+    public void testStrainGroups()
+    {
+        int strainCount = 40;
+        int snpCount = 400;
+        int[] windowSizes = new int[] {1, 7, 63, 64, 65, 130};
+        
+        Random random = new Random(13);
+        List<BitSet> sdps = createSdps(random, strainCount, snpCount);
+        SlidingWindowStrainGrouper grouper =
+            new SlidingWindowStrainGrouper(strainCount, windowSizes);
+        assertEquals(windowSizes.length, grouper.getScaleCount());
+        for(int snp = 0; snp < snpCount; snp++)
+        {
+            grouper.addSnp(sdps.get(snp));
+            assertEquals(snp + 1, grouper.getSnpCount());
+            for(int scale = 0; scale < windowSizes.length; scale++)
+            {
+                int windowSize = windowSizes[scale];
+                assertEquals(windowSize, grouper.getWindowSize(scale));
+                if(snp + 1 < windowSize)
+                {
+                    assertFalse(grouper.isWindowFull(scale));
+                }
+                else
+                {
+                    assertTrue(grouper.isWindowFull(scale));
+                    assertArrayEquals(
+                            "window of " + windowSize + " SNPs ending at SNP " + snp,
+                            groupStrains(sdps, strainCount, snp + 1 - windowSize, snp + 1),
+                            grouper.getStrainGroups(scale));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Create SNPs for strains that each copy one of a few founder
+     * haplotypes that changes every so often, so that windows have a mix
+     * of shared and distinct haplotypes
+     */
+    private static List<BitSet> createSdps(
+            Random random,
+            int strainCount,
+            int snpCount)
+    {
+        int founderCount = 4;
+        int[] strainFounders = new int[strainCount];
+        List<BitSet> sdps = new ArrayList<BitSet>();
+        for(int snp = 0; snp < snpCount; snp++)
+        {
+            for(int strain = 0; strain < strainCount; strain++)
+            {
+                if(snp == 0 || random.nextInt(200) == 0)
+                {
+                    strainFounders[strain] = random.nextInt(founderCount);
+                }
+            }
+            
+            boolean[] founderCalls = new boolean[founderCount];
+            for(int founder = 0; founder < founderCount; founder++)
+            {
+                founderCalls[founder] = random.nextBoolean();
+            }
+            
+            BitSet sdp = new BitSet(strainCount);
+            for(int strain = 0; strain < strainCount; strain++)
+            {
+                if(founderCalls[strainFounders[strain]])
+                {
+                    sdp.set(strain);
+                }
+            }
+            sdps.add(sdp);
+        }
+        
+        return sdps;
+    }
+    
+    /**
+     * Group the strains by comparing their calls over the window directly
+     * and number the groups in the order that their first strain appears
+     */
+    private static short[] groupStrains(
+            List<BitSet> sdps,
+            int strainCount,
+            int startSnp,
+            int endSnp)
+    {
+        short[] strainGroups = new short[strainCount];
+        short groupCount = 0;
+        for(int strain = 0; strain < strainCount; strain++)
+        {
+            strainGroups[strain] = groupCount;
+            for(int earlierStrain = 0; earlierStrain < strain; earlierStrain++)
+            {
+                boolean sameCalls = true;
+                for(int snp = startSnp; snp < endSnp && sameCalls; snp++)
+                {
+                    BitSet sdp = sdps.get(snp);
+                    sameCalls = sdp.get(strain) == sdp.get(earlierStrain);
+                }
+                
+                if(sameCalls)
+                {
+                    strainGroups[strain] = strainGroups[earlierStrain];
+                    break;
+                }
+            }
+            
+            if(strainGroups[strain] == groupCount)
+            {
+                groupCount++;
+            }
+        }
+        
+        return strainGroups;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.jax.bham.io.BinaryTestResultsWriter.ResultType;
+import org.jax.util.io.CommonFlatFileFormat;
+import org.jax.util.io.FlatFileWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Round trip tests for {@link BinaryTestResultsWriter} and
+ * {@link BinaryTestResultsReader}. Random results are written and every
+ * query is checked against a brute force scan of what was written
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class BinaryTestResultsTest
+{
+    private static final int CHROMOSOME_COUNT = 5;
+    
+    private File resultsFile;
+    
+    /**
+     * Create the results file
+     * @throws IOException
+     *          if the file can't be created
+     */
+    @Before
+    public void createResultsFile() throws IOException
+    {
+        this.resultsFile = File.createTempFile(
+                "bham-test",
+                "." + BinaryTestResultsWriter.BINARY_RESULTS_EXTENSION);
+    }
+    
+    /**
+     * Delete the results file
+     */
+    @After
+    public void deleteResultsFile()
+    {
+        this.resultsFile.delete();
+    }
+    
+    /**
+     * Write random results and check that they all come back through
+     * every kind of query
+     * @throws IOException
+     *          if reading or writing fails
+     */
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        Random random = new Random(3);
+        for(int trial = 0; trial < 20; trial++)
+        {
+            List<IndexedTestResult> expectedResults =
+                new ArrayList<IndexedTestResult>();
+            BinaryTestResultsWriter writer = new BinaryTestResultsWriter(
+                    ResultType.HAPLOTYPE_ASSOCIATION);
+            writer.setStrains(
+                    new String[] {"A/J", "C57BL/6J"},
+                    new String[] {"A/J"},
+                    new String[] {"A/J"});
+            int resultCount = random.nextInt(1000);
+            for(int i = 0; i < resultCount; i++)
+            {
+                int chromosome = 1 + random.nextInt(CHROMOSOME_COUNT);
+                long start = random.nextInt(10000);
+                long end = start + random.nextInt(500);
+                String label = "label" + random.nextInt(20);
+                double pValue = random.nextInt(30) == 0 ?
+                                Double.NaN :
+                                random.nextDouble();
+                writer.addResult(
+                        chromosome,
+                        start,
+                        end,
+                        writer.getLabelIndex(label),
+                        pValue);
+                expectedResults.add(new IndexedTestResult(
+                        chromosome,
+                        start,
+                        end,
+                        label,
+                        pValue));
+            }
+            writer.write(this.resultsFile);
+            
+            BinaryTestResultsReader reader =
+                new BinaryTestResultsReader(this.resultsFile);
+            try
+            {
+                assertEquals(resultCount, reader.getTotalRowCount());
+                assertEquals(
+                        Arrays.asList("A/J", "C57BL/6J"),
+                        Arrays.asList(reader.getHaplotypeStrains()));
+                this.checkFlatFileOrder(reader, expectedResults);
+                
+                for(int query = 0; query < 20; query++)
+                {
+                    int chromosome = 1 + random.nextInt(CHROMOSOME_COUNT);
+                    long regionStart = random.nextInt(10000);
+                    long regionEnd = regionStart + random.nextInt(2000);
+                    this.checkRegion(
+                            reader,
+                            expectedResults,
+                            chromosome,
+                            regionStart,
+                            regionEnd);
+                }
+                
+                this.checkThreshold(
+                        reader,
+                        expectedResults,
+                        random.nextDouble());
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+    }
+    
+    /**
+     * The flat file conversion has to give the rows in the order that
+     * they were added, which is the text export's order
+     */
+    private void checkFlatFileOrder(
+            BinaryTestResultsReader reader,
+            List<IndexedTestResult> expectedResults)
+    throws IOException
+    {
+        StringWriter flatFile = new StringWriter();
+        reader.writeFlatFile(new FlatFileWriter(
+                flatFile,
+                CommonFlatFileFormat.CSV_UNIX));
+        
+        List<String> rows = new ArrayList<String>();
+        for(String line: flatFile.toString().split("\n"))
+        {
+            if(!line.startsWith("#"))
+            {
+                rows.add(line);
+            }
+        }
+        
+        // the first row is the header
+        assertEquals(expectedResults.size() + 1, rows.size());
+        for(int i = 0; i < expectedResults.size(); i++)
+        {
+            IndexedTestResult expectedResult = expectedResults.get(i);
+            assertEquals(
+                    expectedResult.getChromosomeNumber() + "," +
+                    expectedResult.getStartInBasePairs() + "," +
+                    expectedResult.getEndInBasePairs() + "," +
+                    expectedResult.getLabel() + "," +
+                    expectedResult.getPValue(),
+                    rows.get(i + 1));
+        }
+    }
+    
+    private void checkRegion(
+            BinaryTestResultsReader reader,
+            List<IndexedTestResult> expectedResults,
+            int chromosome,
+            long regionStart,
+            long regionEnd)
+    throws IOException
+    {
+        int expectedCount = 0;
+        for(IndexedTestResult result: expectedResults)
+        {
+            if(result.getChromosomeNumber() == chromosome &&
+               result.getStartInBasePairs() <= regionEnd &&
+               result.getEndInBasePairs() >= regionStart)
+            {
+                expectedCount++;
+            }
+        }
+        
+        List<IndexedTestResult> regionResults =
+            reader.getResultsInRegion(chromosome, regionStart, regionEnd);
+        assertEquals(expectedCount, regionResults.size());
+        long previousStart = Long.MIN_VALUE;
+        for(IndexedTestResult result: regionResults)
+        {
+            assertEquals(chromosome, result.getChromosomeNumber());
+            assertTrue(result.getStartInBasePairs() >= previousStart);
+            assertTrue(result.getStartInBasePairs() <= regionEnd);
+            assertTrue(result.getEndInBasePairs() >= regionStart);
+            previousStart = result.getStartInBasePairs();
+        }
+    }
+    
+    private void checkThreshold(
+            BinaryTestResultsReader reader,
+            List<IndexedTestResult> expectedResults,
+            double pValueThreshold)
+    throws IOException
+    {
+        int expectedCount = 0;
+        for(IndexedTestResult result: expectedResults)
+        {
+            if(result.getPValue() <= pValueThreshold)
+            {
+                expectedCount++;
+            }
+        }
+        
+        List<IndexedTestResult> thresholdResults =
+            reader.getResultsWithPValueAtOrBelow(pValueThreshold);
+        assertEquals(expectedCount, thresholdResults.size());
+        double previousPValue = Double.NEGATIVE_INFINITY;
+        for(IndexedTestResult result: thresholdResults)
+        {
+            assertTrue(result.getPValue() >= previousPValue);
+            assertTrue(result.getPValue() <= pValueThreshold);
+            previousPValue = result.getPValue();
+        }
+    }
+}
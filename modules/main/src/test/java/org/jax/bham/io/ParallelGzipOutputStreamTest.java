@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import org.junit.Test;
+
+/**
+ * Round trip tests for {@link ParallelGzipOutputStream}. Everything that's
+ * written is read back through {@link GZIPInputStream}, which has to carry
+ * on across the boundaries between the gzip members
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class ParallelGzipOutputStreamTest
+{
+    private static final int BLOCK_SIZE = 1000;
+    
+    /**
+     * the size of a gzip header without any of the optional fields
+     */
+    private static final int GZIP_HEADER_SIZE = 10;
+    
+    /**
+     * Write data of lengths around the block size in random sized pieces
+     * with the odd flush thrown in and read it back
+     * @throws IOException
+     *          if compressing or decompressing fails
+     */
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        Random random = new Random(11);
+        int[] lengths = {
+                1,
+                BLOCK_SIZE - 1,
+                BLOCK_SIZE,
+                BLOCK_SIZE + 1,
+                3 * BLOCK_SIZE,
+                50 * BLOCK_SIZE + 123};
+        for(int length: lengths)
+        {
+            byte[] data = createData(random, length);
+            ByteArrayOutputStream compressedBytes = new ByteArrayOutputStream();
+            ParallelGzipOutputStream gzipOut = new ParallelGzipOutputStream(
+                    compressedBytes,
+                    BLOCK_SIZE,
+                    3);
+            int offset = 0;
+            while(offset < length)
+            {
+                if(random.nextInt(10) == 0)
+                {
+                    gzipOut.write(data[offset]);
+                    offset++;
+                }
+                else
+                {
+                    int pieceLength = Math.min(
+                            length - offset,
+                            random.nextInt(3 * BLOCK_SIZE));
+                    gzipOut.write(data, offset, pieceLength);
+                    offset += pieceLength;
+                }
+                
+                if(random.nextInt(20) == 0)
+                {
+                    // flushing ends a member part way through a block
+                    gzipOut.flush();
+                }
+            }
+            gzipOut.close();
+            
+            assertArrayEquals(data, gunzip(compressedBytes.toByteArray()));
+        }
+    }
+    
+    /**
+     * Check that the output really is split into one member per block so
+     * that the round trip crosses member boundaries
+     * @throws IOException
+     *          if compressing fails
+     * @throws DataFormatException
+     *          if the first member isn't valid deflate data
+     */
+    @Test
+    public void testMemberPerBlock() throws IOException, DataFormatException
+    {
+        byte[] data = createData(new Random(13), 10 * BLOCK_SIZE);
+        ByteArrayOutputStream compressedBytes = new ByteArrayOutputStream();
+        ParallelGzipOutputStream gzipOut = new ParallelGzipOutputStream(
+                compressedBytes,
+                BLOCK_SIZE,
+                4);
+        gzipOut.write(data);
+        gzipOut.close();
+        byte[] compressedData = compressedBytes.toByteArray();
+        
+        // inflate just the first member which should stop after one block
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(
+                compressedData,
+                GZIP_HEADER_SIZE,
+                compressedData.length - GZIP_HEADER_SIZE);
+        byte[] firstMember = new byte[data.length];
+        int firstMemberLength = 0;
+        while(!inflater.finished())
+        {
+            firstMemberLength += inflater.inflate(
+                    firstMember,
+                    firstMemberLength,
+                    firstMember.length - firstMemberLength);
+        }
+        assertEquals(BLOCK_SIZE, firstMemberLength);
+        assertTrue(inflater.getRemaining() > 0);
+        inflater.end();
+        
+        assertArrayEquals(data, gunzip(compressedData));
+    }
+    
+    /**
+     * An empty stream still has to be a valid gzip file
+     * @throws IOException
+     *          if compressing or decompressing fails
+     */
+    @Test
+    public void testEmpty() throws IOException
+    {
+        ByteArrayOutputStream compressedBytes = new ByteArrayOutputStream();
+        new ParallelGzipOutputStream(compressedBytes, BLOCK_SIZE, 2).close();
+        
+        assertTrue(compressedBytes.size() > 0);
+        assertEquals(0, gunzip(compressedBytes.toByteArray()).length);
+    }
+    
+    /**
+     * Writing after a close should fail
+     * @throws IOException
+     *          if the write fails (which is what we expect)
+     */
+    @Test(expected = IOException.class)
+    public void testWriteAfterClose() throws IOException
+    {
+        ParallelGzipOutputStream gzipOut = new ParallelGzipOutputStream(
+                new ByteArrayOutputStream(),
+                BLOCK_SIZE,
+                2);
+        gzipOut.close();
+        gzipOut.write(0);
+    }
+    
+    /**
+     * Make some data that compresses but isn't trivial
+     */
+    private static byte[] createData(Random random, int length)
+    {
+        byte[] data = new byte[length];
+        for(int i = 0; i < length; i++)
+        {
+            data[i] = (byte)('A' + random.nextInt(4));
+        }
+        return data;
+    }
+    
+    private static byte[] gunzip(byte[] compressedData) throws IOException
+    {
+        InputStream gzipIn = new GZIPInputStream(
+                new ByteArrayInputStream(compressedData));
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int readCount;
+        while((readCount = gzipIn.read(buffer)) != -1)
+        {
+            data.write(buffer, 0, readCount);
+        }
+        gzipIn.close();
+        return data.toByteArray();
+    }
+}
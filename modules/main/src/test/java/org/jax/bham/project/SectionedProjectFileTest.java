@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jax.bham.project.SectionedProjectFile.SectionType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for writing a {@link SectionedProjectFile} and reading it back
+ * when only some of its sections have been loaded
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class SectionedProjectFileTest
+{
+    private File projectFile;
+    
+    /**
+     * Create the project file
+     * @throws IOException
+     *          if the file can't be created
+     */
+    @Before
+    public void createProjectFile() throws IOException
+    {
+        this.projectFile = File.createTempFile("bham-test", ".bham");
+    }
+    
+    /**
+     * Delete the project file
+     */
+    @After
+    public void deleteProjectFile()
+    {
+        this.projectFile.delete();
+    }
+    
+    /**
+     * Write a project with a genome section and a test section that refers
+     * to the genome section's value
+     * @return
+     *          the project file that was written
+     * @throws IOException
+     *          if the write fails
+     */
+    private SectionedProjectFile writeProject() throws IOException
+    {
+        List<String> genome = new ArrayList<String>(Arrays.asList("chr1", "chr2"));
+        Map<String, Object> test = new HashMap<String, Object>();
+        test.put("genome", genome);
+        test.put("name", "test");
+        
+        List<ProjectSection<?>> sections = new ArrayList<ProjectSection<?>>();
+        sections.add(new ProjectSection<Object>(
+                0,
+                SectionType.GENOME_DATA_SOURCE,
+                "genome",
+                genome));
+        sections.add(new ProjectSection<Object>(
+                1,
+                SectionType.HAPLOTYPE_ASSOCIATION_TEST,
+                "test",
+                test));
+        sections.add(new ProjectSection<Object>(
+                2,
+                1,
+                SectionType.TEST_RESULTS,
+                "results",
+                new double[] {0.5, 0.25}));
+        
+        return SectionedProjectFile.write(this.projectFile, "project", sections);
+    }
+    
+    private static List<ProjectSection<?>> getAllSections(
+            SectionedProjectFile projectFile)
+    {
+        List<ProjectSection<?>> sections = new ArrayList<ProjectSection<?>>();
+        for(SectionType sectionType: SectionType.values())
+        {
+            List<ProjectSection<Object>> typeSections =
+                projectFile.getSections(sectionType);
+            sections.addAll(typeSections);
+        }
+        
+        return sections;
+    }
+    
+    /**
+     * Reading only reads the table of contents and a section comes back
+     * with its references to other sections intact
+     * @throws IOException
+     *          if reading or writing fails
+     */
+    @Test
+    public void testLazyLoad() throws IOException
+    {
+        this.writeProject();
+        assertTrue(SectionedProjectFile.isSectionedProjectFile(this.projectFile));
+        
+        SectionedProjectFile projectFile =
+            SectionedProjectFile.read(this.projectFile);
+        assertEquals("project", projectFile.getProjectName());
+        assertEquals(2, projectFile.getMaximumSectionId());
+        
+        ProjectSection<List<String>> genomeSection =
+            projectFile.<List<String>>getSections(
+                    SectionType.GENOME_DATA_SOURCE).get(0);
+        ProjectSection<Map<String, Object>> testSection =
+            projectFile.<Map<String, Object>>getSections(
+                    SectionType.HAPLOTYPE_ASSOCIATION_TEST).get(0);
+        ProjectSection<double[]> resultsSection =
+            projectFile.<double[]>getSections(
+                    SectionType.TEST_RESULTS).get(0);
+        assertFalse(genomeSection.isLoaded());
+        assertFalse(testSection.isLoaded());
+        assertFalse(resultsSection.isLoaded());
+        assertEquals(1, resultsSection.getParentSectionId());
+        assertEquals("test", testSection.getName());
+        
+        // the genome is read as a side effect of reading the test
+        Map<String, Object> test = testSection.get();
+        assertTrue(genomeSection.isLoaded());
+        assertFalse(resultsSection.isLoaded());
+        assertSame(genomeSection.get(), test.get("genome"));
+        assertEquals(Arrays.asList("chr1", "chr2"), genomeSection.get());
+    }
+    
+    /**
+     * Saving a project that was only partly loaded copies the stored bytes
+     * of the unloaded sections straight across
+     * @throws IOException
+     *          if reading or writing fails
+     */
+    @Test
+    public void testPartialLoadSave() throws IOException
+    {
+        this.writeProject();
+        SectionedProjectFile projectFile =
+            SectionedProjectFile.read(this.projectFile);
+        List<ProjectSection<?>> sections = getAllSections(projectFile);
+        
+        // load just the results then save over the same file
+        ProjectSection<double[]> resultsSection =
+            projectFile.<double[]>getSections(
+                    SectionType.TEST_RESULTS).get(0);
+        resultsSection.get();
+        SectionedProjectFile.write(this.projectFile, "project", sections);
+        
+        // the unloaded sections still come back from the old file's bytes
+        ProjectSection<Map<String, Object>> testSection =
+            projectFile.<Map<String, Object>>getSections(
+                    SectionType.HAPLOTYPE_ASSOCIATION_TEST).get(0);
+        assertEquals("test", testSection.get().get("name"));
+        
+        SectionedProjectFile reloadedFile =
+            SectionedProjectFile.read(this.projectFile);
+        assertEquals(3, getAllSections(reloadedFile).size());
+        double[] results = reloadedFile.<double[]>getSections(
+                SectionType.TEST_RESULTS).get(0).get();
+        assertEquals(2, results.length);
+        assertEquals(0.25, results[1], 0.0);
+        Map<String, Object> test = reloadedFile.<Map<String, Object>>getSections(
+                SectionType.HAPLOTYPE_ASSOCIATION_TEST).get(0).get();
+        assertSame(
+                reloadedFile.getSections(SectionType.GENOME_DATA_SOURCE).get(0).get(),
+                test.get("genome"));
+    }
+    
+    /**
+     * A section that is marked as modified is serialized again by the
+     * next save
+     * @throws IOException
+     *          if reading or writing fails
+     */
+    @Test
+    public void testModifiedSectionSave() throws IOException
+    {
+        this.writeProject();
+        SectionedProjectFile projectFile =
+            SectionedProjectFile.read(this.projectFile);
+        List<ProjectSection<?>> sections = getAllSections(projectFile);
+        
+        ProjectSection<List<String>> genomeSection =
+            projectFile.<List<String>>getSections(
+                    SectionType.GENOME_DATA_SOURCE).get(0);
+        genomeSection.get().add("chr3");
+        genomeSection.markModified();
+        SectionedProjectFile.write(this.projectFile, "renamed project", sections);
+        
+        SectionedProjectFile reloadedFile =
+            SectionedProjectFile.read(this.projectFile);
+        assertEquals("renamed project", reloadedFile.getProjectName());
+        List<String> genome = reloadedFile.<List<String>>getSections(
+                SectionType.GENOME_DATA_SOURCE).get(0).get();
+        assertEquals(Arrays.asList("chr1", "chr2", "chr3"), genome);
+        Map<String, Object> test = reloadedFile.<Map<String, Object>>getSections(
+                SectionType.HAPLOTYPE_ASSOCIATION_TEST).get(0).get();
+        assertSame(genome, test.get("genome"));
+    }
+}
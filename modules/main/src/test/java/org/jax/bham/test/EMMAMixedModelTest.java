@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.jax.bham.util.DistributionUtil;
+import org.junit.Test;
+
+/**
+ * Tests for {@link EMMAMixedModel}. The F test is checked against a two
+ * sample test that's worked out by hand and the REML search is checked
+ * against a brute force search that fits the model directly without
+ * rotating into the kinship eigenbasis
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class EMMAMixedModelTest
+{
+    /**
+     * the phenotype for the hand worked example. Splitting it into
+     * {1, 2} and {4, 5} gives an effect of 3 with a residual sum of
+     * squares of 1 on 2 degrees of freedom, so F = 9 / (0.5 * (1/2 + 1/2))
+     * = 18 and the p-value of F(1, 2) = 18 is 1 - sqrt(18 / 20)
+     */
+    private static final double[] HAND_WORKED_PHENOTYPE = {1.0, 2.0, 4.0, 5.0};
+    
+    private static final double HAND_WORKED_P_VALUE = 1.0 - Math.sqrt(0.9);
+    
+    /**
+     * With identity kinship the likelihood doesn't depend on delta and the
+     * model is just ordinary least squares
+     */
+    @Test
+    public void testIdentityKinship()
+    {
+        double[][] kinship = {
+                {1.0, 0.0, 0.0, 0.0},
+                {0.0, 1.0, 0.0, 0.0},
+                {0.0, 0.0, 1.0, 0.0},
+                {0.0, 0.0, 0.0, 1.0}};
+        EMMAMixedModel model = new EMMAMixedModel(
+                kinship,
+                HAND_WORKED_PHENOTYPE);
+        
+        assertEquals(HAND_WORKED_P_VALUE, model.calculatePValue(toBitSet(0, 0, 1, 1)), 1e-9);
+        assertEquals(HAND_WORKED_P_VALUE, model.calculatePValue(toBitSet(1, 1, 0, 0)), 1e-9);
+    }
+    
+    /**
+     * When every pair of strains is equally related the extra covariance
+     * is all along the intercept, so the estimates and the test are the
+     * same as with identity kinship even though the eigenbasis isn't
+     * trivial
+     */
+    @Test
+    public void testExchangeableKinship()
+    {
+        double[][] kinship = {
+                {1.5, 0.5, 0.5, 0.5},
+                {0.5, 1.5, 0.5, 0.5},
+                {0.5, 0.5, 1.5, 0.5},
+                {0.5, 0.5, 0.5, 1.5}};
+        EMMAMixedModel model = new EMMAMixedModel(
+                kinship,
+                HAND_WORKED_PHENOTYPE);
+        
+        assertEquals(HAND_WORKED_P_VALUE, model.calculatePValue(toBitSet(0, 0, 1, 1)), 1e-9);
+    }
+    
+    /**
+     * A genotype that doesn't vary can't be tested
+     */
+    @Test
+    public void testConstantGenotype()
+    {
+        double[][] kinship = {
+                {1.0, 0.2, 0.0},
+                {0.2, 1.0, 0.4},
+                {0.0, 0.4, 1.0}};
+        EMMAMixedModel model = new EMMAMixedModel(
+                kinship,
+                new double[] {1.0, 3.0, 2.0});
+        
+        assertEquals(1.0, model.calculatePValue(toBitSet(0, 0, 0)), 0.0);
+        assertEquals(1.0, model.calculatePValue(toBitSet(1, 1, 1)), 0.0);
+    }
+    
+    /**
+     * Check the grid and golden section search against a fine brute force
+     * search over delta on random kinships where the best delta usually
+     * isn't on the grid
+     */
+    @Test
+    public void testRestrictedLikelihoodSearch()
+    {
+        Random random = new Random(5);
+        int strainCount = 8;
+        int snpCount = 40;
+        for(int trial = 0; trial < 10; trial++)
+        {
+            // kinship is the genotype correlation plus a small ridge so that
+            // it's positive definite
+            boolean[][] snps = new boolean[strainCount][snpCount];
+            double[][] kinship = new double[strainCount][strainCount];
+            for(int i = 0; i < strainCount; i++)
+            {
+                for(int snp = 0; snp < snpCount; snp++)
+                {
+                    snps[i][snp] = random.nextBoolean();
+                }
+            }
+            for(int i = 0; i < strainCount; i++)
+            {
+                for(int j = 0; j < strainCount; j++)
+                {
+                    int sharedCount = 0;
+                    for(int snp = 0; snp < snpCount; snp++)
+                    {
+                        if(snps[i][snp] == snps[j][snp])
+                        {
+                            sharedCount++;
+                        }
+                    }
+                    kinship[i][j] = sharedCount / (double)snpCount;
+                }
+                kinship[i][i] += 0.05;
+            }
+            
+            // a polygenic phenotype so that the kinship actually matters
+            double[] phenotype = new double[strainCount];
+            for(int snp = 0; snp < snpCount; snp++)
+            {
+                double effect = random.nextGaussian();
+                for(int i = 0; i < strainCount; i++)
+                {
+                    if(snps[i][snp])
+                    {
+                        phenotype[i] += effect;
+                    }
+                }
+            }
+            for(int i = 0; i < strainCount; i++)
+            {
+                phenotype[i] += random.nextGaussian();
+            }
+            
+            double[] genotype = new double[strainCount];
+            BitSet genotypeBits = new BitSet();
+            for(int i = 0; i < strainCount; i++)
+            {
+                if(i == 0 || (i > 1 && random.nextBoolean()))
+                {
+                    genotype[i] = 1.0;
+                    genotypeBits.set(i);
+                }
+            }
+            
+            EMMAMixedModel model = new EMMAMixedModel(kinship, phenotype);
+            double expectedPValue = bruteForcePValue(kinship, phenotype, genotype);
+            double pValue = model.calculatePValue(genotypeBits);
+            assertEquals(expectedPValue, pValue, 1e-4 * expectedPValue);
+        }
+    }
+    
+    /**
+     * Find the best delta by evaluating the REML likelihood directly at
+     * every point of a fine grid over log(delta) and return the p-value of
+     * the genotype at that delta
+     */
+    private static double bruteForcePValue(
+            double[][] kinship,
+            double[] phenotype,
+            double[] genotype)
+    {
+        int strainCount = phenotype.length;
+        int residualDegreesOfFreedom = strainCount - 2;
+        double bestLikelihood = Double.NEGATIVE_INFINITY;
+        double bestFStatistic = Double.NaN;
+        for(int step = 0; step <= 100000; step++)
+        {
+            double delta = Math.exp(-10.0 + step * 20.0 / 100000);
+            double[][] covariance = new double[strainCount][strainCount];
+            for(int i = 0; i < strainCount; i++)
+            {
+                covariance[i] = kinship[i].clone();
+                covariance[i][i] += delta;
+            }
+            
+            // columns are the intercept, the genotype and the phenotype
+            double[][] columns = new double[strainCount][3];
+            for(int i = 0; i < strainCount; i++)
+            {
+                columns[i][0] = 1.0;
+                columns[i][1] = genotype[i];
+                columns[i][2] = phenotype[i];
+            }
+            double logDeterminant = solve(covariance, columns);
+            
+            // cross products of the columns weighted by the inverse
+            // covariance
+            double[][] crossProducts = new double[3][3];
+            for(int a = 0; a < 3; a++)
+            {
+                for(int b = 0; b < 3; b++)
+                {
+                    for(int i = 0; i < strainCount; i++)
+                    {
+                        double value = b == 0 ? 1.0 : b == 1 ? genotype[i] : phenotype[i];
+                        crossProducts[a][b] += value * columns[i][a];
+                    }
+                }
+            }
+            
+            double cc = crossProducts[0][0];
+            double cx = crossProducts[0][1];
+            double xx = crossProducts[1][1];
+            double cy = crossProducts[0][2];
+            double xy = crossProducts[1][2];
+            double yy = crossProducts[2][2];
+            double designDeterminant = cc * xx - cx * cx;
+            double interceptEffect = (xx * cy - cx * xy) / designDeterminant;
+            double genotypeEffect = (cc * xy - cx * cy) / designDeterminant;
+            double residualSumOfSquares =
+                yy - cy * interceptEffect - xy * genotypeEffect;
+            
+            double likelihood = -0.5 * (
+                    residualDegreesOfFreedom * Math.log(residualSumOfSquares) +
+                    logDeterminant +
+                    Math.log(designDeterminant));
+            if(likelihood > bestLikelihood)
+            {
+                bestLikelihood = likelihood;
+                double variance = residualSumOfSquares / residualDegreesOfFreedom;
+                bestFStatistic =
+                    genotypeEffect * genotypeEffect /
+                    (variance * cc / designDeterminant);
+            }
+        }
+        
+        return DistributionUtil.fDistributionUpperTail(
+                bestFStatistic,
+                1,
+                residualDegreesOfFreedom);
+    }
+    
+    /**
+     * Solve matrix * X = columns in place with gaussian elimination
+     * @return
+     *          the log determinant of the matrix
+     */
+    private static double solve(double[][] matrix, double[][] columns)
+    {
+        int size = matrix.length;
+        int columnCount = columns[0].length;
+        double logDeterminant = 0.0;
+        for(int pivot = 0; pivot < size; pivot++)
+        {
+            int bestRow = pivot;
+            for(int row = pivot + 1; row < size; row++)
+            {
+                if(Math.abs(matrix[row][pivot]) > Math.abs(matrix[bestRow][pivot]))
+                {
+                    bestRow = row;
+                }
+            }
+            double[] swap = matrix[pivot];
+            matrix[pivot] = matrix[bestRow];
+            matrix[bestRow] = swap;
+            swap = columns[pivot];
+            columns[pivot] = columns[bestRow];
+            columns[bestRow] = swap;
+            
+            logDeterminant += Math.log(Math.abs(matrix[pivot][pivot]));
+            for(int row = pivot + 1; row < size; row++)
+            {
+                double factor = matrix[row][pivot] / matrix[pivot][pivot];
+                for(int col = pivot; col < size; col++)
+                {
+                    matrix[row][col] -= factor * matrix[pivot][col];
+                }
+                for(int col = 0; col < columnCount; col++)
+                {
+                    columns[row][col] -= factor * columns[pivot][col];
+                }
+            }
+        }
+        
+        for(int row = size - 1; row >= 0; row--)
+        {
+            for(int col = 0; col < columnCount; col++)
+            {
+                double value = columns[row][col];
+                for(int k = row + 1; k < size; k++)
+                {
+                    value -= matrix[row][k] * columns[k][col];
+                }
+                columns[row][col] = value / matrix[row][row];
+            }
+        }
+        
+        return logDeterminant;
+    }
+    
+    private static BitSet toBitSet(int... genotype)
+    {
+        BitSet bits = new BitSet();
+        for(int i = 0; i < genotype.length; i++)
+        {
+            if(genotype[i] != 0)
+            {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+}
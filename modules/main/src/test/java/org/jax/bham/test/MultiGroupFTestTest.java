@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2010 The Jackson Laboratory
+ * 
+ * This is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this software.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.jax.bham.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.jax.bham.util.DistributionUtil;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MultiGroupFTest}. A long run of random partitions with
+ * arbitrary group numbers is fed through a single test and every one is
+ * checked against a one way ANOVA that's worked out from scratch
+ * @author <A HREF="mailto:keith.sheppard@jax.org">Keith Sheppard</A>
+ */
+public class MultiGroupFTestTest
+{
+    private static final int STRAIN_COUNT = 12;
+    
+    /**
+     * group numbers are drawn from this range so that they have gaps
+     */
+    private static final int LABEL_RANGE = 4 * STRAIN_COUNT;
+    
+    /**
+     * Walk through random partitions, some of which are only a relabeling
+     * of the one before, and check the statistics of every one. There are
+     * enough moves here that the group sums get rebuilt along the way
+     */
+    @Test
+    public void testRandomRelabelings()
+    {
+        Random random = new Random(7);
+        double[] strainMeans = new double[STRAIN_COUNT];
+        for(int i = 0; i < STRAIN_COUNT; i++)
+        {
+            strainMeans[i] = 100.0 + 10.0 * random.nextGaussian();
+        }
+        
+        MultiGroupFTest fTest = new MultiGroupFTest(strainMeans);
+        assertEquals(1, fTest.getGroupCount());
+        assertEquals(1.0, fTest.calculatePValue(), 0.0);
+        
+        short[] strainGroups = new short[STRAIN_COUNT];
+        for(int partition = 0; partition < 20000; partition++)
+        {
+            if(partition > 0 && random.nextInt(4) == 0)
+            {
+                // the same partition under new group numbers shouldn't
+                // move any strains
+                short[] relabeling = randomLabels(random, LABEL_RANGE);
+                for(int i = 0; i < STRAIN_COUNT; i++)
+                {
+                    strainGroups[i] = relabeling[strainGroups[i]];
+                }
+                assertEquals(0, fTest.setStrainGroups(strainGroups.clone()));
+            }
+            else
+            {
+                int groupCount = 1 + random.nextInt(STRAIN_COUNT);
+                short[] labels = randomLabels(random, groupCount);
+                for(int i = 0; i < STRAIN_COUNT; i++)
+                {
+                    strainGroups[i] = labels[random.nextInt(groupCount)];
+                }
+                fTest.setStrainGroups(strainGroups.clone());
+            }
+            
+            double[] anova = oneWayAnova(strainMeans, strainGroups);
+            int groupCount = (int)anova[0];
+            double fStatistic = anova[1];
+            assertEquals(groupCount, fTest.getGroupCount());
+            
+            // the sufficient statistics lose a little to cancellation when
+            // the groups barely differ so the tolerance can't be purely
+            // relative
+            assertEquals(fStatistic, fTest.calculateF(), 1e-8 * (1.0 + fStatistic));
+            
+            double pValue = groupCount < 2 || groupCount >= STRAIN_COUNT ?
+                            1.0 :
+                            DistributionUtil.fDistributionUpperTail(
+                                    fStatistic,
+                                    groupCount - 1.0,
+                                    STRAIN_COUNT - (double)groupCount);
+            assertEquals(pValue, fTest.calculatePValue(), 1e-8);
+        }
+    }
+    
+    /**
+     * Negative group numbers are rejected
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeGroup()
+    {
+        MultiGroupFTest fTest = new MultiGroupFTest(new double[] {1.0, 2.0});
+        fTest.setStrainGroups(new short[] {0, -1});
+    }
+    
+    /**
+     * Make distinct group numbers in a random order with gaps between them
+     */
+    private static short[] randomLabels(Random random, int labelCount)
+    {
+        short[] labels = new short[labelCount];
+        boolean[] used = new boolean[LABEL_RANGE];
+        for(int i = 0; i < labelCount; i++)
+        {
+            int label;
+            do
+            {
+                label = random.nextInt(LABEL_RANGE);
+            } while(used[label]);
+            used[label] = true;
+            labels[i] = (short)label;
+        }
+        return labels;
+    }
+    
+    /**
+     * A one way ANOVA straight from the definitions
+     * @return
+     *          the number of groups and the F statistic
+     */
+    private static double[] oneWayAnova(double[] values, short[] groups)
+    {
+        double grandMean = 0.0;
+        for(double value: values)
+        {
+            grandMean += value;
+        }
+        grandMean /= values.length;
+        
+        int groupCount = 0;
+        double betweenSumOfSquares = 0.0;
+        double withinSumOfSquares = 0.0;
+        boolean[] seen = new boolean[Short.MAX_VALUE + 1];
+        for(short group: groups)
+        {
+            if(!seen[group])
+            {
+                seen[group] = true;
+                groupCount++;
+                
+                int groupSize = 0;
+                double groupMean = 0.0;
+                for(int i = 0; i < values.length; i++)
+                {
+                    if(groups[i] == group)
+                    {
+                        groupSize++;
+                        groupMean += values[i];
+                    }
+                }
+                groupMean /= groupSize;
+                
+                betweenSumOfSquares +=
+                    groupSize * (groupMean - grandMean) * (groupMean - grandMean);
+                for(int i = 0; i < values.length; i++)
+                {
+                    if(groups[i] == group)
+                    {
+                        withinSumOfSquares +=
+                            (values[i] - groupMean) * (values[i] - groupMean);
+                    }
+                }
+            }
+        }
+        
+        double fStatistic;
+        if(groupCount < 2 || groupCount >= values.length)
+        {
+            fStatistic = 0.0;
+        }
+        else
+        {
+            fStatistic =
+                (betweenSumOfSquares / (groupCount - 1)) /
+                (withinSumOfSquares / (values.length - groupCount));
+        }
+        return new double[] {groupCount, fStatistic};
+    }
+}